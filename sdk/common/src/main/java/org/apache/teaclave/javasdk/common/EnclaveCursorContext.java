@@ -0,0 +1,52 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common;
+
+/**
+ * EnclaveCursorContext is an operation on a cursor in enclave. FETCH returns an ArrayList of the
+ * cursor's next elements, a page shorter than the requested size is the last one and the cursor
+ * was released with it. RELEASE drops a cursor which wasn't iterated to the end.
+ */
+public final class EnclaveCursorContext extends EnclaveInvocationContext {
+    private static final long serialVersionUID = -6035489623367457310L;
+    public static final int FETCH = 0x0;
+    public static final int RELEASE = 0x1;
+
+    private final int operation;
+    private final long cursorId;
+    private final int pageSize;
+
+    public EnclaveCursorContext(int operation, long cursorId, int pageSize) {
+        this.operation = operation;
+        this.cursorId = cursorId;
+        this.pageSize = pageSize;
+    }
+
+    public int getOperation() {
+        return operation;
+    }
+
+    public long getCursorId() {
+        return cursorId;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
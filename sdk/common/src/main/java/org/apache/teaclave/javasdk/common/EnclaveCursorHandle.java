@@ -0,0 +1,55 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common;
+
+import java.io.Serializable;
+
+/**
+ * EnclaveCursorHandle stands for an {@link EnclaveIterator} or a {@link java.util.stream.Stream}
+ * result of a service method invocation, whose elements are kept by a cursor in enclave.
+ */
+public final class EnclaveCursorHandle implements Serializable {
+    private static final long serialVersionUID = 4183507427645416027L;
+
+    private final long cursorId;
+    private final boolean stream;
+
+    public EnclaveCursorHandle(long cursorId, boolean stream) {
+        this.cursorId = cursorId;
+        this.stream = stream;
+    }
+
+    /**
+     * get the cursor's identity.
+     *
+     * @return cursor's identity.
+     */
+    public long getCursorId() {
+        return cursorId;
+    }
+
+    /**
+     * check whether the result is a Stream.
+     *
+     * @return true if it's a Stream, or it's an EnclaveIterator.
+     */
+    public boolean isStream() {
+        return stream;
+    }
+}
@@ -22,21 +22,29 @@ import java.io.Serializable;
 /**
  * This class stores a method's necessary information for reflection
  * call, including the service instance's unique instanceIdentity, interface name, class name,
- * method name and its parameters.
+ * method name and its parameters. If the method's id was negotiated at service loading,
+ * only the instanceIdentity, method id and arguments are carried. A batch context carries
+ * many invocations which are made in one enclave transition.
  */
 public class EnclaveInvocationContext implements Serializable {
-    private static final long serialVersionUID = 6878585714134748604L;
+    private static final long serialVersionUID = -6939676154680165903L;
 
     private final ServiceHandler serviceHandler;
     private final String methodName;
     private final String[] parameterTypes;
     private final Object[] arguments;
+    private final long instanceIdentity;
+    private final int methodId;
+    private final EnclaveInvocationContext[] batchContexts;
 
     public EnclaveInvocationContext() {
         this.serviceHandler = null;
         this.methodName = null;
         this.parameterTypes = null;
         this.arguments = null;
+        this.instanceIdentity = 0x0;
+        this.methodId = -1;
+        this.batchContexts = null;
     }
 
     public EnclaveInvocationContext(ServiceHandler serviceHandler,
@@ -47,6 +55,29 @@ public class EnclaveInvocationContext implements Serializable {
         this.methodName = methodName;
         this.parameterTypes = parameterTypes;
         this.arguments = arguments;
+        this.instanceIdentity = 0x0;
+        this.methodId = -1;
+        this.batchContexts = null;
+    }
+
+    public EnclaveInvocationContext(long instanceIdentity, int methodId, Object[] arguments) {
+        this.serviceHandler = null;
+        this.methodName = null;
+        this.parameterTypes = null;
+        this.arguments = arguments;
+        this.instanceIdentity = instanceIdentity;
+        this.methodId = methodId;
+        this.batchContexts = null;
+    }
+
+    public EnclaveInvocationContext(EnclaveInvocationContext[] batchContexts) {
+        this.serviceHandler = null;
+        this.methodName = null;
+        this.parameterTypes = null;
+        this.arguments = null;
+        this.instanceIdentity = 0x0;
+        this.methodId = -1;
+        this.batchContexts = batchContexts;
     }
 
     public EnclaveInvocationContext(ServiceHandler serviceHandler) {
@@ -54,6 +85,19 @@ public class EnclaveInvocationContext implements Serializable {
         this.parameterTypes = null;
         this.arguments = null;
         this.serviceHandler = serviceHandler;
+        this.instanceIdentity = 0x0;
+        this.methodId = -1;
+        this.batchContexts = null;
+    }
+
+    protected EnclaveInvocationContext(EnclaveInvocationContext context) {
+        this.serviceHandler = context.serviceHandler;
+        this.methodName = context.methodName;
+        this.parameterTypes = context.parameterTypes;
+        this.arguments = context.arguments;
+        this.instanceIdentity = context.instanceIdentity;
+        this.methodId = context.methodId;
+        this.batchContexts = context.batchContexts;
     }
 
     /**
@@ -91,4 +135,40 @@ public class EnclaveInvocationContext implements Serializable {
     public Object[] getArguments() {
         return arguments;
     }
+
+    /**
+     * get service instance's identity of a method id invocation.
+     *
+     * @return service instance's identity.
+     */
+    public long getInstanceIdentity() {
+        return instanceIdentity;
+    }
+
+    /**
+     * get the method's id negotiated at service loading.
+     *
+     * @return method's id, -1 if the method is invoked by its name and parameters' type.
+     */
+    public int getMethodId() {
+        return methodId;
+    }
+
+    /**
+     * get the invocations of a batch context.
+     *
+     * @return invocations in the batch, null if it's not a batch context.
+     */
+    public EnclaveInvocationContext[] getBatchContexts() {
+        return batchContexts;
+    }
+
+    /**
+     * check whether it's a batch context.
+     *
+     * @return true if the context carries a batch of invocations.
+     */
+    public boolean isBatch() {
+        return batchContexts != null;
+    }
 }
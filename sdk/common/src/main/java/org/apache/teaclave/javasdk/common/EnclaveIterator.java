@@ -0,0 +1,65 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common;
+
+import java.util.Iterator;
+
+/**
+ * EnclaveIterator is an iterator a service method could return instead of a collection. Its
+ * elements stay in enclave and host proxy fetches them in pages while it's iterated, so a large
+ * result is neither serialized nor held at once. A service method could return a
+ * {@link java.util.stream.Stream} the same way.
+ * <p>
+ * Host side should close an iterator it doesn't iterate to the end, its remaining elements in
+ * enclave are released then, or once it's recycled by gc.
+ *
+ * @param <T> element type.
+ */
+public interface EnclaveIterator<T> extends Iterator<T>, AutoCloseable {
+    /**
+     * release the iterator's remaining elements.
+     */
+    @Override
+    void close();
+
+    /**
+     * wrap an iterator in enclave as an EnclaveIterator.
+     *
+     * @param iterator elements to be returned to host.
+     * @param <T>      element type.
+     * @return an EnclaveIterator of the elements.
+     */
+    static <T> EnclaveIterator<T> of(Iterator<T> iterator) {
+        return new EnclaveIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
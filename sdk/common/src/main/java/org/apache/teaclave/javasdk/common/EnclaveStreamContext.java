@@ -0,0 +1,76 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common;
+
+/**
+ * EnclaveStreamContext is an operation on a stream argument or result of a service method
+ * invocation. An argument stream is opened in enclave before the invocation, and host writes
+ * its data in chunks while the invocation reads it. A result stream is read by host in chunks
+ * after the invocation returned. Argument streams' ids are given by host, and result streams'
+ * ids are given by enclave.
+ */
+public final class EnclaveStreamContext extends EnclaveInvocationContext {
+    private static final long serialVersionUID = 2302786133570848925L;
+    // open an argument stream.
+    public static final int OPEN = 0x0;
+    // write a chunk into an argument stream.
+    public static final int WRITE = 0x1;
+    // end of an argument stream's data.
+    public static final int END = 0x2;
+    // an argument stream failed, its reader gets an IOException.
+    public static final int ABORT = 0x3;
+    // read a chunk from a result stream.
+    public static final int READ = 0x4;
+    // close an argument stream after the invocation.
+    public static final int CLOSE = 0x5;
+    // release a result stream.
+    public static final int RELEASE = 0x6;
+
+    // WRITE's results.
+    public static final int WRITE_ACCEPTED = 0x0;
+    public static final int WRITE_FULL = 0x1;
+    public static final int WRITE_CLOSED = 0x2;
+
+    private final int operation;
+    private final long streamId;
+    private final byte[] data;
+
+    public EnclaveStreamContext(int operation, long streamId, byte[] data) {
+        this.operation = operation;
+        this.streamId = streamId;
+        this.data = data;
+    }
+
+    public int getOperation() {
+        return operation;
+    }
+
+    public long getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * get the chunk written by WRITE, or the failure message of ABORT.
+     *
+     * @return operation's data.
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,57 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common;
+
+import java.io.Serializable;
+
+/**
+ * EnclaveStreamHandle stands for an {@link java.io.InputStream} or a
+ * {@link java.nio.channels.ReadableByteChannel} argument or result of a service method
+ * invocation. The stream's data isn't carried with the invocation, it's transferred in
+ * chunks by {@link EnclaveStreamContext} invocations.
+ */
+public final class EnclaveStreamHandle implements Serializable {
+    private static final long serialVersionUID = -2795146580318216215L;
+
+    private final long streamId;
+    private final boolean channel;
+
+    public EnclaveStreamHandle(long streamId, boolean channel) {
+        this.streamId = streamId;
+        this.channel = channel;
+    }
+
+    /**
+     * get the stream's identity.
+     *
+     * @return stream's identity.
+     */
+    public long getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * check whether the stream is a ReadableByteChannel.
+     *
+     * @return true if it's a ReadableByteChannel, or it's an InputStream.
+     */
+    public boolean isChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,68 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.common;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MethodSignature describes a service method by its name and parameter types.
+ * Host and enclave negotiate service method ids by the signatures, a method's id
+ * is its index in the sorted signatures of the service interface.
+ */
+public final class MethodSignature {
+
+    private MethodSignature() {
+    }
+
+    /**
+     * get a method's signature, such as "add(int,java.lang.String)".
+     *
+     * @param method a service method.
+     * @return method's signature.
+     */
+    public static String of(Method method) {
+        StringBuilder builder = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int index = 0x0; index < parameterTypes.length; index++) {
+            if (index != 0x0) {
+                builder.append(',');
+            }
+            builder.append(parameterTypes[index].getName());
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * get a service interface's methods ordered by their method ids.
+     *
+     * @param service service interface.
+     * @return service's instance methods sorted by signature.
+     */
+    public static Method[] getServiceMethods(Class<?> service) {
+        Map<String, Method> methods = new TreeMap<>();
+        for (Method method : service.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                methods.putIfAbsent(of(method), method);
+            }
+        }
+        return methods.values().toArray(new Method[0]);
+    }
+}
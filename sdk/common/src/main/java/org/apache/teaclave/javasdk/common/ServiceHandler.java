@@ -24,33 +24,41 @@ import java.io.Serializable;
  * A ServiceHandler object will be bound to a host proxy handler.
  */
 public final class ServiceHandler implements Serializable {
-    private static final long serialVersionUID = -879933256236932801L;
+    private static final long serialVersionUID = -4207382998448329282L;
 
-    // instanceIdentity indicates the global unique service object's index in one enclave.
-    private final String instanceIdentity;
+    // instanceIdentity indicates the global unique service object's index in one enclave, starts from 1.
+    private final long instanceIdentity;
     // serviceImplClass stores loaded service object's full signature in the enclave.
     private final String serviceImplClass;
     // serviceInterface stores loaded service object's implement interface's full signature in the enclave.
     private final String serviceInterface;
+    // methodSignatures stores service methods' signature negotiated in the enclave, index is the method's id.
+    private final String[] methodSignatures;
 
-    public ServiceHandler(String serviceInterfaceName, String serviceClassName, String instanceIdentity) {
+    public ServiceHandler(String serviceInterfaceName, String serviceClassName, long instanceIdentity) {
+        this(serviceInterfaceName, serviceClassName, instanceIdentity, null);
+    }
+
+    public ServiceHandler(String serviceInterfaceName, String serviceClassName, long instanceIdentity, String[] methodSignatures) {
         this.serviceInterface = serviceInterfaceName;
         this.serviceImplClass = serviceClassName;
         this.instanceIdentity = instanceIdentity;
+        this.methodSignatures = methodSignatures;
     }
 
     public ServiceHandler(String interfaceName) {
-        this.instanceIdentity = null;
+        this.instanceIdentity = 0x0;
         this.serviceImplClass = null;
         this.serviceInterface = interfaceName;
+        this.methodSignatures = null;
     }
 
     /**
      * get service's unique identity.
      *
-     * @return service's unique identity.
+     * @return service's unique identity, 0 if the service is not loaded yet.
      */
-    public String getInstanceIdentity() {
+    public long getInstanceIdentity() {
         return this.instanceIdentity;
     }
 
@@ -71,4 +79,13 @@ public final class ServiceHandler implements Serializable {
     public String getServiceImplClassName() {
         return this.serviceImplClass;
     }
-}
\ No newline at end of file
+
+    /**
+     * get service methods' signature, a method's id is its index.
+     *
+     * @return service methods' signature, null if service methods have no ids.
+     */
+    public String[] getMethodSignatures() {
+        return this.methodSignatures;
+    }
+}
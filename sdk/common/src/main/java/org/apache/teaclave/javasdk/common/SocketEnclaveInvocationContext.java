@@ -24,7 +24,7 @@ package org.apache.teaclave.javasdk.common;
  * It's used for embedded lib os inner service invocation.
  */
 public final class SocketEnclaveInvocationContext extends EnclaveInvocationContext {
-    private static final long serialVersionUID = 6202620980098144988L;
+    private static final long serialVersionUID = -1199576845470036274L;
     public static final String SERVICE_LOADING = "service_loading";
     public static final String SERVICE_UNLOADING = "service_unloading";
     public static final String METHOD_INVOCATION = "method_invocation";
@@ -37,7 +37,7 @@ public final class SocketEnclaveInvocationContext extends EnclaveInvocationConte
     public SocketEnclaveInvocationContext(
             String agentServiceName,
             EnclaveInvocationContext context) {
-        super(context.getServiceHandler(), context.getMethodName(), context.getParameterTypes(), context.getArguments());
+        super(context);
         this.agentServiceName = agentServiceName;
         this.userData = null;
     }
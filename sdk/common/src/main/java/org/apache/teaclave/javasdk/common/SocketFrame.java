@@ -0,0 +1,116 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * SocketFrame is the unit exchanged between host and embedded lib os enclave agent over
+ * persistent socket channels. A frame is a 4 bytes payload length, an 8 bytes request id,
+ * a 4 bytes timeout in ms and the payload, a response frame carries its request's id, so that
+ * requests on one channel can be pipelined and answered out of order. A request's timeout is
+ * how long host waits for it, 0 means no limit, enclave agent drops a request which expired
+ * before being handled.
+ */
+public final class SocketFrame {
+    public static final int HEADER_SIZE = 16;
+    public static final int MAX_PAYLOAD_SIZE = 1 << 30;
+
+    private final long requestId;
+    private final int timeout;
+    private final byte[] payload;
+
+    public SocketFrame(long requestId, byte[] payload) {
+        this(requestId, 0x0, payload);
+    }
+
+    public SocketFrame(long requestId, int timeout, byte[] payload) {
+        this.requestId = requestId;
+        this.timeout = timeout;
+        this.payload = payload;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * write a frame into a blocking channel, callers serialize writes of a channel.
+     *
+     * @param channel target channel.
+     * @throws IOException failed to write the frame.
+     */
+    public void write(GatheringByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(payload.length).putLong(requestId).putInt(timeout).flip();
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        ByteBuffer[] buffers = new ByteBuffer[]{header, body};
+        while (header.hasRemaining() || body.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * read a frame from a blocking channel.
+     *
+     * @param channel source channel.
+     * @return the frame, or null if channel was closed by peer between frames.
+     * @throws IOException failed to read a frame.
+     */
+    public static SocketFrame read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header, true)) {
+            return null;
+        }
+        header.flip();
+        int length = header.getInt();
+        long requestId = header.getLong();
+        int timeout = header.getInt();
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("illegal socket frame length: " + length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, false);
+        return new SocketFrame(requestId, timeout, payload.array());
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean atBoundary) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (atBoundary && buffer.position() == 0x0) {
+                    return false;
+                }
+                throw new EOFException("socket frame is truncated.");
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.common.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark an interface as the asynchronous form of an {@link EnclaveService} marked interface.
+ * Each of its methods has the same name and parameter types as a method of the service,
+ * and returns {@link java.util.concurrent.CompletableFuture} of the service method's return
+ * type (boxed for primitive types, {@link Void} for void).
+ * <pre>
+ *    &#64;EnclaveAsyncService(Service.class)
+ *    public interface AsyncService {
+ *        CompletableFuture&lt;Integer&gt; add(int x, int y);
+ *    }
+ * </pre>
+ * It's only used in host side, proxies of it are loaded by {@code Enclave.loadAsync}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EnclaveAsyncService {
+    /**
+     * get the {@link EnclaveService} marked interface.
+     *
+     * @return the synchronous service interface.
+     */
+    Class<?> value();
+}
@@ -0,0 +1,114 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.common.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec is the SPI which encodes payloads exchanged between host and enclave.
+ * Every codec stamps its payload with a distinct header, so the receiver is able to
+ * pick up the matching codec by {@link CodecRegistry#detect(byte[])} and reply with it.
+ * Codec implementations must be thread safe.
+ */
+public interface Codec {
+    /**
+     * get codec's unique name.
+     *
+     * @return codec's name.
+     */
+    String getName();
+
+    /**
+     * check whether a payload was encoded by this codec.
+     *
+     * @param payload encoded payload.
+     * @return true if the payload header matches this codec.
+     */
+    boolean accept(byte[] payload);
+
+    /**
+     * encode an object.
+     *
+     * @param value object to be encoded.
+     * @return encoded payload.
+     * @throws IOException {@link IOException} If encoding failed.
+     */
+    byte[] encode(Object value) throws IOException;
+
+    /**
+     * decode a payload.
+     *
+     * @param payload encoded payload.
+     * @return decoded object.
+     * @throws IOException            {@link IOException} If decoding failed.
+     * @throws ClassNotFoundException {@link ClassNotFoundException} If a class in payload is not found.
+     */
+    Object decode(byte[] payload) throws IOException, ClassNotFoundException;
+
+    /**
+     * check whether a payload between buffer's position and limit was encoded by this codec.
+     * buffer's position is not changed.
+     *
+     * @param payload encoded payload.
+     * @return true if the payload header matches this codec.
+     */
+    default boolean accept(ByteBuffer payload) {
+        return accept(copyRemaining(payload.duplicate()));
+    }
+
+    /**
+     * encode an object into a buffer, starting at buffer's position.
+     * Codecs able to write a {@link ByteBuffer} in place override it, so a direct buffer
+     * is filled without any intermediate byte[].
+     *
+     * @param value  object to be encoded.
+     * @param buffer buffer to write into.
+     * @return buffer holding the payload up to its position, it is a larger buffer of the same
+     * kind if the payload didn't fit.
+     * @throws IOException {@link IOException} If encoding failed.
+     */
+    default ByteBuffer encode(Object value, ByteBuffer buffer) throws IOException {
+        byte[] payload = encode(value);
+        if (buffer.remaining() < payload.length) {
+            int capacity = Math.max(buffer.capacity() << 1, buffer.position() + payload.length);
+            ByteBuffer expanded = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            buffer.flip();
+            buffer = expanded.put(buffer);
+        }
+        return buffer.put(payload);
+    }
+
+    /**
+     * decode a payload between buffer's position and limit.
+     *
+     * @param payload encoded payload.
+     * @return decoded object.
+     * @throws IOException            {@link IOException} If decoding failed.
+     * @throws ClassNotFoundException {@link ClassNotFoundException} If a class in payload is not found.
+     */
+    default Object decode(ByteBuffer payload) throws IOException, ClassNotFoundException {
+        return decode(copyRemaining(payload));
+    }
+
+    private static byte[] copyRemaining(ByteBuffer buffer) {
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        return payload;
+    }
+}
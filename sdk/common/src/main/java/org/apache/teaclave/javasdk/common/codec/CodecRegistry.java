@@ -0,0 +1,141 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.common.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CodecRegistry holds all codecs could be used between host and enclave.
+ * Java serialization and TLV codec are registered by default, extra codecs
+ * are discovered by JDK SPI mechanism. In enclave the registry is initialized
+ * at image build time, so all codecs are fixed in the native image.
+ */
+public final class CodecRegistry {
+    private static final Codec javaSerializationCodec = new JavaSerializationCodec();
+    private static final List<Codec> codecs = new CopyOnWriteArrayList<>();
+
+    static {
+        register(new TLVCodec());
+        for (Codec codec : ServiceLoader.load(Codec.class, CodecRegistry.class.getClassLoader())) {
+            register(codec);
+        }
+        // java serialization is the last one to be detected.
+        register(javaSerializationCodec);
+    }
+
+    private CodecRegistry() {
+    }
+
+    /**
+     * register a codec, a codec with the same name will be ignored.
+     *
+     * @param codec codec to be registered.
+     */
+    public static void register(Codec codec) {
+        for (Codec c : codecs) {
+            if (c.getName().equals(codec.getName())) {
+                return;
+            }
+        }
+        codecs.add(codec);
+    }
+
+    /**
+     * get a codec by its name.
+     *
+     * @param name codec's name.
+     * @return the codec.
+     * @throws IllegalArgumentException {@link IllegalArgumentException} If no codec was registered with the name.
+     */
+    public static Codec getCodec(String name) {
+        for (Codec codec : codecs) {
+            if (codec.getName().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("codec " + name + " is not registered.");
+    }
+
+    /**
+     * get the default codec, it is java serialization codec.
+     *
+     * @return default codec.
+     */
+    public static Codec getDefaultCodec() {
+        return javaSerializationCodec;
+    }
+
+    /**
+     * find the codec which encoded the payload, java serialization is the fallback.
+     *
+     * @param payload encoded payload.
+     * @return the codec which encoded the payload.
+     */
+    public static Codec detect(byte[] payload) {
+        for (Codec codec : codecs) {
+            if (codec.accept(payload)) {
+                return codec;
+            }
+        }
+        return javaSerializationCodec;
+    }
+
+    /**
+     * decode a payload with the codec which encoded it.
+     *
+     * @param payload encoded payload.
+     * @return decoded object.
+     * @throws IOException            {@link IOException} If decoding failed.
+     * @throws ClassNotFoundException {@link ClassNotFoundException} If a class in payload is not found.
+     */
+    public static Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        return detect(payload).decode(payload);
+    }
+
+    /**
+     * find the codec which encoded the payload between buffer's position and limit,
+     * java serialization is the fallback.
+     *
+     * @param payload encoded payload.
+     * @return the codec which encoded the payload.
+     */
+    public static Codec detect(ByteBuffer payload) {
+        for (Codec codec : codecs) {
+            if (codec.accept(payload)) {
+                return codec;
+            }
+        }
+        return javaSerializationCodec;
+    }
+
+    /**
+     * decode a payload between buffer's position and limit with the codec which encoded it.
+     *
+     * @param payload encoded payload.
+     * @return decoded object.
+     * @throws IOException            {@link IOException} If decoding failed.
+     * @throws ClassNotFoundException {@link ClassNotFoundException} If a class in payload is not found.
+     */
+    public static Object decode(ByteBuffer payload) throws IOException, ClassNotFoundException {
+        return detect(payload).decode(payload);
+    }
+}
@@ -0,0 +1,60 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.common.codec;
+
+import org.apache.teaclave.javasdk.common.SerializationHelper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JavaSerializationCodec encodes payloads by jdk's object serialization.
+ * It is the fallback codec and is able to carry any {@link java.io.Serializable} object.
+ */
+public final class JavaSerializationCodec implements Codec {
+    public static final String NAME = "java";
+    // ObjectOutputStream.STREAM_MAGIC
+    private final static byte STREAM_MAGIC_0 = (byte) 0xAC;
+    private final static byte STREAM_MAGIC_1 = (byte) 0xED;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean accept(byte[] payload) {
+        return payload != null && payload.length >= 2 && payload[0] == STREAM_MAGIC_0 && payload[1] == STREAM_MAGIC_1;
+    }
+
+    @Override
+    public boolean accept(ByteBuffer payload) {
+        int position = payload.position();
+        return payload.remaining() >= 2 && payload.get(position) == STREAM_MAGIC_0 && payload.get(position + 1) == STREAM_MAGIC_1;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return SerializationHelper.serialize(value);
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        return SerializationHelper.deserialize(payload);
+    }
+}
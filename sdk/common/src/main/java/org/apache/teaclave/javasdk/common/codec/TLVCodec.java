@@ -0,0 +1,855 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.common.codec;
+
+import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.SerializationHelper;
+import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.common.SocketEnclaveInvocationContext;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TLVCodec is a compact tag-length-value codec for host and enclave communication.
+ * It encodes primitives and their boxed types, String, primitive arrays, object arrays,
+ * {@link ArrayList}, {@link HashMap}, {@link LinkedHashMap}, records and the framework's
+ * invocation types without any stream header or class descriptor. Integral values and
+ * lengths are varint encoded. Any other {@link Serializable} value falls back to java
+ * serialization, so the codec is able to carry everything java serialization does.
+ * <p>
+ * A record is created by its canonical constructor when it's decoded, so only records
+ * reachable from a registered service's method signatures are decoded, see
+ * {@link #registerService(Class)}.
+ */
+public final class TLVCodec implements Codec {
+    public static final String NAME = "tlv";
+    private final static byte MAGIC_0 = 0x54; // 'T'
+    private final static byte MAGIC_1 = 0x4C; // 'L'
+    private final static byte VERSION = 0x1;
+    private final static int HEADER_SIZE = 3;
+    private final static int INITIAL_BUFFER_SIZE = 256;
+
+    private final static byte TAG_NULL = 0x0;
+    private final static byte TAG_TRUE = 0x1;
+    private final static byte TAG_FALSE = 0x2;
+    private final static byte TAG_BYTE = 0x3;
+    private final static byte TAG_SHORT = 0x4;
+    private final static byte TAG_CHAR = 0x5;
+    private final static byte TAG_INT = 0x6;
+    private final static byte TAG_LONG = 0x7;
+    private final static byte TAG_FLOAT = 0x8;
+    private final static byte TAG_DOUBLE = 0x9;
+    private final static byte TAG_STRING = 0xA;
+    private final static byte TAG_BYTE_ARRAY = 0x10;
+    private final static byte TAG_SHORT_ARRAY = 0x11;
+    private final static byte TAG_CHAR_ARRAY = 0x12;
+    private final static byte TAG_INT_ARRAY = 0x13;
+    private final static byte TAG_LONG_ARRAY = 0x14;
+    private final static byte TAG_FLOAT_ARRAY = 0x15;
+    private final static byte TAG_DOUBLE_ARRAY = 0x16;
+    private final static byte TAG_BOOLEAN_ARRAY = 0x17;
+    private final static byte TAG_OBJECT_ARRAY = 0x18;
+    private final static byte TAG_LIST = 0x20;
+    private final static byte TAG_HASH_MAP = 0x21;
+    private final static byte TAG_LINKED_HASH_MAP = 0x22;
+    private final static byte TAG_RECORD = 0x23;
+    private final static byte TAG_SERVICE_HANDLER = 0x30;
+    private final static byte TAG_INVOCATION_CONTEXT = 0x31;
+    private final static byte TAG_SOCKET_INVOCATION_CONTEXT = 0x32;
+    private final static byte TAG_INVOCATION_RESULT = 0x33;
+    private final static byte TAG_SERIALIZED = 0x7F;
+
+    // well known classes are resolved without class loading.
+    private final static Map<String, Class<?>> wellKnownClasses = new HashMap<>();
+
+    static {
+        Class<?>[] classes = new Class<?>[]{Object.class, String.class, Boolean.class, Byte.class, Short.class,
+                Character.class, Integer.class, Long.class, Float.class, Double.class, Number.class,
+                ServiceHandler.class, EnclaveInvocationContext.class, EnclaveInvocationResult.class};
+        for (Class<?> clazz : classes) {
+            wellKnownClasses.put(clazz.getName(), clazz);
+        }
+    }
+
+    // records allowed to be decoded, by name.
+    private final static Map<String, Class<?>> registeredRecords = new ConcurrentHashMap<>();
+
+    /**
+     * registerService allows decoding the records reachable from a service's method
+     * signatures, both host and enclave register a service when they load it.
+     *
+     * @param service service interface.
+     */
+    public static void registerService(Class<?> service) {
+        Set<Class<?>> types = new HashSet<>();
+        for (Method method : service.getMethods()) {
+            for (Type type : method.getGenericParameterTypes()) {
+                collectCodecTypes(type, types);
+            }
+            collectCodecTypes(method.getGenericReturnType(), types);
+        }
+        for (Class<?> type : types) {
+            if (RecordSupport.isRecord(type)) {
+                registeredRecords.put(type.getName(), type);
+            }
+        }
+    }
+
+    /**
+     * collectCodecTypes collects the classes a value of a type is built of: the type itself,
+     * type arguments, array component types and record component types, transitively.
+     *
+     * @param type  a generic type of a service method's parameter or return value.
+     * @param types collected classes.
+     */
+    public static void collectCodecTypes(Type type, Set<Class<?>> types) {
+        collectCodecTypes(type, types, new HashSet<>());
+    }
+
+    // visited stops recursive bounds such as T extends Comparable<T>.
+    private static void collectCodecTypes(Type type, Set<Class<?>> types, Set<Type> visited) {
+        if (!visited.add(type)) {
+            return;
+        }
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            if (clazz.isPrimitive()) {
+                return;
+            }
+            types.add(clazz);
+            if (clazz.isArray()) {
+                collectCodecTypes(clazz.getComponentType(), types, visited);
+            } else if (RecordSupport.isRecord(clazz)) {
+                for (RecordComponent component : clazz.getRecordComponents()) {
+                    collectCodecTypes(component.getGenericType(), types, visited);
+                }
+            }
+        } else if (type instanceof ParameterizedType) {
+            collectCodecTypes(((ParameterizedType) type).getRawType(), types, visited);
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                collectCodecTypes(argument, types, visited);
+            }
+        } else if (type instanceof GenericArrayType) {
+            collectCodecTypes(erase(type), types, visited);
+            collectCodecTypes(((GenericArrayType) type).getGenericComponentType(), types, visited);
+        } else if (type instanceof WildcardType) {
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                collectCodecTypes(bound, types, visited);
+            }
+            for (Type bound : ((WildcardType) type).getLowerBounds()) {
+                collectCodecTypes(bound, types, visited);
+            }
+        } else if (type instanceof TypeVariable) {
+            for (Type bound : ((TypeVariable<?>) type).getBounds()) {
+                collectCodecTypes(bound, types, visited);
+            }
+        }
+    }
+
+    private static Class<?> erase(Type type) {
+        if (type instanceof ParameterizedType) {
+            return erase(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(erase(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return erase(((WildcardType) type).getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable) {
+            return erase(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        return (Class<?>) type;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean accept(byte[] payload) {
+        return payload != null && payload.length >= HEADER_SIZE
+                && payload[0] == MAGIC_0 && payload[1] == MAGIC_1 && payload[2] == VERSION;
+    }
+
+    @Override
+    public boolean accept(ByteBuffer payload) {
+        int position = payload.position();
+        return payload.remaining() >= HEADER_SIZE && payload.get(position) == MAGIC_0
+                && payload.get(position + 1) == MAGIC_1 && payload.get(position + 2) == VERSION;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        Writer writer = new Writer(ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+        writer.writeHeader();
+        writer.writeValue(value);
+        ByteBuffer buffer = writer.buffer;
+        byte[] payload = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(payload);
+        return payload;
+    }
+
+    @Override
+    public ByteBuffer encode(Object value, ByteBuffer buffer) throws IOException {
+        Writer writer = new Writer(buffer);
+        writer.writeHeader();
+        writer.writeValue(value);
+        return writer.buffer;
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        if (!accept(payload)) {
+            throw new StreamCorruptedException("invalid tlv payload header.");
+        }
+        return read(ByteBuffer.wrap(payload, HEADER_SIZE, payload.length - HEADER_SIZE));
+    }
+
+    @Override
+    public Object decode(ByteBuffer payload) throws IOException, ClassNotFoundException {
+        if (!accept(payload)) {
+            throw new StreamCorruptedException("invalid tlv payload header.");
+        }
+        return read(payload.position(payload.position() + HEADER_SIZE));
+    }
+
+    private static Object read(ByteBuffer buffer) throws IOException, ClassNotFoundException {
+        try {
+            return new Reader(buffer).readValue();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException | ClassCastException e) {
+            throw new StreamCorruptedException("truncated tlv payload.");
+        }
+    }
+
+    private static Class<?> resolveClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = wellKnownClasses.get(name);
+        if (clazz != null) {
+            return clazz;
+        }
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader != null) {
+            try {
+                return Class.forName(name, false, loader);
+            } catch (ClassNotFoundException ignored) {
+                // try again with codec's class loader.
+            }
+        }
+        return Class.forName(name, false, TLVCodec.class.getClassLoader());
+    }
+
+    static final class Writer {
+        private ByteBuffer buffer;
+
+        Writer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void ensure(int size) {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            int capacity = Math.max(buffer.capacity() << 1, buffer.position() + size);
+            ByteBuffer expanded = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            buffer.flip();
+            expanded.put(buffer);
+            buffer = expanded;
+        }
+
+        void writeHeader() {
+            ensure(HEADER_SIZE);
+            buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION);
+        }
+
+        private void writeTag(byte tag) {
+            ensure(1);
+            buffer.put(tag);
+        }
+
+        private void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void writeRawBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            // length is shifted by one so that null and empty string are different.
+            writeVarInt(bytes.length + 1);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void writeStringArray(String[] values) {
+            if (values == null) {
+                writeVarInt(0);
+                return;
+            }
+            writeVarInt(values.length + 1);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeServiceHandler(ServiceHandler handler) {
+            writeString(handler.getServiceInterfaceName());
+            writeString(handler.getServiceImplClassName());
+            writeVarLong(handler.getInstanceIdentity());
+            writeStringArray(handler.getMethodSignatures());
+        }
+
+        private void writeInvocationContext(EnclaveInvocationContext context) throws IOException {
+            // method id is shifted by two, zero means a batch of invocations and
+            // one means the method is invoked by name.
+            if (context.isBatch()) {
+                writeVarInt(0x0);
+                writeValue(context.getBatchContexts());
+                return;
+            }
+            writeVarInt(context.getMethodId() + 2);
+            if (context.getMethodId() >= 0) {
+                writeVarLong(context.getInstanceIdentity());
+            } else {
+                writeValue(context.getServiceHandler());
+                writeString(context.getMethodName());
+                writeStringArray(context.getParameterTypes());
+            }
+            writeValue(context.getArguments());
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writeTag(TAG_NULL);
+                return;
+            }
+            Class<?> clazz = value.getClass();
+            if (clazz == Integer.class) {
+                writeTag(TAG_INT);
+                int v = (Integer) value;
+                writeVarInt((v << 1) ^ (v >> 31));
+            } else if (clazz == Long.class) {
+                writeTag(TAG_LONG);
+                long v = (Long) value;
+                writeVarLong((v << 1) ^ (v >> 63));
+            } else if (clazz == String.class) {
+                writeTag(TAG_STRING);
+                writeString((String) value);
+            } else if (clazz == Boolean.class) {
+                writeTag((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (clazz == Double.class) {
+                writeTag(TAG_DOUBLE);
+                ensure(Double.BYTES);
+                buffer.putDouble((Double) value);
+            } else if (clazz == Float.class) {
+                writeTag(TAG_FLOAT);
+                ensure(Float.BYTES);
+                buffer.putFloat((Float) value);
+            } else if (clazz == Byte.class) {
+                writeTag(TAG_BYTE);
+                ensure(Byte.BYTES);
+                buffer.put((Byte) value);
+            } else if (clazz == Short.class) {
+                writeTag(TAG_SHORT);
+                ensure(Short.BYTES);
+                buffer.putShort((Short) value);
+            } else if (clazz == Character.class) {
+                writeTag(TAG_CHAR);
+                ensure(Character.BYTES);
+                buffer.putChar((Character) value);
+            } else if (clazz == byte[].class) {
+                writeTag(TAG_BYTE_ARRAY);
+                writeRawBytes((byte[]) value);
+            } else if (clazz.isArray()) {
+                writeArray(clazz.getComponentType(), value);
+            } else if (clazz == ArrayList.class) {
+                List<?> list = (List<?>) value;
+                writeTag(TAG_LIST);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (clazz == HashMap.class || clazz == LinkedHashMap.class) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeTag(clazz == HashMap.class ? TAG_HASH_MAP : TAG_LINKED_HASH_MAP);
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (clazz == ServiceHandler.class) {
+                writeTag(TAG_SERVICE_HANDLER);
+                writeServiceHandler((ServiceHandler) value);
+            } else if (clazz == EnclaveInvocationContext.class) {
+                writeTag(TAG_INVOCATION_CONTEXT);
+                writeInvocationContext((EnclaveInvocationContext) value);
+            } else if (clazz == SocketEnclaveInvocationContext.class) {
+                SocketEnclaveInvocationContext context = (SocketEnclaveInvocationContext) value;
+                writeTag(TAG_SOCKET_INVOCATION_CONTEXT);
+                writeString(context.getAgentServiceName());
+                writeValue(context.getUserData());
+                writeInvocationContext(context);
+            } else if (clazz == EnclaveInvocationResult.class) {
+                EnclaveInvocationResult result = (EnclaveInvocationResult) value;
+                writeTag(TAG_INVOCATION_RESULT);
+                writeValue(result.getResult());
+                writeValue(result.getException());
+                writeVarLong(result.getCost());
+            } else if (RecordSupport.isRecord(clazz)) {
+                writeTag(TAG_RECORD);
+                writeString(clazz.getName());
+                Object[] components = RecordSupport.getComponents(value);
+                writeVarInt(components.length);
+                for (Object component : components) {
+                    writeValue(component);
+                }
+            } else if (value instanceof Serializable) {
+                writeTag(TAG_SERIALIZED);
+                writeRawBytes(SerializationHelper.serialize(value));
+            } else {
+                throw new NotSerializableException(clazz.getName());
+            }
+        }
+
+        private void writeArray(Class<?> componentType, Object array) throws IOException {
+            if (componentType == int.class) {
+                int[] values = (int[]) array;
+                writeTag(TAG_INT_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length * Integer.BYTES);
+                buffer.asIntBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Integer.BYTES);
+            } else if (componentType == long.class) {
+                long[] values = (long[]) array;
+                writeTag(TAG_LONG_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length * Long.BYTES);
+                buffer.asLongBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Long.BYTES);
+            } else if (componentType == double.class) {
+                double[] values = (double[]) array;
+                writeTag(TAG_DOUBLE_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length * Double.BYTES);
+                buffer.asDoubleBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Double.BYTES);
+            } else if (componentType == float.class) {
+                float[] values = (float[]) array;
+                writeTag(TAG_FLOAT_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length * Float.BYTES);
+                buffer.asFloatBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Float.BYTES);
+            } else if (componentType == short.class) {
+                short[] values = (short[]) array;
+                writeTag(TAG_SHORT_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length * Short.BYTES);
+                buffer.asShortBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Short.BYTES);
+            } else if (componentType == char.class) {
+                char[] values = (char[]) array;
+                writeTag(TAG_CHAR_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length * Character.BYTES);
+                buffer.asCharBuffer().put(values);
+                buffer.position(buffer.position() + values.length * Character.BYTES);
+            } else if (componentType == boolean.class) {
+                boolean[] values = (boolean[]) array;
+                writeTag(TAG_BOOLEAN_ARRAY);
+                writeVarInt(values.length);
+                ensure(values.length);
+                for (boolean v : values) {
+                    buffer.put(v ? TAG_TRUE : TAG_FALSE);
+                }
+            } else {
+                Object[] values = (Object[]) array;
+                writeTag(TAG_OBJECT_ARRAY);
+                writeString(componentType.getName());
+                writeVarInt(values.length);
+                for (Object v : values) {
+                    writeValue(v);
+                }
+            }
+        }
+    }
+
+    static final class Reader {
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("malformed tlv varint.");
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("malformed tlv varint.");
+        }
+
+        private int readLength(int elementSize) throws IOException {
+            int length = readVarInt();
+            if (length < 0 || (long) length * elementSize > buffer.remaining()) {
+                throw new StreamCorruptedException("invalid tlv length " + length + ".");
+            }
+            return length;
+        }
+
+        private byte[] readRawBytes() throws IOException {
+            byte[] bytes = new byte[readLength(1)];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > buffer.remaining()) {
+                throw new StreamCorruptedException("invalid tlv length " + length + ".");
+            }
+            if (buffer.hasArray()) {
+                String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return value;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private String[] readStringArray() throws IOException {
+            int length = readVarInt() - 1;
+            if (length == -1) {
+                return null;
+            }
+            String[] values = new String[readBound(length)];
+            for (int i = 0; i < length; i++) {
+                values[i] = readString();
+            }
+            return values;
+        }
+
+        // every element occupies one byte at least.
+        private int readBound(int length) throws IOException {
+            if (length < 0 || length > buffer.remaining()) {
+                throw new StreamCorruptedException("invalid tlv length " + length + ".");
+            }
+            return length;
+        }
+
+        private ServiceHandler readServiceHandler() throws IOException {
+            String serviceInterface = readString();
+            String serviceImplClass = readString();
+            long instanceIdentity = readVarLong();
+            String[] methodSignatures = readStringArray();
+            return new ServiceHandler(serviceInterface, serviceImplClass, instanceIdentity, methodSignatures);
+        }
+
+        private EnclaveInvocationContext readInvocationContext() throws IOException, ClassNotFoundException {
+            int methodId = readVarInt() - 2;
+            if (methodId == -2) {
+                return new EnclaveInvocationContext((EnclaveInvocationContext[]) readValue());
+            }
+            if (methodId >= 0) {
+                long instanceIdentity = readVarLong();
+                return new EnclaveInvocationContext(instanceIdentity, methodId, (Object[]) readValue());
+            }
+            ServiceHandler handler = (ServiceHandler) readValue();
+            String methodName = readString();
+            String[] parameterTypes = readStringArray();
+            Object[] arguments = (Object[]) readValue();
+            return new EnclaveInvocationContext(handler, methodName, parameterTypes, arguments);
+        }
+
+        Object readValue() throws IOException, ClassNotFoundException {
+            byte tag = buffer.get();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_BYTE:
+                    return buffer.get();
+                case TAG_SHORT:
+                    return buffer.getShort();
+                case TAG_CHAR:
+                    return buffer.getChar();
+                case TAG_INT: {
+                    int v = readVarInt();
+                    return (v >>> 1) ^ -(v & 1);
+                }
+                case TAG_LONG: {
+                    long v = readVarLong();
+                    return (v >>> 1) ^ -(v & 1);
+                }
+                case TAG_FLOAT:
+                    return buffer.getFloat();
+                case TAG_DOUBLE:
+                    return buffer.getDouble();
+                case TAG_STRING:
+                    return readString();
+                case TAG_BYTE_ARRAY:
+                    return readRawBytes();
+                case TAG_SHORT_ARRAY: {
+                    short[] values = new short[readLength(Short.BYTES)];
+                    buffer.asShortBuffer().get(values);
+                    buffer.position(buffer.position() + values.length * Short.BYTES);
+                    return values;
+                }
+                case TAG_CHAR_ARRAY: {
+                    char[] values = new char[readLength(Character.BYTES)];
+                    buffer.asCharBuffer().get(values);
+                    buffer.position(buffer.position() + values.length * Character.BYTES);
+                    return values;
+                }
+                case TAG_INT_ARRAY: {
+                    int[] values = new int[readLength(Integer.BYTES)];
+                    buffer.asIntBuffer().get(values);
+                    buffer.position(buffer.position() + values.length * Integer.BYTES);
+                    return values;
+                }
+                case TAG_LONG_ARRAY: {
+                    long[] values = new long[readLength(Long.BYTES)];
+                    buffer.asLongBuffer().get(values);
+                    buffer.position(buffer.position() + values.length * Long.BYTES);
+                    return values;
+                }
+                case TAG_FLOAT_ARRAY: {
+                    float[] values = new float[readLength(Float.BYTES)];
+                    buffer.asFloatBuffer().get(values);
+                    buffer.position(buffer.position() + values.length * Float.BYTES);
+                    return values;
+                }
+                case TAG_DOUBLE_ARRAY: {
+                    double[] values = new double[readLength(Double.BYTES)];
+                    buffer.asDoubleBuffer().get(values);
+                    buffer.position(buffer.position() + values.length * Double.BYTES);
+                    return values;
+                }
+                case TAG_BOOLEAN_ARRAY: {
+                    boolean[] values = new boolean[readLength(1)];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = buffer.get() == TAG_TRUE;
+                    }
+                    return values;
+                }
+                case TAG_OBJECT_ARRAY: {
+                    Class<?> componentType = resolveClass(readString());
+                    Object[] values = (Object[]) Array.newInstance(componentType, readLength(1));
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = readValue();
+                    }
+                    return values;
+                }
+                case TAG_LIST: {
+                    int size = readLength(1);
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case TAG_HASH_MAP:
+                case TAG_LINKED_HASH_MAP: {
+                    int size = readLength(2);
+                    Map<Object, Object> map = tag == TAG_HASH_MAP ? new HashMap<>() : new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = readValue();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                case TAG_RECORD: {
+                    String name = readString();
+                    Class<?> clazz = registeredRecords.get(name);
+                    if (clazz == null) {
+                        throw new InvalidClassException(name, "record is not reachable from a registered service.");
+                    }
+                    Object[] components = new Object[readLength(1)];
+                    for (int i = 0; i < components.length; i++) {
+                        components[i] = readValue();
+                    }
+                    return RecordSupport.newInstance(clazz, components);
+                }
+                case TAG_SERVICE_HANDLER:
+                    return readServiceHandler();
+                case TAG_INVOCATION_CONTEXT:
+                    return readInvocationContext();
+                case TAG_SOCKET_INVOCATION_CONTEXT: {
+                    String agentServiceName = readString();
+                    byte[] userData = (byte[]) readValue();
+                    EnclaveInvocationContext context = readInvocationContext();
+                    if (userData != null) {
+                        return new SocketEnclaveInvocationContext(agentServiceName, userData);
+                    }
+                    return new SocketEnclaveInvocationContext(agentServiceName, context);
+                }
+                case TAG_INVOCATION_RESULT: {
+                    Object result = readValue();
+                    Throwable exception = (Throwable) readValue();
+                    EnclaveInvocationResult invocationResult = new EnclaveInvocationResult(result, exception);
+                    invocationResult.setCost(readVarLong());
+                    return invocationResult;
+                }
+                case TAG_SERIALIZED:
+                    return SerializationHelper.deserialize(readRawBytes());
+                default:
+                    throw new StreamCorruptedException("unknown tlv tag " + tag + ".");
+            }
+        }
+    }
+
+    /**
+     * RecordSupport accesses records by their components and canonical constructor,
+     * it's only touched when the runtime supports records.
+     */
+    static final class RecordSupport {
+        private final static boolean RECORD_SUPPORTED = Runtime.version().feature() >= 16;
+        private final static Map<Class<?>, Method[]> accessors = new ConcurrentHashMap<>();
+        private final static Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
+        static boolean isRecord(Class<?> clazz) {
+            return RECORD_SUPPORTED && clazz.isRecord();
+        }
+
+        private static Method[] getAccessors(Class<?> clazz) {
+            return accessors.computeIfAbsent(clazz, c -> {
+                RecordComponent[] components = c.getRecordComponents();
+                Method[] methods = new Method[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    methods[i] = components[i].getAccessor();
+                    methods[i].setAccessible(true);
+                }
+                return methods;
+            });
+        }
+
+        private static Constructor<?> getConstructor(Class<?> clazz) {
+            return constructors.computeIfAbsent(clazz, c -> {
+                RecordComponent[] components = c.getRecordComponents();
+                Class<?>[] types = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    types[i] = components[i].getType();
+                }
+                try {
+                    Constructor<?> constructor = c.getDeclaredConstructor(types);
+                    constructor.setAccessible(true);
+                    return constructor;
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        static Object[] getComponents(Object record) throws IOException {
+            Method[] methods = getAccessors(record.getClass());
+            Object[] values = new Object[methods.length];
+            try {
+                for (int i = 0; i < methods.length; i++) {
+                    values[i] = methods[i].invoke(record);
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IOException("record " + record.getClass().getName() + " encoding failed.", e);
+            }
+            return values;
+        }
+
+        static Object newInstance(Class<?> clazz, Object[] components) throws IOException {
+            if (!isRecord(clazz)) {
+                throw new StreamCorruptedException(clazz.getName() + " is not a record.");
+            }
+            Constructor<?> constructor = getConstructor(clazz);
+            if (constructor.getParameterCount() != components.length) {
+                throw new StreamCorruptedException("record " + clazz.getName() + " components mismatch.");
+            }
+            try {
+                return constructor.newInstance(components);
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
+                throw new IOException("record " + clazz.getName() + " decoding failed.", e);
+            }
+        }
+    }
+}
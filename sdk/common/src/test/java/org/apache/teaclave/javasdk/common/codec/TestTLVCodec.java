@@ -0,0 +1,236 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.common.codec;
+
+import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.SerializationHelper;
+import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.common.SocketEnclaveInvocationContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestTLVCodec {
+    private final Codec codec = CodecRegistry.getCodec(TLVCodec.NAME);
+
+    private Object roundTrip(Object value) throws Exception {
+        byte[] payload = codec.encode(value);
+        assertSame(codec, CodecRegistry.detect(payload));
+        return CodecRegistry.decode(payload);
+    }
+
+    @Test
+    void testPrimitives() throws Exception {
+        Object[] values = new Object[]{null, true, false, (byte) -7, (short) 300, 'x', 0, -1, Integer.MIN_VALUE,
+                Integer.MAX_VALUE, Long.MIN_VALUE, 42L, 1.5f, Double.NaN, -0.25d, "", "Hello 世界"};
+        for (Object value : values) {
+            assertEquals(value, roundTrip(value));
+        }
+        assertNull(roundTrip(null));
+    }
+
+    @Test
+    void testArrays() throws Exception {
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+        assertArrayEquals(new int[]{-1, 0, Integer.MAX_VALUE}, (int[]) roundTrip(new int[]{-1, 0, Integer.MAX_VALUE}));
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 3}, (long[]) roundTrip(new long[]{Long.MIN_VALUE, 3}));
+        assertArrayEquals(new double[]{0.1, 0.2}, (double[]) roundTrip(new double[]{0.1, 0.2}));
+        assertArrayEquals(new float[]{0.5f}, (float[]) roundTrip(new float[]{0.5f}));
+        assertArrayEquals(new short[]{-2, 2}, (short[]) roundTrip(new short[]{-2, 2}));
+        assertArrayEquals(new char[]{'a', 'b'}, (char[]) roundTrip(new char[]{'a', 'b'}));
+        assertArrayEquals(new boolean[]{true, false}, (boolean[]) roundTrip(new boolean[]{true, false}));
+        String[] strings = (String[]) roundTrip(new String[]{"a", null, "c"});
+        assertArrayEquals(new String[]{"a", null, "c"}, strings);
+        int[][] matrix = (int[][]) roundTrip(new int[][]{{1}, {2, 3}});
+        assertArrayEquals(new int[]{2, 3}, matrix[1]);
+    }
+
+    @Test
+    void testCollections() throws Exception {
+        List<Object> list = new ArrayList<>(Arrays.asList(1, "two", 3L, null));
+        assertEquals(list, roundTrip(list));
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("b", 2);
+        map.put("a", new int[0].length);
+        Object decoded = roundTrip(map);
+        assertEquals(LinkedHashMap.class, decoded.getClass());
+        assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(((Map<?, ?>) decoded).keySet()));
+        Map<Integer, String> hashMap = new HashMap<>();
+        hashMap.put(1, "one");
+        assertEquals(hashMap, roundTrip(hashMap));
+    }
+
+    @Test
+    void testSerializationFallback() throws Exception {
+        TreeSet<String> set = new TreeSet<>(Arrays.asList("z", "a"));
+        assertEquals(set, roundTrip(set));
+        assertEquals(new BigInteger("123456789012345678901234567890"), roundTrip(new BigInteger("123456789012345678901234567890")));
+        List<Object> nested = new ArrayList<>();
+        nested.add(set);
+        assertEquals(nested, roundTrip(nested));
+    }
+
+    @Test
+    void testInvocation() throws Exception {
+        ServiceHandler handler = new ServiceHandler("service", "impl", 7);
+        EnclaveInvocationContext context = new EnclaveInvocationContext(handler, "add",
+                new String[]{"int", "int"}, new Object[]{1, 2});
+        EnclaveInvocationContext decoded = (EnclaveInvocationContext) roundTrip(context);
+        assertEquals("service", decoded.getServiceHandler().getServiceInterfaceName());
+        assertEquals("impl", decoded.getServiceHandler().getServiceImplClassName());
+        assertEquals(7, decoded.getServiceHandler().getInstanceIdentity());
+        assertEquals("add", decoded.getMethodName());
+        assertEquals(-1, decoded.getMethodId());
+        assertArrayEquals(new String[]{"int", "int"}, decoded.getParameterTypes());
+        assertArrayEquals(new Object[]{1, 2}, decoded.getArguments());
+
+        decoded = (EnclaveInvocationContext) roundTrip(new EnclaveInvocationContext(7, 3, new Object[]{"x"}));
+        assertNull(decoded.getServiceHandler());
+        assertEquals(7, decoded.getInstanceIdentity());
+        assertEquals(3, decoded.getMethodId());
+        assertArrayEquals(new Object[]{"x"}, decoded.getArguments());
+
+        ServiceHandler loaded = (ServiceHandler) roundTrip(new ServiceHandler("service", "impl", 8, new String[]{"add(int,int)"}));
+        assertArrayEquals(new String[]{"add(int,int)"}, loaded.getMethodSignatures());
+        ServiceHandler[] handlers = (ServiceHandler[]) roundTrip(new ServiceHandler[]{new ServiceHandler("service")});
+        assertEquals("service", handlers[0].getServiceInterfaceName());
+        assertEquals(0, handlers[0].getInstanceIdentity());
+
+        SocketEnclaveInvocationContext socketContext = (SocketEnclaveInvocationContext) roundTrip(
+                new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.METHOD_INVOCATION, context));
+        assertEquals(SocketEnclaveInvocationContext.METHOD_INVOCATION, socketContext.getAgentServiceName());
+        assertEquals("add", socketContext.getMethodName());
+        socketContext = (SocketEnclaveInvocationContext) roundTrip(
+                new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.REMOTE_ATTESTATION_GENERATE, new byte[]{9}));
+        assertArrayEquals(new byte[]{9}, socketContext.getUserData());
+
+        EnclaveInvocationResult result = new EnclaveInvocationResult(null, new ArithmeticException("/ by zero"));
+        result.setCost(12345L);
+        EnclaveInvocationResult decodedResult = (EnclaveInvocationResult) roundTrip(result);
+        assertNull(decodedResult.getResult());
+        assertEquals(ArithmeticException.class, decodedResult.getException().getClass());
+        assertEquals(12345L, decodedResult.getCost());
+    }
+
+    @Test
+    void testBatchInvocation() throws Exception {
+        EnclaveInvocationContext batch = new EnclaveInvocationContext(new EnclaveInvocationContext[]{
+                new EnclaveInvocationContext(7, 3, new Object[]{1}),
+                new EnclaveInvocationContext(new ServiceHandler("service", "impl", 8), "sub", new String[]{"int"}, new Object[]{2})});
+        SocketEnclaveInvocationContext decoded = (SocketEnclaveInvocationContext) roundTrip(
+                new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.METHOD_INVOCATION, batch));
+        assertTrue(decoded.isBatch());
+        EnclaveInvocationContext[] contexts = decoded.getBatchContexts();
+        assertEquals(2, contexts.length);
+        assertEquals(3, contexts[0].getMethodId());
+        assertEquals("sub", contexts[1].getMethodName());
+        assertEquals(8, contexts[1].getServiceHandler().getInstanceIdentity());
+
+        EnclaveInvocationResult result = new EnclaveInvocationResult(new EnclaveInvocationResult[]{
+                new EnclaveInvocationResult(1, null), new EnclaveInvocationResult(null, new ArithmeticException())}, null);
+        EnclaveInvocationResult[] results = (EnclaveInvocationResult[]) ((EnclaveInvocationResult) roundTrip(result)).getResult();
+        assertEquals(1, results[0].getResult());
+        assertEquals(ArithmeticException.class, results[1].getException().getClass());
+    }
+
+    interface Shapes<T extends Comparable<T>> {
+        Map<String, List<BigInteger>[]> group(List<? extends T> values);
+    }
+
+    @Test
+    void testCodecTypes() throws Exception {
+        // type arguments, bounds and array components are reached, recursive bounds end.
+        Set<Class<?>> types = new HashSet<>();
+        for (Type type : Shapes.class.getMethod("group", List.class).getGenericParameterTypes()) {
+            TLVCodec.collectCodecTypes(type, types);
+        }
+        TLVCodec.collectCodecTypes(Shapes.class.getMethod("group", List.class).getGenericReturnType(), types);
+        assertTrue(types.containsAll(Arrays.asList(List.class, Comparable.class, Map.class, String.class,
+                List[].class, BigInteger.class)));
+    }
+
+    @Test
+    void testUnregisteredRecord() {
+        // a record name which no registered service reaches is never resolved.
+        byte[] name = Thread.class.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[5 + name.length + 1];
+        payload[0] = 0x54;
+        payload[1] = 0x4C;
+        payload[2] = 0x1;
+        payload[3] = 0x23;
+        payload[4] = (byte) (name.length + 1);
+        System.arraycopy(name, 0, payload, 5, name.length);
+        assertThrows(InvalidClassException.class, () -> codec.decode(payload));
+    }
+
+    @Test
+    void testDetect() throws Exception {
+        byte[] javaPayload = SerializationHelper.serialize("hello");
+        assertEquals(JavaSerializationCodec.NAME, CodecRegistry.detect(javaPayload).getName());
+        assertEquals("hello", CodecRegistry.decode(javaPayload));
+        assertTrue(codec.encode("hello").length < javaPayload.length);
+        assertThrows(IllegalArgumentException.class, () -> CodecRegistry.getCodec("unknown"));
+        byte[] truncated = Arrays.copyOf(codec.encode("hello"), 5);
+        assertThrows(StreamCorruptedException.class, () -> codec.decode(truncated));
+    }
+
+    @Test
+    void testDirectBuffer() throws Exception {
+        EnclaveInvocationContext context = new EnclaveInvocationContext(
+                3L, 2, new Object[]{new byte[1024], "arg"});
+        // the payload doesn't fit, a larger direct buffer is returned.
+        ByteBuffer buffer = codec.encode(context, ByteBuffer.allocateDirect(16));
+        assertTrue(buffer.isDirect());
+        assertArrayEquals(codec.encode(context), Arrays.copyOf(toArray(buffer), buffer.position()));
+        buffer.flip();
+        assertSame(codec, CodecRegistry.detect(buffer));
+        assertEquals(0, buffer.position());
+        EnclaveInvocationContext decoded = (EnclaveInvocationContext) CodecRegistry.decode(buffer);
+        assertEquals("arg", decoded.getArguments()[1]);
+        assertFalse(buffer.hasRemaining());
+
+        ByteBuffer javaPayload = ByteBuffer.allocateDirect(64);
+        javaPayload = CodecRegistry.getCodec(JavaSerializationCodec.NAME).encode("hello", javaPayload);
+        javaPayload.flip();
+        assertEquals(JavaSerializationCodec.NAME, CodecRegistry.detect(javaPayload).getName());
+        assertEquals("hello", CodecRegistry.decode(javaPayload));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        buffer.duplicate().clear().get(bytes);
+        return bytes;
+    }
+}
@@ -122,6 +122,24 @@ public class EnclaveEntry {
         return retCode;
     }
 
+    /**
+     * Serve one request taken from the switchless ring by an enclave worker thread.
+     * Worker threads attach to the isolate once and pass their own IsolateThread in,
+     * so neither the TCS cache nor the per-TCS CallBacks storage is involved.
+     */
+    @SuppressWarnings("unused")
+    // Align with head define file enc_exported_symbol.h if it changes.
+    @CEntryPoint(name = "java_enclave_switchless_invoke")
+    public static int javaEnclaveSwitchlessInvoke(IsolateThread thread, EncData input, EncData result, CallBacks callBacks) {
+        int retCode = 0;
+        try {
+            InvocationWrapper.invoke(input, result, callBacks, ImageSingletons.lookup(ServiceMethodInvoker.class));
+        } catch (Throwable t) {
+            retCode = handleFrameworkException(t, callBacks);
+        }
+        return retCode;
+    }
+
     /**
      * Detach an IsolateThread from the isolate.
      * Called during shutdown to cleanly remove cached IsolateThreads from
@@ -146,7 +164,10 @@ public class EnclaveEntry {
     }
 
     private static int handleFrameworkException(Throwable t) {
-        CallBacks cb = getCallBackMethods();
+        return handleFrameworkException(t, getCallBackMethods());
+    }
+
+    private static int handleFrameworkException(Throwable t, CallBacks cb) {
         if (cb.isNonNull() && cb.getExceptionHandler().isNonNull()) {
             StringBuilder stacktraceSB = new StringBuilder();
             for (StackTraceElement se : t.getStackTrace()) {
@@ -24,7 +24,7 @@ import com.oracle.svm.core.c.function.CEntryPointOptions;
 /**
  * Custom ECALL epilogue that transitions the IsolateThread to STATUS_IN_NATIVE.
  * The IsolateThread stays cached in the per-TCS cache for reuse on next ECALL
- * from the same TCS.
+ * from the same TCS, unless it's evicted as least recently used meanwhile.
  */
 public class EnclaveEpilogue implements CEntryPointOptions.Epilogue {
 
@@ -33,5 +33,7 @@ public class EnclaveEpilogue implements CEntryPointOptions.Epilogue {
         // Just transition to STATUS_IN_NATIVE. The IsolateThread stays cached
         // in the per-TCS cache for reuse on next ECALL from the same TCS.
         CEntryPointActions.leave();
+        // Only now the IsolateThread is in native and could be evicted safely.
+        NativeTcsCache.release();
     }
 }
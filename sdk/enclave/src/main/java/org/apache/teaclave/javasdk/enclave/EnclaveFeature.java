@@ -17,10 +17,13 @@
 
 package org.apache.teaclave.javasdk.enclave;
 
+import org.apache.teaclave.javasdk.common.MethodSignature;
 import org.apache.teaclave.javasdk.common.annotations.EnclaveMethod;
 import org.apache.teaclave.javasdk.common.annotations.EnclaveService;
+import org.apache.teaclave.javasdk.common.codec.TLVCodec;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 import org.apache.teaclave.javasdk.enclave.framework.LoadServiceInvoker;
+import org.apache.teaclave.javasdk.enclave.framework.ServiceMethodDispatcherCache;
 import org.apache.teaclave.javasdk.enclave.framework.ServiceMethodInvoker;
 import org.apache.teaclave.javasdk.enclave.framework.UnloadServiceInvoker;
 import com.oracle.svm.core.annotate.AutomaticFeature;
@@ -44,8 +47,11 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.reflect.Executable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -56,8 +62,10 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -67,7 +75,7 @@ public class EnclaveFeature implements Feature {
     private ImageClassLoader imageClassLoader;
     private final Map<Class<?>, Boolean> serializationCandidateTypes = new HashMap<>();
     private final Map<Class<?>, Boolean> reflectionCandidateTypes = new HashMap<>();
-    private final Map<Method, Boolean> reflectionCandidateMethods = new HashMap<>();
+    private final Map<Executable, Boolean> reflectionCandidateMethods = new HashMap<>();
 
     @Override
     public List<Class<? extends Feature>> getRequiredFeatures() {
@@ -101,6 +109,10 @@ public class EnclaveFeature implements Feature {
                 "NativeTcsCache is used from @Uninterruptible prologue/epilogue code and must be initialized at build time.");
         ImageSingletons.lookup(RuntimeClassInitializationSupport.class).initializeAtBuildTime("org.apache.teaclave.javasdk.enclave.NativeEnclaveRandom",
                 "NativeEnclaveRandom holds an @CFunction declaration and must be initialized at build time.");
+        ImageSingletons.lookup(RuntimeClassInitializationSupport.class).initializeAtBuildTime("org.apache.teaclave.javasdk.common.codec",
+                "Codecs are registered in CodecRegistry at build time, so all codecs are fixed in the native image.");
+        ImageSingletons.lookup(RuntimeClassInitializationSupport.class).initializeAtBuildTime("org.apache.teaclave.javasdk.enclave.framework.ServiceMethodDispatcherCache",
+                "Service method dispatchers are resolved at build time and saved in the image heap.");
 
         FeatureImpl.DuringSetupAccessImpl config = (FeatureImpl.DuringSetupAccessImpl) access;
         RuntimeSerialization.register(ConfidentialComputingException.class, RuntimeException.class,
@@ -128,8 +140,12 @@ public class EnclaveFeature implements Feature {
                     collectConfigs(implementation, Arrays.stream(implementation.getMethods()).filter(method ->
                             serviceClazz.isAssignableFrom(method.getDeclaringClass())
                     ).collect(Collectors.toList()));
+                    // The dispatchers invoke the resolved methods reflectively, so they must be registered as well
+                    for (Method method : ServiceMethodDispatcherCache.getInstance().preload(implementation, MethodSignature.getServiceMethods(serviceClazz))) {
+                        reflectionCandidateMethods.putIfAbsent(method, false);
+                    }
                 }
-            } catch (IOException e) {
+            } catch (IOException | ReflectiveOperationException e) {
                 VMError.shouldNotReachHere(e);
             }
         });
@@ -177,7 +193,11 @@ public class EnclaveFeature implements Feature {
                     for (Class<?> pType : method.getParameterTypes()) {
                         serializationCandidateTypes.putIfAbsent(pType, false);
                     }
+                    for (Type pType : method.getGenericParameterTypes()) {
+                        collectCodecConfigs(pType);
+                    }
                     serializationCandidateTypes.putIfAbsent(method.getReturnType(), false);
+                    collectCodecConfigs(method.getGenericReturnType());
                     for (Class<?> expType : method.getExceptionTypes()) {
                         serializationCandidateTypes.putIfAbsent(expType, false);
                     }
@@ -186,6 +206,39 @@ public class EnclaveFeature implements Feature {
         );
     }
 
+    /**
+     * TLV codec resolves object arrays' component type by name, and creates records by their
+     * canonical constructor and reads them by their components' accessors. Records nested in
+     * type arguments, arrays and other records are reached as well.
+     */
+    private void collectCodecConfigs(Type type) {
+        Set<Class<?>> types = new HashSet<>();
+        TLVCodec.collectCodecTypes(type, types);
+        for (Class<?> clazz : types) {
+            if (clazz.isArray()) {
+                if (!clazz.getComponentType().isPrimitive()) {
+                    reflectionCandidateTypes.putIfAbsent(clazz.getComponentType(), false);
+                }
+                continue;
+            }
+            if (Runtime.version().feature() < 16 || !clazz.isRecord()) {
+                continue;
+            }
+            reflectionCandidateTypes.putIfAbsent(clazz, false);
+            RecordComponent[] components = clazz.getRecordComponents();
+            Class<?>[] componentTypes = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                componentTypes[i] = components[i].getType();
+                reflectionCandidateMethods.putIfAbsent(components[i].getAccessor(), false);
+            }
+            try {
+                reflectionCandidateMethods.putIfAbsent(clazz.getDeclaredConstructor(componentTypes), false);
+            } catch (NoSuchMethodException e) {
+                VMError.shouldNotReachHere(e);
+            }
+        }
+    }
+
     private boolean registerCollectedConfigs() {
         boolean registeredNewSerializations = registerCollectedConfigs(serializationCandidateTypes, RuntimeSerialization::registerIncludingAssociatedClasses);
         boolean registeredNewReflectionTypes = registerCollectedConfigs(reflectionCandidateTypes, RuntimeReflection::register);
@@ -18,11 +18,13 @@
 package org.apache.teaclave.javasdk.enclave;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
-import org.apache.teaclave.javasdk.common.SerializationHelper;
+import org.apache.teaclave.javasdk.common.codec.Codec;
+import org.apache.teaclave.javasdk.common.codec.CodecRegistry;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 import org.apache.teaclave.javasdk.enclave.c.EnclaveEnvironment.CallBacks;
 import org.apache.teaclave.javasdk.enclave.c.EnclaveEnvironment.EncData;
 import org.apache.teaclave.javasdk.enclave.framework.EnclaveMethodInvoker;
+import org.graalvm.nativeimage.PinnedObject;
 import org.graalvm.nativeimage.c.type.CCharPointer;
 import org.graalvm.nativeimage.c.type.CTypeConversion;
 import org.graalvm.word.PointerBase;
@@ -32,9 +34,9 @@ import java.io.IOException;
 /**
  * This class deals with the whole method invocation process from native entry point to the actual Java invocation target.
  * It is taken out in 3 steps:<p>
- * <li>Transform the input data from C {@link PointerBase} to Java byte[] and then deserialize to get the actual input.</li>
+ * <li>Transform the input data from C {@link PointerBase} to Java byte[] and then decode to get the actual input.</li>
  * <li>Make the method invocation.</li>
- * <li>Collect the returned value, serialize it to the Java byte[], and wrap it back to C {@link PointerBase}</li>
+ * <li>Collect the returned value, encode it to the Java byte[] with the input's codec, and wrap it back to C {@link PointerBase}</li>
  * </p>
  */
 public class InvocationWrapper {
@@ -42,37 +44,41 @@ public class InvocationWrapper {
     public static <T> void invoke(EncData input, EncData result, CallBacks callBacks, EnclaveMethodInvoker<T> invoker) throws IOException {
         long start = System.nanoTime();
         byte[] data = transformInput(input);
+        // reply with the same codec as host chose.
+        Codec codec = CodecRegistry.detect(data);
         EnclaveInvocationResult ret;
         try {
-            ret = invoker.callMethod((T) SerializationHelper.deserialize(data));
+            ret = invoker.callMethod((T) codec.decode(data));
         } catch (Throwable t) {
             ret = new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
         }
         // Set method returned value to result parameter
         ret.setCost(System.nanoTime() - start);
-        wrapReturnValue(result, callBacks, ret);
+        wrapReturnValue(result, callBacks, ret, codec);
     }
 
-    private static void wrapReturnValue(EncData result, CallBacks callBacks, EnclaveInvocationResult ret) throws IOException {
+    private static void wrapReturnValue(EncData result, CallBacks callBacks, EnclaveInvocationResult ret, Codec codec) throws IOException {
         byte[] returnedValBytes;
-        returnedValBytes = SerializationHelper.serialize(ret);
+        returnedValBytes = codec.encode(ret);
         int returnedValLen = returnedValBytes.length;
         /*
-         * Data returned to C world should be allocated by the callback function in the C world. The memory hold by
-         * returnedValBytes shall be freed in the explicit finally clause.
+         * Data returned to C world should be allocated by the callback function in the C world. The callback
+         * copies straight from the pinned returnedValBytes, into the host offered output buffer when it fits.
          */
-        try (CTypeConversion.CCharPointerHolder byteHolder = CTypeConversion.toCBytes(returnedValBytes)) {
-            CCharPointer returned;
-            if (callBacks.isNonNull() && callBacks.getMemCpyCCharPointerFunctionPointer().isNonNull()) {
-                returned = callBacks.getMemCpyCCharPointerFunctionPointer().invoke(byteHolder.get(), returnedValLen);
-            } else {
+        CCharPointer returned;
+        if (callBacks.isNonNull() && callBacks.getMemCpyCCharPointerFunctionPointer().isNonNull()) {
+            try (PinnedObject pinned = PinnedObject.create(returnedValBytes)) {
+                returned = callBacks.getMemCpyCCharPointerFunctionPointer().invoke(pinned.addressOfArrayElement(0), returnedValLen);
+            }
+        } else {
+            try (CTypeConversion.CCharPointerHolder byteHolder = CTypeConversion.toCBytes(returnedValBytes)) {
                 returned = byteHolder.get();
                 System.out.println("Warning: Not calling call backs in native, there is memory leak risk.");
                 //throw new RuntimeException("Function pointer memcpy_char_pointer is not set");
             }
-            result.setData(returned);
-            result.setLen(returnedValLen);
         }
+        result.setData(returned);
+        result.setLen(returnedValLen);
     }
 
     /**
@@ -58,6 +58,16 @@ final class NativeTcsCache {
     )
     static native int register(long isolateThread);
 
+    /**
+     * Mark the calling TCS's slot idle once its ECALL left the IsolateThread,
+     * from then on the cached IsolateThread may be evicted by other TCSes.
+     */
+    @CFunction(
+        value = "tee_sdk_tcs_release",
+        transition = CFunction.Transition.NO_TRANSITION
+    )
+    static native void release();
+
     /** Check if TCS cache mode is active. Returns non-zero if initialized. */
     @CFunction(
         value = "tee_sdk_tcs_is_initialized",
@@ -0,0 +1,114 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.enclave.agent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AgentDispatcher runs enclave agent's requests on a fixed number of workers, requests beyond
+ * them wait in a bounded queue, and a request is rejected at once when the queue is full.
+ * Requests run in virtual threads if it's enabled and enclave jvm supports them, workers number
+ * then limits how many requests run concurrently.
+ */
+final class AgentDispatcher {
+    private static final String WORKER_THREAD_NAME_PREFIX = "enclave_remote_invoking_thread_";
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+
+    private final ExecutorService executor;
+    // requests running or queued.
+    private final Semaphore admitted;
+    // requests running, only used with virtual threads.
+    private final Semaphore running;
+
+    AgentDispatcher(int workers, int queueSize, boolean virtualThreads) {
+        workers = Math.max(1, workers);
+        this.admitted = new Semaphore(workers + Math.max(0x0, queueSize));
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.executor = virtualExecutor;
+            this.running = new Semaphore(workers);
+        } else {
+            AtomicInteger counter = new AtomicInteger(0x0);
+            this.executor = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, WORKER_THREAD_NAME_PREFIX + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.running = null;
+        }
+    }
+
+    boolean isVirtualThreads() {
+        return running != null;
+    }
+
+    /**
+     * @param task request to run.
+     * @return false if the queue is full and the request is rejected.
+     */
+    boolean dispatch(Runnable task) {
+        if (!admitted.tryAcquire()) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(task);
+                } finally {
+                    admitted.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            admitted.release();
+            return false;
+        }
+        return true;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Runnable task) {
+        if (running == null) {
+            task.run();
+            return;
+        }
+        running.acquireUninterruptibly();
+        try {
+            task.run();
+        } finally {
+            running.release();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor is only available since jdk 21.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY);
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -17,101 +17,169 @@
 
 package org.apache.teaclave.javasdk.enclave.agent;
 
-import org.apache.teaclave.javasdk.common.SerializationHelper;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
 import org.apache.teaclave.javasdk.common.SocketEnclaveInvocationContext;
+import org.apache.teaclave.javasdk.common.SocketFrame;
+import org.apache.teaclave.javasdk.common.codec.Codec;
+import org.apache.teaclave.javasdk.common.codec.CodecRegistry;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.Objects;
-import java.util.concurrent.Executors;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 class EnclaveAgent {
-    private static final String HTTP_EXECUTE_THREAD_NAME = "enclave_http_remote_invoking_thread";
-    private static final String HTTP_SERVER_NAME = "/enclaveAgent";
+    private static final String ACCEPT_THREAD_NAME = "enclave_agent_accept_thread";
+    private static final String CHANNEL_THREAD_NAME = "enclave_agent_channel_thread";
     private static final EnclaveAgentServiceImpl service = new EnclaveAgentServiceImpl();
-    private static volatile HttpServer httpServer = null;
+    private static final Set<SocketChannel> channels = ConcurrentHashMap.newKeySet();
+    private static volatile ServerSocketChannel server = null;
+    private static volatile AgentDispatcher dispatcher = null;
 
     // socket service port is from host side.
     public static void main(String[] args) throws ConfidentialComputingException, IOException {
-        if (args.length != 3) {
+        if (args.length != 5) {
             throw new ConfidentialComputingException("lib os enclave agent service's port resource is not available.");
         }
         int portHost = Integer.parseInt(args[0]);
         int portEnclave = Integer.parseInt(args[1]);
-        int httpThreadPoolSize = Integer.parseInt(args[2]);
+        int threadPoolSize = Integer.parseInt(args[2]);
+        int queueSize = Integer.parseInt(args[3]);
+        boolean virtualThreads = Boolean.parseBoolean(args[4]);
 
-        notifyHostAndCreateHttpConnect(portHost, portEnclave, httpThreadPoolSize);
+        notifyHostAndCreateChannel(portHost, portEnclave, new AgentDispatcher(threadPoolSize, queueSize, virtualThreads));
 
         // wait for enclave shut down notification.
         EnclaveShutDown.shutDownWait();
     }
 
-    private static void notifyHostAndCreateHttpConnect(int portHost, int portEnclave, int threadPoolSize) throws IOException {
-        // create http connection and wait for request from host.
-        httpServer = HttpServer.create(new InetSocketAddress(portEnclave), 0);
-        httpServer.createContext(HTTP_SERVER_NAME, new EnclaveHttpHandler());
-        httpServer.setExecutor(Executors.newScheduledThreadPool(threadPoolSize, r -> {
-            Thread thread = new Thread(r);
-            thread.setName(HTTP_EXECUTE_THREAD_NAME);
-            thread.setDaemon(true);
-            return thread;
-        }));
-        httpServer.start();
+    private static void notifyHostAndCreateChannel(int portHost, int portEnclave, AgentDispatcher agentDispatcher) throws IOException {
+        // listen for host's persistent connections, requests on them are handled by dispatcher.
+        dispatcher = agentDispatcher;
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), portEnclave));
+        startDaemon(EnclaveAgent::accept, ACCEPT_THREAD_NAME);
         // notify host that enclave jvm had started up.
         new Socket("localhost", portHost);
     }
 
-    static void closeHttpService() {
-        httpServer.stop(0);
+    static void closeChannelService() {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        channels.forEach(EnclaveAgent::close);
+        dispatcher.shutdown();
     }
 
-    private static void writeBackResponse(HttpExchange exchange, byte[] response) throws IOException {
-        exchange.sendResponseHeaders(200, response.length);
-        OutputStream outputStream = exchange.getResponseBody();
-        outputStream.write(response);
-        outputStream.flush();
-        outputStream.close();
+    private static void startDaemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    static class EnclaveHttpHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            InputStream inputStream = exchange.getRequestBody();
-            byte[] payload = inputStream.readAllBytes();
-            inputStream.close();
-            SocketEnclaveInvocationContext context = null;
-
+    private static void accept() {
+        while (server.isOpen()) {
             try {
-                context = (SocketEnclaveInvocationContext) SerializationHelper.deserialize(payload);
-            } catch (ClassNotFoundException e) {
+                SocketChannel channel = server.accept();
+                channel.socket().setTcpNoDelay(true);
+                channels.add(channel);
+                startDaemon(() -> receive(channel), CHANNEL_THREAD_NAME);
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // read requests from a connection, they are handled concurrently and answered in completion order.
+    private static void receive(SocketChannel channel) {
+        try {
+            SocketFrame frame;
+            while ((frame = SocketFrame.read(channel)) != null) {
+                SocketFrame request = frame;
+                // host gives up waiting after request's timeout, so does agent.
+                long deadline = request.getTimeout() > 0x0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getTimeout()) : 0x0;
+                if (!dispatcher.dispatch(() -> handle(channel, request, deadline))) {
+                    reply(channel, request, failure(request.getPayload(), "enclave agent request queue is full."));
+                }
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) {
                 e.printStackTrace();
             }
+        } finally {
+            close(channel);
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        channels.remove(channel);
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void handle(SocketChannel channel, SocketFrame request, long deadline) {
+        if (deadline != 0x0 && System.nanoTime() - deadline > 0x0) {
+            reply(channel, request, failure(request.getPayload(), "enclave agent request expired before being handled."));
+            return;
+        }
+        reply(channel, request, dispatch(request.getPayload()));
+    }
+
+    private static void reply(SocketChannel channel, SocketFrame request, byte[] response) {
+        try {
+            synchronized (channel) {
+                new SocketFrame(request.getRequestId(), response == null ? new byte[0x0] : response).write(channel);
+            }
+        } catch (IOException e) {
+            close(channel);
+        }
+    }
+
+    private static byte[] failure(byte[] payload, String info) {
+        return failure(CodecRegistry.detect(payload), new ConfidentialComputingException(info));
+    }
+
+    private static byte[] failure(Codec codec, Throwable t) {
+        try {
+            return codec.encode(new EnclaveInvocationResult(null, t));
+        } catch (IOException e) {
+            return new byte[0x0];
+        }
+    }
 
-            switch (Objects.requireNonNull(context).getAgentServiceName()) {
+    private static byte[] dispatch(byte[] payload) {
+        // reply with the same codec as host chose.
+        Codec codec = CodecRegistry.detect(payload);
+        try {
+            SocketEnclaveInvocationContext context = (SocketEnclaveInvocationContext) codec.decode(payload);
+            switch (context.getAgentServiceName()) {
                 case SocketEnclaveInvocationContext.SERVICE_LOADING:
-                    writeBackResponse(exchange, service.loadService(context.getServiceHandler().getServiceInterfaceName()));
-                    break;
+                    return service.loadService(context.getServiceHandler().getServiceInterfaceName(), codec);
                 case SocketEnclaveInvocationContext.SERVICE_UNLOADING:
-                    writeBackResponse(exchange, service.unloadService(context.getServiceHandler()));
-                    break;
+                    return service.unloadService(context.getServiceHandler(), codec);
                 case SocketEnclaveInvocationContext.METHOD_INVOCATION:
-                    writeBackResponse(exchange, service.invokeMethod(context));
-                    break;
+                    return service.invokeMethod(context, codec);
                 case SocketEnclaveInvocationContext.REMOTE_ATTESTATION_GENERATE:
-                    writeBackResponse(exchange, service.generateAttestationReport(context.getUserData()));
-                    break;
+                    return service.generateAttestationReport(context.getUserData(), codec);
                 case SocketEnclaveInvocationContext.ENCLAVE_DESTROY:
-                    writeBackResponse(exchange, service.destroy());
-                    break;
+                    return service.destroy(codec);
                 default:
+                    throw new ConfidentialComputingException("unknown agent service: " + context.getAgentServiceName());
             }
+        } catch (Throwable t) {
+            // host is waiting for this request, always answer it.
+            return failure(codec, new ConfidentialComputingException(t));
         }
     }
 }
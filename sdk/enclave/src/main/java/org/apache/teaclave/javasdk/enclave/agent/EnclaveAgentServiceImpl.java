@@ -19,9 +19,9 @@ package org.apache.teaclave.javasdk.enclave.agent;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
-import org.apache.teaclave.javasdk.common.SerializationHelper;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
 import org.apache.teaclave.javasdk.common.EmbeddedLibOSInnerAttestationReport;
+import org.apache.teaclave.javasdk.common.codec.Codec;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 import org.apache.teaclave.javasdk.enclave.framework.EnclaveMethodInvoker;
 import org.apache.teaclave.javasdk.enclave.framework.LoadServiceInvoker;
@@ -38,7 +38,7 @@ public class EnclaveAgentServiceImpl {
     protected EnclaveAgentServiceImpl() {
     }
 
-    private <T> byte[] invoke(EnclaveMethodInvoker<T> invoker, T input) {
+    private <T> byte[] invoke(EnclaveMethodInvoker<T> invoker, T input, Codec codec) {
         long start = System.nanoTime();
         EnclaveInvocationResult ret;
         try {
@@ -48,25 +48,25 @@ public class EnclaveAgentServiceImpl {
         }
         ret.setCost(System.nanoTime() - start);
         try {
-            return SerializationHelper.serialize(ret);
+            return codec.encode(ret);
         } catch (IOException ignored) {
         }
         return null;
     }
 
-    public byte[] loadService(String serviceName) {
-        return invoke(loadServiceInstance, serviceName);
+    public byte[] loadService(String serviceName, Codec codec) {
+        return invoke(loadServiceInstance, serviceName, codec);
     }
 
-    public byte[] unloadService(ServiceHandler handler) {
-        return invoke(unloadServiceInstance, handler);
+    public byte[] unloadService(ServiceHandler handler, Codec codec) {
+        return invoke(unloadServiceInstance, handler, codec);
     }
 
-    public byte[] invokeMethod(EnclaveInvocationContext context) {
-        return invoke(serviceInvokerInstance, context);
+    public byte[] invokeMethod(EnclaveInvocationContext context, Codec codec) {
+        return invoke(serviceInvokerInstance, context, codec);
     }
 
-    public byte[] generateAttestationReport(byte[] userDate) {
+    public byte[] generateAttestationReport(byte[] userDate, Codec codec) {
         EmbeddedLibOSInnerAttestationReport report = null;
         Throwable exception = null;
         try {
@@ -76,20 +76,20 @@ public class EnclaveAgentServiceImpl {
         }
 
         try {
-            return SerializationHelper.serialize(new EnclaveInvocationResult(report, exception));
+            return codec.encode(new EnclaveInvocationResult(report, exception));
         } catch (IOException e) {
             try {
-                return SerializationHelper.serialize(new EnclaveInvocationResult(null, e));
+                return codec.encode(new EnclaveInvocationResult(null, e));
             } catch (IOException ignored) {
             }
         }
         return null;
     }
 
-    public byte[] destroy() {
+    public byte[] destroy(Codec codec) {
         EnclaveShutDown.shutDownNotify();
         try {
-            return SerializationHelper.serialize(new EnclaveInvocationResult(true, null));
+            return codec.encode(new EnclaveInvocationResult(true, null));
         } catch (IOException ignored) {
         }
         return null;
@@ -51,7 +51,7 @@ class EnclaveShutDown {
                     // wait for destroy localhost remote destroy invocation return.
                     Thread.sleep(SHUTDOWN_DELAY_DURATION);
                     // close cached socket resources and socket service.
-                    EnclaveAgent.closeHttpService();
+                    EnclaveAgent.closeChannelService();
                     return;
                 } catch (InterruptedException e) {
                     interrupted = true;
@@ -17,9 +17,13 @@
 
 package org.apache.teaclave.javasdk.enclave.framework;
 
+import org.apache.teaclave.javasdk.common.EnclaveIterator;
+import org.apache.teaclave.javasdk.common.MethodSignature;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.common.codec.TLVCodec;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +32,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This class maintains the enclave context, i.e. the cached service instances.
+ * This class maintains the enclave context, i.e. the cached service instances and the cursors
+ * of iterators returned to host.
  */
 final class EnclaveContext {
 
@@ -38,16 +43,50 @@ final class EnclaveContext {
         return instance;
     }
 
-    private final Map<String, Object> cachedServiceInstances;
+    private final Map<Long, ServiceInstance> cachedServiceInstances;
 
     private final AtomicLong serviceCounter;
 
+    private final Map<Long, EnclaveIterator<?>> cursors;
+
+    private final AtomicLong cursorCounter;
+
     private EnclaveContext() {
         cachedServiceInstances = new ConcurrentHashMap<>();
         serviceCounter = new AtomicLong(0);
+        cursors = new ConcurrentHashMap<>();
+        cursorCounter = new AtomicLong(0);
+    }
+
+    /**
+     * Register an iterator returned to host, host fetches its elements by the cursor's identity.
+     *
+     * @param iterator the returned iterator
+     * @return cursor's identity
+     */
+    public long registerCursor(EnclaveIterator<?> iterator) {
+        long identity = cursorCounter.addAndGet(1);
+        cursors.put(identity, iterator);
+        return identity;
+    }
+
+    public EnclaveIterator<?> lookupCursor(long identity) throws ConfidentialComputingException {
+        EnclaveIterator<?> iterator = cursors.get(identity);
+        if (iterator == null) {
+            throw new ConfidentialComputingException(String.format("No cursor with identity %d", identity));
+        }
+        return iterator;
+    }
+
+    public EnclaveIterator<?> removeCursor(long identity) {
+        return cursors.remove(identity);
     }
 
-    public Object removeCache(String key) {
+    public int cursorsSize() {
+        return cursors.size();
+    }
+
+    public ServiceInstance removeCache(long key) {
         return cachedServiceInstances.remove(key);
     }
 
@@ -60,46 +99,73 @@ final class EnclaveContext {
     }
 
     /**
-     * Lookup the service instance with the given identity checksum, service name and implementation class name from
-     * cached map.
+     * Lookup the service instance with the given identity, service name and implementation class name from
+     * cached map. The instance was validated at service loading, only the names are compared here.
      *
-     * @param instanceIdentity        service instance identity checksum
+     * @param instanceIdentity        service instance identity
      * @param serviceName             the name of the service
      * @param implementationClassName the implementation class name
      * @return cached service instance
      */
-    public Object lookupServiceInstance(String instanceIdentity, String serviceName, String implementationClassName) throws ConfidentialComputingException {
-        if (!cachedServiceInstances.containsKey(instanceIdentity)) {
-            throw new ConfidentialComputingException(String.format("No stored service %s with identity %s", serviceName, instanceIdentity));
+    public ServiceInstance lookupServiceInstance(long instanceIdentity, String serviceName, String implementationClassName) throws ConfidentialComputingException {
+        ServiceInstance serviceInstance = cachedServiceInstances.get(instanceIdentity);
+        if (serviceInstance == null) {
+            throw new ConfidentialComputingException(String.format("No stored service %s with identity %d", serviceName, instanceIdentity));
         }
-        Object serviceInstance = cachedServiceInstances.get(instanceIdentity);
-        if (serviceInstance != null) {
-            Class<?> serviceInstanceClass = serviceInstance.getClass();
-            try {
-                Class<?> interfaceClass = Class.forName(serviceName);
-                if (!interfaceClass.isAssignableFrom(serviceInstanceClass)) {
-                    throw new ConfidentialComputingException(String.format("Cached service instance with identity %s doesn't implement the interface %s.",
-                            instanceIdentity, serviceName));
-                }
-            } catch (ClassNotFoundException e) {
-                throw new ConfidentialComputingException(String.format("Can't find the interface class %s.",
-                        serviceName), e);
-            }
+        if (!serviceInstance.getInterfaceClass().getName().equals(serviceName)) {
+            throw new ConfidentialComputingException(String.format("Cached service instance with identity %d doesn't implement the interface %s.",
+                    instanceIdentity, serviceName));
+        }
+        String cachedImplementationClassName = serviceInstance.getImplementationClass().getName();
+        if (!cachedImplementationClassName.equals(implementationClassName)) {
+            throw new ConfidentialComputingException(String.format("Implementation class does not match, expected is %s, but found is %s.", implementationClassName, cachedImplementationClassName));
+        }
+        return serviceInstance;
+    }
 
-            String cachedImplementationClassName = serviceInstanceClass.getName();
-            if (!cachedImplementationClassName.equals(implementationClassName)) {
-                throw new ConfidentialComputingException(String.format("Implementation class does not match, expected is %s, but found is %s.", implementationClassName, cachedImplementationClassName));
-            }
+    /**
+     * Lookup the service instance with the given identity from cached map, it's used by method id invocation.
+     *
+     * @param instanceIdentity service instance identity
+     * @return cached service instance with its method table
+     */
+    public ServiceInstance lookupServiceInstance(long instanceIdentity) throws ConfidentialComputingException {
+        ServiceInstance serviceInstance = cachedServiceInstances.get(instanceIdentity);
+        if (serviceInstance == null) {
+            throw new ConfidentialComputingException(String.format("No stored service with identity %d", instanceIdentity));
         }
         return serviceInstance;
     }
 
-    public ServiceHandler[] loadService(Class<?> service) {
+    /**
+     * Load all implementations of a service, every service method is assigned an id by its signature's order.
+     *
+     * @param service the service interface
+     * @return service handlers with the negotiated method signatures
+     */
+    public ServiceHandler[] loadService(Class<?> service) throws ConfidentialComputingException {
         List<ServiceHandler> serviceHandlerList = new ArrayList<>();
+        // records of the service's signatures are decoded from now on.
+        TLVCodec.registerService(service);
+        Method[] serviceMethods = MethodSignature.getServiceMethods(service);
+        String[] methodSignatures = new String[serviceMethods.length];
+        for (int index = 0x0; index < serviceMethods.length; index++) {
+            methodSignatures[index] = MethodSignature.of(serviceMethods[index]);
+        }
         for (Object currentServiceInstance : ServiceLoader.load(service)) {
-            String identity = String.valueOf(serviceCounter.addAndGet(1));
-            cachedServiceInstances.put(identity, currentServiceInstance);
-            serviceHandlerList.add(new ServiceHandler(service.getName(), currentServiceInstance.getClass().getName(), identity));
+            Class<?> implementationClass = currentServiceInstance.getClass();
+            ServiceMethodDispatcher[] dispatchers = new ServiceMethodDispatcher[serviceMethods.length];
+            try {
+                for (int index = 0x0; index < serviceMethods.length; index++) {
+                    dispatchers[index] = ServiceMethodDispatcherCache.getInstance().getDispatcher(implementationClass, serviceMethods[index]);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new ConfidentialComputingException(String.format("Resolving methods of service implementation %s failed.",
+                        implementationClass.getName()), e);
+            }
+            long identity = serviceCounter.addAndGet(1);
+            cachedServiceInstances.put(identity, new ServiceInstance(currentServiceInstance, service, dispatchers));
+            serviceHandlerList.add(new ServiceHandler(service.getName(), implementationClass.getName(), identity, methodSignatures));
         }
         return serviceHandlerList.toArray(new ServiceHandler[0]);
     }
@@ -0,0 +1,100 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.enclave.framework;
+
+import org.apache.teaclave.javasdk.common.EnclaveCursorContext;
+import org.apache.teaclave.javasdk.common.EnclaveCursorHandle;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.EnclaveIterator;
+import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * EnclaveCursors keeps iterators and streams returned by service methods as cursors in
+ * {@link EnclaveContext}, host fetches their elements page by page. A cursor is released
+ * with its last page, or when host releases it.
+ */
+final class EnclaveCursors {
+    private EnclaveCursors() {
+    }
+
+    /**
+     * register a returned iterator or stream as a cursor, and return a handle of it to host instead.
+     */
+    static Object exportResult(Object result) {
+        if (result instanceof EnclaveIterator) {
+            return new EnclaveCursorHandle(EnclaveContext.getInstance().registerCursor((EnclaveIterator<?>) result), false);
+        }
+        if (result instanceof Stream) {
+            Stream<?> stream = (Stream<?>) result;
+            Iterator<?> iterator = stream.iterator();
+            EnclaveIterator<?> cursor = new EnclaveIterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void close() {
+                    stream.close();
+                }
+            };
+            return new EnclaveCursorHandle(EnclaveContext.getInstance().registerCursor(cursor), true);
+        }
+        return result;
+    }
+
+    static EnclaveInvocationResult handle(EnclaveCursorContext context) {
+        EnclaveContext enclaveContext = EnclaveContext.getInstance();
+        long cursorId = context.getCursorId();
+        if (context.getOperation() == EnclaveCursorContext.RELEASE) {
+            release(enclaveContext.removeCursor(cursorId));
+            return new EnclaveInvocationResult(null, null);
+        }
+        try {
+            EnclaveIterator<?> cursor = enclaveContext.lookupCursor(cursorId);
+            ArrayList<Object> page = new ArrayList<>(context.getPageSize());
+            // a cursor is iterated by one host iterator, pages of it are never fetched concurrently.
+            while (page.size() < context.getPageSize() && cursor.hasNext()) {
+                page.add(cursor.next());
+            }
+            if (page.size() < context.getPageSize()) {
+                release(enclaveContext.removeCursor(cursorId));
+            }
+            return new EnclaveInvocationResult(page, null);
+        } catch (Throwable t) {
+            release(enclaveContext.removeCursor(cursorId));
+            return new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
+        }
+    }
+
+    private static void release(EnclaveIterator<?> cursor) {
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+}
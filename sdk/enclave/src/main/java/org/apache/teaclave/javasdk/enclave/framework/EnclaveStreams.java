@@ -0,0 +1,241 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.enclave.framework;
+
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.EnclaveStreamContext;
+import org.apache.teaclave.javasdk.common.EnclaveStreamHandle;
+import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EnclaveStreams keeps the streams passed into or returned from service methods in enclave.
+ * An argument stream buffers a few chunks written by host, a writer waits a while when the
+ * buffer is full, so that enclave memory held by a stream is bounded whatever its size is.
+ * A result stream is read by host in chunks.
+ */
+final class EnclaveStreams {
+    // chunks buffered in an argument stream.
+    private static final int MAX_BUFFERED_CHUNKS = 4;
+    private static final long WRITE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // max bytes of a result stream's chunk.
+    private static final int CHUNK_SIZE = 256 << 10;
+
+    private static final Map<Long, ArgumentStream> arguments = new ConcurrentHashMap<>();
+    private static final Map<Long, InputStream> results = new ConcurrentHashMap<>();
+    private static final AtomicLong resultIds = new AtomicLong(0x0);
+
+    private EnclaveStreams() {
+    }
+
+    static EnclaveInvocationResult handle(EnclaveStreamContext context) {
+        try {
+            return new EnclaveInvocationResult(operate(context), null);
+        } catch (Throwable t) {
+            return new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
+        }
+    }
+
+    /**
+     * replace stream handles in arguments with the streams they stand for.
+     */
+    static Object[] bindArguments(Object[] args) throws ConfidentialComputingException {
+        if (args == null) {
+            return null;
+        }
+        for (int index = 0x0; index < args.length; index++) {
+            if (args[index] instanceof EnclaveStreamHandle) {
+                EnclaveStreamHandle handle = (EnclaveStreamHandle) args[index];
+                ArgumentStream stream = arguments.get(handle.getStreamId());
+                if (stream == null) {
+                    throw new ConfidentialComputingException("stream argument " + handle.getStreamId() + " wasn't opened.");
+                }
+                args[index] = handle.isChannel() ? Channels.newChannel(stream) : stream;
+            }
+        }
+        return args;
+    }
+
+    /**
+     * keep a returned stream in enclave, and return a handle of it to host instead.
+     */
+    static Object exportResult(Object result) {
+        if (result instanceof InputStream || result instanceof ReadableByteChannel) {
+            long streamId = resultIds.incrementAndGet();
+            boolean channel = !(result instanceof InputStream);
+            results.put(streamId, channel ? Channels.newInputStream((ReadableByteChannel) result) : (InputStream) result);
+            return new EnclaveStreamHandle(streamId, channel);
+        }
+        return result;
+    }
+
+    private static Object operate(EnclaveStreamContext context) throws IOException, InterruptedException {
+        long streamId = context.getStreamId();
+        switch (context.getOperation()) {
+            case EnclaveStreamContext.OPEN:
+                arguments.put(streamId, new ArgumentStream());
+                return null;
+            case EnclaveStreamContext.WRITE: {
+                ArgumentStream stream = arguments.get(streamId);
+                return stream == null ? EnclaveStreamContext.WRITE_CLOSED : stream.offer(context.getData());
+            }
+            case EnclaveStreamContext.END:
+            case EnclaveStreamContext.ABORT: {
+                ArgumentStream stream = arguments.get(streamId);
+                if (stream != null) {
+                    stream.end(context.getOperation() == EnclaveStreamContext.ABORT ? context.getData() : null);
+                }
+                return null;
+            }
+            case EnclaveStreamContext.CLOSE: {
+                ArgumentStream stream = arguments.remove(streamId);
+                if (stream != null) {
+                    stream.close();
+                }
+                return null;
+            }
+            case EnclaveStreamContext.READ: {
+                InputStream stream = results.get(streamId);
+                if (stream == null) {
+                    throw new IOException("stream result " + streamId + " was released.");
+                }
+                // an empty chunk is the end of stream.
+                return stream.readNBytes(CHUNK_SIZE);
+            }
+            case EnclaveStreamContext.RELEASE: {
+                InputStream stream = results.remove(streamId);
+                if (stream != null) {
+                    stream.close();
+                }
+                return null;
+            }
+            default:
+                throw new IOException("unknown stream operation " + context.getOperation());
+        }
+    }
+
+    /**
+     * ArgumentStream is read by service method while host writes chunks into it.
+     */
+    private static final class ArgumentStream extends InputStream {
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private byte[] current;
+        private int position;
+        private boolean ended;
+        private boolean closed;
+        private String failure;
+
+        synchronized int offer(byte[] chunk) throws InterruptedException {
+            long deadline = System.nanoTime() + WRITE_WAIT_NANOS;
+            while (!closed && chunks.size() >= MAX_BUFFERED_CHUNKS) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0x0) {
+                    // host retries later, instead of holding an enclave thread for long.
+                    return EnclaveStreamContext.WRITE_FULL;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            if (closed) {
+                return EnclaveStreamContext.WRITE_CLOSED;
+            }
+            chunks.add(chunk);
+            notifyAll();
+            return EnclaveStreamContext.WRITE_ACCEPTED;
+        }
+
+        synchronized void end(byte[] failure) {
+            ended = true;
+            if (failure != null) {
+                this.failure = new String(failure, StandardCharsets.UTF_8);
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            chunks.clear();
+            current = null;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0x0, 1) < 0 ? -1 : one[0x0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0x0) {
+                return 0x0;
+            }
+            while (current == null || position == current.length) {
+                if (!nextChunk()) {
+                    return -1;
+                }
+            }
+            int length = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public synchronized int available() {
+            return current == null ? 0x0 : current.length - position;
+        }
+
+        // wait for next chunk, return false at end of stream.
+        private boolean nextChunk() throws IOException {
+            while (chunks.isEmpty()) {
+                if (closed) {
+                    throw new IOException("stream argument was closed.");
+                }
+                if (failure != null) {
+                    throw new IOException("stream argument failed in host: " + failure);
+                }
+                if (ended) {
+                    return false;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while reading stream argument.");
+                }
+            }
+            current = chunks.poll();
+            position = 0x0;
+            // a writer may wait for room.
+            notifyAll();
+            return true;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.teaclave.javasdk.enclave.framework;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 
 /**
  * This class handles loadService method invocation.
@@ -34,7 +35,7 @@ public final class LoadServiceInvoker implements EnclaveMethodInvoker<String> {
         try {
             Class<?> service = Class.forName(inputData);
             return new EnclaveInvocationResult(EnclaveContext.getInstance().loadService(service), null);
-        } catch (ClassNotFoundException e) {
+        } catch (ClassNotFoundException | ConfidentialComputingException e) {
             return new EnclaveInvocationResult(null, e);
         }
     }
@@ -0,0 +1,63 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.enclave.framework;
+
+/**
+ * ServiceInstance is an immutable record of a loaded service instance, it was validated at service
+ * loading, so invocations need not check it again. It keeps the instance, its service interface,
+ * its implementation class and its method dispatcher table, a method's id is its index in the table.
+ */
+final class ServiceInstance {
+    private final Object instance;
+    private final Class<?> interfaceClass;
+    private final Class<?> implementationClass;
+    private final ServiceMethodDispatcher[] dispatchers;
+
+    ServiceInstance(Object instance, Class<?> interfaceClass, ServiceMethodDispatcher[] dispatchers) {
+        this.instance = instance;
+        this.interfaceClass = interfaceClass;
+        this.implementationClass = instance.getClass();
+        this.dispatchers = dispatchers;
+    }
+
+    Object getInstance() {
+        return instance;
+    }
+
+    Class<?> getInterfaceClass() {
+        return interfaceClass;
+    }
+
+    Class<?> getImplementationClass() {
+        return implementationClass;
+    }
+
+    /**
+     * get the dispatcher of the method with the given id.
+     *
+     * @param methodId method's id negotiated at service loading.
+     * @return the dispatcher, null if the id is out of dispatcher table.
+     */
+    ServiceMethodDispatcher getDispatcher(int methodId) {
+        if (methodId < 0 || methodId >= dispatchers.length) {
+            return null;
+        }
+        return dispatchers[methodId];
+    }
+}
@@ -0,0 +1,126 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.enclave.framework;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * ServiceMethodDispatcher makes the call to a resolved service implementation method.
+ * Any exception thrown by the target method is wrapped in {@link InvocationTargetException},
+ * the same as {@link Method#invoke(Object, Object...)} does.
+ */
+abstract class ServiceMethodDispatcher {
+    private final Method method;
+
+    ServiceMethodDispatcher(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * get the target method.
+     */
+    Method getMethod() {
+        return method;
+    }
+
+    abstract Object dispatch(Object receiver, Object[] args) throws ReflectiveOperationException;
+
+    /**
+     * Native image compiles the registered reflective method into a direct call accessor at image
+     * build time, so reflection is the stub there. Otherwise the dispatcher is backed by a method handle.
+     */
+    static ServiceMethodDispatcher of(Method method, boolean inImage) throws IllegalAccessException {
+        method.setAccessible(true);
+        if (inImage) {
+            return new ReflectiveDispatcher(method);
+        }
+        return new MethodHandleDispatcher(method);
+    }
+
+    private static final class ReflectiveDispatcher extends ServiceMethodDispatcher {
+        ReflectiveDispatcher(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object dispatch(Object receiver, Object[] args) throws ReflectiveOperationException {
+            return getMethod().invoke(receiver, args);
+        }
+    }
+
+    private static final class MethodHandleDispatcher extends ServiceMethodDispatcher {
+        private final static Object[] EMPTY_ARGUMENTS = new Object[0x0];
+
+        private final Class<?>[] parameterTypes;
+        private final Class<?>[] boxedParameterTypes;
+        private final MethodHandle handle;
+
+        MethodHandleDispatcher(Method method) throws IllegalAccessException {
+            super(method);
+            this.parameterTypes = method.getParameterTypes();
+            this.boxedParameterTypes = MethodType.methodType(void.class, parameterTypes).wrap().parameterArray();
+            this.handle = MethodHandles.lookup().unreflect(method)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        }
+
+        @Override
+        Object dispatch(Object receiver, Object[] args) throws ReflectiveOperationException {
+            if (!acceptExactly(receiver, args)) {
+                // Let reflection apply its argument checks and primitive widening conversions.
+                return getMethod().invoke(receiver, args);
+            }
+            Object[] arguments = args == null ? EMPTY_ARGUMENTS : args;
+            try {
+                return (Object) handle.invokeExact(receiver, arguments);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /**
+         * Arguments are checked before the call, so a throwable raised by the method handle
+         * can only come from the target method.
+         */
+        private boolean acceptExactly(Object receiver, Object[] args) {
+            if (!getMethod().getDeclaringClass().isInstance(receiver)) {
+                return false;
+            }
+            int length = args == null ? 0x0 : args.length;
+            if (length != parameterTypes.length) {
+                return false;
+            }
+            for (int index = 0x0; index < length; index++) {
+                Object arg = args[index];
+                if (parameterTypes[index].isPrimitive()) {
+                    if (arg == null || boxedParameterTypes[index] != arg.getClass()) {
+                        return false;
+                    }
+                } else if (arg != null && !parameterTypes[index].isInstance(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
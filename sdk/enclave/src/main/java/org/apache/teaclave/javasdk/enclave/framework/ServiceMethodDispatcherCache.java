@@ -0,0 +1,95 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.enclave.framework;
+
+import org.apache.teaclave.javasdk.common.MethodSignature;
+import org.graalvm.nativeimage.ImageInfo;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ServiceMethodDispatcherCache caches the resolved service method dispatchers, keyed by
+ * service implementation class and method signature. So a service method is resolved only
+ * once, later invocations reuse its dispatcher. In native image the dispatchers of all
+ * {@link org.apache.teaclave.javasdk.common.annotations.EnclaveService} implementations are
+ * resolved by EnclaveFeature at image build time.
+ */
+public final class ServiceMethodDispatcherCache {
+    private final static ServiceMethodDispatcherCache instance = new ServiceMethodDispatcherCache();
+
+    private final Map<Class<?>, Map<String, ServiceMethodDispatcher>> dispatchers = new ConcurrentHashMap<>();
+
+    private ServiceMethodDispatcherCache() {
+    }
+
+    public static ServiceMethodDispatcherCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * resolve all service methods of a service implementation into the cache.
+     *
+     * @param implementationClass service implementation class.
+     * @param serviceMethods      service interface methods.
+     * @return the resolved implementation methods.
+     * @throws ReflectiveOperationException a service method is not accessible in the implementation.
+     */
+    public Method[] preload(Class<?> implementationClass, Method[] serviceMethods) throws ReflectiveOperationException {
+        Method[] methods = new Method[serviceMethods.length];
+        for (int index = 0x0; index < serviceMethods.length; index++) {
+            methods[index] = getDispatcher(implementationClass, serviceMethods[index]).getMethod();
+        }
+        return methods;
+    }
+
+    /**
+     * get the dispatcher of a service interface method in the service implementation.
+     */
+    ServiceMethodDispatcher getDispatcher(Class<?> implementationClass, Method serviceMethod) throws ReflectiveOperationException {
+        String signature = MethodSignature.of(serviceMethod);
+        ServiceMethodDispatcher dispatcher = lookup(implementationClass, signature);
+        if (dispatcher == null) {
+            dispatcher = register(implementationClass, signature,
+                    implementationClass.getMethod(serviceMethod.getName(), serviceMethod.getParameterTypes()));
+        }
+        return dispatcher;
+    }
+
+    /**
+     * get the cached dispatcher by signature.
+     *
+     * @return the dispatcher, null if it's not resolved yet.
+     */
+    ServiceMethodDispatcher lookup(Class<?> implementationClass, String signature) {
+        Map<String, ServiceMethodDispatcher> classDispatchers = dispatchers.get(implementationClass);
+        return classDispatchers == null ? null : classDispatchers.get(signature);
+    }
+
+    /**
+     * cache the dispatcher of a resolved method, the first registered dispatcher wins.
+     */
+    ServiceMethodDispatcher register(Class<?> implementationClass, String signature, Method method) throws IllegalAccessException {
+        ServiceMethodDispatcher dispatcher = ServiceMethodDispatcher.of(method, ImageInfo.inImageCode());
+        ServiceMethodDispatcher previous = dispatchers.computeIfAbsent(implementationClass, c -> new ConcurrentHashMap<>())
+                .putIfAbsent(signature, dispatcher);
+        return previous == null ? dispatcher : previous;
+    }
+}
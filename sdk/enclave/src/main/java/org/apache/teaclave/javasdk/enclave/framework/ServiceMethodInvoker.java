@@ -17,8 +17,10 @@
 
 package org.apache.teaclave.javasdk.enclave.framework;
 
+import org.apache.teaclave.javasdk.common.EnclaveCursorContext;
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.EnclaveStreamContext;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 import jdk.vm.ci.meta.MetaUtil;
@@ -32,9 +34,13 @@ import java.util.List;
  * This class handles the service method invocation. The user defined business methods that run inside the enclave follow the
  * SPI (<a href="https://docs.oracle.com/javase/tutorial/sound/SPI-intro.html">Service Provider Interface</a>)
  * idiom, so they are defined in the form of service methods. This class delegates the user method invocation request
- * wrapped in {@link EnclaveInvocationContext} to the actual method by reflection.
+ * wrapped in {@link EnclaveInvocationContext} to the actual method by reflection. Resolved methods are cached in
+ * {@link ServiceMethodDispatcherCache}, so the reflective lookup happens only at a method's first invocation.
+ * Stream arguments and results of a method are transferred in chunks by {@link EnclaveStreams}, iterator
+ * results are fetched in pages by {@link EnclaveCursors}.
  */
 public final class ServiceMethodInvoker implements EnclaveMethodInvoker<EnclaveInvocationContext> {
+    private final ServiceMethodDispatcherCache dispatcherCache = ServiceMethodDispatcherCache.getInstance();
 
     /**
      * Prepare and make the target method call by reflection. Any exception thrown from method invocation is captured
@@ -46,42 +52,105 @@ public final class ServiceMethodInvoker implements EnclaveMethodInvoker<EnclaveI
      */
     @Override
     public EnclaveInvocationResult callMethod(EnclaveInvocationContext inputData) {
-        Throwable throwable = null;
-        Object returnedValue = null;
-        List<Class<?>> parameterClassList = extractParamClasses(inputData.getParameterTypes());
+        if (inputData.isBatch()) {
+            return callBatch(inputData.getBatchContexts());
+        }
+        if (inputData instanceof EnclaveStreamContext) {
+            return EnclaveStreams.handle((EnclaveStreamContext) inputData);
+        }
+        if (inputData instanceof EnclaveCursorContext) {
+            return EnclaveCursors.handle((EnclaveCursorContext) inputData);
+        }
+        if (inputData.getMethodId() >= 0) {
+            return callMethodById(inputData);
+        }
+        Object returnedValue;
         ServiceHandler serviceHandler = inputData.getServiceHandler();
-        String instanceIdentity = serviceHandler.getInstanceIdentity();
-        String serviceName = serviceHandler.getServiceInterfaceName();
-        String implementationClassName = serviceHandler.getServiceImplClassName();
-        Object receiverInstance;
+        ServiceInstance serviceInstance;
         try {
-            receiverInstance = EnclaveContext.getInstance().lookupServiceInstance(instanceIdentity, serviceName, implementationClassName);
+            serviceInstance = EnclaveContext.getInstance().lookupServiceInstance(serviceHandler.getInstanceIdentity(),
+                    serviceHandler.getServiceInterfaceName(), serviceHandler.getServiceImplClassName());
         } catch (ConfidentialComputingException e) {
             return new EnclaveInvocationResult(null, e);
         }
-        if (receiverInstance != null) {
-            String methodName = inputData.getMethodName();
-            Method method;
+        Class<?> serviceClass = serviceInstance.getImplementationClass();
+        String signature = signature(inputData.getMethodName(), inputData.getParameterTypes());
+        ServiceMethodDispatcher dispatcher = dispatcherCache.lookup(serviceClass, signature);
+        if (dispatcher == null) {
+            List<Class<?>> parameterClassList = extractParamClasses(inputData.getParameterTypes());
             // Get the public method to invoke
             try {
-                Class<?> serviceClass = Class.forName(implementationClassName);
-                method = serviceClass.getMethod(methodName, parameterClassList.toArray(new Class<?>[0]));
-                method.setAccessible(true);
+                Method method = serviceClass.getMethod(inputData.getMethodName(), parameterClassList.toArray(new Class<?>[0]));
+                dispatcher = dispatcherCache.register(serviceClass, signature, method);
             } catch (ReflectiveOperationException e) {
                 // Reflection exception is taken as framework's exception
                 return new EnclaveInvocationResult(null, new ConfidentialComputingException(e));
             }
+        }
+        try {
+            // Call the actual method
+            returnedValue = exportResult(
+                    dispatcher.dispatch(serviceInstance.getInstance(), EnclaveStreams.bindArguments(inputData.getArguments())));
+        } catch (Throwable t) {
+            return new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
+        }
+        return new EnclaveInvocationResult(returnedValue, null);
+    }
+
+    /**
+     * Invoke a batch of methods in order within one enclave transition, every invocation's result
+     * or exception is kept in the returned result array at the invocation's index.
+     */
+    private EnclaveInvocationResult callBatch(EnclaveInvocationContext[] batchContexts) {
+        EnclaveInvocationResult[] results = new EnclaveInvocationResult[batchContexts.length];
+        for (int index = 0x0; index < batchContexts.length; index++) {
+            long start = System.nanoTime();
             try {
-                // Call the actual method
-                returnedValue = method.invoke(receiverInstance, inputData.getArguments());
+                results[index] = callMethod(batchContexts[index]);
             } catch (Throwable t) {
-                return new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
+                // a failed invocation doesn't stop the rest of the batch.
+                results[index] = new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
             }
-        } else {
-            throwable = new ConfidentialComputingException(
-                    String.format("Didn't match any service implementation with the given class name: %s", implementationClassName));
+            results[index].setCost(System.nanoTime() - start);
+        }
+        return new EnclaveInvocationResult(results, null);
+    }
+
+    /**
+     * Invoke the method by its id negotiated at service loading, the method was resolved at that time.
+     */
+    private static EnclaveInvocationResult callMethodById(EnclaveInvocationContext inputData) {
+        ServiceInstance serviceInstance;
+        try {
+            serviceInstance = EnclaveContext.getInstance().lookupServiceInstance(inputData.getInstanceIdentity());
+        } catch (ConfidentialComputingException e) {
+            return new EnclaveInvocationResult(null, e);
         }
-        return new EnclaveInvocationResult(returnedValue, throwable);
+        ServiceMethodDispatcher dispatcher = serviceInstance.getDispatcher(inputData.getMethodId());
+        if (dispatcher == null) {
+            return new EnclaveInvocationResult(null, new ConfidentialComputingException(
+                    String.format("No method with id %d in service with identity %d", inputData.getMethodId(), inputData.getInstanceIdentity())));
+        }
+        try {
+            return new EnclaveInvocationResult(exportResult(
+                    dispatcher.dispatch(serviceInstance.getInstance(), EnclaveStreams.bindArguments(inputData.getArguments()))), null);
+        } catch (Throwable t) {
+            return new EnclaveInvocationResult(null, new ConfidentialComputingException(t));
+        }
+    }
+
+    /**
+     * Streams, iterators and java streams returned by a method are kept in enclave, host gets their handles.
+     */
+    private static Object exportResult(Object returnedValue) {
+        return EnclaveCursors.exportResult(EnclaveStreams.exportResult(returnedValue));
+    }
+
+    /**
+     * Signature of a method called by name, the parameter types are given as they were in the invocation.
+     */
+    private static String signature(String methodName, String[] parameterTypes) {
+        return methodName + '(' + (parameterTypes == null ? "" : String.join(",", parameterTypes)) + ')';
     }
 
     private static List<Class<?>> extractParamClasses(String[] parameterTypes) {
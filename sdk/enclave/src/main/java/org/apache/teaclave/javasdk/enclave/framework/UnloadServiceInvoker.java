@@ -31,7 +31,7 @@ public class UnloadServiceInvoker implements EnclaveMethodInvoker<ServiceHandler
         Object ret = EnclaveContext.getInstance().removeCache(inputData.getInstanceIdentity());
         Throwable t = null;
         if (ret == null) {
-            t = new ConfidentialComputingException(String.format("No instance for service %s is found with the given identity %s", inputData.getServiceInterfaceName(),
+            t = new ConfidentialComputingException(String.format("No instance for service %s is found with the given identity %d", inputData.getServiceInterfaceName(),
                     inputData.getInstanceIdentity()));
         }
         // unloadService method's return type is void.
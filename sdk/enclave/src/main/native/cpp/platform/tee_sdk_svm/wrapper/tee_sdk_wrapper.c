@@ -25,16 +25,48 @@
 #include <graal_isolate.h>
 #include <enc_environment.h>
 #include <enc_exported_symbol.h>
+#include <enc_switchless.h>
 
 #include "tee_sdk_symbol.h"
 #include "tee_sdk_wrapper.h"
 
 typedef int (*enclave_calling_stub)(uint64_t isolate, enc_data_t* input, enc_data_t* output, callbacks_t* callback);
 
+/*
+ * Host OS thread id of the current ECALL, passed in by the host with every
+ * load/invoke/unload call so the TCS cache needs no identity OCALL.
+ * It is 0 outside of such an ECALL.
+ */
+static __thread uint64_t g_host_thread_id = 0;
+
+/*
+ * Host buffer offered by the current invocation for its result, it is
+ * consumed by the first result copied out.
+ */
+static __thread char*  g_host_buffer = NULL;
+static __thread size_t g_host_buffer_capacity = 0;
+
+static void offer_host_buffer(void* buffer, size_t capacity) {
+    if (buffer != NULL && capacity > 0 && sgx_is_outside_enclave(buffer, capacity)) {
+        g_host_buffer = (char*)buffer;
+        g_host_buffer_capacity = capacity;
+    } else {
+        g_host_buffer = NULL;
+        g_host_buffer_capacity = 0;
+    }
+}
+
 /**
- * Allocate memory in the host and copy data from the enclave to the allocated buffer. This is used for callbacks that need to return data to the host.
+ * Copy data from the enclave to the host. The host offered buffer is used when the data fits,
+ * otherwise memory is allocated in the host by an ocall. This is used for callbacks that need to return data to the host.
  */
 char* alloc_memory_from_host(char* src, int len) {
+    if (g_host_buffer != NULL && len >= 0 && (size_t)len <= g_host_buffer_capacity) {
+        char *buffer = g_host_buffer;
+        offer_host_buffer(NULL, 0);
+        memcpy(buffer, src, len);
+        return buffer;
+    }
     int flag = 0;
     char *ptr = 0;
     ocall_malloc(&flag, len, (void*)&ptr);
@@ -110,6 +142,7 @@ int enclave_svm_isolate_create(void* isolate, void* isolateThread, int flag, cha
 int tee_sdk_tcs_cache_count(void);
 int tee_sdk_tcs_cache_initialized(void);
 void tee_sdk_tcs_cache_dump(const char* tag);
+long tee_sdk_host_thread_id_ocalls(void);
 
 /* Forward decls to diagnostics counters defined in tee_sdk_symbol.c */
 extern volatile long g_pt_created;
@@ -124,9 +157,10 @@ extern volatile long g_pt_destroyed;
  */
 int enclave_svm_isolate_destroy(uint64_t isolateThread) {
     printf("[destroy] begin: primary=0x%lx cache_count=%d cache_init=%d"
-           " pt_created=%ld pt_destroyed=%ld in_flight=%ld\n",
+           " pt_created=%ld pt_destroyed=%ld in_flight=%ld host_tid_ocalls=%ld\n",
            isolateThread, tee_sdk_tcs_cache_count(), tee_sdk_tcs_cache_initialized(),
-           g_pt_created, g_pt_destroyed, g_pt_created - g_pt_destroyed);
+           g_pt_created, g_pt_destroyed, g_pt_created - g_pt_destroyed,
+           tee_sdk_host_thread_id_ocalls());
 
     // FIXME: to be removed once the destruction path is stable
     tee_sdk_tcs_cache_dump("destroy");
@@ -162,9 +196,9 @@ int enclave_svm_isolate_destroy(uint64_t isolateThread) {
 }
 
 /**
- * Shared logic for enclave SVM service calls (load/invoke/unload). Prepares the request and response structures, populates the callbacks, and dispatches to the provided stub.
+ * Shared logic for enclave SVM service calls (load/invoke/unload). Prepares the request and response structures, offers the host buffer for the result, populates the callbacks, and dispatches to the provided stub.
  */
-int enclave_svm_calling_entry(uint64_t isolate, void* input, size_t input_length, void* output, size_t* output_length, enclave_calling_stub stub) {
+int enclave_svm_calling_entry(uint64_t isolate, uint64_t host_thread_id, void* input, size_t input_length, void* buffer, size_t capacity, void* output, size_t* output_length, enclave_calling_stub stub) {
     enc_data_t request;
     enc_data_t response;
 
@@ -178,7 +212,11 @@ int enclave_svm_calling_entry(uint64_t isolate, void* input, size_t input_length
     callback_methods.exception_handler = &tee_sdk_exception_callback;
     callback_methods.get_random_number = &tee_sdk_random;
 
+    g_host_thread_id = host_thread_id;
+    offer_host_buffer(buffer, capacity);
     int ret = stub(isolate, &request, &response, &callback_methods);
+    offer_host_buffer(NULL, 0);
+    g_host_thread_id = 0;
     if(ret != 0) { return ret; }
 
     *(int64_t*)output = (int64_t)response.data;
@@ -190,37 +228,118 @@ int enclave_svm_calling_entry(uint64_t isolate, void* input, size_t input_length
 /**
  * ECALL entry point for loading an enclave SVM service. Delegates to enclave_svm_calling_entry with the java_loadservice_invoke stub.
  */
-int load_enclave_svm_services(uint64_t isolate, void* input, size_t input_length, void* output, size_t* output_length) {
-    return enclave_svm_calling_entry(isolate, input, input_length, output, output_length, (enclave_calling_stub)java_loadservice_invoke);
+int load_enclave_svm_services(uint64_t isolate, uint64_t host_thread_id, void* input, size_t input_length, void* buffer, size_t capacity, void* output, size_t* output_length) {
+    return enclave_svm_calling_entry(isolate, host_thread_id, input, input_length, buffer, capacity, output, output_length, (enclave_calling_stub)java_loadservice_invoke);
 }
 
 /**
  * ECALL entry point for invoking an enclave SVM service. Delegates to enclave_svm_calling_entry with the java_enclave_invoke stub.
  */
-int invoke_enclave_svm_service(uint64_t isolate, void* input, size_t input_length, void* output, size_t* output_length) {
-    return enclave_svm_calling_entry(isolate, input, input_length, output, output_length, (enclave_calling_stub)java_enclave_invoke);
+int invoke_enclave_svm_service(uint64_t isolate, uint64_t host_thread_id, void* input, size_t input_length, void* buffer, size_t capacity, void* output, size_t* output_length) {
+    return enclave_svm_calling_entry(isolate, host_thread_id, input, input_length, buffer, capacity, output, output_length, (enclave_calling_stub)java_enclave_invoke);
 }
 
 /**
  * ECALL entry point for unloading an enclave SVM service. Delegates to enclave_svm_calling_entry with the java_unloadservice_invoke stub.
  */
-int unload_enclave_svm_service(uint64_t isolate, void* input, size_t input_length, void* output, size_t* output_length) {
-    return enclave_svm_calling_entry(isolate, input, input_length, output, output_length, (enclave_calling_stub)java_unloadservice_invoke);
+int unload_enclave_svm_service(uint64_t isolate, uint64_t host_thread_id, void* input, size_t input_length, void* buffer, size_t capacity, void* output, size_t* output_length) {
+    return enclave_svm_calling_entry(isolate, host_thread_id, input, input_length, buffer, capacity, output, output_length, (enclave_calling_stub)java_unloadservice_invoke);
+}
+
+/* OCALL generated by edger8r in tee_sdk_enclave_t.h. */
+extern sgx_status_t SGX_CDECL ocall_switchless_park(uint32_t micros);
+
+/*
+ * Private state of one switchless worker, it stays in the enclave together
+ * with its own IsolateThread for the whole life of the ring.
+ */
+typedef struct {
+    graal_isolatethread_t* thread;
+    callbacks_t            callbacks;
+} switchless_worker_t;
+
+static void switchless_park(uint32_t micros) {
+    ocall_switchless_park(micros);
+}
+
+/*
+ * Serve one descriptor taken from the ring. The descriptor lies in the ring,
+ * which was checked to lie outside the enclave, its payload is host memory as
+ * well, so it's checked the same way and the input is read once before being
+ * handed to java.
+ */
+static void switchless_serve(void* ctx, switchless_request_t* request) {
+    switchless_worker_t* worker = (switchless_worker_t*)ctx;
+    if (!switchless_request_claim(request)) { return; }
+
+    enc_data_t input = request->input;
+    enc_data_t buffer = request->buffer;
+    enc_data_t output;
+    output.data = NULL;
+    output.data_len = 0x0;
+    if (input.data_len < 0 || !sgx_is_outside_enclave(input.data, (size_t)input.data_len)) {
+        switchless_request_complete(request, -1);
+        return;
+    }
+
+    offer_host_buffer(buffer.data, buffer.data_len < 0 ? 0 : (size_t)buffer.data_len);
+    int ret = java_enclave_switchless_invoke(worker->thread, &input, &output, &worker->callbacks);
+    offer_host_buffer(NULL, 0);
+    request->output = output;
+    switchless_request_complete(request, ret);
+}
+
+/**
+ * ECALL entry point of a switchless worker thread. It attaches an IsolateThread once, serves the
+ * host's ring until the host stops it and detaches again, so posted invocations never pay an
+ * enclave transition.
+ */
+int enclave_svm_switchless_worker(uint64_t isolate, void* ring) {
+    if (ring == NULL || !sgx_is_outside_enclave(ring, sizeof(switchless_ring_t))) { return -1; }
+
+    switchless_worker_t worker;
+    worker.thread = NULL;
+    if (graal_attach_thread((graal_isolate_t*)isolate, &worker.thread) != 0) { return -1; }
+    worker.callbacks.memcpy_char_pointer = &alloc_memory_from_host;
+    worker.callbacks.exception_handler = &tee_sdk_exception_callback;
+    worker.callbacks.get_random_number = &tee_sdk_random;
+
+    switchless_worker_loop((switchless_ring_t*)ring, &switchless_serve, &worker, &switchless_park);
+    return graal_detach_thread(worker.thread);
 }
 
 /**
  * MAX_TCS_CACHE must be large enough to accommodate the number of
- * concurrent (tcs_id, host_thread_id) pairs that can exist during the enclave's lifetime
- * (e.g. concurrent ECALLs from multiple host threads on the same TCS, or concurrent ECALLs
- * on different TCSes)
+ * TCSes the enclave is configured with, every TCS owns one cache slot.
  *
- * NOTE: since we recycle TCS slots by invalidating stale entries on reuse,
+ * NOTE: since we recycle TCS slots by overwriting stale entries on reuse,
  * MAX_TCS_CACHE does not need to be as large as the total number of threads
  * that ever enter the enclave, but only the maximum number of concurrent threads
  * that can be executing ECALLs at the same time.
  */
 #define MAX_TCS_CACHE 256
 
+/*
+ * The cache is an open-addressed hash table keyed by tcs_id, sized twice
+ * MAX_TCS_CACHE so that probe sequences stay short. A TCS keeps its slot for
+ * the enclave's lifetime and a recycled TCS reuses it in place, so slots are
+ * never deleted and no tombstones are needed.
+ */
+#define TCS_CACHE_TABLE_BITS 9
+#define TCS_CACHE_TABLE_SIZE (1 << TCS_CACHE_TABLE_BITS)
+#define TCS_CACHE_TABLE_MASK (TCS_CACHE_TABLE_SIZE - 1)
+
+/*
+ * A slot is ACTIVE while its TCS runs an ECALL with the cached IsolateThread,
+ * only IDLE slots may have their IsolateThread evicted by other TCSes.
+ */
+#define TCS_SLOT_IDLE     0x0
+#define TCS_SLOT_ACTIVE   0x1
+#define TCS_SLOT_EVICTING 0x2
+
+/* LRU victim scans give up after this many slots changed under them. */
+#define TCS_CACHE_EVICT_RETRIES 4
+
 /*
  * Per-TCS IsolateThread cache for multi-thread ECALL support.
  *
@@ -236,27 +355,39 @@ int unload_enclave_svm_service(uint64_t isolate, void* input, size_t input_lengt
  * with the IsolateThread and lazily populated by ECALL prologues
  */
 typedef struct {
-    unsigned long tcs_id;           /* pthread_self() value for this TCS (per-TCS slot identity) */
-    uint64_t      host_thread_id;   /* host-side pthread_self() of the OS thread that created this entry */
-    uint64_t      isolate_thread;   /* cached IsolateThread handle, or 0 if slot is stale/empty */
-    void*         callbacks;        /* per-TCS CallBacks pointer (to stack-local callbacks_t) */
+    volatile unsigned long tcs_id;          /* pthread_self() value for this TCS (per-TCS slot identity) */
+    uint64_t               host_thread_id;  /* host-side pthread_self() of the OS thread that created this entry */
+    volatile uint64_t      isolate_thread;  /* cached IsolateThread handle, or 0 if slot is stale/empty */
+    void*                  callbacks;       /* per-TCS CallBacks pointer (to stack-local callbacks_t) */
+    volatile uint32_t      state;           /* TCS_SLOT_IDLE, TCS_SLOT_ACTIVE or TCS_SLOT_EVICTING */
+    volatile uint32_t      generation;      /* bumped whenever the slot's IsolateThread is replaced */
+    volatile uint64_t      last_used;       /* LRU clock of the slot's last ECALL */
 } tcs_cache_entry_t;
 
-static tcs_cache_entry_t g_tcs_cache[MAX_TCS_CACHE];
+static tcs_cache_entry_t g_tcs_cache[TCS_CACHE_TABLE_SIZE];
 static volatile int g_tcs_cache_count = 0;
 static volatile int g_tcs_cache_initialized = 0;
+/* max number of cached IsolateThreads, least recently used idle ones are evicted beyond it */
+static volatile int g_tcs_cache_capacity = MAX_TCS_CACHE;
+static volatile int g_tcs_cache_live = 0;
+static volatile uint64_t g_tcs_cache_clock = 0;
+
+/* Statistics */
+static volatile uint64_t g_tcs_cache_hits = 0;
+static volatile uint64_t g_tcs_cache_misses = 0;
+static volatile uint64_t g_tcs_cache_evictions = 0;
 
 /* Diagnostics */
 
 int tee_sdk_tcs_cache_count(void) { return g_tcs_cache_count; }
 int tee_sdk_tcs_cache_initialized(void) { return g_tcs_cache_initialized; }
 void tee_sdk_tcs_cache_dump(const char* tag) {
-    int count = g_tcs_cache_count;
-    if (count > MAX_TCS_CACHE) count = MAX_TCS_CACHE;
-    for (int i = 0; i < count; i++) {
-        printf("[%s] cache[%d]: tcs=0x%lx host_tid=0x%lx it=0x%lx cb=%p\n",
+    for (int i = 0; i < TCS_CACHE_TABLE_SIZE; i++) {
+        if (g_tcs_cache[i].tcs_id == 0) continue;
+        printf("[%s] cache[%d]: tcs=0x%lx host_tid=0x%lx it=0x%lx cb=%p state=%u gen=%u\n",
                tag, i, g_tcs_cache[i].tcs_id, g_tcs_cache[i].host_thread_id,
-               g_tcs_cache[i].isolate_thread, g_tcs_cache[i].callbacks);
+               g_tcs_cache[i].isolate_thread, g_tcs_cache[i].callbacks,
+               g_tcs_cache[i].state, g_tcs_cache[i].generation);
     }
 }
 
@@ -264,19 +395,139 @@ void tee_sdk_tcs_cache_dump(const char* tag) {
  * because the wrapper does not include that header directly. */
 extern sgx_status_t SGX_CDECL ocall_host_thread_id(uint64_t* retval);
 
+/* Number of host thread id OCALLs, it stays 0 while every ECALL passes its id in. */
+static volatile long g_host_thread_id_ocalls = 0;
+
+long tee_sdk_host_thread_id_ocalls(void) { return g_host_thread_id_ocalls; }
+
 /*
-* Host OS thread id for the currently executing ECALL. Obtained via OCALL
+* Host OS thread id for the currently executing ECALL. It was passed in by
+* the ECALL, only other entries fall back to an OCALL
 * (ocall_host_thread_id -> pthread_self() on host). Used to detect TCS slot
 * recycling: if the same TCS is entered by a different host OS thread than
 * the one that originally attached its IsolateThread, the cached entry is
 * stale (OSThreadIdTL refers to the old host thread).
 */
 static uint64_t current_host_thread_id(void) {
+    if (g_host_thread_id != 0) {
+        return g_host_thread_id;
+    }
     uint64_t host_tid = 0;
+    __sync_fetch_and_add(&g_host_thread_id_ocalls, 1);
     ocall_host_thread_id(&host_tid);
     return host_tid;
 }
 
+static inline unsigned int tcs_cache_hash(unsigned long tcs_id) {
+    // tcs_id is the TCS's page aligned thread_data address, drop the always-zero bits.
+    return (unsigned int)(((uint64_t)(tcs_id >> 12) * 0x9E3779B97F4A7C15ULL) >> (64 - TCS_CACHE_TABLE_BITS));
+}
+
+/*
+ * Find the slot of a TCS by linear probing from its hash, and claim an empty
+ * one for it if create is set. Only the TCS itself writes its slot's fields,
+ * other TCSes probing past it only read tcs_id, so no lock is needed.
+ *
+ * Returns the slot, or NULL if the TCS has none and none could be claimed.
+ */
+static tcs_cache_entry_t* tcs_cache_find(unsigned long tcs_id, int create) {
+    unsigned int idx = tcs_cache_hash(tcs_id);
+    for (int probe = 0; probe < TCS_CACHE_TABLE_SIZE; probe++) {
+        tcs_cache_entry_t* entry = &g_tcs_cache[idx];
+        if (entry->tcs_id == tcs_id) {
+            return entry;
+        }
+        if (entry->tcs_id == 0) {
+            // slots are never deleted, an empty one ends the probe sequence.
+            if (!create || g_tcs_cache_count >= MAX_TCS_CACHE) {
+                return NULL;
+            }
+            if (__sync_bool_compare_and_swap(&entry->tcs_id, 0, tcs_id)) {
+                __sync_fetch_and_add(&g_tcs_cache_count, 1);
+                return entry;
+            }
+            // another TCS claimed it first, probe on.
+        }
+        idx = (idx + 1) & TCS_CACHE_TABLE_MASK;
+    }
+    return NULL;
+}
+
+/*
+ * Detach and drop the IsolateThread of a slot its caller owns, either as
+ * ACTIVE (own stale entry) or as EVICTING (LRU victim). The IsolateThread is
+ * in STATUS_IN_NATIVE since its last ECALL left, java_detach_helper_thread
+ * removes it from the isolate's thread list.
+ */
+static void tcs_cache_evict(tcs_cache_entry_t* entry) {
+    uint64_t isolate_thread = entry->isolate_thread;
+    if (isolate_thread == 0) {
+        return;
+    }
+    entry->isolate_thread = 0;
+    entry->callbacks = NULL;
+    __sync_fetch_and_add(&entry->generation, 1);
+    __sync_synchronize();
+    java_detach_helper_thread((graal_isolatethread_t*)isolate_thread);
+    __sync_fetch_and_sub(&g_tcs_cache_live, 1);
+    __sync_fetch_and_add(&g_tcs_cache_evictions, 1);
+}
+
+/*
+ * Make room for one more IsolateThread by evicting the least recently used
+ * idle slot other than self. A victim is claimed by CAS to EVICTING, so its
+ * TCS can't enter the IsolateThread while it's detached, and its generation
+ * is checked so a slot repopulated since the scan is not taken by mistake.
+ *
+ * Must be called before the caller enters its own IsolateThread.
+ */
+static void tcs_cache_make_room(tcs_cache_entry_t* self) {
+    for (int retry = 0; retry < TCS_CACHE_EVICT_RETRIES && g_tcs_cache_live >= g_tcs_cache_capacity; retry++) {
+        tcs_cache_entry_t* victim = NULL;
+        uint64_t oldest = UINT64_MAX;
+        uint32_t generation = 0;
+        for (int i = 0; i < TCS_CACHE_TABLE_SIZE; i++) {
+            tcs_cache_entry_t* entry = &g_tcs_cache[i];
+            if (entry == self || entry->isolate_thread == 0 || entry->state != TCS_SLOT_IDLE) {
+                continue;
+            }
+            if (entry->last_used < oldest) {
+                oldest = entry->last_used;
+                victim = entry;
+                generation = entry->generation;
+            }
+        }
+        if (victim == NULL) {
+            return; // every cached IsolateThread is in use
+        }
+        if (!__sync_bool_compare_and_swap(&victim->state, TCS_SLOT_IDLE, TCS_SLOT_EVICTING)) {
+            continue;
+        }
+        if (victim->generation == generation) {
+            tcs_cache_evict(victim);
+        }
+        __sync_synchronize();
+        victim->state = TCS_SLOT_IDLE;
+    }
+}
+
+/*
+ * Mark the calling TCS's slot ACTIVE, waiting for a concurrent eviction of
+ * its IsolateThread to finish first.
+ */
+static void tcs_cache_acquire(tcs_cache_entry_t* entry) {
+    while (1) {
+        uint32_t state = entry->state;
+        if (state == TCS_SLOT_ACTIVE) {
+            return; // nested ECALL on this TCS
+        }
+        if (state == TCS_SLOT_IDLE && __sync_bool_compare_and_swap(&entry->state, TCS_SLOT_IDLE, TCS_SLOT_ACTIVE)) {
+            return;
+        }
+        switchless_cpu_relax();
+    }
+}
+
 /*
  * Look up a cached IsolateThread for the calling (TCS, host-thread) pair.
  *
@@ -284,73 +535,77 @@ static uint64_t current_host_thread_id(void) {
  * recycled by a different host thread), the stale entry is detached via
  * java_detach_helper_thread and zeroed out, and we return 0 so the prologue
  * takes the slow path and creates a fresh IsolateThread for the new host
- * thread.
+ * thread. On a miss the least recently used idle IsolateThread is evicted
+ * first if the cache is at capacity.
  *
  * Returns the IsolateThread handle on hit, or 0 on miss / stale-and-evicted.
  */
 uint64_t tee_sdk_tcs_lookup(void) {
-    unsigned long my_tcs = pthread_self();
-    uint64_t my_host_tid = current_host_thread_id();
-    int count = g_tcs_cache_count;
-    if (count > MAX_TCS_CACHE) count = MAX_TCS_CACHE;
-    for (int i = 0; i < count; i++) {
-        // check if the TCS matches with a cached entry
-        if (g_tcs_cache[i].tcs_id == my_tcs && g_tcs_cache[i].isolate_thread != 0) {
-
+    tcs_cache_entry_t* entry = tcs_cache_find(pthread_self(), 0);
+    if (entry != NULL) {
+        tcs_cache_acquire(entry);
+        entry->last_used = __sync_add_and_fetch(&g_tcs_cache_clock, 1);
+        if (entry->isolate_thread != 0) {
             // if also the host thread matches, it's a cache hit: return the cached IsolateThread
-            if (g_tcs_cache[i].host_thread_id == my_host_tid) {
-                return g_tcs_cache[i].isolate_thread;
+            if (entry->host_thread_id == current_host_thread_id()) {
+                __sync_fetch_and_add(&g_tcs_cache_hits, 1);
+                return entry->isolate_thread;
             }
 
             /*
              Otherwise, stale entry (same TCS but a different host thread means
              that the cached IsolateThread belongs to a now-dead host thread):
-             invalidate the entry so the caller creates a new one for the new host thread
-
-             By invalidating the cache entry here, on next ECALL on the same TCS the prologue takes
-             the slow path and creates a fresh IsolateThread for the new host thread.
+             detach it so the slot is reclaimed for the new host thread, the
+             prologue then takes the slow path and creates a fresh IsolateThread.
             */
-            g_tcs_cache[i].isolate_thread = 0;
-            g_tcs_cache[i].callbacks = NULL;
-
-            // ensure all cores see the updated cache entry before any thread can hit it again
-            __sync_synchronize();
-            return 0;
+            tcs_cache_evict(entry);
         }
     }
+    __sync_fetch_and_add(&g_tcs_cache_misses, 1);
+    tcs_cache_make_room(entry);
     return 0;
 }
 
 /*
  * Register a newly created IsolateThread for the calling (TCS, host-thread)
- * pair. Claims a free slot via CAS so that overflow is detected without
- * corrupting the count: if no slot is available the cache remains untouched
+ * pair. Claims the TCS's slot via CAS so that overflow is detected without
+ * corrupting the table: if no slot is available the cache remains untouched
  * and the caller falls back to the legacy path (enterAttachThread every
  * ECALL, no cache fast-path).
  *
  * Returns non-zero on success, 0 if the cache is full.
  */
 int tee_sdk_tcs_register(uint64_t isolate_thread) {
-    unsigned long my_tcs = pthread_self();
-    uint64_t my_host_tid = current_host_thread_id();
-    while (1) {
-        // get the next cache index to claim
-        int idx = g_tcs_cache_count;
-        if (idx >= MAX_TCS_CACHE) { // if cache exhausted = force fallback to legacy path
-            return 0; // failure
-        }
-
-        // CAS to claim the next cache slot (multiple threads might race to claim the same slot)
-        if (__sync_bool_compare_and_swap(&g_tcs_cache_count, idx, idx + 1)) {
-            // store the new entry in the claimed slot (idx)
-            g_tcs_cache[idx].tcs_id = my_tcs;
-            g_tcs_cache[idx].host_thread_id = my_host_tid;
-            g_tcs_cache[idx].isolate_thread = isolate_thread;
-            g_tcs_cache[idx].callbacks = NULL; // callbacks are lazily populated at each ECALL prologue
-            __sync_synchronize(); // ensure all cores see the new cache entry before any thread can hit it
+    // if cache exhausted = force fallback to legacy path
+    if (g_tcs_cache_live >= g_tcs_cache_capacity) {
+        return 0; // failure
+    }
+    // find the TCS's slot, a recycled TCS reuses its own slot in place
+    tcs_cache_entry_t* entry = tcs_cache_find(pthread_self(), 1);
+    if (entry == NULL || entry->isolate_thread != 0) {
+        return 0; // failure
+    }
+    tcs_cache_acquire(entry);
+    entry->host_thread_id = current_host_thread_id();
+    entry->callbacks = NULL; // callbacks are lazily populated at each ECALL prologue
+    entry->last_used = __sync_add_and_fetch(&g_tcs_cache_clock, 1);
+    __sync_fetch_and_add(&entry->generation, 1);
+    entry->isolate_thread = isolate_thread;
+    __sync_fetch_and_add(&g_tcs_cache_live, 1);
+    __sync_synchronize(); // ensure all cores see the new cache entry before any thread can hit it
+    return 1; // success
+}
 
-            return 1; // success
-        }
+/*
+ * Mark the calling TCS's slot IDLE once its ECALL left the IsolateThread,
+ * from then on it may be evicted by other TCSes.
+ * Called from the Java epilogue via @CFunction(NO_TRANSITION).
+ */
+void tee_sdk_tcs_release(void) {
+    tcs_cache_entry_t* entry = tcs_cache_find(pthread_self(), 0);
+    if (entry != NULL && entry->state == TCS_SLOT_ACTIVE) {
+        __sync_synchronize();
+        entry->state = TCS_SLOT_IDLE;
     }
 }
 
@@ -368,24 +623,12 @@ int tee_sdk_tcs_is_initialized(void) {
  * not get its callbacks overwritten before the lookup path invalidates it.
  */
 void tee_sdk_tcs_set_callbacks(void* cb) {
-    // get identifier (tcs_id, host_thread_id)
-    unsigned long my_tcs = pthread_self();
-    uint64_t my_host_tid = current_host_thread_id();
-
-    // get current cache capacity
-    int count = g_tcs_cache_count;
-    if (count > MAX_TCS_CACHE) count = MAX_TCS_CACHE;
-
-    // linear scan entire TCS cache to find the matching entry (tcs_id, host_tread_id) with a valid isolate_thread
-    // to update its callbacks pointer.
-    // FIXME: here we might use an hashmap to avoid O(N) scan on every ECALL prologue
-    for (int i = 0; i < count; i++) {
-        if (g_tcs_cache[i].tcs_id == my_tcs
-            && g_tcs_cache[i].host_thread_id == my_host_tid
-            && g_tcs_cache[i].isolate_thread != 0) {
-            g_tcs_cache[i].callbacks = cb;
-            return;
-        }
+    // hash to the TCS's slot and check it's still owned by the calling host thread
+    tcs_cache_entry_t* entry = tcs_cache_find(pthread_self(), 0);
+    if (entry != NULL
+        && entry->isolate_thread != 0
+        && entry->host_thread_id == current_host_thread_id()) {
+        entry->callbacks = cb;
     }
 }
 
@@ -393,43 +636,46 @@ void tee_sdk_tcs_set_callbacks(void* cb) {
  * Retrieve the CallBacks pointer for the calling TCS.
  */
 void* tee_sdk_tcs_get_callbacks(void) {
-    // get identifier (tcs_id, host_thread_id)
-    unsigned long my_tcs = pthread_self();
-    uint64_t my_host_tid = current_host_thread_id();
-
-    // get current cache capacity
-    int count = g_tcs_cache_count;
-    if (count > MAX_TCS_CACHE) count = MAX_TCS_CACHE;
-
-    // linear scan entire TCS cache to find the matching entry (tcs_id, host_tread_id) with a valid isolate_thread
-    // to update its callbacks pointer.
-    // FIXME: here we might use an hashmap to avoid O(N) scan on every ECALL prologue
-    for (int i = 0; i < count; i++) {
-        if (g_tcs_cache[i].tcs_id == my_tcs
-            && g_tcs_cache[i].host_thread_id == my_host_tid
-            && g_tcs_cache[i].isolate_thread != 0) {
-            return g_tcs_cache[i].callbacks; // return the found callbacks pointer
-        }
+    // hash to the TCS's slot and check it's still owned by the calling host thread
+    tcs_cache_entry_t* entry = tcs_cache_find(pthread_self(), 0);
+    if (entry != NULL
+        && entry->isolate_thread != 0
+        && entry->host_thread_id == current_host_thread_id()) {
+        return entry->callbacks; // return the found callbacks pointer
     }
     return NULL; // no match
 }
 
 /*
- * Initialize TCS cache mode.
+ * Initialize TCS cache mode, capacity bounds the number of cached
+ * IsolateThreads, it's clamped to MAX_TCS_CACHE.
  */
-int enclave_svm_initialize_thread_cache(uint64_t isolate, int thread_count) {
+int enclave_svm_initialize_thread_cache(uint64_t isolate, int capacity) {
     (void)isolate;
-    (void)thread_count;
+    g_tcs_cache_capacity = (capacity <= 0 || capacity > MAX_TCS_CACHE) ? MAX_TCS_CACHE : capacity;
 
     // signal Java prologue to use TCS cache mode for subsequent ECALLs.
     // NOTE: the cache is empty at this point
     g_tcs_cache_initialized = 1;
     __sync_synchronize(); // ensure the intialized flag is visible by all cores
 
-    printf("[enclave] TCS cache mode initialized\n");
+    printf("[enclave] TCS cache mode initialized, capacity %d\n", g_tcs_cache_capacity);
     return 0;
 }
 
+/*
+ * Copy the TCS cache statistics to the host: hits, misses, evictions,
+ * cached IsolateThreads and host thread id OCALLs, in this order.
+ */
+void enclave_svm_thread_cache_statistics(void* statistics) {
+    uint64_t* values = (uint64_t*)statistics;
+    values[0] = g_tcs_cache_hits;
+    values[1] = g_tcs_cache_misses;
+    values[2] = g_tcs_cache_evictions;
+    values[3] = (uint64_t)g_tcs_cache_live;
+    values[4] = (uint64_t)g_host_thread_id_ocalls;
+}
+
 /**
   * Release cached IsolateThreads in preparation for isolate teardown.
   * Each cached IsolateThread is still valid at this point (STATUS_IN_NATIVE
@@ -440,19 +686,21 @@ int enclave_svm_initialize_thread_cache(uint64_t isolate, int thread_count) {
   */
 void enclave_svm_release_thread_cache(void) {
     int count = g_tcs_cache_count;
-    if (count > MAX_TCS_CACHE) count = MAX_TCS_CACHE;
 
     /* Prevent new ECALLs from using the cache */
     g_tcs_cache_initialized = 0;
     __sync_synchronize();
 
-    for (int i = 0; i < count; i++) {
+    for (int i = 0; i < TCS_CACHE_TABLE_SIZE; i++) {
         g_tcs_cache[i].isolate_thread = 0;
         g_tcs_cache[i].tcs_id = 0;
         g_tcs_cache[i].host_thread_id = 0;
         g_tcs_cache[i].callbacks = NULL;
+        g_tcs_cache[i].state = TCS_SLOT_IDLE;
+        g_tcs_cache[i].last_used = 0;
     }
     g_tcs_cache_count = 0;
+    g_tcs_cache_live = 0;
 
     printf("[enclave] TCS cache cleared (%d entries); teardown will detach via safepoint\n", count);
     fflush(stdout);
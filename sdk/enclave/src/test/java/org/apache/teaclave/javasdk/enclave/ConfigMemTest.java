@@ -84,7 +84,7 @@ public class ConfigMemTest {
 
     @Test
     public void test() {
-        String id = EnclaveTestHelper.loadAndGetService(MEM_SERVICE, ENC_MEM, 1);
+        long id = EnclaveTestHelper.loadAndGetService(MEM_SERVICE, ENC_MEM, 1);
         long ret = (Long)EnclaveTestHelper.call(id, MEM_SERVICE, ENC_MEM, "getSize", EnclaveTestHelper.EMPTY_STRING_ARRAY, EnclaveTestHelper.EMPTY_OBJECT_ARRAY);
         assertEquals(49152000, ret);
     }
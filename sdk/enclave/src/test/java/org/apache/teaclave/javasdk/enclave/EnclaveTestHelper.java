@@ -74,7 +74,7 @@ public class EnclaveTestHelper {
         return (ServiceHandler[]) ret.getResult();
     }
 
-    public static EnclaveInvocationResult callEnclaveMethod(String service, String impl, String identity, String method, String[] paramTypes, Object[] values) throws IOException, ClassNotFoundException {
+    public static EnclaveInvocationResult callEnclaveMethod(String service, String impl, long identity, String method, String[] paramTypes, Object[] values) throws IOException, ClassNotFoundException {
         EnclaveInvocationContext enclaveInvocationContext = new EnclaveInvocationContext(new ServiceHandler(service, impl
                 , identity), method, paramTypes, values);
         return callEnclaveJNI(enclaveInvocationContext,
@@ -99,7 +99,7 @@ public class EnclaveTestHelper {
         return tmpDir;
     }
 
-    public static String loadAndGetService(String serviceName, String implementation, int expectedServiceNum) {
+    public static long loadAndGetService(String serviceName, String implementation, int expectedServiceNum) {
         ServiceHandler[] serviceHandlers = new ServiceHandler[0];
         try {
             serviceHandlers = callLoadService(serviceName);
@@ -114,10 +114,10 @@ public class EnclaveTestHelper {
             }
         }
         fail("Should not reach here");
-        return null;
+        return 0;
     }
 
-    public static Object call(String id, String serviceName, String className, String methodName, String[] paramTypes, Object[] paramValues) {
+    public static Object call(long id, String serviceName, String className, String methodName, String[] paramTypes, Object[] paramValues) {
         try {
             EnclaveInvocationResult result = callEnclaveMethod(serviceName,
                     className, id,
@@ -87,7 +87,7 @@ public class RunWithNativeImageTest {
      */
     @Test
     public void testSimpleRun() {
-        String identity = loadAndGetService(NUMERIC_MATH);
+        long identity = loadAndGetService(NUMERIC_MATH);
         assertEquals(3, callIntAdd(identity, 1, 2));
     }
 
@@ -96,8 +96,8 @@ public class RunWithNativeImageTest {
      */
     @Test
     public void testMultiThreadRun() {
-        String identity1 = loadAndGetService(NUMERIC_MATH);
-        String identity2 = loadAndGetService(NUMERIC_MATH);
+        long identity1 = loadAndGetService(NUMERIC_MATH);
+        long identity2 = loadAndGetService(NUMERIC_MATH);
 
         Thread t1 = new Thread(() -> {
             try {
@@ -139,7 +139,7 @@ public class RunWithNativeImageTest {
      */
     @Test
     public void testServiceDefaultMethod() {
-        String identity = loadAndGetService(INTEGER_MATH);
+        long identity = loadAndGetService(INTEGER_MATH);
         int ret = (Integer) call(identity, INTEGER_MATH, "getConstant", EMPTY_STRING_ARRAY, EMPTY_OBJECT_ARRAY);
         assertEquals(100, ret);
     }
@@ -149,7 +149,7 @@ public class RunWithNativeImageTest {
      */
     @Test
     public void testPointAdd() {
-        String id = loadAndGetService(POINT_MATH);
+        long id = loadAndGetService(POINT_MATH);
         Point ret = (Point) call(id, POINT_MATH, "add", POINT_MATH_ADD_PARAM_TYPES,
                 new Object[]{new Point(1, 1), new Point(2, 2)});
         assertEquals(3, ret.x);
@@ -162,7 +162,7 @@ public class RunWithNativeImageTest {
      */
     @Test
     public void testCallNativeGetRandomNumber() {
-        String identity = loadAndGetService(NUMERIC_MATH);
+        long identity = loadAndGetService(NUMERIC_MATH);
         int size = 32;
         byte[] ret = (byte[]) call(identity, NUMERIC_MATH, "getRandomNumber", new String[]{"int"}, new Object[]{size});
         assertNotNull(ret);
@@ -171,19 +171,19 @@ public class RunWithNativeImageTest {
         }
     }
 
-    private static String loadAndGetService(String implementation) {
+    private static long loadAndGetService(String implementation) {
         return EnclaveTestHelper.loadAndGetService(MATH_SERVICE, implementation, 3);
     }
 
-    private static int callIntAdd(String id, int x, int y) {
+    private static int callIntAdd(long id, int x, int y) {
         return (Integer) call(id, NUMERIC_MATH, "add", MATH_ADD_PARAM_TYPES, new Object[]{x, y});
     }
 
-    private static int callGetCounter(String id) {
+    private static int callGetCounter(long id) {
         return (Integer) call(id, NUMERIC_MATH, "getCounter", EMPTY_STRING_ARRAY, EMPTY_OBJECT_ARRAY);
     }
 
-    private static Object call(String id, String className, String methodName, String[] paramTypes, Object[] paramValues) {
+    private static Object call(long id, String className, String methodName, String[] paramTypes, Object[] paramValues) {
         return EnclaveTestHelper.call(id, MATH_SERVICE, className, methodName, paramTypes, paramValues);
     }
 
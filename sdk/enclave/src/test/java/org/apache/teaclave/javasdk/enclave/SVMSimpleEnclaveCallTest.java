@@ -69,7 +69,7 @@ public class SVMSimpleEnclaveCallTest {
         ServiceHandler[] serviceHandlers = callLoadService(MATH_SERVICE);
         assertEquals(3, serviceHandlers.length);
         assertEquals(NUMERIC_MATH, serviceHandlers[0].getServiceImplClassName());
-        String identity = serviceHandlers[0].getInstanceIdentity();
+        long identity = serviceHandlers[0].getInstanceIdentity();
         EnclaveInvocationResult result = callEnclaveMethod(MATH_SERVICE,
                 NUMERIC_MATH, identity,
                 "add",
@@ -100,7 +100,7 @@ public class SVMSimpleEnclaveCallTest {
                 (isolateThread, input, result, callbacks) -> EnclaveEntry.unloadService(isolateThread, input, result, callbacks));
     }
 
-    private EnclaveInvocationResult callEnclaveMethod(String service, String impl, String identity, String method, String[] paramTypes, Object[] values) throws IOException, ClassNotFoundException {
+    private EnclaveInvocationResult callEnclaveMethod(String service, String impl, long identity, String method, String[] paramTypes, Object[] values) throws IOException, ClassNotFoundException {
         EnclaveInvocationContext enclaveInvocationContext = new EnclaveInvocationContext(new ServiceHandler(service, impl
                 , identity), method, paramTypes, values);
         return callEnclaveEntryPoint(enclaveInvocationContext,
@@ -19,6 +19,7 @@ package org.apache.teaclave.javasdk.enclave.framework;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.MethodSignature;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 import org.apache.teaclave.javasdk.enclave.testservice.MathService;
@@ -40,6 +41,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 
 public class ServiceMethodInvokerTest {
 
@@ -52,7 +55,7 @@ public class ServiceMethodInvokerTest {
     }
 
     @BeforeEach
-    public void setup() {
+    public void setup() throws ConfidentialComputingException {
         services = EnclaveContext.getInstance().loadService(MathService.class);
         assertEquals(3, services.length);
         assertEquals(MATH_SERVICE, services[0].getServiceInterfaceName());
@@ -139,7 +142,7 @@ public class ServiceMethodInvokerTest {
     }
 
     @Test
-    public void testServiceConsistency() {
+    public void testServiceConsistency() throws ConfidentialComputingException {
         ServiceHandler[] secondLoadings = EnclaveContext.getInstance().loadService(MathService.class);
         int i = 0;
         while (i++ < 2) {
@@ -175,6 +178,71 @@ public class ServiceMethodInvokerTest {
         assertEquals(3, (Integer) wrappedResult);
     }
 
+    /**
+     * Call service methods by the method ids negotiated at service loading.
+     */
+    @Test
+    public void testMethodIdCall() {
+        String[] signatures = services[0].getMethodSignatures();
+        assertNotNull(signatures);
+        assertEquals(Arrays.asList(signatures), Arrays.asList(services[2].getMethodSignatures()));
+        int addId = Arrays.asList(signatures).indexOf("add(java.lang.Object,java.lang.Object)");
+        int constantId = Arrays.asList(signatures).indexOf("getConstant()");
+        assertTrue(addId >= 0 && constantId >= 0);
+        for (Method method : MathService.class.getMethods()) {
+            assertTrue(Arrays.asList(signatures).contains(MethodSignature.of(method)));
+        }
+
+        EnclaveInvocationResult result = serviceMethodInvoker.callMethod(
+                new EnclaveInvocationContext(services[2].getInstanceIdentity(), addId, new Object[]{1, 2}));
+        assertNull(result.getException());
+        assertEquals(3, result.getResult());
+        result = serviceMethodInvoker.callMethod(
+                new EnclaveInvocationContext(services[0].getInstanceIdentity(), constantId, EMPTY_OBJECT_ARRAY));
+        assertEquals(100, result.getResult());
+        result = serviceMethodInvoker.callMethod(
+                new EnclaveInvocationContext(services[0].getInstanceIdentity(), signatures.length, EMPTY_OBJECT_ARRAY));
+        assertTrue(result.getException() instanceof ConfidentialComputingException);
+        result = serviceMethodInvoker.callMethod(
+                new EnclaveInvocationContext(-1, addId, new Object[]{1, 2}));
+        assertTrue(result.getException() instanceof ConfidentialComputingException);
+    }
+
+    /**
+     * Test a batch of invocations is made in order, and a failed invocation doesn't stop the others.
+     */
+    @Test
+    public void testBatchCall() {
+        int addId = Arrays.asList(services[0].getMethodSignatures()).indexOf("add(java.lang.Object,java.lang.Object)");
+        EnclaveInvocationResult result = serviceMethodInvoker.callMethod(new EnclaveInvocationContext(new EnclaveInvocationContext[]{
+                new EnclaveInvocationContext(services[0].getInstanceIdentity(), addId, new Object[]{1, 2}),
+                new EnclaveInvocationContext(services[0], "div", MATH_ADD_PARAM_TYPES, new Object[]{1, 0}),
+                new EnclaveInvocationContext(services[0], "add", MATH_ADD_PARAM_TYPES, new Object[]{3, 4})}));
+        assertNull(result.getException());
+        EnclaveInvocationResult[] results = (EnclaveInvocationResult[]) result.getResult();
+        assertEquals(3, results.length);
+        assertEquals(3, results[0].getResult());
+        assertTrue(results[1].getException() instanceof ConfidentialComputingException);
+        assertEquals(7, results[2].getResult());
+    }
+
+    /**
+     * Test service methods are resolved once and their dispatchers are reused.
+     */
+    @Test
+    public void testDispatcherCache() throws ClassNotFoundException {
+        Class<?> implementationClass = Class.forName(NUMERIC_MATH);
+        ServiceMethodDispatcherCache cache = ServiceMethodDispatcherCache.getInstance();
+        ServiceMethodDispatcher loaded = cache.lookup(implementationClass, "add(java.lang.Object,java.lang.Object)");
+        assertNotNull(loaded, "Service methods should be resolved at service loading.");
+
+        String signature = "add(" + String.join(",", MATH_ADD_PARAM_TYPES) + ")";
+        assertEquals(3, callNumericAdd(services[0], 1, 2).getResult());
+        ServiceMethodDispatcher dispatcher = cache.lookup(implementationClass, signature);
+        assertNotNull(dispatcher);
+        assertEquals(7, callNumericAdd(services[0], 3, 4).getResult());
+        assertTrue(dispatcher == cache.lookup(implementationClass, signature));
+    }
 
     private static EnclaveInvocationResult callGetCounter(ServiceHandler serviceHandler) {
         return callServiceImplMethod(serviceHandler,
@@ -18,16 +18,25 @@
 package org.apache.teaclave.javasdk.host;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
-import org.apache.teaclave.javasdk.common.SerializationHelper;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.common.annotations.EnclaveAsyncService;
+import org.apache.teaclave.javasdk.common.codec.Codec;
+import org.apache.teaclave.javasdk.common.codec.CodecRegistry;
+import org.apache.teaclave.javasdk.common.codec.TLVCodec;
 import org.apache.teaclave.javasdk.host.exception.*;
 
 /**
@@ -37,22 +46,58 @@ import org.apache.teaclave.javasdk.host.exception.*;
  * so enclave will implement these native calls in specific enclave platform.
  */
 abstract class AbstractEnclave implements Enclave {
+    private final static int DEFAULT_ITERATOR_PAGE_SIZE = 64;
+    // enclave threads left by default admission limit to stream operations, which admitted invocations
+    // may wait for, and to service loading and unloading.
+    final static int RESERVED_THREADS = 2;
     private final EnclaveContext enclaveContext;
+    // executor of asynchronous service invocations, it's created at the first asynchronous service loading.
+    private volatile EnclaveAsyncExecutor asyncExecutor;
+    // carrier threads making all enclave calls of service invocations, null if it's disabled.
+    private volatile EnclaveExecutor enclaveExecutor;
+    // bounds concurrent service invocations to enclave threads, null if it's disabled.
+    private volatile EnclaveAdmission admission;
+    // bounds unadmitted enclave calls to the reserved enclave threads, null if they aren't bounded.
+    private volatile Semaphore reservedLane;
+    // elements fetched at a time from an iterator or a stream returned by a service method.
+    private volatile int iteratorPageSize = DEFAULT_ITERATOR_PAGE_SIZE;
+    // providers loaded ahead of their first use, for example in a spare enclave.
+    private final Map<Class<?>, Iterator<?>> preloadedServices = new ConcurrentHashMap<>();
 
     AbstractEnclave(EnclaveType type,
                     EnclaveDebug mode,
                     BaseEnclaveServicesRecycler recycler) throws EnclaveCreatingException {
+        this(type, mode, recycler, CodecRegistry.getDefaultCodec());
+    }
+
+    AbstractEnclave(EnclaveType type,
+                    EnclaveDebug mode,
+                    BaseEnclaveServicesRecycler recycler,
+                    Codec codec) throws EnclaveCreatingException {
         if (type == EnclaveType.TEE_SDK && mode == EnclaveDebug.NONE) {
             throw new EnclaveCreatingException("TEE SDK enclave's debug mode must be RELEASE or DEBUG.");
         }
         if (type == EnclaveType.EMBEDDED_LIB_OS && mode == EnclaveDebug.NONE) {
             throw new EnclaveCreatingException("EMBEDDED_LIB_OS enclave's debug mode must be RELEASE or DEBUG.");
         }
-        enclaveContext = new EnclaveContext(type, mode, recycler);
+        enclaveContext = new EnclaveContext(type, mode, recycler, codec);
     }
 
     AbstractEnclave(EnclaveType type, BaseEnclaveServicesRecycler recycler) {
-        enclaveContext = new EnclaveContext(type, EnclaveDebug.NONE, recycler);
+        this(type, recycler, CodecRegistry.getDefaultCodec());
+    }
+
+    AbstractEnclave(EnclaveType type, BaseEnclaveServicesRecycler recycler, Codec codec) {
+        enclaveContext = new EnclaveContext(type, EnclaveDebug.NONE, recycler, codec);
+    }
+
+    // get the codec configured for host and enclave communication.
+    static Codec getConfiguredCodec() throws EnclaveCreatingException {
+        try {
+            return CodecRegistry.getCodec(EnclaveConfigure.getInstance().getEnclaveCodec());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new EnclaveCreatingException("enclave codec configuration is invalid.", e);
+        }
     }
 
     EnclaveContext getEnclaveContext() {
@@ -65,6 +110,11 @@ abstract class AbstractEnclave implements Enclave {
 
     abstract byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException;
 
+    // enclaves which could pass payloads by direct buffers override it to avoid copies.
+    EnclaveInvocationResult invokeMethodResult(EnclaveInvocationContext context) throws EnclaveMethodInvokingException, IOException, ClassNotFoundException {
+        return (EnclaveInvocationResult) CodecRegistry.decode(invokeMethodNative(context));
+    }
+
     abstract AttestationReport generateAttestationReportNative(byte[] userData) throws RemoteAttestationException;
 
     // load service by interface name in mock_jvm mode.
@@ -94,6 +144,8 @@ abstract class AbstractEnclave implements Enclave {
 
     // load service by interface name in mock_svm/tee_sdk/lib_os enclave mode.
     <T> Iterator<T> loadProxyService(Class<?> service) throws ServicesLoadingException {
+        // records of the service's signatures are decoded from now on.
+        TLVCodec.registerService(service);
         if (!getEnclaveContext().getEnclaveToken().tryAcquireToken()) {
             throw new ServicesLoadingException("enclave was destroyed.");
         }
@@ -107,7 +159,7 @@ abstract class AbstractEnclave implements Enclave {
             // Only need to provide service's interface name is enough to load service
             // in enclave.
             EnclaveInvocationResult resultWrapper;
-            resultWrapper = (EnclaveInvocationResult) SerializationHelper.deserialize(loadServiceNative(service.getName()));
+            resultWrapper = (EnclaveInvocationResult) CodecRegistry.decode(loadServiceNativeReserved(service.getName()));
             trace.setCostInnerEnclave(resultWrapper.getCost());
             Throwable exception = resultWrapper.getException();
             Object result = resultWrapper.getResult();
@@ -123,8 +175,15 @@ abstract class AbstractEnclave implements Enclave {
                 throw new ServicesLoadingException("service load return type is not ServiceHandler[].");
             }
 
+            String[] methodSignatures = null;
+            Map<Method, Integer> methodIds = null;
             for (ServiceHandler serviceHandler : (ServiceHandler[]) result) {
-                ProxyEnclaveInvocationHandler handler = new ProxyEnclaveInvocationHandler(this, serviceHandler);
+                // all implementations of a service share the same method ids.
+                if (methodIds == null || !Arrays.equals(methodSignatures, serviceHandler.getMethodSignatures())) {
+                    methodSignatures = serviceHandler.getMethodSignatures();
+                    methodIds = ProxyEnclaveInvocationHandler.buildMethodIds(service, methodSignatures);
+                }
+                ProxyEnclaveInvocationHandler handler = new ProxyEnclaveInvocationHandler(this, serviceHandler, methodIds);
                 T proxy = (T) Proxy.newProxyInstance(service.getClassLoader(), serviceInterface, handler);
                 serviceProxies.add(proxy);
                 // Register proxy handler for enclave's corresponding service gc recycling.
@@ -151,7 +210,7 @@ abstract class AbstractEnclave implements Enclave {
                 MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_SERVICE_UNLOADING_PATTERN,
                 service.getServiceImplClassName())) {
             EnclaveInvocationResult resultWrapper;
-            resultWrapper = (EnclaveInvocationResult) SerializationHelper.deserialize(unloadServiceNative(service));
+            resultWrapper = (EnclaveInvocationResult) CodecRegistry.decode(unloadServiceNativeReserved(service));
             trace.setCostInnerEnclave(resultWrapper.getCost());
             Throwable exception = resultWrapper.getException();
             if (exception != null) {
@@ -166,22 +225,117 @@ abstract class AbstractEnclave implements Enclave {
         }
     }
 
-    // it was called in service's proxy handler.
-    EnclaveInvocationResult InvokeEnclaveMethod(EnclaveInvocationContext input) throws EnclaveMethodInvokingException {
+    // service loading and unloading bypass admission gate, the recycler unloads services on its own thread
+    // and must neither be rejected nor wait behind invocations. they run on the reserved enclave threads.
+    private byte[] loadServiceNativeReserved(String service) throws ServicesLoadingException {
+        Semaphore lane = enterReservedLane();
+        try {
+            return loadServiceNative(service);
+        } finally {
+            leaveReservedLane(lane);
+        }
+    }
+
+    private byte[] unloadServiceNativeReserved(ServiceHandler service) throws ServicesUnloadingException {
+        Semaphore lane = enterReservedLane();
+        try {
+            return unloadServiceNative(service);
+        } finally {
+            leaveReservedLane(lane);
+        }
+    }
+
+    // an unadmitted enclave call holds a reserved enclave thread briefly, so it's waited for uninterruptibly.
+    private Semaphore enterReservedLane() {
+        Semaphore lane = reservedLane;
+        if (lane != null) {
+            lane.acquireUninterruptibly();
+        }
+        return lane;
+    }
+
+    private static void leaveReservedLane(Semaphore lane) {
+        if (lane != null) {
+            lane.release();
+        }
+    }
+
+    // it was called in service's proxy handler, waiting time for carrier and admission is recorded in trace.
+    // admission is taken on the carrier thread, so an admitted invocation never waits for a carrier
+    // held by invocations waiting for admission.
+    EnclaveInvocationResult InvokeEnclaveMethod(EnclaveInvocationContext input, MetricTraceContext trace) throws EnclaveMethodInvokingException {
+        EnclaveExecutor carriers = enclaveExecutor;
+        if (carriers == null) {
+            return invokeAdmitted(input, trace, 0x0);
+        }
+        long submitted = System.nanoTime();
+        try {
+            return carriers.call(() -> invokeAdmitted(input, trace, System.nanoTime() - submitted));
+        } catch (EnclaveMethodInvokingException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EnclaveMethodInvokingException(e);
+        }
+    }
+
+    private EnclaveInvocationResult invokeAdmitted(EnclaveInvocationContext input, MetricTraceContext trace, long waiting) throws EnclaveMethodInvokingException {
+        EnclaveAdmission gate = admission;
+        if (gate != null) {
+            waiting += gate.admit();
+        }
+        trace.setCostQueueWaiting(waiting);
+        try {
+            if (!getEnclaveContext().getEnclaveToken().tryAcquireToken()) {
+                throw new EnclaveMethodInvokingException("enclave was destroyed.");
+            }
+            try {
+                return invokeMethodResult(input);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new EnclaveMethodInvokingException("EnclaveInvokeResultWrapper deserialization failed.", e);
+            } finally {
+                getEnclaveContext().getEnclaveToken().restoreToken();
+            }
+        } finally {
+            if (gate != null) {
+                gate.release();
+            }
+        }
+    }
+
+    // stream operations of a service method invocation bypass admission gate and carrier threads since
+    // the invocation may be waiting for them, so does a cursor's release which shouldn't wait at all.
+    // they run on the enclave threads admission leaves free, and share the reserved ones only if a lane is set.
+    EnclaveInvocationResult InvokeEnclaveUnadmitted(EnclaveInvocationContext input) throws EnclaveMethodInvokingException {
         if (!getEnclaveContext().getEnclaveToken().tryAcquireToken()) {
             throw new EnclaveMethodInvokingException("enclave was destroyed.");
         }
+        Semaphore lane = enterReservedLane();
         try {
-            EnclaveInvocationResult resultWrapper;
-            resultWrapper = (EnclaveInvocationResult) SerializationHelper.deserialize(invokeMethodNative(input));
-            return resultWrapper;
+            return invokeMethodResult(input);
         } catch (IOException | ClassNotFoundException e) {
             throw new EnclaveMethodInvokingException("EnclaveInvokeResultWrapper deserialization failed.", e);
         } finally {
+            leaveReservedLane(lane);
             getEnclaveContext().getEnclaveToken().restoreToken();
         }
     }
 
+    // invoke a batch of service methods within one enclave transition, results are in invocations' order.
+    EnclaveInvocationResult[] InvokeEnclaveMethods(EnclaveInvocationContext[] inputs, MetricTraceContext trace) throws EnclaveMethodInvokingException {
+        EnclaveInvocationResult resultWrapper = InvokeEnclaveMethod(new EnclaveInvocationContext(inputs), trace);
+        if (resultWrapper.getException() != null) {
+            throw new EnclaveMethodInvokingException("batch invocation exception happened in enclave.", resultWrapper.getException());
+        }
+        if (!(resultWrapper.getResult() instanceof EnclaveInvocationResult[])) {
+            throw new EnclaveMethodInvokingException("batch invocation return type is not EnclaveInvocationResult[].");
+        }
+        EnclaveInvocationResult[] results = (EnclaveInvocationResult[]) resultWrapper.getResult();
+        if (results.length != inputs.length) {
+            throw new EnclaveMethodInvokingException("batch invocation results don't match its invocations.");
+        }
+        return results;
+    }
+
     AttestationReport generateAttestationReport(byte[] userData) throws RemoteAttestationException {
         if (!getEnclaveContext().getEnclaveToken().tryAcquireToken()) {
             throw new RemoteAttestationException("enclave was destroyed.");
@@ -194,11 +348,17 @@ abstract class AbstractEnclave implements Enclave {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> Iterator<T> load(Class<T> service) throws ServicesLoadingException {
         // Check service must be an interface class.
         if (!service.isInterface()) {
             throw new ServicesLoadingException("service type: " + service.getTypeName() + " is not an interface type.");
         }
+        // The first loading of a preloaded service takes its providers.
+        Iterator<?> preloaded = preloadedServices.remove(service);
+        if (preloaded != null) {
+            return (Iterator<T>) preloaded;
+        }
 
         Iterator<T> serviceProxies;
         switch (enclaveContext.getEnclaveType()) {
@@ -216,10 +376,104 @@ abstract class AbstractEnclave implements Enclave {
         return serviceProxies;
     }
 
+    // load a service ahead of its first use, the first load of it returns these providers.
+    void preloadService(Class<?> service) throws ServicesLoadingException {
+        preloadedServices.put(service, load(service));
+    }
+
+    @Override
+    public <T> Iterator<T> loadAsync(Class<T> asyncService) throws ServicesLoadingException {
+        if (!asyncService.isInterface()) {
+            throw new ServicesLoadingException("service type: " + asyncService.getTypeName() + " is not an interface type.");
+        }
+        EnclaveAsyncService annotation = asyncService.getAnnotation(EnclaveAsyncService.class);
+        if (annotation == null) {
+            throw new ServicesLoadingException("service type: " + asyncService.getTypeName() + " is not marked by EnclaveAsyncService.");
+        }
+        Class<?> service = annotation.value();
+        Map<Method, Method> methods = ProxyAsyncInvocationHandler.buildMethods(asyncService, service);
+        getAsyncExecutor();
+        List<T> asyncProxies = new ArrayList<>();
+        Class<?>[] serviceInterface = new Class[]{asyncService};
+        for (Iterator<?> it = load(service); it.hasNext(); ) {
+            ProxyAsyncInvocationHandler handler = new ProxyAsyncInvocationHandler(this, it.next(), methods);
+            asyncProxies.add((T) Proxy.newProxyInstance(asyncService.getClassLoader(), serviceInterface, handler));
+        }
+        return asyncProxies.iterator();
+    }
+
+    // route service invocations through carrier threads, it's called once the enclave was created.
+    void startEnclaveExecutor(int carriers) {
+        if (carriers > 0) {
+            enclaveExecutor = new EnclaveExecutor(carriers);
+        }
+    }
+
+    // bound concurrent service invocations, it's called once the enclave was created.
+    void startEnclaveAdmission(EnclaveAdmission.Mode mode, int limit, int maxQueueDepth, int timeoutMillis) {
+        if (mode != EnclaveAdmission.Mode.NONE && limit > 0) {
+            admission = new EnclaveAdmission(mode, limit, maxQueueDepth, timeoutMillis);
+        }
+    }
+
+    // bound unadmitted enclave calls to the enclave threads reserved for them, it's called once the enclave was created.
+    void startReservedLane(int threads) {
+        if (threads > 0) {
+            reservedLane = new Semaphore(threads);
+        }
+    }
+
+    // it's called once the enclave was created.
+    void setIteratorPageSize(int pageSize) {
+        iteratorPageSize = Math.max(1, pageSize);
+    }
+
+    int getIteratorPageSize() {
+        return iteratorPageSize;
+    }
+
+    // get the executor of asynchronous service invocations, it's sized to enclave's max thread number.
+    // asynchronous invocations run on carrier threads directly if they are enabled.
+    Executor getAsyncExecutor() {
+        EnclaveExecutor carriers = enclaveExecutor;
+        if (carriers != null) {
+            return carriers;
+        }
+        EnclaveAsyncExecutor executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    EnclaveInfo info = getEnclaveInfo();
+                    executor = new EnclaveAsyncExecutor(info == null ? 0x0 : info.getEnclaveMaxThreadsNumber());
+                    asyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    // it's called when enclave is destroying.
+    void shutdownAsyncExecutor() {
+        EnclaveAsyncExecutor executor = asyncExecutor;
+        if (executor != null) {
+            executor.shutdown();
+        }
+        EnclaveExecutor carriers = enclaveExecutor;
+        if (carriers != null) {
+            carriers.shutdown();
+        }
+    }
+
+    @Override
+    public EnclaveBatch batch() {
+        return new EnclaveBatch(this);
+    }
+
     /**
      * EnclaveContext cache an enclave's common information, such as
      * enclave type and debug mode, and each enclave instance has a service
-     * resource recycle processor.
+     * resource recycle processor and a codec for host and enclave communication.
      */
     static class EnclaveContext {
         // enclave's type.
@@ -230,14 +484,18 @@ abstract class AbstractEnclave implements Enclave {
         private final BaseEnclaveServicesRecycler enclaveServicesRecycler;
         // every enclave has an enclave token.
         private final EnclaveToken enclaveToken;
+        // codec encodes payloads sent into enclave, enclave replies with the same codec.
+        private final Codec codec;
 
         EnclaveContext(EnclaveType type,
                        EnclaveDebug mode,
-                       BaseEnclaveServicesRecycler recycler) {
+                       BaseEnclaveServicesRecycler recycler,
+                       Codec codec) {
             this.type = type;
             this.mode = mode;
             this.enclaveServicesRecycler = recycler;
             this.enclaveToken = new EnclaveToken();
+            this.codec = codec;
         }
 
         EnclaveType getEnclaveType() {
@@ -255,5 +513,9 @@ abstract class AbstractEnclave implements Enclave {
         EnclaveToken getEnclaveToken() {
             return enclaveToken;
         }
+
+        Codec getCodec() {
+            return codec;
+        }
     }
 }
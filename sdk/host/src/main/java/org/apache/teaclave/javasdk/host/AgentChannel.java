@@ -0,0 +1,179 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.SocketFrame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AgentChannel sends requests to embedded lib os enclave agent over a few persistent socket
+ * connections. Requests are framed by {@link SocketFrame} and tagged with a request id, so
+ * concurrent requests share connections and their responses are matched by id. A broken
+ * connection fails its pending requests and is reconnected by the next request.
+ */
+final class AgentChannel {
+    private final static String READER_THREAD_NAME = "lib_os_enclave_channel_reader_thread";
+
+    private final InetSocketAddress address;
+    private final int connectTimeout;
+    private final Link[] links;
+    private final AtomicLong requestIds = new AtomicLong(0x0);
+    private final AtomicInteger nextLink = new AtomicInteger(0x0);
+    private volatile boolean closed = false;
+
+    AgentChannel(InetSocketAddress address, int connections, int connectTimeout) {
+        this.address = address;
+        this.connectTimeout = connectTimeout;
+        this.links = new Link[Math.max(1, connections)];
+    }
+
+    /**
+     * send a request to enclave agent and wait for its response.
+     *
+     * @param payload request payload.
+     * @param timeout max time waiting for response in ms, 0 means no limit. it's sent
+     *                along with request, enclave agent drops the request once it expired.
+     * @return response payload.
+     * @throws IOException          connection failed or response timeout.
+     * @throws InterruptedException interrupted while waiting for response.
+     */
+    byte[] request(byte[] payload, int timeout) throws IOException, InterruptedException {
+        long requestId = requestIds.incrementAndGet();
+        Link link = link(Math.floorMod(nextLink.getAndIncrement(), links.length));
+        CompletableFuture<byte[]> response = link.send(new SocketFrame(requestId, timeout, payload));
+        try {
+            return timeout > 0x0 ? response.get(timeout, TimeUnit.MILLISECONDS) : response.get();
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("enclave agent response is timeout.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            link.pending.remove(requestId);
+        }
+    }
+
+    void close() {
+        synchronized (links) {
+            closed = true;
+            for (Link link : links) {
+                if (link != null) {
+                    link.broken(new IOException("enclave agent channel was closed."));
+                }
+            }
+        }
+    }
+
+    private Link link(int index) throws IOException {
+        synchronized (links) {
+            if (closed) {
+                throw new IOException("enclave agent channel was closed.");
+            }
+            if (links[index] == null || links[index].broken) {
+                SocketChannel channel = SocketChannel.open();
+                try {
+                    channel.socket().setTcpNoDelay(true);
+                    channel.socket().connect(address, connectTimeout);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+                links[index] = new Link(channel);
+            }
+            return links[index];
+        }
+    }
+
+    /**
+     * Link is one connection with its requests waiting for response.
+     */
+    private final static class Link {
+        private final SocketChannel channel;
+        private final Map<Long, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+        private final Object writeLock = new Object();
+        private volatile boolean broken = false;
+
+        Link(SocketChannel channel) {
+            this.channel = channel;
+            Thread reader = new Thread(this::receive, READER_THREAD_NAME);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        CompletableFuture<byte[]> send(SocketFrame frame) throws IOException {
+            CompletableFuture<byte[]> response = new CompletableFuture<>();
+            pending.put(frame.getRequestId(), response);
+            // a request registered after link broke is never answered.
+            if (broken) {
+                pending.remove(frame.getRequestId());
+                throw new IOException("enclave agent connection was broken.");
+            }
+            try {
+                synchronized (writeLock) {
+                    frame.write(channel);
+                }
+            } catch (IOException e) {
+                broken(e);
+                throw e;
+            }
+            return response;
+        }
+
+        private void receive() {
+            IOException cause = new IOException("enclave agent connection was closed.");
+            try {
+                SocketFrame frame;
+                while ((frame = SocketFrame.read(channel)) != null) {
+                    CompletableFuture<byte[]> response = pending.remove(frame.getRequestId());
+                    // the request may had given up waiting.
+                    if (response != null) {
+                        response.complete(frame.getPayload());
+                    }
+                }
+            } catch (IOException e) {
+                cause = e;
+            }
+            broken(cause);
+        }
+
+        private void broken(IOException cause) {
+            broken = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            pending.values().forEach(response -> response.completeExceptionally(cause));
+            pending.clear();
+        }
+    }
+}
@@ -32,6 +32,11 @@ class BaseEnclaveServicesRecycler {
     void registerProxyHandler(Object obj, InvocationHandler handler) {
     }
 
+    // register an enclave cursor's host side iterator, the returned action releases the cursor.
+    Runnable registerCursor(Object iterator, Runnable release) {
+        return release;
+    }
+
     void interruptServiceRecycler() {
     }
 }
@@ -18,12 +18,11 @@
 package org.apache.teaclave.javasdk.host;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.*;
 import java.util.concurrent.*;
 
 import org.apache.teaclave.javasdk.common.*;
+import org.apache.teaclave.javasdk.common.codec.CodecRegistry;
 import org.apache.teaclave.javasdk.host.exception.*;
 
 /**
@@ -33,8 +32,6 @@ import org.apache.teaclave.javasdk.host.exception.*;
  */
 final class EmbeddedLibOSEnclave extends AbstractEnclave {
     private static final String EMBEDDED_LIB_OS_ENCLAVE_STARTUP_THREAD_NAME = "lib_os_enclave_agent_thread";
-    private static final String HTTP_SERVER_PREFIX = "http://localhost:";
-    private static final String HTTP_SERVER_NAME = "/enclaveAgent";
     private final static String JNI_EXTRACTED_PACKAGE_PATH = "jni/lib_jni_embedded_lib_os_enclave.so";
     private final static String EMBEDDED_LIB_OS_ENCLAVE_SIGNED_PACKAGE_PATH = "lib_embedded_lib_os_enclave_load.tgz";
     private final static String EMBEDDED_LIB_OS_ENCLAVE_SIGNED_PACKAGE_PATH_TAIL = "occlum_instance";
@@ -45,7 +42,7 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
     private long enclaveHandle;
     private final int portHost;
     private final int portEnclave;
-    private final URL url;
+    private final AgentChannel channel;
     private final SGXEnclaveInfo enclaveInfo;
 
     static EmbeddedLibOSEnclave getEmbeddedLibOSEnclaveInstance(EnclaveDebug mode) throws EnclaveCreatingException {
@@ -83,15 +80,27 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
 
     private EmbeddedLibOSEnclave(EnclaveDebug mode, EnclaveSimulate sim) throws EnclaveCreatingException {
         // Set EnclaveContext for this enclave instance.
-        super(EnclaveType.EMBEDDED_LIB_OS, mode, new EnclaveServicesRecycler());
+        super(EnclaveType.EMBEDDED_LIB_OS, mode, new EnclaveServicesRecycler(), getConfiguredCodec());
         extractNativeResource();
         try {
             portHost = getFreePort();
             portEnclave = getFreePort();
-            String httpURL = HTTP_SERVER_PREFIX + portEnclave + HTTP_SERVER_NAME;
-            url = new URL(httpURL);
+            channel = new AgentChannel(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), portEnclave),
+                    EmbeddedLibOSEnclaveConfigure.getInstance().getAgentChannelConnections(),
+                    EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpConnectTimeout());
             // Attach to target enclave service by rmi.
             attachToEnclaveAgent(mode, sim);
+            // Bound concurrent invocations to agent workers, a few of them are left to stream operations
+            // which admitted invocations may wait for, the stream operations beyond wait in agent's queue.
+            EmbeddedLibOSEnclaveConfigure configure = EmbeddedLibOSEnclaveConfigure.getInstance();
+            int admissionLimit = configure.getAdmissionLimit();
+            if (admissionLimit == 0) {
+                admissionLimit = Math.max(1, configure.getEnclaveAgentThreadPoolSize() - RESERVED_THREADS);
+            }
+            startEnclaveAdmission(configure.getAdmissionMode(), admissionLimit,
+                    configure.getAdmissionQueueDepth(), configure.getAdmissionTimeoutMillis());
+            setIteratorPageSize(configure.getIteratorPageSize());
             // Create enclaveInfo.
             enclaveInfo = new SGXEnclaveInfo(
                     EnclaveType.EMBEDDED_LIB_OS,
@@ -155,27 +164,8 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
 
     private native int nativeDestroyEnclave(long enclaveHandler) throws EnclaveDestroyingException;
 
-    private byte[] remoteRequest(byte[] request, int connectTimeout, int inTimeout) throws IOException, InterruptedException {
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Connection", "Keep-Alive");
-        conn.setRequestProperty(
-                "Keep-Alive",
-                "timeout=" + EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpKeepAliveTimeout() + ", max=" + EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpKeepAliveMax());
-        conn.setDoOutput(true);
-        conn.setDoInput(true);
-        conn.setConnectTimeout(connectTimeout);
-        conn.setReadTimeout(inTimeout);
-        conn.connect();
-
-        try (OutputStream outputStream = conn.getOutputStream()) {
-            outputStream.write(request);
-            outputStream.flush();
-        }
-
-        try (InputStream inputStream = conn.getInputStream()) {
-            return inputStream.readAllBytes();
-        }
+    private byte[] remoteRequest(byte[] request, int inTimeout) throws IOException, InterruptedException {
+        return channel.request(request, inTimeout);
     }
 
     @Override
@@ -183,8 +173,7 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
         try {
             SocketEnclaveInvocationContext context =
                     new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.SERVICE_LOADING, new ServiceHandler(service));
-            return remoteRequest(SerializationHelper.serialize(context),
-                    EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpConnectTimeout(),
+            return remoteRequest(getEnclaveContext().getCodec().encode(context),
                     EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpReadTimeout());
         } catch (InterruptedException | IOException e) {
             throw new ServicesLoadingException(e);
@@ -196,8 +185,7 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
         try {
             SocketEnclaveInvocationContext context =
                     new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.SERVICE_UNLOADING, handler);
-            return remoteRequest(SerializationHelper.serialize(context),
-                    EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpConnectTimeout(),
+            return remoteRequest(getEnclaveContext().getCodec().encode(context),
                     EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpReadTimeout());
         } catch (InterruptedException | IOException e) {
             throw new ServicesUnloadingException(e);
@@ -209,9 +197,8 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
         try {
             SocketEnclaveInvocationContext context =
                     new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.METHOD_INVOCATION, service);
-            // Should not set http timeout parameter in method invoke, the duration is deeply depends on user service.
-            return remoteRequest(SerializationHelper.serialize(context),
-                    EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpConnectTimeout(), 0x0);
+            // Should not set timeout parameter in method invoke, the duration is deeply depends on user service.
+            return remoteRequest(getEnclaveContext().getCodec().encode(context), 0x0);
         } catch (InterruptedException | IOException e) {
             throw new EnclaveMethodInvokingException(e);
         }
@@ -222,9 +209,8 @@ final class EmbeddedLibOSEnclave extends AbstractEnclave {
         try {
             SocketEnclaveInvocationContext context =
                     new SocketEnclaveInvocationContext(SocketEnclaveInvocationContext.REMOTE_ATTESTATION_GENERATE, userData);
-            EnclaveInvocationResult resultWrapper = (EnclaveInvocationResult) SerializationHelper.deserialize(
-                    remoteRequest(SerializationHelper.serialize(context),
-                            EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpConnectTimeout(),
+            EnclaveInvocationResult resultWrapper = (EnclaveInvocationResult) CodecRegistry.decode(
+                    remoteRequest(getEnclaveContext().getCodec().encode(context),
                             EmbeddedLibOSEnclaveConfigure.getInstance().getAgentHttpRATimeout()));
             if (resultWrapper.getException() != null) {
                 throw resultWrapper.getException();
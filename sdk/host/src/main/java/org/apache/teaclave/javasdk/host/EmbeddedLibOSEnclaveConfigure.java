@@ -23,11 +23,16 @@ import java.util.concurrent.TimeUnit;
 
 final class EmbeddedLibOSEnclaveConfigure {
     private final static String AGENT_HTTP_THREAD_POOL_SIZE_PROPERTY = "org.apache.teaclave.javasdk.enclave.agent.thread.pool.size";
+    private final static String AGENT_QUEUE_SIZE_PROPERTY = "org.apache.teaclave.javasdk.enclave.agent.queue.size";
+    // agent admits workers plus queued requests by one semaphore, so the queue is bounded well below int range.
+    private final static int MAX_AGENT_QUEUE_SIZE = 1 << 16;
+    private final static String AGENT_VIRTUAL_THREADS_PROPERTY = "org.apache.teaclave.javasdk.enclave.agent.virtual.threads";
+    // threads kept for enclave jvm itself and agent's connections, when agent's workers are sized from enclave_max_thread.
+    private final static int AGENT_RESERVED_THREADS = 20;
     private final static String ENCLAVE_STARTUP_TIMEOUT_MS_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.startup.timeout_ms";
     private final static String ENCLAVE_DEBUG_LOG_LEVEL_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.log.level";
     private final static String ENCLAVE_JVM_ARGS_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.jvm.args";
-    private final static String AGENT_HTTP_KEEP_ALIVE_TIMEOUT_S_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.keepalive.timeout_s";
-    private final static String AGENT_HTTP_KEEP_ALIVE_POOL_SIZE_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.keepalive.max";
+    private final static String AGENT_CHANNEL_CONNECTIONS_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.channel.connections";
     private final static String AGENT_HTTP_CONNECT_TIMEOUT_MS_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.connect.timeout_ms";
     private final static String AGENT_HTTP_READ_TIMEOUT_MS_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.read.timeout_ms";
     private final static String AGENT_HTTP_READ_REMOTE_ATTESTATION_TIMEOUT_PROPERTY = "org.apache.teaclave.javasdk.enclave.embedded.ra.timeout_ms";
@@ -35,15 +40,16 @@ final class EmbeddedLibOSEnclaveConfigure {
     private static EnclaveConfigure enclaveConfigure;
     private static EmbeddedLibOSEnclaveConfigure instance;
 
-    private int threadPoolSize = 5;
+    private int threadPoolSize;
+    private int queueSize = 256;
+    private boolean virtualThreads = false;
     private int startupTimeout = (int) TimeUnit.MINUTES.toMillis(1); // ms.
     private String logLevel = "off";
     private String[] enclaveJVMArgs = new String[]{"-Dsun.net.httpserver.nodelay=true", "-XX:-UseCompressedOops", "-Xmx800m", "-Dos.name=Linux"};
     private int agentHttpConnectTimeout = 1000; // ms.
     private int agentHttpReadTimeout = 2000;    // ms.
     private int agentHttpRATimeout = 10_000;    // ms.
-    private int agentHttpKeepAliveTimeout = 60 * 5; // s.
-    private int agentHttpKeepAliveMax = 100;
+    private int agentChannelConnections = 4;
 
     private EmbeddedLibOSEnclaveConfigure() throws IOException {
         enclaveConfigure = EnclaveConfigure.getInstance();
@@ -60,18 +66,31 @@ final class EmbeddedLibOSEnclaveConfigure {
 
     private void parseProperty() {
         parseThreadPoolSize(System.getProperty(AGENT_HTTP_THREAD_POOL_SIZE_PROPERTY));
+        parseQueueSize(System.getProperty(AGENT_QUEUE_SIZE_PROPERTY));
+        parseVirtualThreads(System.getProperty(AGENT_VIRTUAL_THREADS_PROPERTY));
         parseStartupTimeout(System.getProperty(ENCLAVE_STARTUP_TIMEOUT_MS_PROPERTY));
         parseLogLevel(System.getProperty(ENCLAVE_DEBUG_LOG_LEVEL_PROPERTY));
         parseEnclaveJVMArgs(System.getProperty(ENCLAVE_JVM_ARGS_PROPERTY));
         parseHttpConnectTimeout(System.getProperty(AGENT_HTTP_CONNECT_TIMEOUT_MS_PROPERTY));
         parseHttpReadTimeout(System.getProperty(AGENT_HTTP_READ_TIMEOUT_MS_PROPERTY));
         parseHttpRATimeout(System.getProperty(AGENT_HTTP_READ_REMOTE_ATTESTATION_TIMEOUT_PROPERTY));
-        parseHttpKeepAliveTimeout(System.getProperty(AGENT_HTTP_KEEP_ALIVE_TIMEOUT_S_PROPERTY));
-        parseHttpKeepAliveMax(System.getProperty(AGENT_HTTP_KEEP_ALIVE_POOL_SIZE_PROPERTY));
+        parseChannelConnections(System.getProperty(AGENT_CHANNEL_CONNECTIONS_PROPERTY));
     }
 
     private void parseThreadPoolSize(String size) {
         if (size != null) this.threadPoolSize = Integer.parseInt(size);
+        else this.threadPoolSize = Math.max(1, enclaveConfigure.getMaxEnclaveThreadNum() - AGENT_RESERVED_THREADS);
+    }
+
+    private void parseQueueSize(String size) {
+        this.queueSize = EnclaveConfigure.parseNonNegativeInt(size, this.queueSize);
+        if (this.queueSize > MAX_AGENT_QUEUE_SIZE) {
+            throw new IllegalArgumentException("agent queue size " + size + " exceeds " + MAX_AGENT_QUEUE_SIZE + ".");
+        }
+    }
+
+    private void parseVirtualThreads(String enable) {
+        if (enable != null) this.virtualThreads = Boolean.parseBoolean(enable);
     }
 
     private void parseStartupTimeout(String timeout) {
@@ -98,12 +117,8 @@ final class EmbeddedLibOSEnclaveConfigure {
         if (args != null) this.agentHttpRATimeout = Integer.parseInt(args);
     }
 
-    private void parseHttpKeepAliveTimeout(String args) {
-        if (args != null) this.agentHttpKeepAliveTimeout = Integer.parseInt(args);
-    }
-
-    private void parseHttpKeepAliveMax(String args) {
-        if (args != null) this.agentHttpKeepAliveMax = Integer.parseInt(args);
+    private void parseChannelConnections(String args) {
+        if (args != null) this.agentChannelConnections = Integer.parseInt(args);
     }
 
     boolean isEnclaveDebuggable() {
@@ -122,6 +137,14 @@ final class EmbeddedLibOSEnclaveConfigure {
         return threadPoolSize;
     }
 
+    int getEnclaveAgentQueueSize() {
+        return queueSize;
+    }
+
+    boolean isEnclaveAgentVirtualThreads() {
+        return virtualThreads;
+    }
+
     int getEnclaveStartupTimeout() {
         return startupTimeout;
     }
@@ -138,12 +161,28 @@ final class EmbeddedLibOSEnclaveConfigure {
         return agentHttpRATimeout;
     }
 
-    int getAgentHttpKeepAliveTimeout() {
-        return agentHttpKeepAliveTimeout;
+    int getAgentChannelConnections() {
+        return agentChannelConnections;
+    }
+
+    EnclaveAdmission.Mode getAdmissionMode() {
+        return enclaveConfigure.getAdmissionMode();
+    }
+
+    int getAdmissionLimit() {
+        return enclaveConfigure.getAdmissionLimit();
+    }
+
+    int getAdmissionQueueDepth() {
+        return enclaveConfigure.getAdmissionQueueDepth();
+    }
+
+    int getAdmissionTimeoutMillis() {
+        return enclaveConfigure.getAdmissionTimeoutMillis();
     }
 
-    int getAgentHttpKeepAliveMax() {
-        return agentHttpKeepAliveMax;
+    int getIteratorPageSize() {
+        return enclaveConfigure.getIteratorPageSize();
     }
 
     long getMaxEnclaveEPCMemorySizeBytes() {
@@ -91,6 +91,39 @@ public interface Enclave {
      */
     <T> Iterator<T> load(Class<T> service) throws ServicesLoadingException;
 
+    /**
+     * Returns asynchronous proxies of all providers which implement a service interface. The
+     * asyncService interface is marked by {@link org.apache.teaclave.javasdk.common.annotations.EnclaveAsyncService},
+     * its methods return CompletableFuture instead of blocking on enclave calls. The calls are made by
+     * a thread pool sized to the enclave's max thread number, calls beyond it wait in queue.
+     * <p>
+     *
+     * @param <T>          Asynchronous service interface type
+     * @param asyncService Must be an asynchronous service interface
+     * @return An iterator of asynchronous providers were discovered.
+     * @throws ServicesLoadingException {@link ServicesLoadingException} If asyncService doesn't match its
+     *                                  service interface or service handlers loaded failed in enclave.
+     */
+    <T> Iterator<T> loadAsync(Class<T> asyncService) throws ServicesLoadingException;
+
+    /**
+     * Returns a new batch of service method invocations. Service methods called on the batch's
+     * recorders are not invoked at once, they are invoked in order within one enclave transition
+     * when the batch is executed.
+     * <p>
+     *
+     * <pre>
+     *    EnclaveBatch batch = enclave.batch();
+     *    Service recorder = batch.record(provider);
+     *    recorder.invoke(1);
+     *    recorder.invoke(2);
+     *    List&lt;EnclaveBatch.Result&gt; results = batch.execute();
+     * </pre>
+     *
+     * @return EnclaveBatch an empty batch of this enclave.
+     */
+    EnclaveBatch batch();
+
     /**
      * Returns enclave's enclave info. Such as enclave's type, is it debuggable and so on.
      * <p>
@@ -0,0 +1,107 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveBusyException;
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EnclaveAdmission bounds an enclave's concurrent service invocations to the enclave threads
+ * it has, so that an invocation waits on host side rather than fails with out of TCS in enclave.
+ * Waiting invocations are admitted in arrival order.
+ */
+final class EnclaveAdmission {
+    /**
+     * Mode defines what an invocation does when all enclave threads are busy.
+     */
+    enum Mode {
+        // no admission control.
+        NONE,
+        // wait in queue until admitted, the queue depth and waiting time could be bounded.
+        BLOCK,
+        // reject the invocation at once.
+        FAIL_FAST
+    }
+
+    private final Semaphore permits;
+    private final Mode mode;
+    // 0 means an unbounded queue.
+    private final int maxQueueDepth;
+    // 0 means waiting until admitted.
+    private final long timeoutNanos;
+    private final AtomicInteger queueDepth = new AtomicInteger(0x0);
+
+    EnclaveAdmission(Mode mode, int limit, int maxQueueDepth, long timeoutMillis) {
+        this.permits = new Semaphore(limit, true);
+        this.mode = mode;
+        this.maxQueueDepth = maxQueueDepth;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * admit waits for an enclave thread to be free, and returns the waiting time in nanoseconds.
+     * An admitted invocation must call release once it leaves the enclave.
+     */
+    long admit() throws EnclaveMethodInvokingException {
+        try {
+            // a zero timeout tryAcquire honors the fairness, tryAcquire() barges waiting invocations.
+            if (permits.tryAcquire(0x0, TimeUnit.NANOSECONDS)) {
+                return 0x0;
+            }
+            if (mode == Mode.FAIL_FAST) {
+                throw new EnclaveBusyException("all enclave threads are busy.");
+            }
+            return await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EnclaveMethodInvokingException("interrupted while waiting for enclave admission.", e);
+        }
+    }
+
+    private long await() throws EnclaveBusyException, InterruptedException {
+        if (queueDepth.incrementAndGet() > maxQueueDepth && maxQueueDepth > 0) {
+            queueDepth.decrementAndGet();
+            throw new EnclaveBusyException("enclave admission queue is full.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (timeoutNanos == 0x0) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new EnclaveBusyException("waiting for enclave admission timed out.");
+            }
+            return System.nanoTime() - start;
+        } finally {
+            queueDepth.decrementAndGet();
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    // invocations waiting for admission.
+    int getQueueDepth() {
+        return queueDepth.get();
+    }
+}
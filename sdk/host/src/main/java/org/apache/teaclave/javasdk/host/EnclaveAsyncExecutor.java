@@ -0,0 +1,63 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EnclaveAsyncExecutor runs an enclave's asynchronous service invocations. It's bounded by
+ * the enclave's max thread number (TCS number), so asynchronous invocations beyond it wait
+ * in queue instead of oversubscribing enclave's TCS slots. Callers never block on it, so
+ * they could be virtual threads, while enclave calls are made by its platform threads.
+ */
+final class EnclaveAsyncExecutor implements Executor {
+    private final static String ENCLAVE_ASYNC_THREAD_NAME_PREFIX = "enclave-async-";
+    private final static AtomicInteger executorCounter = new AtomicInteger(0x0);
+
+    private final ThreadPoolExecutor executor;
+
+    EnclaveAsyncExecutor(int maxThreads) {
+        int threads = maxThreads > 0 ? maxThreads : Runtime.getRuntime().availableProcessors();
+        String namePrefix = ENCLAVE_ASYNC_THREAD_NAME_PREFIX + executorCounter.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger(0x0);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r);
+            thread.setName(namePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // idle threads exit, so an enclave without asynchronous invocations holds no thread.
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) throws RejectedExecutionException {
+        executor.execute(command);
+    }
+
+    // stop accepting invocations, queued ones are not waited for, they fail with enclave was destroyed once they run.
+    void shutdown() {
+        executor.shutdown();
+    }
+}
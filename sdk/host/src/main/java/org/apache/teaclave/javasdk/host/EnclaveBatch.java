@@ -0,0 +1,224 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+import org.apache.teaclave.javasdk.host.exception.MetricTraceLogWriteException;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EnclaveBatch records service method invocations on one or more service proxies loaded
+ * from the same enclave, and invokes all of them in order within one enclave transition.
+ * It saves an enclave transition and a serialization round-trip for every invocation but
+ * the first one, so it's preferred to calling service methods in a loop. Methods with stream
+ * parameters or return type can't be batched, since streams are transferred by enclave
+ * transitions of their own, while a returned iterator or stream of elements is fetched lazily
+ * as it is when the method is called directly.
+ * <p>
+ * An EnclaveBatch is not thread safe, and it could be executed only once.
+ */
+public final class EnclaveBatch {
+    private final AbstractEnclave enclave;
+    private final List<Invocation> invocations = new ArrayList<>();
+    private boolean executed;
+
+    EnclaveBatch(AbstractEnclave enclave) {
+        this.enclave = enclave;
+    }
+
+    /**
+     * Returns a recorder of a service proxy loaded from this batch's enclave. A service method called on
+     * the recorder is recorded into this batch and returns the method's default return value, such as
+     * null, 0 or false. The real return value is available after the batch is executed.
+     *
+     * @param <T>     Service interface type
+     * @param service a service proxy loaded from this batch's enclave.
+     * @return the service's recorder.
+     * @throws IllegalArgumentException if service is not a proxy loaded from this batch's enclave, and
+     *                                  the recorder throws it if a method with stream parameters or return type is called.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T record(T service) {
+        if (service == null || !Proxy.isProxyClass(service.getClass())) {
+            throw new IllegalArgumentException("service is not an enclave service proxy.");
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(service);
+        AbstractEnclave serviceEnclave = null;
+        if (handler instanceof ProxyEnclaveInvocationHandler) {
+            serviceEnclave = ((ProxyEnclaveInvocationHandler) handler).getEnclave();
+        } else if (handler instanceof ProxyMockJvmInvocationHandler) {
+            serviceEnclave = ((ProxyMockJvmInvocationHandler<?>) handler).getEnclave();
+        }
+        if (serviceEnclave != enclave) {
+            throw new IllegalArgumentException("service proxy was not loaded from this batch's enclave.");
+        }
+        return (T) Proxy.newProxyInstance(service.getClass().getClassLoader(), service.getClass().getInterfaces(),
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(service, args);
+                    }
+                    if (executed) {
+                        throw new IllegalStateException("enclave batch was executed.");
+                    }
+                    if (EnclaveStreams.isStreamMethod(method)) {
+                        throw new IllegalArgumentException("method with stream parameters or return type can't be batched: " + method.getName());
+                    }
+                    invocations.add(new Invocation(service, handler, method, args));
+                    Class<?> returnType = method.getReturnType();
+                    return returnType.isPrimitive() && returnType != void.class ? Array.get(Array.newInstance(returnType, 1), 0) : null;
+                });
+    }
+
+    /**
+     * get the number of recorded invocations.
+     *
+     * @return number of recorded invocations.
+     */
+    public int size() {
+        return invocations.size();
+    }
+
+    /**
+     * Invoke all recorded service methods in order within one enclave transition.
+     *
+     * @return every invocation's result in the recorded order.
+     * @throws EnclaveMethodInvokingException if the batch could not be invoked in enclave, an exception
+     *                                        thrown by a single service method is kept in its result.
+     */
+    public List<Result> execute() throws EnclaveMethodInvokingException {
+        if (executed) {
+            throw new IllegalStateException("enclave batch was executed.");
+        }
+        executed = true;
+        if (invocations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (enclave.getEnclaveContext().getEnclaveType() == EnclaveType.MOCK_IN_JVM) {
+            return executeMockJvm();
+        }
+        List<Result> results = new ArrayList<>(invocations.size());
+        EnclaveInvocationContext[] contexts = new EnclaveInvocationContext[invocations.size()];
+        for (int index = 0x0; index < contexts.length; index++) {
+            Invocation invocation = invocations.get(index);
+            contexts[index] = ((ProxyEnclaveInvocationHandler) invocation.handler).buildInvocationContext(invocation.method, invocation.args);
+        }
+        try (MetricTraceContext trace = new MetricTraceContext(
+                enclave.getEnclaveInfo(),
+                MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_SERVICE_BATCH_INVOKING_PATTERN,
+                String.valueOf(contexts.length))) {
+            EnclaveInvocationResult[] invocationResults = enclave.InvokeEnclaveMethods(contexts, trace);
+            long cost = 0x0;
+            for (int index = 0x0; index < invocationResults.length; index++) {
+                EnclaveInvocationResult invocationResult = invocationResults[index];
+                cost += invocationResult.getCost();
+                Throwable exception = invocationResult.getException();
+                Method method = invocations.get(index).method;
+                Throwable rootCause = ProxyEnclaveInvocationHandler.declaredCause(method, exception);
+                // an iterator or stream of elements returned is fetched from enclave on demand.
+                Object value = EnclaveCursorIterator.result(enclave, method.getName(), invocationResult.getResult());
+                results.add(new Result(value, rootCause != null ? rootCause : exception));
+            }
+            trace.setCostInnerEnclave(cost);
+        } catch (MetricTraceLogWriteException e) {
+            throw new EnclaveMethodInvokingException(e);
+        }
+        return results;
+    }
+
+    // MOCK_IN_JVM enclave calls services directly, so there is no enclave transition to save.
+    private List<Result> executeMockJvm() {
+        List<Result> results = new ArrayList<>(invocations.size());
+        for (Invocation invocation : invocations) {
+            try {
+                results.add(new Result(invocation.method.invoke(invocation.service, invocation.args), null));
+            } catch (InvocationTargetException e) {
+                results.add(new Result(null, e.getCause()));
+            } catch (IllegalAccessException e) {
+                results.add(new Result(null, e));
+            }
+        }
+        return results;
+    }
+
+    private static final class Invocation {
+        private final Object service;
+        private final InvocationHandler handler;
+        private final Method method;
+        private final Object[] args;
+
+        Invocation(Object service, InvocationHandler handler, Method method, Object[] args) {
+            this.service = service;
+            this.handler = handler;
+            this.method = method;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Result is a recorded invocation's return value or the exception thrown by it.
+     * The exception is the service method's declared exception if it matches one of
+     * the method's exception declaration.
+     */
+    public static final class Result {
+        private final Object value;
+        private final Throwable exception;
+
+        Result(Object value, Throwable exception) {
+            this.value = value;
+            this.exception = exception;
+        }
+
+        /**
+         * get method's return value.
+         *
+         * @return method's return value, null if an exception happened.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * get exception during method's invocation.
+         *
+         * @return exception during method's invocation if it has.
+         */
+        public Throwable getException() {
+            return exception;
+        }
+
+        /**
+         * check whether the invocation completed without exception.
+         *
+         * @return true if no exception happened.
+         */
+        public boolean isSuccess() {
+            return exception == null;
+        }
+    }
+}
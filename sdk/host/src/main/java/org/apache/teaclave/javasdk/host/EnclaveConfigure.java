@@ -17,6 +17,7 @@
 
 package org.apache.teaclave.javasdk.host;
 
+import org.apache.teaclave.javasdk.common.codec.TLVCodec;
 import org.json.JSONObject;
 
 import java.io.File;
@@ -25,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 final class EnclaveConfigure {
     private final static double RATIO = 0.8;
@@ -36,6 +38,33 @@ final class EnclaveConfigure {
     private final static String ENCLAVE_DEBUG_PROPERTY = "org.apache.teaclave.javasdk.enclave.debuggable";
     private final static String METRIC_TRACE_LOG_FILE_PATH_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.log";
     private final static String METRIC_TRACE_ENABLE_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.enable";
+    // ring of records waiting for metric log writer, and rotation of metric log file.
+    private final static String METRIC_TRACE_BUFFER_SIZE_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.log.buffer_size";
+    private final static String METRIC_TRACE_ROTATE_SIZE_MB_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.log.rotate_size_MB";
+    private final static String METRIC_TRACE_ROTATE_INTERVAL_SECONDS_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.log.rotate_interval_s";
+    // in-memory latency histograms of service methods and the period exporting them.
+    private final static String METRIC_HISTOGRAM_ENABLE_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.histogram";
+    private final static String METRIC_EXPORT_PERIOD_MILLIS_PROPERTY = "org.apache.teaclave.javasdk.enclave.metric.export.period_ms";
+    // java/tlv
+    private final static String ENCLAVE_CODEC_PROPERTY = "org.apache.teaclave.javasdk.enclave.codec";
+    // switchless invocation, 0 workers disables it.
+    private final static String SWITCHLESS_WORKER_NUMBER_PROPERTY = "org.apache.teaclave.javasdk.enclave.switchless.workers";
+    private final static String SWITCHLESS_SPIN_COUNT_PROPERTY = "org.apache.teaclave.javasdk.enclave.switchless.spin";
+    private final static String SWITCHLESS_PARK_MICROS_PROPERTY = "org.apache.teaclave.javasdk.enclave.switchless.park_us";
+    // cached IsolateThreads in TEE_SDK enclave, 0 means enclave max thread number.
+    private final static String THREAD_CACHE_CAPACITY_PROPERTY = "org.apache.teaclave.javasdk.enclave.thread_cache.capacity";
+    // carrier threads making all service invocations' enclave calls, 0 disables it.
+    private final static String CARRIER_THREAD_NUMBER_PROPERTY = "org.apache.teaclave.javasdk.enclave.carrier.threads";
+    // NONE/BLOCK/FAIL_FAST admission of concurrent service invocations.
+    private final static String ADMISSION_MODE_PROPERTY = "org.apache.teaclave.javasdk.enclave.admission.mode";
+    private final static String ADMISSION_LIMIT_PROPERTY = "org.apache.teaclave.javasdk.enclave.admission.limit";
+    private final static String ADMISSION_QUEUE_DEPTH_PROPERTY = "org.apache.teaclave.javasdk.enclave.admission.queue_depth";
+    private final static String ADMISSION_TIMEOUT_MILLIS_PROPERTY = "org.apache.teaclave.javasdk.enclave.admission.timeout_ms";
+    // enclaves created in advance for TEE_SDK and MOCK_IN_SVM, 0 disables it.
+    private final static String SPARE_ENCLAVE_NUMBER_PROPERTY = "org.apache.teaclave.javasdk.enclave.spare.num";
+    // comma separated service interfaces loaded in spare enclaves.
+    private final static String SPARE_SERVICES_PROPERTY = "org.apache.teaclave.javasdk.enclave.spare.services";
+    private final static String ITERATOR_PAGE_SIZE_PROPERTY = "org.apache.teaclave.javasdk.enclave.iterator.page_size";
 
     private final static String JAVA_ENCLAVE_CONFIG_FILE_TEMPLATE = "/opt/javaenclave/config/template/java_enclave_configure.json";
     private final static String JAVA_ENCLAVE_CONFIG_FILE = "java_enclave_configure.json";
@@ -43,8 +72,25 @@ final class EnclaveConfigure {
     private final static String ENCLAVE_TYPE_CONFIG_FILE_KEY = "enclave_type";
     private final static String METRIC_TRACE_LOG_FILE_PATH_CONFIG_FILE_KEY = "metric_trace_file_path";
     private final static String METRIC_TRACE_ENABLE_CONFIG_FILE_KEY = "metric_trace_enable";
+    private final static String METRIC_TRACE_BUFFER_SIZE_CONFIG_FILE_KEY = "metric_trace_buffer_size";
+    private final static String METRIC_TRACE_ROTATE_SIZE_MB_CONFIG_FILE_KEY = "metric_trace_rotate_size_MB";
+    private final static String METRIC_TRACE_ROTATE_INTERVAL_SECONDS_CONFIG_FILE_KEY = "metric_trace_rotate_interval_s";
+    private final static String METRIC_HISTOGRAM_ENABLE_CONFIG_FILE_KEY = "metric_histogram_enable";
+    private final static String METRIC_EXPORT_PERIOD_MILLIS_CONFIG_FILE_KEY = "metric_export_period_ms";
     private final static String ENCLAVE_MAX_THREAD_NUMBER_CONFIG_FILE_KEY = "enclave_max_thread";
     private final static String ENCLAVE_MAX_EPC_MEMORY_SIZE_CONFIG_FILE_KEY = "enclave_max_epc_memory_size_MB";
+    private final static String SWITCHLESS_WORKER_NUMBER_CONFIG_FILE_KEY = "switchless_worker_num";
+    private final static String SWITCHLESS_SPIN_COUNT_CONFIG_FILE_KEY = "switchless_spin_count";
+    private final static String SWITCHLESS_PARK_MICROS_CONFIG_FILE_KEY = "switchless_park_us";
+    private final static String THREAD_CACHE_CAPACITY_CONFIG_FILE_KEY = "thread_cache_capacity";
+    private final static String CARRIER_THREAD_NUMBER_CONFIG_FILE_KEY = "enclave_carrier_threads";
+    private final static String ADMISSION_MODE_CONFIG_FILE_KEY = "enclave_admission_mode";
+    private final static String ADMISSION_LIMIT_CONFIG_FILE_KEY = "enclave_admission_limit";
+    private final static String ADMISSION_QUEUE_DEPTH_CONFIG_FILE_KEY = "enclave_admission_queue_depth";
+    private final static String ADMISSION_TIMEOUT_MILLIS_CONFIG_FILE_KEY = "enclave_admission_timeout_ms";
+    private final static String SPARE_ENCLAVE_NUMBER_CONFIG_FILE_KEY = "enclave_spare_num";
+    private final static String SPARE_SERVICES_CONFIG_FILE_KEY = "enclave_spare_services";
+    private final static String ITERATOR_PAGE_SIZE_CONFIG_FILE_KEY = "enclave_iterator_page_size";
     private final static String DEFAULT_METRIC_LOG_PATH =
             "JavaEnclave_Metric_Log_" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + ".log";
 
@@ -59,9 +105,44 @@ final class EnclaveConfigure {
     private boolean enableMetricTrace = false;
     // config metric trace file path.
     private String metricTraceFilePath = DEFAULT_METRIC_LOG_PATH;
+    // records waiting for metric log writer, a record is dropped beyond it.
+    private int metricTraceBufferSize = 8192;
+    // metric log file is rolled beyond the size or the interval, 0 disables it.
+    private int metricTraceRotateSizeMB = 64;
+    private int metricTraceRotateIntervalSeconds = 0;
+    // record service methods' latency histograms, default is disable.
+    private boolean enableMetricHistogram = false;
+    // period of exporting histograms to exporters, 0 disables exporting.
+    private int metricExportPeriodMillis = 10000;
+    // codec between host and enclave, default is tlv codec.
+    private String enclaveCodec = TLVCodec.NAME;
     private int maxEnclaveThreadNum = 50;
     private long maxEnclaveEPCMemorySize = 1500 * MB;
     private long referenceEnclaveMaxHeapSize = (long) (maxEnclaveEPCMemorySize * RATIO);
+    // enclave worker threads polling the switchless ring, default is disable.
+    private int switchlessWorkerNum = 0;
+    // empty polls before an idle worker or a waiting caller parks.
+    private int switchlessSpinCount = 1000;
+    // park time of an idle worker or a waiting caller.
+    private int switchlessParkMicros = 20;
+    // max cached IsolateThreads, least recently used ones are evicted beyond it.
+    private int threadCacheCapacity = 0;
+    // host threads pinned to enclave TCS slots, default is disable.
+    private int carrierThreadNum = 0;
+    // invocations beyond free enclave threads wait in a fair queue by default.
+    private EnclaveAdmission.Mode admissionMode = EnclaveAdmission.Mode.BLOCK;
+    // max concurrent invocations, 0 means enclave threads not occupied by switchless workers.
+    private int admissionLimit = 0;
+    // max waiting invocations, 0 means unbounded.
+    private int admissionQueueDepth = 0;
+    // max waiting time, 0 means waiting until admitted.
+    private int admissionTimeoutMillis = 0;
+    // spare enclaves of a type, default is disable.
+    private int spareEnclaveNum = 0;
+    // services loaded in spare enclaves, default is none.
+    private String spareServices = "";
+    // elements fetched from an enclave iterator in one invocation.
+    private int iteratorPageSize = 64;
 
     private EnclaveConfigure() throws IOException {
         // first update value from config file.
@@ -94,6 +175,16 @@ final class EnclaveConfigure {
         if (metricEnable != null) this.enableMetricTrace = parseBooleanFlag(metricEnable);
     }
 
+    private void parseMetricTraceLog(String bufferSize, String rotateSizeMB, String rotateIntervalSeconds) {
+        this.metricTraceBufferSize = parseNonNegativeInt(bufferSize, this.metricTraceBufferSize);
+        this.metricTraceRotateSizeMB = parseNonNegativeInt(rotateSizeMB, this.metricTraceRotateSizeMB);
+        this.metricTraceRotateIntervalSeconds = parseNonNegativeInt(rotateIntervalSeconds, this.metricTraceRotateIntervalSeconds);
+    }
+
+    private void parseMetricHistogramEnable(String histogramEnable) {
+        if (histogramEnable != null) this.enableMetricHistogram = parseBooleanFlag(histogramEnable);
+    }
+
     private void parseEnclaveDebuggable(String debuggable) {
         // parse enclave debuggable or not.
         if (debuggable != null) this.debuggable = parseBooleanFlag(debuggable);
@@ -104,11 +195,65 @@ final class EnclaveConfigure {
         if (filePath != null && !filePath.isBlank()) this.metricTraceFilePath = filePath;
     }
 
+    private void parseEnclaveCodec(String codec) {
+        // parse codec between host and enclave.
+        if (codec != null && !codec.isBlank()) this.enclaveCodec = codec.trim();
+    }
+
+    static int parseNonNegativeInt(String value, int defaultValue) {
+        if (value == null || value.isBlank()) return defaultValue;
+        int result = Integer.parseInt(value.trim());
+        if (result < 0) throw new IllegalArgumentException("negative value " + value + " is not allowed.");
+        return result;
+    }
+
+    private void parseSwitchless(String workers, String spinCount, String parkMicros) {
+        // parse switchless worker number and spin-then-park policy.
+        this.switchlessWorkerNum = parseNonNegativeInt(workers, this.switchlessWorkerNum);
+        this.switchlessSpinCount = parseNonNegativeInt(spinCount, this.switchlessSpinCount);
+        this.switchlessParkMicros = parseNonNegativeInt(parkMicros, this.switchlessParkMicros);
+    }
+
+    private void parseAdmission(String mode, String limit, String queueDepth, String timeoutMillis) {
+        // parse admission mode and its bounds.
+        if (mode != null && !mode.isBlank()) this.admissionMode = EnclaveAdmission.Mode.valueOf(mode.trim());
+        this.admissionLimit = parseNonNegativeInt(limit, this.admissionLimit);
+        this.admissionQueueDepth = parseNonNegativeInt(queueDepth, this.admissionQueueDepth);
+        this.admissionTimeoutMillis = parseNonNegativeInt(timeoutMillis, this.admissionTimeoutMillis);
+    }
+
+    private void parseSpareServices(String services) {
+        // parse services loaded in spare enclaves.
+        if (services != null) this.spareServices = services.trim();
+    }
+
     private void parseProperty() {
         parseEnclaveType(System.getProperty(ENCLAVE_TYPE_PROPERTY));
         parseEnclaveDebuggable(System.getProperty(ENCLAVE_DEBUG_PROPERTY));
         parseMetricTracingEnable(System.getProperty(METRIC_TRACE_ENABLE_PROPERTY));
         parseMetricTracingLogPath(System.getProperty(METRIC_TRACE_LOG_FILE_PATH_PROPERTY));
+        parseMetricTraceLog(
+                System.getProperty(METRIC_TRACE_BUFFER_SIZE_PROPERTY),
+                System.getProperty(METRIC_TRACE_ROTATE_SIZE_MB_PROPERTY),
+                System.getProperty(METRIC_TRACE_ROTATE_INTERVAL_SECONDS_PROPERTY));
+        parseMetricHistogramEnable(System.getProperty(METRIC_HISTOGRAM_ENABLE_PROPERTY));
+        this.metricExportPeriodMillis = parseNonNegativeInt(
+                System.getProperty(METRIC_EXPORT_PERIOD_MILLIS_PROPERTY), this.metricExportPeriodMillis);
+        parseEnclaveCodec(System.getProperty(ENCLAVE_CODEC_PROPERTY));
+        parseSwitchless(
+                System.getProperty(SWITCHLESS_WORKER_NUMBER_PROPERTY),
+                System.getProperty(SWITCHLESS_SPIN_COUNT_PROPERTY),
+                System.getProperty(SWITCHLESS_PARK_MICROS_PROPERTY));
+        this.threadCacheCapacity = parseNonNegativeInt(System.getProperty(THREAD_CACHE_CAPACITY_PROPERTY), this.threadCacheCapacity);
+        this.carrierThreadNum = parseNonNegativeInt(System.getProperty(CARRIER_THREAD_NUMBER_PROPERTY), this.carrierThreadNum);
+        parseAdmission(
+                System.getProperty(ADMISSION_MODE_PROPERTY),
+                System.getProperty(ADMISSION_LIMIT_PROPERTY),
+                System.getProperty(ADMISSION_QUEUE_DEPTH_PROPERTY),
+                System.getProperty(ADMISSION_TIMEOUT_MILLIS_PROPERTY));
+        this.spareEnclaveNum = parseNonNegativeInt(System.getProperty(SPARE_ENCLAVE_NUMBER_PROPERTY), this.spareEnclaveNum);
+        parseSpareServices(System.getProperty(SPARE_SERVICES_PROPERTY));
+        this.iteratorPageSize = parseNonNegativeInt(System.getProperty(ITERATOR_PAGE_SIZE_PROPERTY), this.iteratorPageSize);
     }
 
     private void parseConfigureFile(String path) throws IOException {
@@ -119,9 +264,36 @@ final class EnclaveConfigure {
         parseEnclaveType(jsonObject.getString(ENCLAVE_TYPE_CONFIG_FILE_KEY));
         this.enableMetricTrace = jsonObject.getBoolean(METRIC_TRACE_ENABLE_CONFIG_FILE_KEY);
         parseMetricTracingLogPath(jsonObject.getString(METRIC_TRACE_LOG_FILE_PATH_CONFIG_FILE_KEY));
+        // metric log writer keys are optional.
+        parseMetricTraceLog(
+                jsonObject.optString(METRIC_TRACE_BUFFER_SIZE_CONFIG_FILE_KEY, null),
+                jsonObject.optString(METRIC_TRACE_ROTATE_SIZE_MB_CONFIG_FILE_KEY, null),
+                jsonObject.optString(METRIC_TRACE_ROTATE_INTERVAL_SECONDS_CONFIG_FILE_KEY, null));
+        parseMetricHistogramEnable(jsonObject.optString(METRIC_HISTOGRAM_ENABLE_CONFIG_FILE_KEY, null));
+        this.metricExportPeriodMillis = parseNonNegativeInt(
+                jsonObject.optString(METRIC_EXPORT_PERIOD_MILLIS_CONFIG_FILE_KEY, null), this.metricExportPeriodMillis);
         this.maxEnclaveThreadNum = jsonObject.getInt(ENCLAVE_MAX_THREAD_NUMBER_CONFIG_FILE_KEY);
         this.maxEnclaveEPCMemorySize = jsonObject.getInt(ENCLAVE_MAX_EPC_MEMORY_SIZE_CONFIG_FILE_KEY) * MB;
         this.referenceEnclaveMaxHeapSize = (long) (this.maxEnclaveEPCMemorySize * RATIO);
+        // switchless keys are optional.
+        parseSwitchless(
+                jsonObject.optString(SWITCHLESS_WORKER_NUMBER_CONFIG_FILE_KEY, null),
+                jsonObject.optString(SWITCHLESS_SPIN_COUNT_CONFIG_FILE_KEY, null),
+                jsonObject.optString(SWITCHLESS_PARK_MICROS_CONFIG_FILE_KEY, null));
+        this.threadCacheCapacity = parseNonNegativeInt(
+                jsonObject.optString(THREAD_CACHE_CAPACITY_CONFIG_FILE_KEY, null), this.threadCacheCapacity);
+        this.carrierThreadNum = parseNonNegativeInt(
+                jsonObject.optString(CARRIER_THREAD_NUMBER_CONFIG_FILE_KEY, null), this.carrierThreadNum);
+        parseAdmission(
+                jsonObject.optString(ADMISSION_MODE_CONFIG_FILE_KEY, null),
+                jsonObject.optString(ADMISSION_LIMIT_CONFIG_FILE_KEY, null),
+                jsonObject.optString(ADMISSION_QUEUE_DEPTH_CONFIG_FILE_KEY, null),
+                jsonObject.optString(ADMISSION_TIMEOUT_MILLIS_CONFIG_FILE_KEY, null));
+        this.spareEnclaveNum = parseNonNegativeInt(
+                jsonObject.optString(SPARE_ENCLAVE_NUMBER_CONFIG_FILE_KEY, null), this.spareEnclaveNum);
+        parseSpareServices(jsonObject.optString(SPARE_SERVICES_CONFIG_FILE_KEY, null));
+        this.iteratorPageSize = parseNonNegativeInt(
+                jsonObject.optString(ITERATOR_PAGE_SIZE_CONFIG_FILE_KEY, null), this.iteratorPageSize);
     }
 
     private void parseTemplateConfigureFile() throws IOException {
@@ -144,6 +316,26 @@ final class EnclaveConfigure {
         return enableMetricTrace;
     }
 
+    int getMetricTraceBufferSize() {
+        return metricTraceBufferSize;
+    }
+
+    long getMetricTraceRotateSizeBytes() {
+        return metricTraceRotateSizeMB * MB;
+    }
+
+    long getMetricTraceRotateIntervalMillis() {
+        return TimeUnit.SECONDS.toMillis(metricTraceRotateIntervalSeconds);
+    }
+
+    boolean isEnableMetricHistogram() {
+        return enableMetricHistogram;
+    }
+
+    int getMetricExportPeriodMillis() {
+        return metricExportPeriodMillis;
+    }
+
     int getMaxEnclaveThreadNum() {
         return maxEnclaveThreadNum;
     }
@@ -156,10 +348,62 @@ final class EnclaveConfigure {
         return referenceEnclaveMaxHeapSize;
     }
 
+    int getSwitchlessWorkerNum() {
+        return switchlessWorkerNum;
+    }
+
+    int getSwitchlessSpinCount() {
+        return switchlessSpinCount;
+    }
+
+    int getSwitchlessParkMicros() {
+        return switchlessParkMicros;
+    }
+
+    int getThreadCacheCapacity() {
+        return threadCacheCapacity == 0 ? maxEnclaveThreadNum : threadCacheCapacity;
+    }
+
+    int getCarrierThreadNum() {
+        return carrierThreadNum;
+    }
+
+    EnclaveAdmission.Mode getAdmissionMode() {
+        return admissionMode;
+    }
+
+    int getAdmissionLimit() {
+        return admissionLimit;
+    }
+
+    int getAdmissionQueueDepth() {
+        return admissionQueueDepth;
+    }
+
+    int getAdmissionTimeoutMillis() {
+        return admissionTimeoutMillis;
+    }
+
+    int getSpareEnclaveNum() {
+        return spareEnclaveNum;
+    }
+
+    String getSpareServices() {
+        return spareServices;
+    }
+
+    int getIteratorPageSize() {
+        return iteratorPageSize;
+    }
+
     String getMetricTraceFilePath() {
         return metricTraceFilePath;
     }
 
+    String getEnclaveCodec() {
+        return enclaveCodec;
+    }
+
     EnclaveType getDefaultEnclaveType() {
         return enclaveType;
     }
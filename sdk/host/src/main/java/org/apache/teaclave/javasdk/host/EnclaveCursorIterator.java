@@ -0,0 +1,153 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.EnclaveCursorContext;
+import org.apache.teaclave.javasdk.common.EnclaveCursorHandle;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.EnclaveIterator;
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.StreamSupport;
+
+/**
+ * EnclaveCursorIterator iterates an {@link EnclaveIterator} or a {@link java.util.stream.Stream}
+ * returned by a service method, it fetches elements from the cursor in enclave a page at a time.
+ * Its cursor is released once it's iterated to the end, closed, or recycled by gc.
+ * <p>
+ * A failed fetch is thrown as {@link UndeclaredThrowableException}, as a service proxy does for
+ * an invocation exception undeclared by its method.
+ */
+final class EnclaveCursorIterator<T> implements EnclaveIterator<T> {
+    private final AbstractEnclave enclave;
+    private final String method;
+    private final long cursorId;
+    private final int pageSize;
+    private final CursorRelease release;
+    private final Runnable cleanable;
+    private final ArrayDeque<Object> page = new ArrayDeque<>();
+    private boolean exhausted = false;
+
+    private EnclaveCursorIterator(AbstractEnclave enclave, String method, long cursorId, int pageSize) {
+        this.enclave = enclave;
+        this.method = method;
+        this.cursorId = cursorId;
+        this.pageSize = pageSize;
+        this.release = new CursorRelease(enclave, cursorId);
+        this.cleanable = enclave.getEnclaveContext().getEnclaveServicesRecycler().registerCursor(this, release);
+    }
+
+    /**
+     * turn a cursor handle returned by a service method into an iterator or a stream of it.
+     */
+    static Object result(AbstractEnclave enclave, String method, Object result) {
+        if (!(result instanceof EnclaveCursorHandle)) {
+            return result;
+        }
+        EnclaveCursorHandle handle = (EnclaveCursorHandle) result;
+        EnclaveCursorIterator<Object> iterator = new EnclaveCursorIterator<>(enclave, method, handle.getCursorId(),
+                enclave.getIteratorPageSize());
+        if (handle.isStream()) {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(iterator::close);
+        }
+        return iterator;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if (page.isEmpty() && !exhausted) {
+            fetch();
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return (T) page.poll();
+    }
+
+    @Override
+    public synchronized void close() {
+        exhausted = true;
+        page.clear();
+        cleanable.run();
+    }
+
+    private void fetch() {
+        EnclaveCursorContext context = new EnclaveCursorContext(EnclaveCursorContext.FETCH, cursorId, pageSize);
+        try (MetricTraceContext trace = new MetricTraceContext(
+                enclave.getEnclaveInfo(),
+                MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_SERVICE_INVOKING_PATTERN,
+                method)) {
+            EnclaveInvocationResult result = enclave.InvokeEnclaveMethod(context, trace);
+            trace.setCostInnerEnclave(result.getCost());
+            if (result.getException() != null) {
+                throw new EnclaveMethodInvokingException("fetching elements of enclave iterator failed.", result.getException());
+            }
+            List<?> elements = (List<?>) result.getResult();
+            page.addAll(elements);
+            if (elements.size() < pageSize) {
+                // enclave released the cursor along with its last page.
+                exhausted = true;
+                release.released = true;
+            }
+        } catch (Exception e) {
+            close();
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * CursorRelease releases a cursor in enclave, it must not refer to its iterator.
+     */
+    private final static class CursorRelease implements Runnable {
+        private final AbstractEnclave enclave;
+        private final long cursorId;
+        private volatile boolean released = false;
+
+        CursorRelease(AbstractEnclave enclave, long cursorId) {
+            this.enclave = enclave;
+            this.cursorId = cursorId;
+        }
+
+        @Override
+        public void run() {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                enclave.InvokeEnclaveUnadmitted(new EnclaveCursorContext(EnclaveCursorContext.RELEASE, cursorId, 0x0));
+            } catch (EnclaveMethodInvokingException e) {
+                // enclave was destroyed along with its cursors.
+            }
+        }
+    }
+}
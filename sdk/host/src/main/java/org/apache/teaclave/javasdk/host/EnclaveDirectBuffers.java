@@ -0,0 +1,83 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.nio.ByteBuffer;
+
+/**
+ * EnclaveDirectBuffers keeps a thread's pooled direct buffers for enclave invocations,
+ * payloads and results in them cross jni by address without being copied.
+ */
+final class EnclaveDirectBuffers {
+    private final static int INITIAL_CAPACITY = 64 * 1024;
+    private final static int MAX_RETAINED_CAPACITY = 16 * 1024 * 1024;
+    private final static ThreadLocal<EnclaveDirectBuffers> BUFFERS = ThreadLocal.withInitial(EnclaveDirectBuffers::new);
+
+    private ByteBuffer input = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private ByteBuffer output = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+
+    private EnclaveDirectBuffers() {
+    }
+
+    /**
+     * current returns the calling thread's buffers.
+     */
+    static EnclaveDirectBuffers current() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * input returns the cleared input buffer.
+     */
+    ByteBuffer input() {
+        input.clear();
+        return input;
+    }
+
+    /**
+     * retainInput keeps a grown input buffer for the next invocations, unless it's too large.
+     */
+    void retainInput(ByteBuffer buffer) {
+        if (buffer != input && buffer.isDirect() && buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            input = buffer;
+        }
+    }
+
+    /**
+     * output returns the cleared output buffer.
+     */
+    ByteBuffer output() {
+        output.clear();
+        return output;
+    }
+
+    /**
+     * growOutput makes the output buffer fit a result of the given length, unless it's too large.
+     */
+    void growOutput(int length) {
+        if (length <= output.capacity() || length > MAX_RETAINED_CAPACITY) {
+            return;
+        }
+        int capacity = output.capacity();
+        while (capacity < length) {
+            capacity <<= 1;
+        }
+        output = ByteBuffer.allocateDirect(Math.min(capacity, MAX_RETAINED_CAPACITY));
+    }
+}
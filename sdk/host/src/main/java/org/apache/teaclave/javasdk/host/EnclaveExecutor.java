@@ -0,0 +1,123 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EnclaveExecutor owns a fixed set of carrier threads which make all enclave calls of an
+ * enclave's service invocations. Carriers live as long as the enclave, so each of them keeps
+ * its TCS and cached IsolateThread, and the enclave's thread cache stays hot whatever threads
+ * the callers are. Callers, virtual threads included, hand invocations off and await them.
+ */
+final class EnclaveExecutor implements Executor {
+    private final static String ENCLAVE_CARRIER_THREAD_NAME_PREFIX = "enclave-carrier-";
+    private final static AtomicInteger executorCounter = new AtomicInteger(0x0);
+
+    private final ThreadPoolExecutor executor;
+
+    EnclaveExecutor(int carriers) {
+        String namePrefix = ENCLAVE_CARRIER_THREAD_NAME_PREFIX + executorCounter.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger(0x0);
+        executor = new ThreadPoolExecutor(carriers, carriers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new CarrierThread(this, r);
+            thread.setName(namePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // carriers never time out, their TCS binding is what keeps the cache hot.
+        executor.prestartAllCoreThreads();
+    }
+
+    @Override
+    public void execute(Runnable command) throws RejectedExecutionException {
+        executor.execute(command);
+    }
+
+    /**
+     * call runs an enclave call on a carrier thread and waits for its result,
+     * a call made on one of the carriers runs in place. An interrupted caller
+     * drops its call only if no carrier started it yet, a started call is
+     * awaited since it holds enclave token and admission until it leaves the
+     * enclave, and its result must not be lost.
+     */
+    <T> T call(Callable<T> call) throws Exception {
+        Thread current = Thread.currentThread();
+        if (current instanceof CarrierThread && ((CarrierThread) current).owner == this) {
+            return call.call();
+        }
+        // whoever sets started first owns the call, the carrier to run it or the caller to drop it.
+        AtomicBoolean started = new AtomicBoolean(false);
+        FutureTask<T> task = new FutureTask<>(() -> started.compareAndSet(false, true) ? call.call() : null);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new EnclaveMethodInvokingException("enclave was destroyed.", e);
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (started.compareAndSet(false, true)) {
+                        executor.remove(task);
+                        throw new EnclaveMethodInvokingException("interrupted while waiting for enclave carrier thread.", e);
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // stop accepting invocations, queued ones are not waited for, they fail with enclave was destroyed once they run.
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class CarrierThread extends Thread {
+        private final EnclaveExecutor owner;
+
+        CarrierThread(EnclaveExecutor owner, Runnable target) {
+            super(target);
+            this.owner = owner;
+        }
+    }
+}
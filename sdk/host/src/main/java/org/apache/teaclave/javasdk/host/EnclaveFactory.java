@@ -69,8 +69,51 @@ public final class EnclaveFactory {
      *                                  create failed.
      */
     public static Enclave create(EnclaveType type) throws EnclaveCreatingException {
-        // create an enclave with specific enclave type.
+        // create an enclave with specific enclave type, a spare one is handed out if it's ready.
         try (MetricTraceContext trace = new MetricTraceContext(MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_CREATING_PATTERN)) {
+            EnclaveSpares spares = EnclaveSpares.of(type);
+            Enclave enclave = spares == null ? null : spares.take();
+            if (enclave == null) {
+                enclave = newEnclave(type);
+            }
+            trace.setEnclaveInfo(enclave.getEnclaveInfo());
+            EnclaveInfoManager.getEnclaveInfoManagerInstance().addEnclave(enclave);
+            return enclave;
+        } catch (IOException | MetricTraceLogWriteException e) {
+            throw new EnclaveCreatingException(e);
+        }
+    }
+
+    /**
+     * prepareSpares starts creating spare enclaves of a type in background, so that even the
+     * first {@link #create(EnclaveType)} of the type hands out a spare. It does nothing if
+     * enclave_spare_num is 0 or the type doesn't support spares.
+     *
+     * @param type enclave type of the spares, TEE_SDK and MOCK_IN_SVM are supported.
+     * @throws EnclaveCreatingException {@link EnclaveCreatingException} If configure file
+     *                                  parsing failed.
+     */
+    public static void prepareSpares(EnclaveType type) throws EnclaveCreatingException {
+        try {
+            EnclaveSpares.of(type);
+        } catch (IOException e) {
+            throw new EnclaveCreatingException(e);
+        }
+    }
+
+    /**
+     * shutdownSpares destroys the spare enclaves of all types which are not handed out yet
+     * and stops creating them. Spares are also destroyed at JVM shutdown, a later
+     * {@link #prepareSpares(EnclaveType)} or {@link #create(EnclaveType)} starts creating
+     * them again.
+     */
+    public static void shutdownSpares() {
+        EnclaveSpares.shutdownAll();
+    }
+
+    // create a new enclave of a type, it's not registered yet.
+    static Enclave newEnclave(EnclaveType type) throws EnclaveCreatingException {
+        try {
             Enclave enclave;
             switch (type) {
                 case MOCK_IN_JVM:
@@ -99,11 +142,24 @@ public final class EnclaveFactory {
                 default:
                     throw new EnclaveCreatingException("enclave type: " + type + " is not supported.");
             }
-            trace.setEnclaveInfo(enclave.getEnclaveInfo());
-            EnclaveInfoManager.getEnclaveInfoManagerInstance().addEnclave(enclave);
             return enclave;
-        } catch (IOException | MetricTraceLogWriteException e) {
+        } catch (IOException e) {
             throw new EnclaveCreatingException(e);
         }
     }
+
+    /**
+     * @param type explicitly indicate which type of enclaves will be created in the pool.
+     * @param size number of enclaves in the pool.
+     * @return An enclave pool instance.
+     * @throws EnclaveCreatingException {@link EnclaveCreatingException} If underlying c/c++ enclave
+     *                                  create failed.
+     */
+    public static EnclavePool createPool(EnclaveType type, int size) throws EnclaveCreatingException {
+        // EMBEDDED_LIB_OS enclave is a singleton in a process.
+        if (type == EnclaveType.EMBEDDED_LIB_OS) {
+            throw new EnclaveCreatingException("enclave type: " + type + " doesn't support enclave pool.");
+        }
+        return new EnclavePool(size, () -> create(type));
+    }
 }
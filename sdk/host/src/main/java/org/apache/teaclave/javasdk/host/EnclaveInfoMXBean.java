@@ -38,4 +38,11 @@ public interface EnclaveInfoMXBean {
      * @return List<EnclaveInfo> all existed enclaves' EnclaveInfo details.
      */
     List<EnclaveInfo> getEnclaveInstancesInfo();
+
+    /**
+     * get IsolateThread cache statistics of all existed TEE_SDK enclaves.
+     *
+     * @return List<EnclaveThreadCacheStatistics> all existed TEE_SDK enclaves' thread cache statistics.
+     */
+    List<EnclaveThreadCacheStatistics> getThreadCacheStatistics();
 }
@@ -70,4 +70,23 @@ public final class EnclaveInfoManager implements EnclaveInfoMXBean {
         }
         return enclaveInfos;
     }
+
+    /**
+     * get IsolateThread cache statistics of all existed TEE_SDK enclaves.
+     *
+     * @return List<EnclaveThreadCacheStatistics> all existed TEE_SDK enclaves' thread cache statistics.
+     */
+    @Override
+    public synchronized List<EnclaveThreadCacheStatistics> getThreadCacheStatistics() {
+        List<EnclaveThreadCacheStatistics> statistics = new ArrayList<>();
+        for (Enclave enclave : enclaveRecord.keySet()) {
+            if (enclave instanceof TeeSdkEnclave) {
+                EnclaveThreadCacheStatistics enclaveStatistics = ((TeeSdkEnclave) enclave).getThreadCacheStatistics();
+                if (enclaveStatistics != null) {
+                    statistics.add(enclaveStatistics);
+                }
+            }
+        }
+        return statistics;
+    }
 }
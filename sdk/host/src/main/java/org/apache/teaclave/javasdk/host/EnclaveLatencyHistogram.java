@@ -0,0 +1,136 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EnclaveLatencyHistogram records latencies in nanoseconds into log-linear buckets as HdrHistogram does,
+ * every power of two range is split into 16 sub buckets, so a recorded value is kept within 1/16 precision.
+ * Recording is lock-free, it's an atomic increment of the value's bucket and two striped adders.
+ * Values beyond 2^40 nanoseconds (about 18 minutes) are recorded as 2^40 - 1.
+ */
+final class EnclaveLatencyHistogram {
+    private final static int SUB_BUCKET_BITS = 4;
+    private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private final static int MAX_VALUE_BITS = 40;
+    private final static long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private final static int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0x0);
+
+    void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0x0), MAX_VALUE);
+        buckets.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    void reset() {
+        for (int index = 0x0; index < BUCKET_COUNT; index++) {
+            buckets.set(index, 0x0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * copy current buckets out, so that a percentile is computed without racing with recording.
+     */
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0x0;
+        for (int index = 0x0; index < BUCKET_COUNT; index++) {
+            counts[index] = buckets.get(index);
+            count += counts[index];
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    // values below 2 * SUB_BUCKET_COUNT are exact, a larger value's bucket is located by its
+    // highest bit and the following SUB_BUCKET_BITS bits.
+    static int bucketIndex(long value) {
+        if (value < (SUB_BUCKET_COUNT << 1)) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    // the highest value recorded into a bucket.
+    static long bucketHighestValue(int index) {
+        if (index < (SUB_BUCKET_COUNT << 1)) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index - (long) shift * SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMean() {
+            return count == 0x0 ? 0x0 : sum / count;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * get the value that the given percentage of recorded values are not greater than.
+         *
+         * @param percentile percentile within (0, 100].
+         * @return the highest value of the bucket holding the percentile, it's capped by max recorded value.
+         */
+        long getValueAtPercentile(double percentile) {
+            if (count == 0x0) {
+                return 0x0;
+            }
+            long target = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+            long accumulated = 0x0;
+            for (int index = 0x0; index < counts.length; index++) {
+                accumulated += counts[index];
+                if (accumulated >= target) {
+                    return Math.min(bucketHighestValue(index), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+/**
+ * latency statistics of a service method in an enclave within one phase of its invocations,
+ * they are accumulated since the first invocation or the last reset. All latencies are in nanoseconds.
+ */
+public interface EnclaveMethodMetric {
+    /**
+     * the phase of a service method invocation a latency is measured within.
+     */
+    enum Phase {
+        // the whole invocation on host side.
+        TOTAL,
+        // running of the service method in enclave.
+        ENCLAVE,
+        // host side cost out of enclave and queue waiting, it's derived as total minus both of them, so it
+        // covers serialization of arguments and result, enclave transition, jni and proxy dispatching alike.
+        HOST_OVERHEAD,
+        // waiting for a carrier thread and enclave admission.
+        QUEUE_WAITING
+    }
+
+    /**
+     * the enclave's Hash ID.
+     */
+    int getEnclaveID();
+
+    /**
+     * the enclave's type.
+     */
+    EnclaveType getEnclaveType();
+
+    /**
+     * the service interface's name.
+     */
+    String getService();
+
+    /**
+     * the service method's name.
+     */
+    String getMethod();
+
+    /**
+     * the phase latencies are measured within.
+     */
+    Phase getPhase();
+
+    /**
+     * the number of recorded invocations.
+     */
+    long getCount();
+
+    /**
+     * mean latency.
+     */
+    long getMean();
+
+    /**
+     * max latency.
+     */
+    long getMax();
+
+    /**
+     * median latency.
+     */
+    long getP50();
+
+    /**
+     * 90th percentile latency.
+     */
+    long getP90();
+
+    /**
+     * 99th percentile latency.
+     */
+    long getP99();
+
+    /**
+     * 99.9th percentile latency.
+     */
+    long getP999();
+}
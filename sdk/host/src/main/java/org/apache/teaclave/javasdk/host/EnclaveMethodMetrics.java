@@ -0,0 +1,151 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.util.List;
+
+/**
+ * EnclaveMethodMetrics holds latency histograms of a service method in an enclave, one for each phase.
+ */
+final class EnclaveMethodMetrics {
+    private final static EnclaveMethodMetric.Phase[] PHASES = EnclaveMethodMetric.Phase.values();
+
+    private final int enclaveID;
+    private final EnclaveType enclaveType;
+    private final String service;
+    private final String method;
+    private final EnclaveLatencyHistogram[] histograms = new EnclaveLatencyHistogram[PHASES.length];
+
+    EnclaveMethodMetrics(int enclaveID, EnclaveType enclaveType, String service, String method) {
+        this.enclaveID = enclaveID;
+        this.enclaveType = enclaveType;
+        this.service = service;
+        this.method = method;
+        for (int index = 0x0; index < histograms.length; index++) {
+            histograms[index] = new EnclaveLatencyHistogram();
+        }
+    }
+
+    int getEnclaveID() {
+        return enclaveID;
+    }
+
+    // all costs are in nanoseconds, host overhead is what's left out of enclave and queue waiting.
+    void record(long costTotal, long costEnclave, long costWaiting) {
+        histograms[EnclaveMethodMetric.Phase.TOTAL.ordinal()].record(costTotal);
+        histograms[EnclaveMethodMetric.Phase.ENCLAVE.ordinal()].record(costEnclave);
+        histograms[EnclaveMethodMetric.Phase.HOST_OVERHEAD.ordinal()].record(costTotal - costEnclave - costWaiting);
+        histograms[EnclaveMethodMetric.Phase.QUEUE_WAITING.ordinal()].record(costWaiting);
+    }
+
+    void reset() {
+        for (EnclaveLatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    // append statistics of every phase to metrics.
+    void snapshot(List<EnclaveMethodMetric> metrics) {
+        for (EnclaveMethodMetric.Phase phase : PHASES) {
+            metrics.add(new MethodMetric(phase, histograms[phase.ordinal()].snapshot()));
+        }
+    }
+
+    private final class MethodMetric implements EnclaveMethodMetric {
+        private final Phase phase;
+        private final long count;
+        private final long mean;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+
+        MethodMetric(Phase phase, EnclaveLatencyHistogram.Snapshot snapshot) {
+            this.phase = phase;
+            this.count = snapshot.getCount();
+            this.mean = snapshot.getMean();
+            this.max = snapshot.getMax();
+            this.p50 = snapshot.getValueAtPercentile(50.0);
+            this.p90 = snapshot.getValueAtPercentile(90.0);
+            this.p99 = snapshot.getValueAtPercentile(99.0);
+            this.p999 = snapshot.getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public int getEnclaveID() {
+            return enclaveID;
+        }
+
+        @Override
+        public EnclaveType getEnclaveType() {
+            return enclaveType;
+        }
+
+        @Override
+        public String getService() {
+            return service;
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+
+        @Override
+        public Phase getPhase() {
+            return phase;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public long getMean() {
+            return mean;
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public long getP50() {
+            return p50;
+        }
+
+        @Override
+        public long getP90() {
+            return p90;
+        }
+
+        @Override
+        public long getP99() {
+            return p99;
+        }
+
+        @Override
+        public long getP999() {
+            return p999;
+        }
+    }
+}
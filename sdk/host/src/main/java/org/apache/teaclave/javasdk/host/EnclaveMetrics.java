@@ -0,0 +1,165 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EnclaveMetrics stores latency histograms of all service methods invoked in existed enclaves, and pushes
+ * them to {@link EnclaveMetricsExporter} providers periodically. Histograms are recorded only if metric
+ * histogram is enabled, see {@link MetricTrace#setEnclaveMetricHistogramSwitch(boolean)}.
+ */
+public final class EnclaveMetrics implements EnclaveMetricsMXBean {
+    private final static String ENCLAVE_METRICS_EXPORTER_THREAD_NAME = "enclave_metrics_exporter_thread";
+    private final static EnclaveMetrics instance = new EnclaveMetrics();
+    private final Map<MethodKey, EnclaveMethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+    private int exportPeriodMillis = 10000;
+    private boolean exportStarted = false;
+
+    private EnclaveMetrics() {
+        try {
+            exportPeriodMillis = EnclaveConfigure.getInstance().getMetricExportPeriodMillis();
+        } catch (IOException e) {
+            // if exception happen, use original init value.
+        }
+    }
+
+    /**
+     * get a single instance of EnclaveMetrics.
+     *
+     * @return a single instance of EnclaveMetrics.
+     */
+    public static EnclaveMetrics getEnclaveMetricsInstance() {
+        return instance;
+    }
+
+    // it's called at the first invocation of a method in a service proxy handler, which caches it.
+    EnclaveMethodMetrics methodMetrics(EnclaveInfo info, String service, String method) {
+        int enclaveID = enclaveID(info);
+        EnclaveType enclaveType = info == null ? EnclaveType.NONE : info.getEnclaveType();
+        startExporting();
+        return methodMetrics.computeIfAbsent(new MethodKey(enclaveID, service, method),
+                key -> new EnclaveMethodMetrics(enclaveID, enclaveType, service, method));
+    }
+
+    void removeEnclave(EnclaveInfo info) {
+        int enclaveID = enclaveID(info);
+        methodMetrics.values().removeIf(metrics -> metrics.getEnclaveID() == enclaveID);
+    }
+
+    private static int enclaveID(EnclaveInfo info) {
+        return info == null ? 0x0 : info.getEnclaveID();
+    }
+
+    /**
+     * get latency statistics of every service method in every phase of its invocations.
+     *
+     * @return List<EnclaveMethodMetric> latency statistics of all service methods.
+     */
+    @Override
+    public List<EnclaveMethodMetric> getMethodMetrics() {
+        List<EnclaveMethodMetric> metrics = new ArrayList<>();
+        for (EnclaveMethodMetrics metric : methodMetrics.values()) {
+            metric.snapshot(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * get the number of metric trace log records dropped since metric log writer fell behind.
+     *
+     * @return number of dropped metric trace log records.
+     */
+    @Override
+    public long getDroppedMetricTraceLogs() {
+        return MetricTrace.getDroppedMetricTraceLogs();
+    }
+
+    /**
+     * clear all recorded latencies.
+     */
+    @Override
+    public void reset() {
+        for (EnclaveMethodMetrics metric : methodMetrics.values()) {
+            metric.reset();
+        }
+    }
+
+    private synchronized void startExporting() {
+        if (exportStarted) {
+            return;
+        }
+        exportStarted = true;
+        List<EnclaveMetricsExporter> exporters = new ArrayList<>();
+        ServiceLoader.load(EnclaveMetricsExporter.class).forEach(exporters::add);
+        if (exporters.isEmpty() || exportPeriodMillis == 0x0) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName(ENCLAVE_METRICS_EXPORTER_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            List<EnclaveMethodMetric> metrics = getMethodMetrics();
+            for (EnclaveMetricsExporter exporter : exporters) {
+                try {
+                    exporter.export(metrics);
+                } catch (RuntimeException e) {
+                    // an exporter's failure must not stop the others or later exporting.
+                }
+            }
+        }, exportPeriodMillis, exportPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private final static class MethodKey {
+        private final int enclaveID;
+        private final String service;
+        private final String method;
+
+        MethodKey(int enclaveID, String service, String method) {
+            this.enclaveID = enclaveID;
+            this.service = service;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MethodKey)) return false;
+            MethodKey key = (MethodKey) o;
+            return enclaveID == key.enclaveID && service.equals(key.service) && method.equals(key.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enclaveID, service, method);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.util.List;
+
+/**
+ * EnclaveMetricsMXBean help query latency histograms of all service methods invoked in existed enclaves.
+ * They are recorded only if metric histogram is enabled.
+ */
+public interface EnclaveMetricsMXBean {
+    /**
+     * get latency statistics of every service method in every phase of its invocations.
+     *
+     * @return List<EnclaveMethodMetric> latency statistics of all service methods.
+     */
+    List<EnclaveMethodMetric> getMethodMetrics();
+
+    /**
+     * get the number of metric trace log records dropped since metric log writer fell behind.
+     *
+     * @return number of dropped metric trace log records.
+     */
+    long getDroppedMetricTraceLogs();
+
+    /**
+     * clear all recorded latencies.
+     */
+    void reset();
+}
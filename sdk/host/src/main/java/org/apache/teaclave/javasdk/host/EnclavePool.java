@@ -0,0 +1,357 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveBusyException;
+import org.apache.teaclave.javasdk.host.exception.EnclaveCreatingException;
+import org.apache.teaclave.javasdk.host.exception.EnclaveDestroyingException;
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+import org.apache.teaclave.javasdk.host.exception.ServicesLoadingException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * EnclavePool is a fixed number of enclaves of the same type behind one set of service proxies.
+ * One enclave's throughput is capped by its enclave threads and EPC memory, a pool scales stateless
+ * enclave services horizontally on one host. Each service method invocation is dispatched to the
+ * member enclave with the fewest ongoing invocations of the pool.
+ * <p>
+ * A member enclave becomes unhealthy once its invocations fail in a row for enclave reasons rather than
+ * service exceptions. Unhealthy members are skipped in dispatching, and {@link #checkHealth()}
+ * replaces them with newly created enclaves which load all services the pool loaded.
+ *
+ * <pre>
+ *    EnclavePool pool = EnclaveFactory.createPool(EnclaveType.TEE_SDK, 4);
+ *    Service provider = pool.load(Service.class).next();
+ *    Object result = provider.invoke();
+ *    ... ... ...
+ *    pool.destroy();
+ * </pre>
+ * <p>
+ * Services are loaded in every member enclave, so they should keep no state between invocations.
+ */
+public final class EnclavePool {
+    // consecutive enclave failures which make a member unhealthy.
+    private final static int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final EnclaveCreator creator;
+    private final AtomicReferenceArray<Member> members;
+    // services loaded by the pool, they are loaded again in replaced members.
+    private final List<Class<?>> services = new ArrayList<>();
+    private volatile boolean destroyed = false;
+
+    EnclavePool(int size, EnclaveCreator creator) throws EnclaveCreatingException {
+        if (size <= 0) {
+            throw new EnclaveCreatingException("enclave pool size should be positive.");
+        }
+        this.creator = creator;
+        this.members = new AtomicReferenceArray<>(size);
+        try {
+            for (int index = 0x0; index < size; index++) {
+                members.set(index, new Member(creator.create()));
+            }
+        } catch (EnclaveCreatingException e) {
+            destroyMembers();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns pooled providers which implement service interface, providers are in the same order
+     * as {@link Enclave#load(Class)} returns. Each invocation of a pooled provider is made by the
+     * least loaded healthy member enclave.
+     * <p>
+     *
+     * @param <T>     Service interface type
+     * @param service Must be a service interface
+     * @return An iterator of pooled providers were discovered.
+     * @throws ServicesLoadingException {@link ServicesLoadingException} If services loading failed
+     *                                  in any member enclave.
+     */
+    public synchronized <T> Iterator<T> load(Class<T> service) throws ServicesLoadingException {
+        if (destroyed) {
+            throw new ServicesLoadingException("enclave pool was destroyed.");
+        }
+        int providers = -1;
+        for (int index = 0x0; index < members.length(); index++) {
+            int loaded = members.get(index).load(service);
+            if (providers != -1 && providers != loaded) {
+                throw new ServicesLoadingException("service " + service.getName() + " providers differ between pooled enclaves.");
+            }
+            providers = loaded;
+        }
+        if (!services.contains(service)) {
+            services.add(service);
+        }
+        List<T> proxies = new ArrayList<>(providers);
+        for (int index = 0x0; index < providers; index++) {
+            proxies.add(service.cast(Proxy.newProxyInstance(
+                    service.getClassLoader(),
+                    new Class<?>[]{service},
+                    new PooledInvocationHandler(service, index))));
+        }
+        return proxies.iterator();
+    }
+
+    /**
+     * @return the number of member enclaves.
+     */
+    public int size() {
+        return members.length();
+    }
+
+    /**
+     * @param index member index.
+     * @return the member enclave, it changes once the member is replaced.
+     */
+    public Enclave getEnclave(int index) {
+        return members.get(index).enclave;
+    }
+
+    /**
+     * @param index member index.
+     * @return the member is healthy or not.
+     */
+    public boolean isHealthy(int index) {
+        return members.get(index).isHealthy();
+    }
+
+    /**
+     * checkHealth replaces all unhealthy member enclaves.
+     * <p>
+     *
+     * @return the number of replaced members.
+     * @throws EnclaveCreatingException {@link EnclaveCreatingException} If a new member enclave
+     *                                  creating or its services loading failed.
+     */
+    public synchronized int checkHealth() throws EnclaveCreatingException {
+        int replaced = 0x0;
+        for (int index = 0x0; index < members.length(); index++) {
+            if (!members.get(index).isHealthy()) {
+                replace(index);
+                replaced++;
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * replace creates a new member enclave in place of the one at index, it loads all services the pool
+     * loaded. The old member stops taking new invocations at once, and it's destroyed after its ongoing
+     * invocations finished.
+     * <p>
+     *
+     * @param index member index.
+     * @throws EnclaveCreatingException {@link EnclaveCreatingException} If the new member enclave
+     *                                  creating or its services loading failed.
+     */
+    public synchronized void replace(int index) throws EnclaveCreatingException {
+        if (destroyed) {
+            throw new EnclaveCreatingException("enclave pool was destroyed.");
+        }
+        Member member = new Member(creator.create());
+        try {
+            for (Class<?> service : services) {
+                member.load(service);
+            }
+        } catch (ServicesLoadingException e) {
+            member.retire();
+            throw new EnclaveCreatingException("services loading failed in replaced pooled enclave.", e);
+        }
+        members.getAndSet(index, member).retire();
+    }
+
+    /**
+     * destroy destroys all member enclaves.
+     * <p>
+     *
+     * @throws EnclaveDestroyingException If a member enclave destroy failed.
+     */
+    public synchronized void destroy() throws EnclaveDestroyingException {
+        destroyed = true;
+        EnclaveDestroyingException exception = destroyMembers();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private EnclaveDestroyingException destroyMembers() {
+        EnclaveDestroyingException exception = null;
+        for (int index = 0x0; index < members.length(); index++) {
+            Member member = members.get(index);
+            if (member != null && member.destroyed.compareAndSet(false, true)) {
+                try {
+                    member.enclave.destroy();
+                } catch (EnclaveDestroyingException e) {
+                    exception = e;
+                }
+            }
+        }
+        return exception;
+    }
+
+    // pick the healthy member with the fewest ongoing invocations, unhealthy ones are picked only if all are.
+    private Member pick() {
+        int size = members.length();
+        int start = size == 1 ? 0x0 : ThreadLocalRandom.current().nextInt(size);
+        Member picked = null;
+        for (int count = 0x0; count < size; count++) {
+            Member member = members.get((start + count) % size);
+            if (picked == null || member.isHealthy() && (!picked.isHealthy() || member.inFlight.get() < picked.inFlight.get())) {
+                picked = member;
+            }
+        }
+        return picked;
+    }
+
+    private static final class Member {
+        private final Enclave enclave;
+        private final AtomicInteger inFlight = new AtomicInteger(0x0);
+        private final AtomicInteger failures = new AtomicInteger(0x0);
+        private final AtomicBoolean destroyed = new AtomicBoolean(false);
+        // a retired member was replaced, it takes no new invocations.
+        private volatile boolean retired = false;
+        // providers of loaded services in this member enclave.
+        private final Map<Class<?>, List<Object>> providers = new ConcurrentHashMap<>();
+
+        Member(Enclave enclave) {
+            this.enclave = enclave;
+        }
+
+        int load(Class<?> service) throws ServicesLoadingException {
+            List<Object> loaded = providers.get(service);
+            if (loaded == null) {
+                loaded = new ArrayList<>();
+                Iterator<?> iterator = enclave.load(service);
+                while (iterator.hasNext()) {
+                    loaded.add(iterator.next());
+                }
+                providers.put(service, loaded);
+            }
+            return loaded.size();
+        }
+
+        boolean isHealthy() {
+            return !retired && failures.get() < MAX_CONSECUTIVE_FAILURES;
+        }
+
+        // take an ongoing invocation, it fails if the member was retired.
+        boolean enter() {
+            inFlight.incrementAndGet();
+            if (retired) {
+                leave();
+                return false;
+            }
+            return true;
+        }
+
+        void leave() {
+            if (inFlight.decrementAndGet() == 0x0 && retired) {
+                destroyQuietly();
+            }
+        }
+
+        void retire() {
+            // the member is destroyed by the last one of its ongoing invocations.
+            retired = true;
+            if (inFlight.get() == 0x0) {
+                destroyQuietly();
+            }
+        }
+
+        private void destroyQuietly() {
+            if (destroyed.compareAndSet(false, true)) {
+                try {
+                    enclave.destroy();
+                } catch (EnclaveDestroyingException e) {
+                    // the member was replaced, nothing to do.
+                }
+            }
+        }
+    }
+
+    private final class PooledInvocationHandler implements InvocationHandler {
+        private final Class<?> service;
+        private final int provider;
+
+        PooledInvocationHandler(Class<?> service, int provider) {
+            this.service = service;
+            this.provider = provider;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            Member member = pick();
+            while (!member.enter()) {
+                member = pick();
+            }
+            try {
+                Object result = method.invoke(member.providers.get(service).get(provider), args);
+                member.failures.set(0x0);
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (isEnclaveFailure(cause)) {
+                    member.failures.incrementAndGet();
+                } else {
+                    member.failures.set(0x0);
+                }
+                throw cause;
+            } finally {
+                member.leave();
+            }
+        }
+
+        // a pooled proxy is identified by itself, not by the members it spreads invocations over.
+        private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "pooled " + service.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        // service exceptions are thrown as they are, enclave failures are wrapped as undeclared ones.
+        private boolean isEnclaveFailure(Throwable cause) {
+            Throwable failure = cause instanceof UndeclaredThrowableException ? cause.getCause() : cause;
+            return failure instanceof EnclaveMethodInvokingException && !(failure instanceof EnclaveBusyException);
+        }
+    }
+}
@@ -17,7 +17,7 @@
 
 package org.apache.teaclave.javasdk.host;
 
-import org.apache.teaclave.javasdk.host.exception.ServicesUnloadingException;
+import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 
 import java.lang.ref.Cleaner;
 import java.lang.reflect.InvocationHandler;
@@ -27,25 +27,25 @@ import java.util.concurrent.LinkedBlockingQueue;
 /**
  * EnclaveServicesRecycler is responsible for an enclave's services resource recycling.
  * If a service handler in host side was recycled by gc, EnclaveServicesRecycle will help
- * to recycle the corresponding service loaded in enclave side.
+ * to recycle the corresponding service loaded in enclave side, so does it for an iterator
+ * whose elements are kept by a cursor in enclave.
  * EnclaveServicesRecycle starts a new thread to recycle enclave's services asynchronously.
  */
 final class EnclaveServicesRecycler extends BaseEnclaveServicesRecycler {
     private final Cleaner cleaner = Cleaner.create();
-    // toBeReleasedEnclaveServices stores a service proxy handler when it's recycled
-    // by gc in host side.
-    private final BlockingQueue<ProxyEnclaveInvocationHandler> toBeReleasedEnclaveServices = new LinkedBlockingQueue<>();
+    // toBeReleasedEnclaveServices stores the release of a service proxy handler or a cursor
+    // when it's recycled by gc in host side.
+    private final BlockingQueue<Recycling> toBeReleasedEnclaveServices = new LinkedBlockingQueue<>();
     private final Thread recyclerThread;
 
     EnclaveServicesRecycler() {
         recyclerThread = new Thread(() -> {
             while (!Thread.interrupted()) {
                 try {
-                    ProxyEnclaveInvocationHandler proxyHandler = toBeReleasedEnclaveServices.take();
-                    proxyHandler.getEnclave().unloadService(proxyHandler.getServiceHandler());
+                    toBeReleasedEnclaveServices.take().recycle();
                 } catch (InterruptedException e) {
                     break; // Recycle Thread should exit when enclave destroyed.
-                } catch (ServicesUnloadingException e) {
+                } catch (ConfidentialComputingException e) {
                     // Have to handle this exception locally, print to log later.
                     e.printStackTrace();
                 }
@@ -59,7 +59,8 @@ final class EnclaveServicesRecycler extends BaseEnclaveServicesRecycler {
     @Override
     void enqueueProxyHandler(InvocationHandler handler) {
         try {
-            toBeReleasedEnclaveServices.add((ProxyEnclaveInvocationHandler) handler);
+            ProxyEnclaveInvocationHandler proxyHandler = (ProxyEnclaveInvocationHandler) handler;
+            toBeReleasedEnclaveServices.add(() -> proxyHandler.getEnclave().unloadService(proxyHandler.getServiceHandler()));
         } catch (IllegalStateException | ClassCastException | NullPointerException | IllegalArgumentException e) {
             // Have to handle this exception locally.
             e.printStackTrace();
@@ -72,9 +73,19 @@ final class EnclaveServicesRecycler extends BaseEnclaveServicesRecycler {
         cleaner.register(obj, (ProxyEnclaveInvocationHandler)handler);
     }
 
+    // a cursor is released by recycler thread once its iterator is closed or recycled by gc.
+    @Override
+    Runnable registerCursor(Object iterator, Runnable release) {
+        return cleaner.register(iterator, () -> toBeReleasedEnclaveServices.add(release::run))::clean;
+    }
+
     // interrupt enclave services' recycler thread exit.
     @Override
     void interruptServiceRecycler() {
         recyclerThread.interrupt();
     }
+
+    private interface Recycling {
+        void recycle() throws ConfidentialComputingException;
+    }
 }
@@ -0,0 +1,225 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveCreatingException;
+import org.apache.teaclave.javasdk.host.exception.EnclaveDestroyingException;
+import org.apache.teaclave.javasdk.host.exception.ServicesLoadingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EnclaveSpares keeps a number of enclaves of one type created in advance, so that
+ * EnclaveFactory hands out an enclave at once instead of creating it on the critical path.
+ * A spare enclave could have services loaded already, its first load of such a service
+ * returns the loaded providers. Spares are created again in background once handed out,
+ * a failed creation is retried with an exponential backoff. All spares are destroyed at
+ * JVM shutdown, or earlier by {@link EnclaveFactory#shutdownSpares()}.
+ */
+final class EnclaveSpares {
+    private final static String ENCLAVE_SPARE_THREAD_NAME_PREFIX = "enclave-spare-creator-";
+    private final static long RETRY_BASE_MILLIS = 100;
+    private final static long RETRY_MAX_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // only TEE_SDK and MOCK_IN_SVM enclave could have spares.
+    private final static Map<EnclaveType, EnclaveSpares> spares = new EnumMap<>(EnclaveType.class);
+    // guarded by spares.
+    private static boolean shutdownHooked = false;
+
+    private final EnclaveCreator creator;
+    private final int capacity;
+    private final List<Class<?>> services;
+    private final LinkedBlockingQueue<Enclave> ready = new LinkedBlockingQueue<>();
+    private final ScheduledThreadPoolExecutor executor;
+    // spares being created in background, a spare whose creation is retried included.
+    private final AtomicInteger pending = new AtomicInteger(0x0);
+    // creations failed in a row, the retry backoff grows with it.
+    private final AtomicInteger failures = new AtomicInteger(0x0);
+    private volatile Exception lastFailure;
+    private volatile boolean shutdown = false;
+
+    EnclaveSpares(String name, int capacity, List<Class<?>> services, EnclaveCreator creator) {
+        this.creator = creator;
+        this.capacity = capacity;
+        this.services = services;
+        // one creator thread is enough, it exits when there is nothing to create.
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, ENCLAVE_SPARE_THREAD_NAME_PREFIX + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setKeepAliveTime(60L, TimeUnit.SECONDS);
+        this.executor.allowCoreThreadTimeOut(true);
+        // pending retries are dropped at shutdown.
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * of returns the spares of an enclave type, they start being created at the first call.
+     * It returns null if spares are disabled or not supported for the type.
+     */
+    static EnclaveSpares of(EnclaveType type) throws IOException {
+        if (type != EnclaveType.TEE_SDK && type != EnclaveType.MOCK_IN_SVM) {
+            return null;
+        }
+        EnclaveConfigure configure = EnclaveConfigure.getInstance();
+        if (configure.getSpareEnclaveNum() == 0) {
+            return null;
+        }
+        synchronized (spares) {
+            EnclaveSpares typeSpares = spares.get(type);
+            if (typeSpares == null) {
+                if (!shutdownHooked) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(EnclaveSpares::shutdownAll));
+                    shutdownHooked = true;
+                }
+                typeSpares = new EnclaveSpares(type.name(), configure.getSpareEnclaveNum(),
+                        loadServiceClasses(configure.getSpareServices()), () -> EnclaveFactory.newEnclave(type));
+                typeSpares.replenish();
+                spares.put(type, typeSpares);
+            }
+            return typeSpares;
+        }
+    }
+
+    // destroy the spares of all types, spares are created again at the next call of of.
+    static void shutdownAll() {
+        synchronized (spares) {
+            spares.values().forEach(EnclaveSpares::shutdown);
+            spares.clear();
+        }
+    }
+
+    // services are resolved by the loader of the thread which first asks for spares.
+    private static List<Class<?>> loadServiceClasses(String names) {
+        List<Class<?>> services = new ArrayList<>();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        for (String name : names.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            try {
+                services.add(Class.forName(name.trim(), false, loader));
+            } catch (ClassNotFoundException e) {
+                // the service isn't preloaded, it's loaded at its first use as usual.
+            }
+        }
+        return services;
+    }
+
+    /**
+     * take hands out a spare enclave and creates another one in background,
+     * it returns null if no spare is ready.
+     */
+    Enclave take() {
+        Enclave enclave = ready.poll();
+        replenish();
+        return enclave;
+    }
+
+    synchronized void replenish() {
+        while (!shutdown && ready.size() + pending.get() < capacity) {
+            pending.incrementAndGet();
+            executor.execute(this::createSpare);
+        }
+    }
+
+    private void createSpare() {
+        if (shutdown) {
+            pending.decrementAndGet();
+            return;
+        }
+        Enclave enclave = null;
+        try {
+            enclave = creator.create();
+            if (enclave instanceof AbstractEnclave) {
+                for (Class<?> service : services) {
+                    ((AbstractEnclave) enclave).preloadService(service);
+                }
+            }
+            ready.add(enclave);
+            enclave = null;
+            failures.set(0x0);
+            pending.decrementAndGet();
+        } catch (EnclaveCreatingException | ServicesLoadingException | RuntimeException e) {
+            // enclaves are created on demand meanwhile, only the first failure in a row is reported.
+            lastFailure = e;
+            int failed = failures.incrementAndGet();
+            if (failed == 1) {
+                e.printStackTrace();
+            }
+            retry(failed);
+        } finally {
+            if (enclave != null) {
+                destroyQuietly(enclave);
+            }
+        }
+        if (shutdown) {
+            drain();
+        }
+    }
+
+    private void retry(int failed) {
+        long delay = Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << Math.min(failed - 1, 16));
+        try {
+            executor.schedule(this::createSpare, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down meanwhile.
+            pending.decrementAndGet();
+        }
+    }
+
+    int readySize() {
+        return ready.size();
+    }
+
+    Exception lastFailure() {
+        return lastFailure;
+    }
+
+    // destroy all ready spares and stop creating spares.
+    void shutdown() {
+        shutdown = true;
+        executor.shutdown();
+        drain();
+    }
+
+    private void drain() {
+        Enclave enclave;
+        while ((enclave = ready.poll()) != null) {
+            destroyQuietly(enclave);
+        }
+    }
+
+    private static void destroyQuietly(Enclave enclave) {
+        try {
+            enclave.destroy();
+        } catch (EnclaveDestroyingException e) {
+            // the spare was never handed out, nothing to do.
+        }
+    }
+}
@@ -0,0 +1,267 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.EnclaveStreamContext;
+import org.apache.teaclave.javasdk.common.EnclaveStreamHandle;
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EnclaveStreams transfers {@link InputStream} and {@link ReadableByteChannel} arguments and
+ * results of service methods in chunks, each chunk is an enclave transition of its own. An
+ * argument stream is written into enclave by a feeder thread while the method reads it, and
+ * enclave buffers a few chunks only. A result stream is read from enclave on demand.
+ * <p>
+ * Stream operations are not admitted by enclave's admission gate nor run by its carrier threads,
+ * a method reading a stream argument waits for them, so they must not wait behind it. Instead,
+ * default admission limit leaves {@link AbstractEnclave#RESERVED_THREADS} enclave threads,
+ * TCS in TEE_SDK or agent workers in EMBEDDED_LIB_OS, to them. In TEE_SDK stream operations share
+ * the reserved TCS with service loading and unloading only, in EMBEDDED_LIB_OS those beyond wait in agent's queue. An explicit admission
+ * limit must leave room for them as well. If a write still can't be delivered, its feeder retries
+ * aborting the stream until the invocation finishes, so the reading method fails instead of hanging.
+ */
+final class EnclaveStreams implements AutoCloseable {
+    // max bytes of an argument stream's chunk.
+    private final static int CHUNK_SIZE = 256 << 10;
+    private final static long FULL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final static String FEEDER_THREAD_NAME_PREFIX = "enclave-stream-feeder-";
+    private final static AtomicLong streamIds = new AtomicLong(0x0);
+    private final static AtomicInteger feederCounter = new AtomicInteger(0x0);
+    private final static ExecutorService feeders = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, FEEDER_THREAD_NAME_PREFIX + feederCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    // release a result stream in enclave if host dropped it without closing.
+    private final static Cleaner cleaner = Cleaner.create();
+
+    private final AbstractEnclave enclave;
+    private final List<Long> streams = new ArrayList<>();
+    private final List<Future<?>> feeding = new ArrayList<>();
+    // set once the invocation finished, feeders give up then.
+    private volatile boolean closed;
+
+    private EnclaveStreams(AbstractEnclave enclave) {
+        this.enclave = enclave;
+    }
+
+    // check whether a method has stream parameters or return type.
+    static boolean isStreamMethod(Method method) {
+        for (Class<?> type : method.getParameterTypes()) {
+            if (isStreamType(type)) {
+                return true;
+            }
+        }
+        return isStreamType(method.getReturnType());
+    }
+
+    private static boolean isStreamType(Class<?> type) {
+        return InputStream.class.isAssignableFrom(type) || ReadableByteChannel.class.isAssignableFrom(type);
+    }
+
+    /**
+     * open stream arguments in enclave and start feeding them, the arguments are replaced by
+     * handles. Feeding is stopped by {@link #close()} after the invocation.
+     */
+    static EnclaveStreams feed(AbstractEnclave enclave, Object[] args) throws EnclaveMethodInvokingException {
+        EnclaveStreams arguments = new EnclaveStreams(enclave);
+        if (args == null) {
+            return arguments;
+        }
+        try {
+            for (int index = 0x0; index < args.length; index++) {
+                if (args[index] instanceof InputStream || args[index] instanceof ReadableByteChannel) {
+                    boolean channel = !(args[index] instanceof InputStream);
+                    InputStream source = channel ? Channels.newInputStream((ReadableByteChannel) args[index]) : (InputStream) args[index];
+                    long streamId = streamIds.incrementAndGet();
+                    operate(enclave, EnclaveStreamContext.OPEN, streamId, null);
+                    arguments.streams.add(streamId);
+                    arguments.feeding.add(feeders.submit(() -> arguments.write(streamId, source)));
+                    args[index] = new EnclaveStreamHandle(streamId, channel);
+                }
+            }
+        } catch (EnclaveMethodInvokingException e) {
+            arguments.close();
+            throw e;
+        }
+        return arguments;
+    }
+
+    /**
+     * close stream arguments in enclave, their feeders stop.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        feeding.forEach(feeder -> feeder.cancel(false));
+        for (long streamId : streams) {
+            try {
+                operate(enclave, EnclaveStreamContext.CLOSE, streamId, null);
+            } catch (EnclaveMethodInvokingException ignored) {
+                // enclave was destroyed or stream was gone.
+            }
+        }
+    }
+
+    /**
+     * turn a result stream handle into a stream reading it from enclave.
+     */
+    static Object result(AbstractEnclave enclave, Object result) {
+        if (!(result instanceof EnclaveStreamHandle)) {
+            return result;
+        }
+        EnclaveStreamHandle handle = (EnclaveStreamHandle) result;
+        ResultStream stream = new ResultStream(enclave, handle.getStreamId());
+        return handle.isChannel() ? Channels.newChannel(stream) : stream;
+    }
+
+    private void write(long streamId, InputStream source) {
+        try {
+            byte[] chunk;
+            while ((chunk = source.readNBytes(CHUNK_SIZE)).length != 0x0) {
+                if (!offer(streamId, chunk)) {
+                    // service method closed the stream or the invocation finished.
+                    return;
+                }
+            }
+            operate(enclave, EnclaveStreamContext.END, streamId, null);
+        } catch (Exception e) {
+            abort(streamId, String.valueOf(e.getMessage()));
+        }
+    }
+
+    // the method reading the stream waits until it's aborted, so aborting is retried until the invocation finishes.
+    private void abort(long streamId, String failure) {
+        while (!closed) {
+            try {
+                operate(enclave, EnclaveStreamContext.ABORT, streamId, failure.getBytes(StandardCharsets.UTF_8));
+                return;
+            } catch (EnclaveMethodInvokingException e) {
+                LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    // write a chunk, it's retried while the stream's buffer in enclave is full.
+    private boolean offer(long streamId, byte[] chunk) throws EnclaveMethodInvokingException {
+        while (true) {
+            Object status = operate(enclave, EnclaveStreamContext.WRITE, streamId, chunk);
+            if (!Integer.valueOf(EnclaveStreamContext.WRITE_FULL).equals(status)) {
+                return Integer.valueOf(EnclaveStreamContext.WRITE_ACCEPTED).equals(status);
+            }
+            LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+    }
+
+    private static Object operate(AbstractEnclave enclave, int operation, long streamId, byte[] data) throws EnclaveMethodInvokingException {
+        EnclaveInvocationResult result = enclave.InvokeEnclaveUnadmitted(new EnclaveStreamContext(operation, streamId, data));
+        if (result.getException() != null) {
+            throw new EnclaveMethodInvokingException("stream operation failed in enclave.", result.getException());
+        }
+        return result.getResult();
+    }
+
+    /**
+     * ResultStream reads a stream returned by a service method from enclave chunk by chunk.
+     */
+    private final static class ResultStream extends InputStream {
+        private final AbstractEnclave enclave;
+        private final long streamId;
+        private final Cleaner.Cleanable release;
+        private byte[] current;
+        private int position;
+        private boolean eof;
+
+        ResultStream(AbstractEnclave enclave, long streamId) {
+            this.enclave = enclave;
+            this.streamId = streamId;
+            this.release = cleaner.register(this, () -> {
+                try {
+                    operate(enclave, EnclaveStreamContext.RELEASE, streamId, null);
+                } catch (EnclaveMethodInvokingException ignored) {
+                }
+            });
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0x0, 1) < 0 ? -1 : one[0x0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0x0) {
+                return 0x0;
+            }
+            if (current == null || position == current.length) {
+                if (eof || !nextChunk()) {
+                    return -1;
+                }
+            }
+            int length = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public synchronized int available() {
+            return current == null ? 0x0 : current.length - position;
+        }
+
+        @Override
+        public void close() {
+            release.clean();
+        }
+
+        private boolean nextChunk() throws IOException {
+            try {
+                current = (byte[]) operate(enclave, EnclaveStreamContext.READ, streamId, null);
+            } catch (EnclaveMethodInvokingException e) {
+                throw new IOException(e);
+            }
+            position = 0x0;
+            // an empty chunk is the end of stream.
+            eof = current.length == 0x0;
+            return !eof;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+/**
+ * statistics of a TEE_SDK enclave's IsolateThread cache, they are accumulated since the enclave was created.
+ */
+public interface EnclaveThreadCacheStatistics {
+    /**
+     * the enclave's Hash ID.
+     */
+    int getEnclaveID();
+
+    /**
+     * enclave calls which reused a cached IsolateThread.
+     */
+    long getHits();
+
+    /**
+     * enclave calls which attached a new IsolateThread.
+     */
+    long getMisses();
+
+    /**
+     * least recently used IsolateThreads detached beyond the cache capacity.
+     */
+    long getEvictions();
+
+    /**
+     * IsolateThreads cached currently.
+     */
+    long getCachedThreads();
+
+    /**
+     * ocalls made to get host thread ids.
+     */
+    long getHostThreadIdOcalls();
+}
@@ -17,24 +17,42 @@
 
 package org.apache.teaclave.javasdk.host;
 
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * EnclaveToken avoids an enclave's invocation happen when it's being destroyed.
+ * <p>
+ * Invocations are counted by two monotonic adders, acquired and released, so invokers
+ * don't contend on one counter. An invoker increases acquired before checking alive
+ * flag, destroying clears alive flag and then reads released before acquired. Every
+ * release follows its acquire, so equal sums mean no invocation is ongoing, and one
+ * acquiring after that sees alive flag cleared.
  */
 final class EnclaveToken {
+    // max interval of rechecking ongoing invocations while draining them.
+    private final static long DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final AtomicBoolean alive = new AtomicBoolean(true);
-    private final int MAX_CONCURRENCY_INVOKER = 999999;
-    private final Semaphore tokens = new Semaphore(MAX_CONCURRENCY_INVOKER);
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    // thread waiting for ongoing invocations to finish in destroyToken.
+    private volatile Thread drainer;
 
     /**
      * tryAcquireToken try to get an enclave's token.
      */
     boolean tryAcquireToken() {
+        if (!alive.get()) {
+            return false;
+        }
+        acquired.increment();
         if (alive.get()) {
-            return tokens.tryAcquire();
+            return true;
         }
+        restoreToken();
         return false;
     }
 
@@ -42,7 +60,14 @@ final class EnclaveToken {
      * restoreToken restores the enclave token.
      */
     void restoreToken() {
-        tokens.release();
+        released.increment();
+        // only a destroying enclave is waited for, the drainer checks sums itself.
+        if (!alive.get()) {
+            Thread waiter = drainer;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
     }
 
     /**
@@ -51,13 +76,24 @@ final class EnclaveToken {
      */
     boolean destroyToken() {
         if (alive.compareAndSet(true, false)) {
-            try {
-                tokens.acquire(MAX_CONCURRENCY_INVOKER);
-            } catch (InterruptedException e) {
-                // Should never happen, do nothing here.
+            drainer = Thread.currentThread();
+            boolean interrupted = false;
+            while (!drained()) {
+                LockSupport.parkNanos(this, DRAIN_PARK_NANOS);
+                // keep draining as before, restore the interruption at the end.
+                interrupted |= Thread.interrupted();
+            }
+            drainer = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
             return true;
         }
         return false;
     }
+
+    private boolean drained() {
+        long releasedSum = released.sum();
+        return acquired.sum() == releasedSum;
+    }
 }
@@ -17,12 +17,26 @@
 
 package org.apache.teaclave.javasdk.host;
 
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.utils.IOUtils;
-
 import java.io.*;
-import java.util.zip.GZIPInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Teaclave Java TEE SDK building tool will put native .so files or .tgz files into a java .jar file,
@@ -31,8 +45,30 @@ import java.util.zip.GZIPInputStream;
  * extractAndDeCompressTgz will extract embedded lib os enclave's compressed .tgz image and
  * decompress .tgz file into target temp path from the jar file.
  * it's very convenient for deployment.
+ * <p>
+ * Extracted files are cached by their content's sha-256 in a directory of the user, so later
+ * processes reuse them and skip extraction and decompression. A cache entry is written to a temp
+ * path and renamed in place, under a file lock shared by all processes, and a cached file's digest
+ * is verified again before it's used. The cache directory must be owned by the user, not be a
+ * symbolic link and not be writable by group or others. A decompressed lib os image is only a
+ * template, every process runs a private copy of it since lib os writes into its image. The cache
+ * could be turned off or moved by -Dorg.apache.teaclave.javasdk.enclave.extract.cache(.dir) only,
+ * since configure file itself is extracted from the jar.
  */
 final class ExtractLibrary {
+    private final static String EXTRACT_CACHE_PROPERTY = "org.apache.teaclave.javasdk.enclave.extract.cache";
+    private final static String EXTRACT_CACHE_DIR_PROPERTY = "org.apache.teaclave.javasdk.enclave.extract.cache.dir";
+    private final static String DEFAULT_EXTRACT_CACHE_DIR =
+            System.getProperty("java.io.tmpdir") + File.separator + "teaclave_javasdk_cache_" + System.getProperty("user.name");
+    private final static String CACHE_LOCK_FILE = ".lock";
+    private final static String TGZ_SUFFIX = ".tgz";
+
+    // null if the cache is disabled or its directory isn't usable.
+    private static Path cacheDir;
+    private static boolean cacheDirResolved = false;
+    // private copies of cached images made by this process, they are deleted when process exits.
+    private final static List<Path> imageCopies = new ArrayList<>();
+
     /**
      * check file exist in the .jar or not.
      *
@@ -54,6 +90,14 @@ final class ExtractLibrary {
      * @return the temp file's full path.
      */
     public static String extractLibrary(ClassLoader classLoader, String name) throws IOException {
+        Path dir = getCacheDir();
+        if (dir != null) {
+            return extractCachedLibrary(classLoader, name, dir).toString();
+        }
+        return extractTempLibrary(classLoader, name);
+    }
+
+    private static String extractTempLibrary(ClassLoader classLoader, String name) throws IOException {
         int pos = name.lastIndexOf('.');
         File file = File.createTempFile(name.substring(0, pos), name.substring(pos));
         String fullPath = file.getAbsolutePath();
@@ -78,54 +122,235 @@ final class ExtractLibrary {
      * @return the temp decompression file's full path.
      */
     public static String extractAndDeCompressTgz(ClassLoader classLoader, String name) throws IOException {
-        String fullPath = extractLibrary(classLoader, name);
-        String destDir = fullPath.replace(".tgz", "");
+        Path dir = getCacheDir();
+        if (dir != null) {
+            // the image is written by lib os at runtime, so a process never runs the cached one.
+            return copyImage(extractCachedTgz(classLoader, name, dir)).toString();
+        }
+        String fullPath = extractTempLibrary(classLoader, name);
+        String destDir = fullPath.replace(TGZ_SUFFIX, "");
         deCompressTgz(fullPath, destDir);
         return destDir;
     }
 
-    private static void deCompressTgz(String fullPath, String destDir) throws IOException {
-        TarArchiveEntry entry;
-        TarArchiveEntry[] subEntries;
-        File subEntryFile = null;
-        try (FileInputStream fis = new FileInputStream(fullPath);
-             GZIPInputStream gis = new GZIPInputStream(fis);
-             TarArchiveInputStream tis = new TarArchiveInputStream(gis)) {
-            while ((entry = tis.getNextTarEntry()) != null) {
-                StringBuilder entryFileName = new StringBuilder();
-                entryFileName.append(destDir).append(File.separator).append(entry.getName());
-                File entryFile = new File(entryFileName.toString());
-                if (entry.isDirectory()) {
-                    if (!entryFile.exists()) {
-                        entryFile.mkdir();
-                    }
-                    subEntries = entry.getDirectoryEntries();
-                    for (TarArchiveEntry subEntry : subEntries) {
-                        try (OutputStream out = new FileOutputStream(subEntryFile)) {
-                            subEntryFile = new File(entryFileName + File.separator + subEntry.getName());
-                            IOUtils.copy(tis, out);
+    private static synchronized Path getCacheDir() {
+        if (!cacheDirResolved) {
+            cacheDirResolved = true;
+            if (Boolean.parseBoolean(System.getProperty(EXTRACT_CACHE_PROPERTY, "true"))) {
+                cacheDir = prepareCacheDir(Paths.get(System.getProperty(EXTRACT_CACHE_DIR_PROPERTY, DEFAULT_EXTRACT_CACHE_DIR)));
+            }
+        }
+        return cacheDir;
+    }
+
+    // native libraries are loaded from the cache, so it must be private to the user.
+    static Path prepareCacheDir(Path dir) {
+        try {
+            if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                } catch (UnsupportedOperationException e) {
+                    Files.createDirectories(dir);
+                }
+            }
+            // a link could be redirected to a directory of someone else.
+            if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                return null;
+            }
+            if (!Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).getName().equals(System.getProperty("user.name"))) {
+                return null;
+            }
+            try {
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+                if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+                    return null;
+                }
+            } catch (UnsupportedOperationException e) {
+                // not a posix file system, the owner check is all we have.
+            }
+            return dir.toRealPath();
+        } catch (IOException e) {
+            // fall back to temp files.
+            return null;
+        }
+    }
+
+    static Path extractCachedLibrary(ClassLoader classLoader, String name, Path dir) throws IOException {
+        String expected = digest(classLoader, name);
+        Path entryDir = dir.resolve(expected);
+        Path target = entryDir.resolve(Paths.get(name).getFileName().toString());
+        if (isCachedFile(target, expected)) {
+            return target;
+        }
+        try (CacheLock ignored = new CacheLock(entryDir)) {
+            if (!isCachedFile(target, expected)) {
+                // a damaged entry is replaced.
+                Files.deleteIfExists(target);
+                Path temp = Files.createTempFile(entryDir, target.getFileName().toString(), null);
+                try {
+                    try (InputStream in = classLoader.getResourceAsStream(name)) {
+                        if (in == null) {
+                            throw new FileNotFoundException(name);
                         }
+                        Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    moveInPlace(temp, target);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+        return target;
+    }
+
+    static Path extractCachedTgz(ClassLoader classLoader, String name, Path dir) throws IOException {
+        Path tgz = extractCachedLibrary(classLoader, name, dir);
+        String fileName = tgz.getFileName().toString();
+        Path target = tgz.resolveSibling(fileName.substring(0, fileName.length() - TGZ_SUFFIX.length()));
+        if (Files.isDirectory(target)) {
+            return target;
+        }
+        try (CacheLock ignored = new CacheLock(tgz.getParent())) {
+            if (!Files.isDirectory(target)) {
+                Path temp = Files.createTempDirectory(tgz.getParent(), fileName);
+                try {
+                    deCompressTgz(tgz.toString(), temp.toString());
+                    moveInPlace(temp, target);
+                } finally {
+                    deleteTree(temp.toFile());
+                }
+            }
+        }
+        return target;
+    }
+
+    // a cached file is used only if it's still what was extracted, it's verified right before it's loaded.
+    private static boolean isCachedFile(Path target, String expected) throws IOException {
+        if (!Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(target, LinkOption.NOFOLLOW_LINKS)) {
+            return expected.equals(digest(in));
+        }
+    }
+
+    // copy a cached image to a private temp directory, links and file modes are kept.
+    static Path copyImage(Path image) throws IOException {
+        Path copy = Files.createTempDirectory(image.getFileName().toString());
+        synchronized (imageCopies) {
+            if (imageCopies.isEmpty()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    synchronized (imageCopies) {
+                        imageCopies.forEach(p -> deleteTree(p.toFile()));
                     }
-                } else {
-                    checkFileExists(entryFile);
-                    OutputStream out = new FileOutputStream(entryFile);
-                    IOUtils.copy(tis, out);
-                    out.close();
+                }));
+            }
+            imageCopies.add(copy);
+        }
+        Files.walkFileTree(image, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(image)) {
+                    Files.copy(dir, copy.resolve(image.relativize(dir).toString()), StandardCopyOption.COPY_ATTRIBUTES);
                 }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, copy.resolve(image.relativize(file).toString()),
+                        StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return copy;
+    }
+
+    private static void moveInPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+
+    private static void deleteTree(File file) {
+        // a link is deleted itself, never what it points to.
+        File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String digest(ClassLoader classLoader, String name) throws IOException {
+        try (InputStream in = classLoader.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new FileNotFoundException(name);
             }
+            return digest(in);
         }
     }
 
-    private static void checkFileExists(File file) throws IOException {
-        if (file.isDirectory()) {
-            if (!file.exists()) {
-                file.mkdir();
+    private static String digest(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buf = new byte[8192];
+        int length;
+        while ((length = in.read(buf)) > 0) {
+            digest.update(buf, 0, length);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * CacheLock serializes filling a cache entry among threads and processes.
+     */
+    private static final class CacheLock implements Closeable {
+        // a jvm can't hold one file lock twice, its threads are serialized first.
+        private final static ReentrantLock threadLock = new ReentrantLock();
+
+        private final FileChannel channel;
+
+        CacheLock(Path entryDir) throws IOException {
+            Files.createDirectories(entryDir);
+            threadLock.lock();
+            try {
+                channel = FileChannel.open(entryDir.resolve(CACHE_LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                try {
+                    channel.lock();
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+            } catch (IOException e) {
+                threadLock.unlock();
+                throw e;
             }
-        } else {
-            if (file.getParentFile() != null && !file.getParentFile().exists()) {
-                file.getParentFile().mkdirs();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // closing the channel releases its lock.
+                channel.close();
+            } finally {
+                threadLock.unlock();
             }
-            file.createNewFile();
         }
     }
+
+    private static void deCompressTgz(String fullPath, String destDir) throws IOException {
+        new TgzExtractor(Paths.get(destDir)).extract(Paths.get(fullPath));
+    }
 }
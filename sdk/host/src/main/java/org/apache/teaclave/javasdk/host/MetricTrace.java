@@ -19,13 +19,10 @@ package org.apache.teaclave.javasdk.host;
 
 import org.apache.teaclave.javasdk.host.exception.MetricTraceLogWriteException;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.concurrent.TimeUnit;
 
 /**
  * MetricTrace is Teaclave Java TEE SDK's internal mechanism to trace metric of key enclave operation.
@@ -34,9 +31,12 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class MetricTrace implements AutoCloseable {
     private static boolean enableEnclaveMetricTrace = false;
+    private static boolean enableEnclaveMetricHistogram = false;
     private static volatile String logPath = "JavaEnclave_Metric_Log_" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + ".log";
-    private static volatile BufferedWriter logFile;
-    private static final DecimalFormat formatter = new DecimalFormat("###,###");
+    private static int logBufferSize = 8192;
+    private static long logRotateSizeBytes = 64L * 1024 * 1024;
+    private static long logRotateIntervalMillis = 0x0;
+    private static volatile MetricTraceLogWriter logWriter;
 
     private final long start = System.nanoTime();
 
@@ -44,8 +44,13 @@ public abstract class MetricTrace implements AutoCloseable {
         try {
             boolean enableEnclaveMetricTraceTemp = EnclaveConfigure.getInstance().isEnableMetricTrace();
             String logPathTemp = EnclaveConfigure.getInstance().getMetricTraceFilePath();
+            boolean enableEnclaveMetricHistogramTemp = EnclaveConfigure.getInstance().isEnableMetricHistogram();
             enableEnclaveMetricTrace = enableEnclaveMetricTraceTemp;
+            enableEnclaveMetricHistogram = enableEnclaveMetricHistogramTemp;
             logPath = logPathTemp;
+            logBufferSize = EnclaveConfigure.getInstance().getMetricTraceBufferSize();
+            logRotateSizeBytes = EnclaveConfigure.getInstance().getMetricTraceRotateSizeBytes();
+            logRotateIntervalMillis = EnclaveConfigure.getInstance().getMetricTraceRotateIntervalMillis();
         } catch (IOException e) {
             // if exception happen, use original init value.
         }
@@ -70,34 +75,73 @@ public abstract class MetricTrace implements AutoCloseable {
         return enableEnclaveMetricTrace;
     }
 
+    /**
+     * turn on/off recording latency histograms of service methods, they are queried by
+     * {@link EnclaveMetricsMXBean} and pushed to {@link EnclaveMetricsExporter} providers.
+     *
+     * @param flag turn on/off metric histogram.
+     */
+    public static void setEnclaveMetricHistogramSwitch(boolean flag) {
+        enableEnclaveMetricHistogram = flag;
+    }
+
+    /**
+     * check metric histogram is on or off.
+     *
+     * @return metric histogram is on or off.
+     */
+    public static boolean isEnableEnclaveMetricHistogram() {
+        return enableEnclaveMetricHistogram;
+    }
+
     abstract EnclaveInfo getEnclaveInfo();
 
     abstract String getMetricKeyName();
 
     abstract long getCostInnerEnclave();
 
-    void metricTracing(EnclaveInfo enclaveInfo, String name, long costTotal, long costEnclave) throws IOException {
-        logFile.write(String.format("%s  %s  %s  %s  %s\r\n",
-                enclaveInfo.getEnclaveID(),
-                enclaveInfo.getEnclaveType(),
-                name,
-                formatter.format(TimeUnit.NANOSECONDS.toMicros(costTotal)),
-                formatter.format(TimeUnit.NANOSECONDS.toMicros(costEnclave))));
-        logFile.flush();
+    // time waiting for enclave admission, it's included in the total cost.
+    abstract long getCostQueueWaiting();
+
+    // histograms of the traced service method, null if it's not a service method invocation.
+    abstract EnclaveMethodMetrics getMethodMetrics();
+
+    // number of trace records dropped since metric log writer's ring was full.
+    static long getDroppedMetricTraceLogs() {
+        MetricTraceLogWriter writer = logWriter;
+        return writer == null ? 0x0 : writer.getDropped();
+    }
+
+    // it's formatted and written to log file in background, the record is dropped if writer falls behind.
+    void metricTracing(EnclaveInfo enclaveInfo, String name, long costTotal, long costEnclave, long costWaiting) {
+        logWriter.offer(enclaveInfo, name, costTotal, costEnclave, costWaiting);
     }
 
     @Override
     public void close() throws MetricTraceLogWriteException {
+        EnclaveMethodMetrics metrics = isEnableEnclaveMetricHistogram() ? getMethodMetrics() : null;
+        if (!isEnableEnclaveMetricTrace() && metrics == null) {
+            return;
+        }
+        long costTotal = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.record(costTotal, getCostInnerEnclave(), getCostQueueWaiting());
+        }
         try {
             if (isEnableEnclaveMetricTrace()) {
-                if (logFile == null) {
+                if (logWriter == null) {
                     synchronized (MetricTrace.class) {
-                        if (logFile == null) {
-                            logFile = new BufferedWriter(new FileWriter(logPath));
+                        if (logWriter == null) {
+                            MetricTraceLogWriter writer = new MetricTraceLogWriter(
+                                    Paths.get(logPath), logBufferSize, logRotateSizeBytes, logRotateIntervalMillis);
+                            writer.start();
+                            // write records left in ring at exit.
+                            Runtime.getRuntime().addShutdownHook(new Thread(writer::close));
+                            logWriter = writer;
                         }
                     }
                 }
-                metricTracing(getEnclaveInfo(), getMetricKeyName(), System.nanoTime() - start, getCostInnerEnclave());
+                metricTracing(getEnclaveInfo(), getMetricKeyName(), costTotal, getCostInnerEnclave(), getCostQueueWaiting());
             }
         } catch (IOException e) {
             throw new MetricTraceLogWriteException(e);
@@ -20,20 +20,23 @@ package org.apache.teaclave.javasdk.host;
 final class MetricTraceContext extends MetricTrace {
     private EnclaveInfo info;
     private long costInnerEnclave = 0x0;
-    private final String pattern;
+    private long costQueueWaiting = 0x0;
+    private EnclaveMethodMetrics methodMetrics;
+    private final LogPrefix prefix;
+    private final String service;
 
     MetricTraceContext(EnclaveInfo info, LogPrefix prefix) {
-        this.info = info;
-        pattern = prefix.toString();
+        this(info, prefix, null);
     }
 
     MetricTraceContext(EnclaveInfo info, LogPrefix prefix, String service) {
         this.info = info;
-        pattern = prefix.toString() + ":" + service;
+        this.prefix = prefix;
+        this.service = service;
     }
 
     MetricTraceContext(LogPrefix prefix) {
-        pattern = prefix.toString();
+        this(null, prefix, null);
     }
 
     enum LogPrefix {
@@ -41,7 +44,8 @@ final class MetricTraceContext extends MetricTrace {
         METRIC_LOG_ENCLAVE_DESTROYING_PATTERN("enclave_destroying_cost(us)"),
         METRIC_LOG_ENCLAVE_SERVICE_LOADING_PATTERN("enclave_service_loading(us)"),
         METRIC_LOG_ENCLAVE_SERVICE_UNLOADING_PATTERN("enclave_service_unloading(us)"),
-        METRIC_LOG_ENCLAVE_SERVICE_INVOKING_PATTERN("enclave_service_invoking(us)");
+        METRIC_LOG_ENCLAVE_SERVICE_INVOKING_PATTERN("enclave_service_invoking(us)"),
+        METRIC_LOG_ENCLAVE_SERVICE_BATCH_INVOKING_PATTERN("enclave_service_batch_invoking(us)");
         private final String prefix;
 
         LogPrefix(String prefix) {
@@ -58,6 +62,14 @@ final class MetricTraceContext extends MetricTrace {
         costInnerEnclave = cost;
     }
 
+    void setCostQueueWaiting(long cost) {
+        costQueueWaiting = cost;
+    }
+
+    void setMethodMetrics(EnclaveMethodMetrics metrics) {
+        methodMetrics = metrics;
+    }
+
     void setEnclaveInfo(EnclaveInfo info) {
         this.info = info;
     }
@@ -69,11 +81,22 @@ final class MetricTraceContext extends MetricTrace {
 
     @Override
     String getMetricKeyName() {
-        return pattern;
+        // it's built only if metric trace is on.
+        return service == null ? prefix.toString() : prefix.toString() + ":" + service;
     }
 
     @Override
     long getCostInnerEnclave() {
         return this.costInnerEnclave;
     }
+
+    @Override
+    long getCostQueueWaiting() {
+        return this.costQueueWaiting;
+    }
+
+    @Override
+    EnclaveMethodMetrics getMethodMetrics() {
+        return this.methodMetrics;
+    }
 }
@@ -0,0 +1,282 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MetricTraceLogWriter appends metric trace records to log file in a background appender thread.
+ * Tracing threads put records into a bounded lock-free ring of preallocated records and never wait
+ * for file I/O, a record is dropped and counted if the ring is full. The appender formats records
+ * in batches and flushes once the ring is drained.
+ * <p>
+ * Log file is rolled to {@code path.1} once it exceeds the rotation size, or it has been written
+ * longer than the rotation interval, and earlier rolled files are shifted to {@code path.N+1}. At most
+ * {@link #MAX_ROTATED_FILES} rolled files are kept. If rolling fails, records keep being appended to
+ * log file and rolling is retried once another rotation size or interval passes.
+ */
+final class MetricTraceLogWriter implements AutoCloseable {
+    private final static String METRIC_TRACE_LOG_WRITER_THREAD_NAME = "enclave_metric_trace_log_writer_thread";
+    private final static String METRIC_TRACE_DROPPED_NAME = "metric_trace_dropped";
+    private final static long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final static long CLOSE_TIMEOUT_MILLIS = 1000;
+    private final static int MAX_CAPACITY = 1 << 20;
+    final static int MAX_ROTATED_FILES = 10;
+
+    private final Path path;
+    private final long rotateSizeBytes;
+    private final long rotateIntervalMillis;
+    // a record at index is writable by producer at sequence index, readable by appender at index + 1.
+    private final Record[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread appender;
+    private volatile boolean running = true;
+
+    // the following are accessed by appender only.
+    private final DecimalFormat formatter = new DecimalFormat("###,###");
+    private final StringBuilder line = new StringBuilder();
+    private long head = 0x0;
+    private Writer logFile;
+    private long writtenBytes = 0x0;
+    private long openedMillis;
+    private long reportedDropped = 0x0;
+
+    MetricTraceLogWriter(Path path, int capacity, long rotateSizeBytes, long rotateIntervalMillis) throws IOException {
+        this.path = path;
+        this.rotateSizeBytes = rotateSizeBytes;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+        int size = Integer.highestOneBit(Math.min(Math.max(capacity, 2), MAX_CAPACITY) - 1) << 1;
+        this.records = new Record[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int index = 0x0; index < size; index++) {
+            records[index] = new Record();
+            sequences.set(index, index);
+        }
+        // log file is truncated as before, so that a failure of opening it is thrown to the first tracing.
+        openLogFile(StandardOpenOption.TRUNCATE_EXISTING);
+        appender = new Thread(this::append, METRIC_TRACE_LOG_WRITER_THREAD_NAME);
+        appender.setDaemon(true);
+    }
+
+    void start() {
+        appender.start();
+    }
+
+    /**
+     * put a record into the ring, it never blocks.
+     *
+     * @return false if the ring is full and the record was dropped.
+     */
+    boolean offer(EnclaveInfo info, String name, long costTotal, long costEnclave, long costWaiting) {
+        long sequence;
+        int index;
+        while (true) {
+            sequence = tail.get();
+            index = (int) sequence & mask;
+            long available = sequences.get(index) - sequence;
+            if (available == 0x0) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            } else if (available < 0x0) {
+                dropped.increment();
+                return false;
+            }
+        }
+        Record record = records[index];
+        record.info = info;
+        record.name = name;
+        record.costTotal = costTotal;
+        record.costEnclave = costEnclave;
+        record.costWaiting = costWaiting;
+        sequences.lazySet(index, sequence + 1);
+        return true;
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * stop the appender once records in the ring are written, records offered later are lost.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (appender.isAlive()) {
+            LockSupport.unpark(appender);
+            try {
+                appender.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (appender.getState() == Thread.State.NEW) {
+            append();
+        }
+    }
+
+    private void append() {
+        while (true) {
+            // records offered before close are drained in the last round.
+            boolean stopping = !running;
+            if (drain() == 0x0) {
+                flush();
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        closeLogFile();
+    }
+
+    private int drain() {
+        int drained = 0x0;
+        while (drained < records.length) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Record record = records[index];
+            write(record);
+            record.info = null;
+            record.name = null;
+            sequences.lazySet(index, head + records.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    private void write(Record record) {
+        EnclaveInfo info = record.info;
+        line.setLength(0x0);
+        line.append(info == null ? null : info.getEnclaveID()).append("  ")
+                .append(info == null ? null : info.getEnclaveType()).append("  ")
+                .append(record.name).append("  ")
+                .append(formatter.format(TimeUnit.NANOSECONDS.toMicros(record.costTotal))).append("  ")
+                .append(formatter.format(TimeUnit.NANOSECONDS.toMicros(record.costEnclave))).append("  ")
+                .append(formatter.format(TimeUnit.NANOSECONDS.toMicros(record.costWaiting))).append("\r\n");
+        if (!writeLine()) {
+            dropped.increment();
+        }
+    }
+
+    // the number of dropped records is logged once it changes, and the written records are flushed.
+    private void flush() {
+        long droppedNow = dropped.sum();
+        if (droppedNow != reportedDropped) {
+            reportedDropped = droppedNow;
+            line.setLength(0x0);
+            line.append(METRIC_TRACE_DROPPED_NAME).append("  ").append(droppedNow).append("\r\n");
+            writeLine();
+        }
+        try {
+            if (logFile != null) {
+                logFile.flush();
+            }
+        } catch (IOException e) {
+            closeLogFile();
+        }
+    }
+
+    private boolean writeLine() {
+        try {
+            if (logFile == null) {
+                openLogFile(StandardOpenOption.APPEND);
+            } else if ((rotateSizeBytes > 0x0 && writtenBytes >= rotateSizeBytes)
+                    || (rotateIntervalMillis > 0x0 && System.currentTimeMillis() - openedMillis >= rotateIntervalMillis)) {
+                rotate();
+            }
+            logFile.append(line);
+            writtenBytes += line.length();
+            return true;
+        } catch (IOException e) {
+            // the log file is reopened at next record.
+            closeLogFile();
+            return false;
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeLogFile();
+        try {
+            // the oldest rolled file is replaced by its successor.
+            for (int index = MAX_ROTATED_FILES - 1; index > 0x0; index--) {
+                Path rolled = rotatedPath(index);
+                if (Files.exists(rolled)) {
+                    Files.move(rolled, rotatedPath(index + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rotatedPath(1), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // keep appending, rolling is retried once another rotation size or interval passes.
+            openLogFile(StandardOpenOption.APPEND);
+            writtenBytes = 0x0;
+            return;
+        }
+        openLogFile(StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Path rotatedPath(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void openLogFile(StandardOpenOption option) throws IOException {
+        logFile = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, option);
+        writtenBytes = Files.size(path);
+        openedMillis = System.currentTimeMillis();
+    }
+
+    private void closeLogFile() {
+        if (logFile != null) {
+            try {
+                logFile.close();
+            } catch (IOException e) {
+                // records not flushed are lost.
+            }
+            logFile = null;
+        }
+    }
+
+    private final static class Record {
+        private EnclaveInfo info;
+        private String name;
+        private long costTotal;
+        private long costEnclave;
+        private long costWaiting;
+    }
+}
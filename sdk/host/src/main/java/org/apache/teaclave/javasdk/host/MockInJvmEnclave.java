@@ -70,7 +70,9 @@ final class MockInJvmEnclave extends AbstractEnclave {
         try (MetricTraceContext trace = new MetricTraceContext(
                 this.getEnclaveInfo(),
                 MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_DESTROYING_PATTERN)) {
+            shutdownAsyncExecutor();
             EnclaveInfoManager.getEnclaveInfoManagerInstance().removeEnclave(this);
+            EnclaveMetrics.getEnclaveMetricsInstance().removeEnclave(getEnclaveInfo());
         } catch (MetricTraceLogWriteException e) {
             throw new EnclaveDestroyingException(e);
         }
@@ -18,11 +18,13 @@
 package org.apache.teaclave.javasdk.host;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
-import org.apache.teaclave.javasdk.common.SerializationHelper;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.common.codec.CodecRegistry;
 import org.apache.teaclave.javasdk.host.exception.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * MockInSvmEnclave is a mock svm enclave. Host part code runs in jvm and enclave
@@ -45,6 +47,8 @@ final class MockInSvmEnclave extends AbstractEnclave {
     private long isolateHandle;
     // isolateThreadHandle stores the first attached isolateThread Handle.
     private long isolateThreadHandle;
+    // switchlessHandle stores the switchless ring context, 0 if switchless invocation is disabled.
+    private long switchlessHandle;
     private final MockEnclaveInfo enclaveInfo;
 
     private void extractNativeResource() throws EnclaveCreatingException {
@@ -84,13 +88,23 @@ final class MockInSvmEnclave extends AbstractEnclave {
 
     MockInSvmEnclave() throws EnclaveCreatingException {
         // Set EnclaveContext for this enclave instance.
-        super(EnclaveType.MOCK_IN_SVM, new EnclaveServicesRecycler());
+        super(EnclaveType.MOCK_IN_SVM, new EnclaveServicesRecycler(), getConfiguredCodec());
         extractNativeResource();
         // Create svm sdk enclave by native call, enclaveSvmSdkHandle are set in jni in nativeHandlerContext.
         nativeCreateEnclave(extractTempPath.getEnclaveSvmFilePath());
         // Create svm attach isolate and isolateThread, and they are set in jni in nativeHandlerContext.
         try {
             nativeSvmAttachIsolate(enclaveSvmSdkHandle, buildSVMHeapConf());
+            // Start switchless workers, they play the enclave worker threads on the host.
+            MockInSvmEnclaveConfigure configure = MockInSvmEnclaveConfigure.getInstance();
+            if (configure.getSwitchlessWorkerNum() > 0) {
+                nativeStartSwitchless(enclaveSvmSdkHandle, isolateHandle, configure.getSwitchlessWorkerNum(),
+                        configure.getSwitchlessSpinCount(), configure.getSwitchlessParkMicros());
+            }
+            // There is no TCS in mock, admission applies only with an explicit artificial limit.
+            startEnclaveAdmission(configure.getAdmissionMode(), configure.getAdmissionLimit(),
+                    configure.getAdmissionQueueDepth(), configure.getAdmissionTimeoutMillis());
+            setIteratorPageSize(configure.getIteratorPageSize());
             enclaveInfo = new MockEnclaveInfo(EnclaveType.MOCK_IN_SVM, true, -1, -1);
         } catch (IOException e) {
             throw new EnclaveCreatingException(e);
@@ -111,7 +125,7 @@ final class MockInSvmEnclave extends AbstractEnclave {
     byte[] loadServiceNative(String service) throws ServicesLoadingException {
         byte[] payload;
         try {
-            payload = SerializationHelper.serialize(service);
+            payload = getEnclaveContext().getCodec().encode(service);
         } catch (IOException e) {
             throw new ServicesLoadingException("service name serialization failed.", e);
         }
@@ -122,21 +136,48 @@ final class MockInSvmEnclave extends AbstractEnclave {
     byte[] unloadServiceNative(ServiceHandler handler) throws ServicesUnloadingException {
         byte[] payload;
         try {
-            payload = SerializationHelper.serialize(handler);
+            payload = getEnclaveContext().getCodec().encode(handler);
         } catch (IOException e) {
             throw new ServicesUnloadingException("unload service serialization failed.", e);
         }
         return nativeUnloadService(enclaveSvmSdkHandle, isolateHandle, payload);
     }
 
+    @Override
+    EnclaveInvocationResult invokeMethodResult(EnclaveInvocationContext context) throws EnclaveMethodInvokingException, IOException, ClassNotFoundException {
+        if (switchlessHandle != 0) {
+            return super.invokeMethodResult(context);
+        }
+        // payload and result are passed by this thread's direct buffers, a result which
+        // doesn't fit in output buffer is returned as a byte array and grows the buffer.
+        EnclaveDirectBuffers buffers = EnclaveDirectBuffers.current();
+        ByteBuffer input;
+        try {
+            input = getEnclaveContext().getCodec().encode(context, buffers.input());
+        } catch (IOException e) {
+            throw new EnclaveMethodInvokingException("EnclaveInvokeMetaWrapper serialization failed.", e);
+        }
+        buffers.retainInput(input);
+        ByteBuffer output = buffers.output();
+        byte[] result = nativeInvokeMethodDirect(enclaveSvmSdkHandle, isolateHandle, input, input.position(), output);
+        if (result != null) {
+            buffers.growOutput(result.length);
+            return (EnclaveInvocationResult) CodecRegistry.decode(result);
+        }
+        return (EnclaveInvocationResult) CodecRegistry.decode(output);
+    }
+
     @Override
     byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
         byte[] payload;
         try {
-            payload = SerializationHelper.serialize(context);
+            payload = getEnclaveContext().getCodec().encode(context);
         } catch (IOException e) {
             throw new EnclaveMethodInvokingException("EnclaveInvokeMetaWrapper serialization failed.", e);
         }
+        if (switchlessHandle != 0) {
+            return nativeSwitchlessInvokeMethod(enclaveSvmSdkHandle, isolateHandle, switchlessHandle, payload);
+        }
         return nativeInvokeMethod(enclaveSvmSdkHandle, isolateHandle, payload);
     }
 
@@ -154,10 +195,18 @@ final class MockInSvmEnclave extends AbstractEnclave {
                     MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_DESTROYING_PATTERN)) {
                 // interrupt enclave services' recycler firstly.
                 this.getEnclaveContext().getEnclaveServicesRecycler().interruptServiceRecycler();
+                // no more asynchronous invocations are accepted.
+                shutdownAsyncExecutor();
+                // stop switchless workers before the isolate is torn down.
+                if (switchlessHandle != 0) {
+                    nativeStopSwitchless(switchlessHandle);
+                    switchlessHandle = 0;
+                }
                 // destroy svm isolate.
                 nativeSvmDetachIsolate(enclaveSvmSdkHandle, isolateThreadHandle);
                 nativeDestroyEnclave(enclaveSvmSdkHandle);
                 EnclaveInfoManager.getEnclaveInfoManagerInstance().removeEnclave(this);
+                EnclaveMetrics.getEnclaveMetricsInstance().removeEnclave(getEnclaveInfo());
             } catch (MetricTraceLogWriteException e) {
                 throw new EnclaveDestroyingException(e);
             }
@@ -174,12 +223,20 @@ final class MockInSvmEnclave extends AbstractEnclave {
 
     private native byte[] nativeInvokeMethod(long enclaveSvmSdkHandle, long isolateHandler, byte[] enclaveInvokeMetaWrapper) throws EnclaveMethodInvokingException;
 
+    private native byte[] nativeInvokeMethodDirect(long enclaveSvmSdkHandle, long isolateHandler, ByteBuffer input, int inputLength, ByteBuffer output) throws EnclaveMethodInvokingException;
+
     private native byte[] nativeUnloadService(long enclaveSvmSdkHandle, long isolateHandler, byte[] serviceHandler) throws ServicesUnloadingException;
 
     private native int nativeSvmDetachIsolate(long enclaveSvmSdkHandle, long isolateThreadHandler) throws EnclaveDestroyingException;
 
     private native int nativeDestroyEnclave(long enclaveSvmSdkHandle) throws EnclaveDestroyingException;
 
+    private native int nativeStartSwitchless(long enclaveSvmSdkHandle, long isolateHandler, int workers, int spinCount, int parkMicros) throws EnclaveCreatingException;
+
+    private native byte[] nativeSwitchlessInvokeMethod(long enclaveSvmSdkHandle, long isolateHandler, long switchlessHandler, byte[] enclaveInvokeMetaWrapper) throws EnclaveMethodInvokingException;
+
+    private native void nativeStopSwitchless(long switchlessHandler);
+
     static class MockInSvmExtractTempPath {
         private final String jniTempFilePath;
         private final String enclaveSvmFilePath;
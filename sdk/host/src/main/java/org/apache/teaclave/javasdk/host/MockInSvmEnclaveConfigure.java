@@ -50,6 +50,38 @@ final class MockInSvmEnclaveConfigure {
         }
     }
 
+    int getSwitchlessWorkerNum() {
+        return enclaveConfigure.getSwitchlessWorkerNum();
+    }
+
+    int getSwitchlessSpinCount() {
+        return enclaveConfigure.getSwitchlessSpinCount();
+    }
+
+    int getSwitchlessParkMicros() {
+        return enclaveConfigure.getSwitchlessParkMicros();
+    }
+
+    EnclaveAdmission.Mode getAdmissionMode() {
+        return enclaveConfigure.getAdmissionMode();
+    }
+
+    int getAdmissionLimit() {
+        return enclaveConfigure.getAdmissionLimit();
+    }
+
+    int getAdmissionQueueDepth() {
+        return enclaveConfigure.getAdmissionQueueDepth();
+    }
+
+    int getAdmissionTimeoutMillis() {
+        return enclaveConfigure.getAdmissionTimeoutMillis();
+    }
+
+    int getIteratorPageSize() {
+        return enclaveConfigure.getIteratorPageSize();
+    }
+
     long getEnclaveSVMMaxHeapSize() {
         return enclaveSVMMaxHeapSize;
     }
@@ -0,0 +1,95 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+import org.apache.teaclave.javasdk.host.exception.ServicesLoadingException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * ProxyAsyncInvocationHandler define an asynchronous service's proxy invocation handler.
+ * It makes the invocation on the synchronous service proxy in enclave's async executor,
+ * and returns a CompletableFuture completed with the invocation's result or exception.
+ */
+final class ProxyAsyncInvocationHandler implements InvocationHandler {
+    private final AbstractEnclave enclave;
+    private final Object service;
+    // asynchronous service's methods mapping to synchronous service's methods.
+    private final Map<Method, Method> methods;
+
+    ProxyAsyncInvocationHandler(AbstractEnclave enclave, Object service, Map<Method, Method> methods) {
+        this.enclave = enclave;
+        this.service = service;
+        this.methods = methods;
+    }
+
+    // map asynchronous service interface's methods to synchronous service interface's methods.
+    static Map<Method, Method> buildMethods(Class<?> asyncService, Class<?> service) throws ServicesLoadingException {
+        Map<Method, Method> methods = new HashMap<>();
+        for (Method method : asyncService.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (method.getReturnType() != CompletableFuture.class) {
+                throw new ServicesLoadingException("async service method " + method.getName() + " doesn't return CompletableFuture.");
+            }
+            try {
+                methods.put(method, service.getMethod(method.getName(), method.getParameterTypes()));
+            } catch (NoSuchMethodException e) {
+                throw new ServicesLoadingException("async service method " + method.getName() + " has no matched service method.", e);
+            }
+        }
+        return methods;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Method serviceMethod = methods.get(method);
+        if (serviceMethod == null) {
+            // Object's methods.
+            return method.invoke(service, args);
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        try {
+            enclave.getAsyncExecutor().execute(() -> {
+                try {
+                    future.complete(serviceMethod.invoke(service, args));
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    // Undeclared exception of service proxy is unwrapped, such as EnclaveMethodInvokingException.
+                    future.completeExceptionally(cause instanceof UndeclaredThrowableException ? cause.getCause() : cause);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new EnclaveMethodInvokingException("enclave was destroyed.", e));
+        }
+        return future;
+    }
+}
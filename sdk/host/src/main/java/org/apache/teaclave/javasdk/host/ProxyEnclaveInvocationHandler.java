@@ -19,12 +19,17 @@ package org.apache.teaclave.javasdk.host;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
 import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
+import org.apache.teaclave.javasdk.common.MethodSignature;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
 import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ProxyEnclaveInvocationHandler define a service's proxy invocation handler.
@@ -32,64 +37,123 @@ import java.lang.reflect.Method;
 final class ProxyEnclaveInvocationHandler implements InvocationHandler, Runnable {
     private final AbstractEnclave enclave;
     private final ServiceHandler serviceHandler;
+    // service methods' id negotiated at service loading.
+    private final Map<Method, Integer> methodIds;
+    // whether a method has stream parameters or return type.
+    private final Map<Method, Boolean> streamMethods = new ConcurrentHashMap<>();
+    // latency histograms of methods, they are created at a method's first invocation with histogram enabled.
+    private final Map<Method, EnclaveMethodMetrics> methodMetrics = new ConcurrentHashMap<>();
 
     ProxyEnclaveInvocationHandler(AbstractEnclave enclave, ServiceHandler serviceHandler) {
+        this(enclave, serviceHandler, Collections.emptyMap());
+    }
+
+    ProxyEnclaveInvocationHandler(AbstractEnclave enclave, ServiceHandler serviceHandler, Map<Method, Integer> methodIds) {
         this.enclave = enclave;
         this.serviceHandler = serviceHandler;
+        this.methodIds = methodIds;
+    }
+
+    // map service interface's methods to the ids negotiated in enclave.
+    static Map<Method, Integer> buildMethodIds(Class<?> service, String[] methodSignatures) {
+        if (methodSignatures == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> signatureIds = new HashMap<>();
+        for (int index = 0x0; index < methodSignatures.length; index++) {
+            signatureIds.put(methodSignatures[index], index);
+        }
+        Map<Method, Integer> methodIds = new HashMap<>();
+        for (Method method : service.getMethods()) {
+            Integer methodId = signatureIds.get(MethodSignature.of(method));
+            if (methodId != null) {
+                methodIds.put(method, methodId);
+            }
+        }
+        return methodIds;
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        EnclaveInvocationContext methodInvokeMetaWrapper;
-        String[] parameterTypes;
-        // Building a method wrapper for enclave native invocation.
-        if (args != null) {
-            parameterTypes = new String[args.length];
+        if (streamMethods.computeIfAbsent(method, EnclaveStreams::isStreamMethod)) {
+            // stream arguments are fed while the method runs, they are closed once it returns.
+            try (EnclaveStreams streams = EnclaveStreams.feed(enclave, args)) {
+                return EnclaveStreams.result(enclave, invokeEnclave(method, args));
+            }
+        }
+        return invokeEnclave(method, args);
+    }
+
+    private Object invokeEnclave(Method method, Object[] args) throws Throwable {
+        EnclaveInvocationContext methodInvokeMetaWrapper = buildInvocationContext(method, args);
+        // Handle service method invocation exception.
+        try (MetricTraceContext trace = new MetricTraceContext(
+                enclave.getEnclaveInfo(),
+                MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_SERVICE_INVOKING_PATTERN,
+                method.getName())) {
+            if (MetricTrace.isEnableEnclaveMetricHistogram()) {
+                trace.setMethodMetrics(methodMetrics.computeIfAbsent(method, m -> EnclaveMetrics.getEnclaveMetricsInstance()
+                        .methodMetrics(enclave.getEnclaveInfo(), serviceHandler.getServiceInterfaceName(), m.getName())));
+            }
+            EnclaveInvocationResult result = enclave.InvokeEnclaveMethod(methodInvokeMetaWrapper, trace);
+            trace.setCostInnerEnclave(result.getCost());
+            Throwable rootCause = declaredCause(method, result.getException());
+            if (rootCause != null) {
+                throw rootCause;
+            }
+            return EnclaveCursorIterator.result(enclave, method.getName(), result.getResult());
+        }
+    }
+
+    // Building a method wrapper for enclave native invocation.
+    EnclaveInvocationContext buildInvocationContext(Method method, Object[] args) {
+        Integer methodId = methodIds.get(method);
+        if (methodId != null) {
+            // Only instance identity, method id and arguments are needed if the method has an id.
+            return new EnclaveInvocationContext(
+                    serviceHandler.getInstanceIdentity(),
+                    methodId,
+                    args);
+        } else if (args != null) {
+            String[] parameterTypes = new String[args.length];
             // Get a method's parameter type exactly.
             Class<?>[] paraTypes = method.getParameterTypes();
             for (int index = 0x0; index < args.length; index++) {
                 parameterTypes[index] = paraTypes[index].getName();
             }
-            methodInvokeMetaWrapper = new EnclaveInvocationContext(
+            return new EnclaveInvocationContext(
                     serviceHandler,
                     method.getName(),
                     parameterTypes,
                     args);
-        } else {
-            methodInvokeMetaWrapper = new EnclaveInvocationContext(
-                    serviceHandler,
-                    method.getName(), null, null);
         }
+        return new EnclaveInvocationContext(
+                serviceHandler,
+                method.getName(), null, null);
+    }
 
-        // Handle service method invocation exception.
-        try (MetricTraceContext trace = new MetricTraceContext(
-                enclave.getEnclaveInfo(),
-                MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_SERVICE_INVOKING_PATTERN,
-                method.getName())) {
-            EnclaveInvocationResult result = enclave.InvokeEnclaveMethod(methodInvokeMetaWrapper);
-            trace.setCostInnerEnclave(result.getCost());
-            Throwable causeException = result.getException();
-            if (causeException instanceof ConfidentialComputingException) {
-                Throwable enclaveCauseException = causeException.getCause();
-                Class<?>[] exceptionTypes = method.getExceptionTypes();
-                if (enclaveCauseException instanceof InvocationTargetException) {
-                    // Check whether cause exception matches one of the method's exception declaration.
-                    // If it's true, it illustrates that an exception happened in enclave when the service
-                    // method was invoked in enclave, we should throw this exception directly and user will
-                    // handle it.
-                    // If it's false, it illustrates that an exception happened in host side or enclave side,
-                    // but the exception is not belong to the method's declaration. In the case we should throw
-                    // EnclaveMethodInvokingException again.
-                    Throwable rootCause = enclaveCauseException.getCause();
-                    for (Class<?> exception : exceptionTypes) {
-                        if (exception == rootCause.getClass()) {
-                            throw rootCause;
-                        }
+    // get the exception thrown by service method in enclave if it's one of the method's declaration.
+    static Throwable declaredCause(Method method, Throwable causeException) {
+        if (causeException instanceof ConfidentialComputingException) {
+            Throwable enclaveCauseException = causeException.getCause();
+            Class<?>[] exceptionTypes = method.getExceptionTypes();
+            if (enclaveCauseException instanceof InvocationTargetException) {
+                // Check whether cause exception matches one of the method's exception declaration.
+                // If it's true, it illustrates that an exception happened in enclave when the service
+                // method was invoked in enclave, we should throw this exception directly and user will
+                // handle it.
+                // If it's false, it illustrates that an exception happened in host side or enclave side,
+                // but the exception is not belong to the method's declaration. In the case we should throw
+                // EnclaveMethodInvokingException again.
+                Throwable rootCause = enclaveCauseException.getCause();
+                for (Class<?> exception : exceptionTypes) {
+                    if (exception == rootCause.getClass()) {
+                        return rootCause;
                     }
                 }
             }
-            return result.getResult();
         }
+        return null;
     }
 
     AbstractEnclave getEnclave() {
@@ -20,6 +20,8 @@ package org.apache.teaclave.javasdk.host;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ProxyMockJvmInvocationHandler define a service's proxy invocation handler.
@@ -29,6 +31,8 @@ import java.lang.reflect.Method;
 final class ProxyMockJvmInvocationHandler<T> implements InvocationHandler, Runnable {
     private final AbstractEnclave enclave;
     private final T proxyService;
+    // latency histograms of methods, they are created at a method's first invocation with histogram enabled.
+    private final Map<Method, EnclaveMethodMetrics> methodMetrics = new ConcurrentHashMap<>();
 
     ProxyMockJvmInvocationHandler(AbstractEnclave enclave, T proxyService) {
         this.enclave = enclave;
@@ -42,6 +46,10 @@ final class ProxyMockJvmInvocationHandler<T> implements InvocationHandler, Runna
                 enclave.getEnclaveInfo(),
                 MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_SERVICE_INVOKING_PATTERN,
                 method.getName())) {
+            if (MetricTrace.isEnableEnclaveMetricHistogram()) {
+                trace.setMethodMetrics(methodMetrics.computeIfAbsent(method, m -> EnclaveMetrics.getEnclaveMetricsInstance()
+                        .methodMetrics(enclave.getEnclaveInfo(), m.getDeclaringClass().getName(), m.getName())));
+            }
             result = method.invoke(proxyService, args);
         } catch (InvocationTargetException e) {
             // Check whether cause exception matches one of the method's exception declaration.
@@ -63,6 +71,10 @@ final class ProxyMockJvmInvocationHandler<T> implements InvocationHandler, Runna
         return result;
     }
 
+    AbstractEnclave getEnclave() {
+        return enclave;
+    }
+
     @Override
     public void run() {
         enclave.getEnclaveContext().getEnclaveServicesRecycler().enqueueProxyHandler(this);
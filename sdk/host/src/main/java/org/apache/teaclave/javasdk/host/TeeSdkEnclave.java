@@ -18,11 +18,13 @@
 package org.apache.teaclave.javasdk.host;
 
 import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
-import org.apache.teaclave.javasdk.common.SerializationHelper;
+import org.apache.teaclave.javasdk.common.EnclaveInvocationResult;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.common.codec.CodecRegistry;
 import org.apache.teaclave.javasdk.host.exception.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * TeeSdkEnclave is a sgx2 enclave based on Intel's sgx sdk.
@@ -41,6 +43,8 @@ final class TeeSdkEnclave extends AbstractEnclave {
     private long isolateHandle;
     // isolateThreadHandle stores the first attached isolateThread Handle.
     private long isolateThreadHandle;
+    // switchlessHandle stores the switchless ring context, 0 if switchless invocation is disabled.
+    private long switchlessHandle;
     private final SGXEnclaveInfo enclaveInfo;
 
     private void extractNativeResource() throws EnclaveCreatingException {
@@ -79,16 +83,54 @@ final class TeeSdkEnclave extends AbstractEnclave {
 
     TeeSdkEnclave(EnclaveDebug mode) throws EnclaveCreatingException {
         // Set EnclaveContext for this enclave instance.
-        super(EnclaveType.TEE_SDK, mode, new EnclaveServicesRecycler());
+        super(EnclaveType.TEE_SDK, mode, new EnclaveServicesRecycler(), getConfiguredCodec());
         extractNativeResource();
+        // Validate TCS partition before anything native is created, so a bad configure leaks nothing.
+        TeeSdkEnclaveConfigure configure;
+        int switchlessWorkers;
+        int carriers;
+        try {
+            configure = TeeSdkEnclaveConfigure.getInstance();
+            switchlessWorkers = configure.getSwitchlessWorkerNum();
+            carriers = configure.getCarrierThreadNum();
+        } catch (IOException e) {
+            throw new EnclaveCreatingException(e);
+        }
+        if (switchlessWorkers > 0 && switchlessWorkers >= configure.getMaxEnclaveThreadNum()) {
+            throw new EnclaveCreatingException("switchless workers should be less than enclave max thread number.");
+        }
+        if (carriers + switchlessWorkers > configure.getMaxEnclaveThreadNum()) {
+            throw new EnclaveCreatingException("carrier threads and switchless workers exceed enclave max thread number.");
+        }
         // Create tee sdk enclave by native call, enclaveHandler is set in jni in nativeHandlerContext.
         nativeCreateEnclave(mode.getValue(), extractTempPath.getTeeSdkSignedFilePath());
         try {
             // Create svm attach isolate and isolateThread, and they are set in jni in nativeHandlerContext.
-            nativeSvmAttachIsolate(enclaveHandle, TeeSdkEnclaveConfigure.getInstance().isEnableTeeSDKSymbolTracing(), buildSVMHeapConf());
+            nativeSvmAttachIsolate(enclaveHandle, configure.isEnableTeeSDKSymbolTracing(), buildSVMHeapConf());
 
             // Initialize per-TCS IsolateThread cache mode.
-            nativeInitializeThreadCache(enclaveHandle, isolateHandle, 2);
+            nativeInitializeThreadCache(enclaveHandle, isolateHandle, configure.getThreadCacheCapacity());
+
+            // Start switchless workers, each of them occupies one TCS.
+            if (switchlessWorkers > 0) {
+                nativeStartSwitchless(enclaveHandle, isolateHandle, switchlessWorkers,
+                        configure.getSwitchlessSpinCount(), configure.getSwitchlessParkMicros());
+            }
+
+            // Start carrier threads, each of them stays bound to one TCS.
+            startEnclaveExecutor(carriers);
+
+            // Bound concurrent invocations to enclave threads, the rest wait on host side.
+            // A few enclave threads are left to stream operations, which admitted invocations may wait for,
+            // and to service loading and unloading.
+            int admissionLimit = configure.getAdmissionLimit();
+            if (admissionLimit == 0) {
+                admissionLimit = Math.max(1, configure.getMaxEnclaveThreadNum() - switchlessWorkers - RESERVED_THREADS);
+            }
+            startEnclaveAdmission(configure.getAdmissionMode(), admissionLimit,
+                    configure.getAdmissionQueueDepth(), configure.getAdmissionTimeoutMillis());
+            startReservedLane(RESERVED_THREADS);
+            setIteratorPageSize(configure.getIteratorPageSize());
 
             // Create enclave info.
             boolean isDebuggable = mode.getValue() != 0x2;
@@ -114,16 +156,26 @@ final class TeeSdkEnclave extends AbstractEnclave {
 
     private native byte[] nativeInvokeMethod(long enclaveHandler, long isolateHandler, byte[] enclaveInvokeMetaWrapper) throws EnclaveMethodInvokingException;
 
+    private native byte[] nativeInvokeMethodDirect(long enclaveHandler, long isolateHandler, ByteBuffer input, int inputLength, ByteBuffer output) throws EnclaveMethodInvokingException;
+
     private native byte[] nativeUnloadService(long enclaveHandler, long isolateHandler, byte[] serviceHandler) throws ServicesUnloadingException;
 
     private native int nativeSvmDetachIsolate(long enclaveHandler, long isolateThreadHandler) throws EnclaveDestroyingException;
 
     private native int nativeDestroyEnclave(long enclaveHandler) throws EnclaveDestroyingException;
 
-    private native int nativeInitializeThreadCache(long enclaveHandler, long isolateHandler, int threadCount) throws EnclaveCreatingException;
+    private native int nativeInitializeThreadCache(long enclaveHandler, long isolateHandler, int capacity) throws EnclaveCreatingException;
 
     private native void nativeReleaseThreadCache(long enclaveHandler);
 
+    private native long[] nativeThreadCacheStatistics(long enclaveHandler);
+
+    private native int nativeStartSwitchless(long enclaveHandler, long isolateHandler, int workers, int spinCount, int parkMicros) throws EnclaveCreatingException;
+
+    private native byte[] nativeSwitchlessInvokeMethod(long enclaveHandler, long isolateHandler, long switchlessHandler, byte[] enclaveInvokeMetaWrapper) throws EnclaveMethodInvokingException;
+
+    private native void nativeStopSwitchless(long switchlessHandler);
+
     static int verifyAttestationReport(byte[] quote) throws RemoteAttestationException {
         return SGXRemoteAttestationVerify.VerifyAttestationReport(quote);
     }
@@ -132,7 +184,7 @@ final class TeeSdkEnclave extends AbstractEnclave {
     byte[] loadServiceNative(String service) throws ServicesLoadingException {
         byte[] payload;
         try {
-            payload = SerializationHelper.serialize(service);
+            payload = getEnclaveContext().getCodec().encode(service);
         } catch (IOException e) {
             throw new ServicesLoadingException("service name serialization failed.", e);
         }
@@ -143,21 +195,48 @@ final class TeeSdkEnclave extends AbstractEnclave {
     byte[] unloadServiceNative(ServiceHandler handler) throws ServicesUnloadingException {
         byte[] payload;
         try {
-            payload = SerializationHelper.serialize(handler);
+            payload = getEnclaveContext().getCodec().encode(handler);
         } catch (IOException e) {
             throw new ServicesUnloadingException("unload service serialization failed.", e);
         }
         return nativeUnloadService(enclaveHandle, isolateHandle, payload);
     }
 
+    @Override
+    EnclaveInvocationResult invokeMethodResult(EnclaveInvocationContext context) throws EnclaveMethodInvokingException, IOException, ClassNotFoundException {
+        if (switchlessHandle != 0) {
+            return super.invokeMethodResult(context);
+        }
+        // payload and result are passed by this thread's direct buffers, a result which
+        // doesn't fit in output buffer is returned as a byte array and grows the buffer.
+        EnclaveDirectBuffers buffers = EnclaveDirectBuffers.current();
+        ByteBuffer input;
+        try {
+            input = getEnclaveContext().getCodec().encode(context, buffers.input());
+        } catch (IOException e) {
+            throw new EnclaveMethodInvokingException("EnclaveInvokeMetaWrapper serialization failed.", e);
+        }
+        buffers.retainInput(input);
+        ByteBuffer output = buffers.output();
+        byte[] result = nativeInvokeMethodDirect(enclaveHandle, isolateHandle, input, input.position(), output);
+        if (result != null) {
+            buffers.growOutput(result.length);
+            return (EnclaveInvocationResult) CodecRegistry.decode(result);
+        }
+        return (EnclaveInvocationResult) CodecRegistry.decode(output);
+    }
+
     @Override
     byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
         byte[] payload;
         try {
-            payload = SerializationHelper.serialize(context);
+            payload = getEnclaveContext().getCodec().encode(context);
         } catch (IOException e) {
             throw new EnclaveMethodInvokingException("EnclaveInvokeMetaWrapper serialization failed.", e);
         }
+        if (switchlessHandle != 0) {
+            return nativeSwitchlessInvokeMethod(enclaveHandle, isolateHandle, switchlessHandle, payload);
+        }
         return nativeInvokeMethod(enclaveHandle, isolateHandle, payload);
     }
 
@@ -171,6 +250,21 @@ final class TeeSdkEnclave extends AbstractEnclave {
         return this.enclaveInfo;
     }
 
+    /**
+     * getThreadCacheStatistics returns the enclave's IsolateThread cache statistics,
+     * or null if the enclave was destroyed.
+     */
+    EnclaveThreadCacheStatistics getThreadCacheStatistics() {
+        if (!getEnclaveContext().getEnclaveToken().tryAcquireToken()) {
+            return null;
+        }
+        try {
+            return new ThreadCacheStatistics(enclaveInfo.getEnclaveID(), nativeThreadCacheStatistics(enclaveHandle));
+        } finally {
+            getEnclaveContext().getEnclaveToken().restoreToken();
+        }
+    }
+
     @Override
     public void destroy() throws EnclaveDestroyingException {
         // destroyToken will wait for all ongoing enclave invocations finished.
@@ -180,6 +274,13 @@ final class TeeSdkEnclave extends AbstractEnclave {
                     MetricTraceContext.LogPrefix.METRIC_LOG_ENCLAVE_DESTROYING_PATTERN)) {
                 // interrupt enclave services' recycler firstly.
                 this.getEnclaveContext().getEnclaveServicesRecycler().interruptServiceRecycler();
+                // no more asynchronous invocations are accepted, carrier threads exit.
+                shutdownAsyncExecutor();
+                // stop switchless workers, they leave the enclave and detach their IsolateThreads.
+                if (switchlessHandle != 0) {
+                    nativeStopSwitchless(switchlessHandle);
+                    switchlessHandle = 0;
+                }
                 // Release pool helper threads so they exit and their IsolateThreads
                 // can be cleaned up during isolate teardown.
                 nativeReleaseThreadCache(enclaveHandle);
@@ -188,6 +289,7 @@ final class TeeSdkEnclave extends AbstractEnclave {
                 // destroy the enclave.
                 nativeDestroyEnclave(enclaveHandle);
                 EnclaveInfoManager.getEnclaveInfoManagerInstance().removeEnclave(this);
+                EnclaveMetrics.getEnclaveMetricsInstance().removeEnclave(getEnclaveInfo());
             } catch (MetricTraceLogWriteException e) {
                 throw new EnclaveDestroyingException(e);
             }
@@ -211,4 +313,45 @@ final class TeeSdkEnclave extends AbstractEnclave {
             return teeSdkSignedFilePath;
         }
     }
+
+    // values are hits, misses, evictions, cached IsolateThreads and host thread id ocalls in order.
+    private final static class ThreadCacheStatistics implements EnclaveThreadCacheStatistics {
+        private final int enclaveID;
+        private final long[] values;
+
+        ThreadCacheStatistics(int enclaveID, long[] values) {
+            this.enclaveID = enclaveID;
+            this.values = values;
+        }
+
+        @Override
+        public int getEnclaveID() {
+            return enclaveID;
+        }
+
+        @Override
+        public long getHits() {
+            return values[0x0];
+        }
+
+        @Override
+        public long getMisses() {
+            return values[1];
+        }
+
+        @Override
+        public long getEvictions() {
+            return values[2];
+        }
+
+        @Override
+        public long getCachedThreads() {
+            return values[3];
+        }
+
+        @Override
+        public long getHostThreadIdOcalls() {
+            return values[4];
+        }
+    }
 }
@@ -77,6 +77,46 @@ final class TeeSdkEnclaveConfigure {
         return enclaveConfigure.getMaxEnclaveEPCMemorySizeBytes();
     }
 
+    int getSwitchlessWorkerNum() {
+        return enclaveConfigure.getSwitchlessWorkerNum();
+    }
+
+    int getSwitchlessSpinCount() {
+        return enclaveConfigure.getSwitchlessSpinCount();
+    }
+
+    int getSwitchlessParkMicros() {
+        return enclaveConfigure.getSwitchlessParkMicros();
+    }
+
+    int getThreadCacheCapacity() {
+        return enclaveConfigure.getThreadCacheCapacity();
+    }
+
+    int getCarrierThreadNum() {
+        return enclaveConfigure.getCarrierThreadNum();
+    }
+
+    EnclaveAdmission.Mode getAdmissionMode() {
+        return enclaveConfigure.getAdmissionMode();
+    }
+
+    int getAdmissionLimit() {
+        return enclaveConfigure.getAdmissionLimit();
+    }
+
+    int getAdmissionQueueDepth() {
+        return enclaveConfigure.getAdmissionQueueDepth();
+    }
+
+    int getAdmissionTimeoutMillis() {
+        return enclaveConfigure.getAdmissionTimeoutMillis();
+    }
+
+    int getIteratorPageSize() {
+        return enclaveConfigure.getIteratorPageSize();
+    }
+
     long getEnclaveSVMMaxHeapSize() {
         return enclaveSVMMaxHeapSize;
     }
@@ -0,0 +1,311 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * TgzExtractor decompresses a .tgz image into a directory. The caller thread inflates and
+ * parses the archive, while writer threads digest and write the entries' data, so inflating
+ * overlaps file writing. Data of one entry is written in order, different entries are written
+ * in parallel, and data queued for writing is bounded in memory.
+ * <p>
+ * Every extracted file's size is checked against its tar header. If the image carries a manifest
+ * entry of sha-256 sums, in sha256sum's output format, all files must match it exactly. A file or
+ * link appearing twice in the image is rejected, since its writers would race on one target.
+ */
+final class TgzExtractor {
+    // manifest entry appended to the image by enclave building script.
+    final static String MANIFEST_ENTRY = ".image_manifest";
+    private final static String WRITER_THREAD_NAME_PREFIX = "tgz-extract-writer-";
+    private final static int READ_BUFFER_SIZE = 1 << 20;
+    private final static int INFLATE_BUFFER_SIZE = 1 << 16;
+    // max bytes of one write, a larger file is written in chunks.
+    private final static int CHUNK_SIZE = 4 << 20;
+    // max bytes read but not written yet.
+    private final static int MAX_PENDING_BYTES = 64 << 20;
+    private final static int MAX_WRITER_THREADS = 4;
+
+    private final Path destDir;
+    private final Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+    private final Map<String, FileState> files = new HashMap<>();
+    private final List<TarArchiveEntry> links = new ArrayList<>();
+    // names of files and links extracted so far.
+    private final Set<String> entries = new HashSet<>();
+    private Map<String, String> manifest;
+
+    TgzExtractor(Path destDir) {
+        this.destDir = destDir.toAbsolutePath().normalize();
+    }
+
+    void extract(Path tgz) throws IOException {
+        int writers = Math.max(1, Math.min(MAX_WRITER_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger threadCounter = new AtomicInteger(0x0);
+        ExecutorService executor = Executors.newFixedThreadPool(writers, r -> {
+            Thread thread = new Thread(r, WRITER_THREAD_NAME_PREFIX + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(destDir);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(tgz), READ_BUFFER_SIZE);
+                 TarArchiveInputStream tis = new TarArchiveInputStream(new GZIPInputStream(in, INFLATE_BUFFER_SIZE))) {
+                TarArchiveEntry entry;
+                while ((entry = tis.getNextTarEntry()) != null) {
+                    extractEntry(tis, entry, executor);
+                }
+            }
+            awaitWriters();
+            for (TarArchiveEntry link : links) {
+                createLink(link);
+            }
+            verify();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void extractEntry(TarArchiveInputStream tis, TarArchiveEntry entry, ExecutorService executor) throws IOException {
+        if (MANIFEST_ENTRY.equals(entry.getName())) {
+            manifest = parseManifest(tis);
+            return;
+        }
+        Path target = resolve(entry.getName());
+        if (!entry.isDirectory() && !entries.add(normalize(entry.getName()))) {
+            throw new IOException("image entry " + entry.getName() + " is duplicated.");
+        }
+        if (entry.isDirectory()) {
+            Files.createDirectories(target);
+        } else if (entry.isSymbolicLink() || entry.isLink()) {
+            // links are created once all files were written.
+            links.add(entry);
+        } else if (entry.isFile()) {
+            Files.createDirectories(target.getParent());
+            FileState file = new FileState(target, entry.getSize());
+            files.put(normalize(entry.getName()), file);
+            long remaining = entry.getSize();
+            do {
+                int length = (int) Math.min(remaining, CHUNK_SIZE);
+                byte[] chunk = readChunk(tis, length);
+                remaining -= length;
+                file.submit(chunk, remaining == 0x0, executor);
+            } while (remaining > 0x0);
+        }
+    }
+
+    private byte[] readChunk(InputStream in, int length) throws IOException {
+        try {
+            pendingBytes.acquire(length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while extracting image.");
+        }
+        byte[] chunk = new byte[length];
+        int offset = 0x0;
+        while (offset < length) {
+            int read = in.read(chunk, offset, length - offset);
+            if (read < 0) {
+                pendingBytes.release(length);
+                throw new IOException("image entry is truncated.");
+            }
+            offset += read;
+        }
+        return chunk;
+    }
+
+    private void awaitWriters() throws IOException {
+        try {
+            CompletableFuture.allOf(files.values().stream().map(file -> file.tail).toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void createLink(TarArchiveEntry entry) throws IOException {
+        Path target = resolve(entry.getName());
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        if (entry.isSymbolicLink()) {
+            Files.createSymbolicLink(target, Paths.get(entry.getLinkName()));
+        } else {
+            Files.createLink(target, resolve(entry.getLinkName()));
+            // a hard link is the same file as its target for verification.
+            FileState file = files.get(normalize(entry.getLinkName()));
+            if (file != null) {
+                files.put(normalize(entry.getName()), file);
+            }
+        }
+    }
+
+    private void verify() throws IOException {
+        for (Map.Entry<String, FileState> file : files.entrySet()) {
+            if (file.getValue().written != file.getValue().size) {
+                throw new IOException("image entry " + file.getKey() + " size doesn't match.");
+            }
+        }
+        if (manifest == null) {
+            return;
+        }
+        if (manifest.size() != files.size()) {
+            throw new IOException("image entries don't match manifest.");
+        }
+        for (Map.Entry<String, String> expected : manifest.entrySet()) {
+            FileState file = files.get(expected.getKey());
+            if (file == null || !expected.getValue().equals(file.digest)) {
+                throw new IOException("image entry " + expected.getKey() + " doesn't match manifest.");
+            }
+        }
+    }
+
+    // an entry must stay in destination directory.
+    private Path resolve(String name) throws IOException {
+        Path target = destDir.resolve(name).normalize();
+        if (!target.startsWith(destDir)) {
+            throw new IOException("image entry " + name + " is outside of extraction directory.");
+        }
+        return target;
+    }
+
+    private static String normalize(String name) {
+        return Paths.get(name).normalize().toString();
+    }
+
+    private static Map<String, String> parseManifest(InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        in.transferTo(content);
+        Map<String, String> manifest = new HashMap<>();
+        for (String line : content.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            // sha256sum's format, "<sha-256>  <path>" or "<sha-256> *<path>".
+            int pos = line.indexOf(' ');
+            if (pos <= 0 || pos + 2 > line.length()) {
+                throw new IOException("illegal image manifest line: " + line);
+            }
+            manifest.put(normalize(line.substring(pos + 2)), line.substring(0x0, pos).toLowerCase());
+        }
+        return manifest;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * FileState is an extracted file, its chunks are digested and written in order by a chain of tasks.
+     */
+    private final class FileState {
+        private final Path target;
+        private final long size;
+        private final MessageDigest sha256;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private FileChannel channel;
+        private long written = 0x0;
+        private String digest;
+
+        FileState(Path target, long size) throws IOException {
+            this.target = target;
+            this.size = size;
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+
+        void submit(byte[] chunk, boolean last, ExecutorService executor) {
+            // a chunk after a failed one is dropped, but still gives its bytes back.
+            tail = tail.handleAsync((v, t) -> {
+                try {
+                    if (t != null) {
+                        throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+                    }
+                    write(chunk, last);
+                    return null;
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    pendingBytes.release(chunk.length);
+                }
+            }, executor);
+        }
+
+        private void write(byte[] chunk, boolean last) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                // set the file's length up front, so it isn't extended by every write.
+                if (size > chunk.length) {
+                    channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                }
+            }
+            try {
+                sha256.update(chunk);
+                ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, written);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            if (last) {
+                channel.close();
+                digest = toHex(sha256.digest());
+            }
+        }
+    }
+}
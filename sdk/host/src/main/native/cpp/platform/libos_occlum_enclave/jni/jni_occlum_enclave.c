@@ -26,6 +26,8 @@
 #include "jni_occlum_enclave.h"
 
 #define OCCLUM_CMD_ARGS_MAX_LENGTH    50
+// java cmd path, cp, main class, agent args and the terminating NULL.
+#define OCCLUM_CMD_RESERVED_ARGS      10
 #define OCCLUM_HARDWARE_PAL_PATH      "/opt/occlum/build/lib/libocclum-pal.so"
 #define OCCLUM_SIMULATE_PAL_PATH      "/opt/occlum/build/lib/libocclum-pal_sim.so"
 #define OCCLUM_CMD_PATH               "/usr/lib/dragonwell11/jre/bin/java"
@@ -44,6 +46,18 @@ jint parse_http_handler_thread_pool_size(JNIEnv *env, jobject config) {
     return (*env)->CallObjectMethod(env, config, get_thread_pool_id);
 }
 
+jint parse_agent_queue_size(JNIEnv *env, jobject config) {
+    jclass config_class = (*env)->GetObjectClass(env, config);
+    jmethodID get_queue_size_id = (*env)->GetMethodID(env, config_class, "getEnclaveAgentQueueSize", "()I");
+    return (*env)->CallIntMethod(env, config, get_queue_size_id);
+}
+
+jboolean parse_agent_virtual_threads(JNIEnv *env, jobject config) {
+    jclass config_class = (*env)->GetObjectClass(env, config);
+    jmethodID virtual_threads_id = (*env)->GetMethodID(env, config_class, "isEnclaveAgentVirtualThreads", "()Z");
+    return (*env)->CallBooleanMethod(env, config, virtual_threads_id);
+}
+
 jstring parse_log_level(JNIEnv *env, jobject config) {
     jclass config_class = (*env)->GetObjectClass(env, config);
     jmethodID get_log_level_id = (*env)->GetMethodID(env, config_class, "getLogLevel", "()Ljava/lang/String;");
@@ -123,10 +137,10 @@ JNIEXPORT jint JNICALL JavaEnclave_TeeLibOSNativeCreateEnclave(JNIEnv *env, jobj
     cmd_args[0] = cmd_path;
     jobjectArray jvm_args = parse_jvm_cmd_args(env, config);
     jsize length = (*env)->GetArrayLength(env, jvm_args);
-    if (length >= OCCLUM_CMD_ARGS_MAX_LENGTH) {
+    if (length > OCCLUM_CMD_ARGS_MAX_LENGTH - OCCLUM_CMD_RESERVED_ARGS) {
         (*env)->ReleaseStringUTFChars(env, path, path_str);
         (*env)->ReleaseStringUTFChars(env, log_level, log_level_str);
-        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "create tee lib os enclave: jvm args number exceeds max limitation 50.")
+        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "create tee lib os enclave: jvm args number exceeds max limitation 40.")
     }
 
     // parse jvm args and cache them in jvm_args_record for later release.
@@ -151,10 +165,18 @@ JNIEXPORT jint JNICALL JavaEnclave_TeeLibOSNativeCreateEnclave(JNIEnv *env, jobj
     sprintf(port_enclave_buf, "%d", portEnclave);
     cmd_args[1+index++] = port_enclave_buf;
 
-    // add http thread pool size as java args.
-    char thread_pool_size[10];
-    sprintf(thread_pool_size, "%d", parse_http_handler_thread_pool_size(env, config));
-    cmd_args[1+index] = thread_pool_size;
+    // add http thread pool size as java args, the buffer holds any int.
+    char thread_pool_size[12];
+    snprintf(thread_pool_size, sizeof(thread_pool_size), "%d", parse_http_handler_thread_pool_size(env, config));
+    cmd_args[1+index++] = thread_pool_size;
+
+    // add agent request queue size as java args, the buffer holds any int.
+    char queue_size[12];
+    snprintf(queue_size, sizeof(queue_size), "%d", parse_agent_queue_size(env, config));
+    cmd_args[1+index++] = queue_size;
+
+    // add whether agent runs requests in virtual threads as java args.
+    cmd_args[1+index] = parse_agent_virtual_threads(env, config) ? "true" : "false";
 
     struct occlum_stdio_fds io_fds = {
         .stdin_fd = STDIN_FILENO,
@@ -15,6 +15,8 @@
 // specific language governing permissions and limitations
 // under the License.
 
+#define _POSIX_C_SOURCE 200809L
+
 #include <assert.h>
 #include <limits.h>
 #include <string.h>
@@ -23,10 +25,13 @@
 #include <sys/stat.h>
 #include <sys/types.h>
 #include <dlfcn.h>
+#include <time.h>
 
 #include <graal_isolate.h>
 #include <enc_environment.h>
 #include <enc_exported_symbol.h>
+#include <enc_switchless.h>
+#include <enc_output_buffer.h>
 
 #include "jni_mock_in_svm.h"
 
@@ -37,15 +42,22 @@ static JNINativeMethod mock_in_svm_methods[] = {
     {"nativeSvmAttachIsolate",    "(JLjava/lang/String;)I",          (void *)&JavaEnclave_MockSVMNativeSvmAttachIsolate},
     {"nativeLoadService",         "(JJ[B)[B",                        (void *)&JavaEnclave_MockSVMNativeLoadService},
     {"nativeInvokeMethod",        "(JJ[B)[B",                        (void *)&JavaEnclave_MockSVMNativeInvokeMethod},
+    {"nativeInvokeMethodDirect",  MOCK_IN_SVM_DIRECT_CALL_SIGNATURE, (void *)&JavaEnclave_MockSVMNativeInvokeMethodDirect},
     {"nativeUnloadService",       "(JJ[B)[B",                        (void *)&JavaEnclave_MockSVMNativeUnloadService},
     {"nativeSvmDetachIsolate",    "(JJ)I",                           (void *)&JavaEnclave_MockSVMNativeSvmDetachIsolate},
     {"nativeDestroyEnclave",      "(J)I",                            (void *)&JavaEnclave_MockSVMNativeDestroyEnclave},
+    {"nativeStartSwitchless",     "(JJIII)I",                        (void *)&JavaEnclave_MockSVMNativeStartSwitchless},
+    {"nativeSwitchlessInvokeMethod", MOCK_IN_SVM_SWITCHLESS_CALL_SIGNATURE, (void *)&JavaEnclave_MockSVMNativeSwitchlessInvokeMethod},
+    {"nativeStopSwitchless",      "(J)V",                            (void *)&JavaEnclave_MockSVMNativeStopSwitchless},
 };
 
 static void *mock_in_svm_load_service_symbol   = NULL;
 static void *mock_in_svm_invoke_service_symbol = NULL;
 static void *mock_in_svm_unload_service_symbol = NULL;
 
+// cached java.nio.Buffer.limit(int), it sets a direct buffer's result length.
+static jmethodID buffer_limit_method = NULL;
+
 JNIEXPORT void JNICALL
 Java_org_apache_teaclave_javasdk_host_MockInSvmEnclave_registerNatives(JNIEnv *env, jclass cls) {
     (*env)->RegisterNatives(env, cls, mock_in_svm_methods, sizeof(mock_in_svm_methods)/sizeof(mock_in_svm_methods[0]));
@@ -56,7 +68,22 @@ void set_long_field_value(JNIEnv *env, jclass class_mirror, jobject obj, const c
     (*env)->SetLongField(env, obj, field_id, value);
 }
 
+// buffer offered by the current invocation for its result, consumed by the first copy.
+static __thread char*  offered_buffer = NULL;
+static __thread size_t offered_capacity = 0;
+
+void offer_output_buffer(char* buffer, size_t capacity) {
+    offered_buffer = buffer;
+    offered_capacity = capacity;
+}
+
 char* memcpy_char_pointer(char* src, int len) {
+    if (offered_buffer != NULL && len >= 0 && (size_t)len <= offered_capacity) {
+        char *buffer = offered_buffer;
+        offer_output_buffer(NULL, 0);
+        memcpy(buffer, src, len);
+        return buffer;
+    }
     char *ptr = malloc(len);
     if (ptr == NULL) { return NULL; }
     memcpy(ptr, src, len);
@@ -84,28 +111,81 @@ enclave_calling_stub_result mock_enclave_calling_entry(JNIEnv *env, jlong isolat
     callback_methods.exception_handler = NULL;
     callback_methods.get_random_number = NULL;
 
+    // offer this thread's pooled buffer, a result which fits is written into it without malloc.
+    output_buffer_t* buffer = output_buffer_get();
+    offer_output_buffer(output_buffer_data(buffer), output_buffer_capacity(buffer));
     result_wrapper.ret = stub((graal_isolate_t*)isolate_handler, &input, &output, &callback_methods);
+    offer_output_buffer(NULL, 0);
     if (result_wrapper.ret != 0) {
-        (*env)->ReleaseByteArrayElements(env, payload, payload_copy, 0);
-        free(output.data);
+        (*env)->ReleaseByteArrayElements(env, payload, payload_copy, JNI_ABORT);
+        output_buffer_release(buffer, output.data, 0);
         return result_wrapper;
     }
 
     // create a byte array.
     invocation_result_array = (*env)->NewByteArray(env, output.data_len);
-    jbyte *invocation_result_array_ptr = (*env)->GetByteArrayElements(env, invocation_result_array, NULL);
-    memcpy(invocation_result_array_ptr, output.data, output.data_len);
+    (*env)->SetByteArrayRegion(env, invocation_result_array, 0, output.data_len, (jbyte*)output.data);
 
-    (*env)->ReleaseByteArrayElements(env, payload, payload_copy, 0);
-    // free buffer malloc in jni.
-    (*env)->ReleaseByteArrayElements(env, invocation_result_array, invocation_result_array_ptr, 0);
-    // free buffer malloc in native image by callback mechanism.
-    free(output.data);
+    (*env)->ReleaseByteArrayElements(env, payload, payload_copy, JNI_ABORT);
+    // free buffer malloc in native image by callback mechanism, or keep the pooled one.
+    output_buffer_release(buffer, output.data, (size_t)output.data_len);
 
     result_wrapper.result = invocation_result_array;
     return result_wrapper;
 }
 
+// invoke with java direct buffers, the payload is read in place and a result which fits
+// is written straight into the output buffer, so large blobs cross jni without any copy.
+// returns NULL and sets output buffer's limit if the result is in it, otherwise a copy of the result.
+enclave_calling_stub_result mock_enclave_direct_calling_entry(JNIEnv *env, jlong isolate_handler, jobject input_buffer, jint input_length, jobject output_buffer, mock_enclave_stub stub) {
+    enclave_calling_stub_result result_wrapper;
+    result_wrapper.ret = 0;
+    result_wrapper.result = NULL;
+
+    char* input_address = (char*)(*env)->GetDirectBufferAddress(env, input_buffer);
+    char* output_address = (char*)(*env)->GetDirectBufferAddress(env, output_buffer);
+    jlong output_capacity = (*env)->GetDirectBufferCapacity(env, output_buffer);
+    if (input_address == NULL || output_address == NULL || input_length < 0
+        || input_length > (*env)->GetDirectBufferCapacity(env, input_buffer)) {
+        result_wrapper.ret = -1;
+        return result_wrapper;
+    }
+
+    enc_data_t input;
+    input.data = input_address;
+    input.data_len = input_length;
+    enc_data_t output;
+    output.data = NULL;
+    output.data_len = 0x0;
+
+    callbacks_t callback_methods;
+    callback_methods.memcpy_char_pointer = &memcpy_char_pointer;
+    callback_methods.exception_handler = NULL;
+    callback_methods.get_random_number = NULL;
+
+    offer_output_buffer(output_address, (size_t)output_capacity);
+    result_wrapper.ret = stub((graal_isolate_t*)isolate_handler, &input, &output, &callback_methods);
+    offer_output_buffer(NULL, 0);
+    if (result_wrapper.ret != 0) {
+        if (output.data != output_address) { free(output.data); }
+        return result_wrapper;
+    }
+
+    if (output.data == output_address) {
+        if (buffer_limit_method == NULL) {
+            jclass buffer_class = (*env)->FindClass(env, "java/nio/Buffer");
+            buffer_limit_method = (*env)->GetMethodID(env, buffer_class, "limit", "(I)Ljava/nio/Buffer;");
+        }
+        (*env)->CallObjectMethod(env, output_buffer, buffer_limit_method, (jint)output.data_len);
+        return result_wrapper;
+    }
+    // the result didn't fit, hand a copy back so that java grows its output buffer.
+    result_wrapper.result = (*env)->NewByteArray(env, output.data_len);
+    (*env)->SetByteArrayRegion(env, result_wrapper.result, 0, output.data_len, (jbyte*)output.data);
+    free(output.data);
+    return result_wrapper;
+}
+
 JNIEXPORT jint JNICALL
 JavaEnclave_MockSVMNativeCreateEnclave(JNIEnv *env, jobject obj, jstring path) {
     const char *path_str = (path == 0) ? 0 : (*env)->GetStringUTFChars(env, path, 0);
@@ -186,6 +266,15 @@ JavaEnclave_MockSVMNativeInvokeMethod(JNIEnv *env, jobject obj, jlong enclave_ha
     return result_wrapper.result;
 }
 
+JNIEXPORT jbyteArray JNICALL
+JavaEnclave_MockSVMNativeInvokeMethodDirect(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jobject input_buffer, jint input_length, jobject output_buffer) {
+    enclave_calling_stub_result result_wrapper = mock_enclave_direct_calling_entry(env, isolate_handler, input_buffer, input_length, output_buffer, (mock_enclave_stub) mock_in_svm_invoke_service_symbol);
+    if (result_wrapper.ret != 0) {
+        THROW_EXCEPTION(env, ENCLAVE_SERVICE_INVOKING_EXCEPTION, "tee sdk service method invoking native call failed.")
+    }
+    return result_wrapper.result;
+}
+
 JNIEXPORT jbyteArray JNICALL
 JavaEnclave_MockSVMNativeUnloadService(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jbyteArray unload_service_payload) {
     enclave_calling_stub_result result_wrapper = mock_enclave_calling_entry(env, isolate_handler, unload_service_payload, (mock_enclave_stub) mock_in_svm_unload_service_symbol);
@@ -216,3 +305,145 @@ JavaEnclave_MockSVMNativeDestroyEnclave(JNIEnv *env, jobject obj, jlong enclave_
     }
     return 0;
 }
+
+void switchless_park(uint32_t micros) {
+    struct timespec duration;
+    duration.tv_sec = micros / 1000000;
+    duration.tv_nsec = (long)(micros % 1000000) * 1000;
+    nanosleep(&duration, NULL);
+}
+
+typedef struct {
+    switchless_context_t*  context;
+    graal_isolatethread_t* thread;
+    callbacks_t            callbacks;
+} switchless_worker_t;
+
+uint64_t switchless_clock(void) {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (uint64_t)now.tv_sec * 1000000 + (uint64_t)now.tv_nsec / 1000;
+}
+
+void switchless_serve(void* ctx, switchless_request_t* request) {
+    switchless_worker_t* worker = (switchless_worker_t*)ctx;
+    if (!switchless_request_claim(request)) { return; }
+    offer_output_buffer(request->buffer.data, (size_t)request->buffer.data_len);
+    int ret = worker->context->invoke(worker->thread, &request->input, &request->output, &worker->callbacks);
+    offer_output_buffer(NULL, 0);
+    switchless_request_complete(request, ret);
+}
+
+void* switchless_worker_routine(void* arg) {
+    switchless_worker_t worker;
+    worker.context = (switchless_context_t*)arg;
+    worker.thread = NULL;
+    worker.callbacks.memcpy_char_pointer = &memcpy_char_pointer;
+    worker.callbacks.exception_handler = NULL;
+    worker.callbacks.get_random_number = NULL;
+    // same as an enclave worker, attach once and serve the ring until it is stopped.
+    if (worker.context->attach_thread(worker.context->isolate, &worker.thread) != 0) {
+        fprintf(stderr, "Teaclave Java TEE SDK Error: switchless worker attach isolate failed.\n");
+        return NULL;
+    }
+    switchless_worker_loop(worker.context->ring, &switchless_serve, &worker, &switchless_park);
+    worker.context->detach_thread(worker.thread);
+    return NULL;
+}
+
+void switchless_release(switchless_context_t* context, int started) {
+    switchless_ring_stop(context->ring);
+    for (int i = 0; i < started; i++) {
+        pthread_join(context->workers[i], NULL);
+    }
+    free(context->workers);
+    free(context->ring);
+    free(context);
+}
+
+JNIEXPORT jint JNICALL
+JavaEnclave_MockSVMNativeStartSwitchless(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jint worker_count, jint spin_count, jint park_micros) {
+    switchless_context_t* context = (switchless_context_t*)calloc(1, sizeof(switchless_context_t));
+    if (context == NULL) {
+        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "allocate switchless context failed.")
+    }
+    context->attach_thread = (int (*)(graal_isolate_t*, graal_isolatethread_t**)) dlsym((void *)enclave_handler, "graal_attach_thread");
+    context->detach_thread = (int (*)(graal_isolatethread_t*)) dlsym((void *)enclave_handler, "graal_detach_thread");
+    context->invoke = (int (*)(graal_isolatethread_t*, enc_data_t*, enc_data_t*, callbacks_t*)) dlsym((void *)enclave_handler, "java_enclave_switchless_invoke");
+    if (!context->attach_thread || !context->detach_thread || !context->invoke) {
+        free(context);
+        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "switchless symbols dlsym error.")
+    }
+    context->ring = (switchless_ring_t*)calloc(1, sizeof(switchless_ring_t));
+    context->workers = (pthread_t*)calloc((size_t)worker_count, sizeof(pthread_t));
+    if (context->ring == NULL || context->workers == NULL) {
+        free(context->ring);
+        free(context->workers);
+        free(context);
+        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "allocate switchless ring failed.")
+    }
+    context->isolate = (graal_isolate_t*)isolate_handler;
+    context->worker_count = worker_count;
+    switchless_ring_init(context->ring, (uint32_t)spin_count, (uint32_t)park_micros);
+
+    for (int i = 0; i < worker_count; i++) {
+        if (pthread_create(&context->workers[i], NULL, switchless_worker_routine, context) != 0) {
+            switchless_release(context, i);
+            THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "create switchless worker thread failed.")
+        }
+    }
+
+    // set context back to MockInSvmEnclave.switchlessHandle field.
+    jclass class_enclave = (*env)->GetObjectClass(env, obj);
+    set_long_field_value(env, class_enclave, obj, "switchlessHandle", (jlong)context);
+    return 0;
+}
+
+JNIEXPORT jbyteArray JNICALL
+JavaEnclave_MockSVMNativeSwitchlessInvokeMethod(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jlong switchless_handler, jbyteArray invoke_payload) {
+    switchless_context_t* context = (switchless_context_t*)switchless_handler;
+    jbyte *payload_copy = (*env)->GetByteArrayElements(env, invoke_payload, NULL);
+
+    output_buffer_t* buffer = output_buffer_get();
+    // a descriptor is owned by the ring, a worker may still hold an abandoned one.
+    switchless_request_t* request = switchless_request_acquire(context->ring);
+    if (request == NULL) {
+        (*env)->ReleaseByteArrayElements(env, invoke_payload, payload_copy, JNI_ABORT);
+        return JavaEnclave_MockSVMNativeInvokeMethod(env, obj, enclave_handler, isolate_handler, invoke_payload);
+    }
+    request->input.data = (char*)payload_copy;
+    request->input.data_len = (*env)->GetArrayLength(env, invoke_payload);
+    request->output.data = NULL;
+    request->output.data_len = 0x0;
+    request->buffer.data = output_buffer_data(buffer);
+    request->buffer.data_len = (int)output_buffer_capacity(buffer);
+
+    // a full ring falls back to a direct invocation, so does a request no worker claimed in time.
+    int ret = 0;
+    if (!switchless_ring_post(context->ring, request)
+        || !switchless_request_wait(context->ring, request, &switchless_park, &switchless_clock, &ret)) {
+        switchless_request_release(request);
+        (*env)->ReleaseByteArrayElements(env, invoke_payload, payload_copy, JNI_ABORT);
+        return JavaEnclave_MockSVMNativeInvokeMethod(env, obj, enclave_handler, isolate_handler, invoke_payload);
+    }
+    enc_data_t output = request->output;
+    switchless_request_release(request);
+    (*env)->ReleaseByteArrayElements(env, invoke_payload, payload_copy, JNI_ABORT);
+    if (ret != 0) {
+        output_buffer_release(buffer, output.data, 0);
+        THROW_EXCEPTION(env, ENCLAVE_SERVICE_INVOKING_EXCEPTION, "tee sdk service method switchless invoking failed.")
+    }
+
+    // create a byte array.
+    jbyteArray invocation_result_array = (*env)->NewByteArray(env, output.data_len);
+    (*env)->SetByteArrayRegion(env, invocation_result_array, 0, output.data_len, (jbyte*)output.data);
+    // free buffer malloc in native image by callback mechanism, or keep the pooled one.
+    output_buffer_release(buffer, output.data, (size_t)output.data_len);
+    return invocation_result_array;
+}
+
+JNIEXPORT void JNICALL
+JavaEnclave_MockSVMNativeStopSwitchless(JNIEnv *env, jobject obj, jlong switchless_handler) {
+    switchless_context_t* context = (switchless_context_t*)switchless_handler;
+    switchless_release(context, context->worker_count);
+}
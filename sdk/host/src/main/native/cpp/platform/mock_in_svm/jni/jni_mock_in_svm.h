@@ -16,6 +16,7 @@
 // under the License.
 
 #include <jni.h>
+#include <pthread.h>
 
 #ifndef _Included_jni_mock_in_svm
 #define _Included_jni_mock_in_svm
@@ -25,6 +26,17 @@ typedef struct {
     jbyteArray result;
 } enclave_calling_stub_result;
 
+// state of a switchless ring and its worker threads, which play the enclave workers in mock mode.
+typedef struct {
+    switchless_ring_t*      ring;
+    graal_isolate_t*        isolate;
+    int                     worker_count;
+    pthread_t*              workers;
+    int (*attach_thread)(graal_isolate_t*, graal_isolatethread_t**);
+    int (*detach_thread)(graal_isolatethread_t*);
+    int (*invoke)(graal_isolatethread_t*, enc_data_t*, enc_data_t*, callbacks_t*);
+} switchless_context_t;
+
 #define REMOTE_ATTESTATION_CLASS_NAME                "org/apache/teaclave/javasdk/host/exception/RemoteAttestationException"
 #define ENCLAVE_CREATING_EXCEPTION                   "org/apache/teaclave/javasdk/host/exception/EnclaveCreatingException"
 #define ENCLAVE_DESTROYING_EXCEPTION                 "org/apache/teaclave/javasdk/host/exception/EnclaveDestroyingException"
@@ -33,6 +45,8 @@ typedef struct {
 #define ENCLAVE_SERVICE_INVOKING_EXCEPTION           "org/apache/teaclave/javasdk/host/exception/EnclaveMethodInvokingException"
 
 #define MOCK_IN_SVM_NATIVE_CALL_SIGNATURE            "(JJ[B)[B"
+#define MOCK_IN_SVM_DIRECT_CALL_SIGNATURE            "(JJLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;)[B"
+#define MOCK_IN_SVM_SWITCHLESS_CALL_SIGNATURE        "(JJJ[B)[B"
 
 #define THROW_EXCEPTION(env, exception, info)                                  \
 {                                                                              \
@@ -80,6 +94,13 @@ JNIEXPORT jbyteArray JNICALL JavaEnclave_MockSVMNativeLoadService(JNIEnv *, jobj
  */
 JNIEXPORT jbyteArray JNICALL JavaEnclave_MockSVMNativeInvokeMethod(JNIEnv *, jobject, jlong, jlong, jbyteArray);
 
+/*
+ * Class:     JavaEnclave_MockSVMNativeInvokeMethodDirect
+ * Method:    nativeInvokeMethodDirect
+ * Signature: (JJLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;)[B
+ */
+JNIEXPORT jbyteArray JNICALL JavaEnclave_MockSVMNativeInvokeMethodDirect(JNIEnv *, jobject, jlong, jlong, jobject, jint, jobject);
+
 /*
  * Class:     JavaEnclave_MockSVMNativeUnloadService
  * Method:    nativeUnloadService
@@ -101,6 +122,27 @@ JNIEXPORT jint JNICALL JavaEnclave_MockSVMNativeSvmDetachIsolate(JNIEnv *, jobje
  */
 JNIEXPORT jint JNICALL JavaEnclave_MockSVMNativeDestroyEnclave(JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     JavaEnclave_MockSVMNativeStartSwitchless
+ * Method:    nativeStartSwitchless
+ * Signature: (JJIII)I
+ */
+JNIEXPORT jint JNICALL JavaEnclave_MockSVMNativeStartSwitchless(JNIEnv *, jobject, jlong, jlong, jint, jint, jint);
+
+/*
+ * Class:     JavaEnclave_MockSVMNativeSwitchlessInvokeMethod
+ * Method:    nativeSwitchlessInvokeMethod
+ * Signature: (JJJ[B)[B
+ */
+JNIEXPORT jbyteArray JNICALL JavaEnclave_MockSVMNativeSwitchlessInvokeMethod(JNIEnv *, jobject, jlong, jlong, jlong, jbyteArray);
+
+/*
+ * Class:     JavaEnclave_MockSVMNativeStopSwitchless
+ * Method:    nativeStopSwitchless
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL JavaEnclave_MockSVMNativeStopSwitchless(JNIEnv *, jobject, jlong);
+
 #ifdef __cplusplus
 }
 #endif
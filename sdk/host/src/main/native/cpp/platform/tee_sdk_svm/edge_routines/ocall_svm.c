@@ -15,7 +15,10 @@
 // specific language governing permissions and limitations
 // under the License.
 
+#define _POSIX_C_SOURCE 200809L
+
 #include "ocall_svm.h"
+#include <time.h>
 #include <pthread.h>
 
 int ocall_getrlimit(int resource, void *rlim) {
@@ -33,4 +36,11 @@ int ocall_malloc(size_t size, void *ptr) {
 
 uint64_t ocall_host_thread_id() {
     return (uint64_t)pthread_self();
-}
\ No newline at end of file
+}
+
+void ocall_switchless_park(uint32_t micros) {
+    struct timespec duration;
+    duration.tv_sec = micros / 1000000;
+    duration.tv_nsec = (long)(micros % 1000000) * 1000;
+    nanosleep(&duration, NULL);
+}
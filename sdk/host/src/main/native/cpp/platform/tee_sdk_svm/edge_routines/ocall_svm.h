@@ -32,6 +32,7 @@ extern "C"
     int ocall_getrlimit(int resource, void *rlim);
     int ocall_malloc(size_t size, void *ptr);
     uint64_t ocall_host_thread_id();
+    void ocall_switchless_park(uint32_t micros);
 #if defined(__cplusplus)
 }
 #endif
@@ -23,27 +23,38 @@
 #include <sys/stat.h>
 #include <sys/types.h>
 #include <dlfcn.h>
+#include <time.h>
 
 #include <sgx_urts.h>
 
 #include <graal_isolate.h>
 #include <enc_environment.h>
 #include <enc_exported_symbol.h>
+#include <enc_switchless.h>
+#include <enc_output_buffer.h>
 
 #include "tee_sdk_enclave_u.h"
 #include "jni_tee_sdk_svm.h"
 
+// cached java.nio.Buffer.limit(int), it sets a direct buffer's result length.
+static jmethodID buffer_limit_method = NULL;
+
 static JNINativeMethod tee_sdk_svm_methods[] = {
     {"nativeCreateEnclave",             "(ILjava/lang/String;)I",                    (void *)&JavaEnclave_TeeSDKSVMNativeCreateEnclave},
     {"nativeSvmAttachIsolate",          "(JILjava/lang/String;)I",                   (void *)&JavaEnclave_TeeSDKSVMNativeSvmAttachIsolate},
     {"nativeLoadService",               TEE_SDK_SVM_NATIVE_CALL_SIGNATURE,           (void *)&JavaEnclave_TeeSDKSVMNativeLoadService},
     {"nativeInvokeMethod",              TEE_SDK_SVM_NATIVE_CALL_SIGNATURE,           (void *)&JavaEnclave_TeeSDKSVMNativeInvokeMethod},
+    {"nativeInvokeMethodDirect",        TEE_SDK_SVM_DIRECT_CALL_SIGNATURE,           (void *)&JavaEnclave_TeeSDKSVMNativeInvokeMethodDirect},
     {"nativeUnloadService",             TEE_SDK_SVM_NATIVE_CALL_SIGNATURE,           (void *)&JavaEnclave_TeeSDKSVMNativeUnloadService},
     {"nativeSvmDetachIsolate",          "(JJ)I",                                     (void *)&JavaEnclave_TeeSDKSVMNativeSvmDetachIsolate},
     {"nativeDestroyEnclave",            "(J)I",                                      (void *)&JavaEnclave_TeeSDKSVMNativeDestroyEnclave},
     {"nativeGenerateAttestationReport", TEE_SDK_REMOTE_ATTESTATION_REPORT_SIGNATURE, (void *)&JavaEnclave_TeeSDK_REMOTE_ATTESTATION_REPORT},
     {"nativeInitializeThreadCache",        "(JJI)I",                                    (void *)&JavaEnclave_TeeSDKSVMNativeInitializeThreadCache},
     {"nativeReleaseThreadCache",        "(J)V",                                      (void *)&JavaEnclave_TeeSDKSVMnativeReleaseThreadCache},
+    {"nativeThreadCacheStatistics",     "(J)[J",                                     (void *)&JavaEnclave_TeeSDKSVMNativeThreadCacheStatistics},
+    {"nativeStartSwitchless",           "(JJIII)I",                                  (void *)&JavaEnclave_TeeSDKSVMNativeStartSwitchless},
+    {"nativeSwitchlessInvokeMethod",    TEE_SDK_SVM_SWITCHLESS_CALL_SIGNATURE,       (void *)&JavaEnclave_TeeSDKSVMNativeSwitchlessInvokeMethod},
+    {"nativeStopSwitchless",            "(J)V",                                      (void *)&JavaEnclave_TeeSDKSVMNativeStopSwitchless},
 };
 
 JNIEXPORT void JNICALL
@@ -77,29 +88,72 @@ enclave_calling_stub_result enclave_calling_entry(JNIEnv *env, jlong enclave_han
     result_wrapper.ret = 0;
     result_wrapper.result = invocation_result_array;
 
-    stub(enclave_handler, &result_wrapper.ret, (graal_isolate_t*)isolate_handler, (void*)(input.data), (size_t)(input.data_len), (void*)(&(output.data)), (size_t*)(&(output.data_len)));
+    // offer this thread's pooled buffer, a result which fits is written into it without ocall_malloc.
+    output_buffer_t* buffer = output_buffer_get();
+    stub(enclave_handler, &result_wrapper.ret, (graal_isolate_t*)isolate_handler, (uint64_t)pthread_self(), (void*)(input.data), (size_t)(input.data_len),
+        (void*)output_buffer_data(buffer), output_buffer_capacity(buffer), (void*)(&(output.data)), (size_t*)(&(output.data_len)));
     if (result_wrapper.ret != 0) {
-        (*env)->ReleaseByteArrayElements(env, payload, payload_copy, 0);
+        (*env)->ReleaseByteArrayElements(env, payload, payload_copy, JNI_ABORT);
         // free buffer malloc in native image by callback mechanism.
-        free(output.data);
+        output_buffer_release(buffer, output.data, 0);
         return result_wrapper;
     }
 
     // create a byte array.
     invocation_result_array = (*env)->NewByteArray(env, output.data_len);
-    jbyte *invocation_result_array_ptr = (*env)->GetByteArrayElements(env, invocation_result_array, NULL);
-    memcpy(invocation_result_array_ptr, output.data, (size_t)output.data_len);
+    (*env)->SetByteArrayRegion(env, invocation_result_array, 0, output.data_len, (jbyte*)output.data);
 
-    (*env)->ReleaseByteArrayElements(env, payload, payload_copy, 0);
-    // free buffer malloc in jni.
-    (*env)->ReleaseByteArrayElements(env, invocation_result_array, invocation_result_array_ptr, 0);
-    // free buffer malloc in native image by callback mechanism.
-    free(output.data);
+    (*env)->ReleaseByteArrayElements(env, payload, payload_copy, JNI_ABORT);
+    // free buffer malloc in native image by callback mechanism, or keep the pooled one.
+    output_buffer_release(buffer, output.data, (size_t)output.data_len);
 
     result_wrapper.result = invocation_result_array;
     return result_wrapper;
 }
 
+// invoke with java direct buffers, the payload is read in place and a result which fits
+// is written straight into the output buffer, so large blobs cross jni without any copy.
+// returns NULL and sets output buffer's limit if the result is in it, otherwise a copy of the result.
+enclave_calling_stub_result enclave_direct_calling_entry(JNIEnv *env, jlong enclave_handler, jlong isolate_handler, jobject input_buffer, jint input_length, jobject output_buffer, enclave_calling_stub stub) {
+    enclave_calling_stub_result result_wrapper;
+    result_wrapper.ret = 0;
+    result_wrapper.result = NULL;
+
+    char* input_address = (char*)(*env)->GetDirectBufferAddress(env, input_buffer);
+    char* output_address = (char*)(*env)->GetDirectBufferAddress(env, output_buffer);
+    jlong output_capacity = (*env)->GetDirectBufferCapacity(env, output_buffer);
+    if (input_address == NULL || output_address == NULL || input_length < 0
+        || input_length > (*env)->GetDirectBufferCapacity(env, input_buffer)) {
+        result_wrapper.ret = -1;
+        return result_wrapper;
+    }
+
+    enc_data_t output;
+    output.data = NULL;
+    output.data_len = 0x0;
+    stub(enclave_handler, &result_wrapper.ret, (graal_isolate_t*)isolate_handler, (uint64_t)pthread_self(), (void*)input_address, (size_t)input_length,
+        (void*)output_address, (size_t)output_capacity, (void*)(&(output.data)), (size_t*)(&(output.data_len)));
+    if (result_wrapper.ret != 0) {
+        if (output.data != output_address) { free(output.data); }
+        return result_wrapper;
+    }
+
+    if (output.data == output_address) {
+        if (buffer_limit_method == NULL) {
+            jclass buffer_class = (*env)->FindClass(env, "java/nio/Buffer");
+            buffer_limit_method = (*env)->GetMethodID(env, buffer_class, "limit", "(I)Ljava/nio/Buffer;");
+        }
+        (*env)->CallObjectMethod(env, output_buffer, buffer_limit_method, (jint)output.data_len);
+        return result_wrapper;
+    }
+    // the result didn't fit, hand a copy back so that java grows its output buffer.
+    result_wrapper.result = (*env)->NewByteArray(env, output.data_len);
+    (*env)->SetByteArrayRegion(env, result_wrapper.result, 0, output.data_len, (jbyte*)output.data);
+    // free buffer malloc in native image by callback mechanism.
+    free(output.data);
+    return result_wrapper;
+}
+
 JNIEXPORT jint JNICALL
 JavaEnclave_TeeSDKSVMNativeCreateEnclave(JNIEnv *env, jobject obj, jint mode, jstring path) {
     // set enclave' debug mode enable_debug_mode.
@@ -168,6 +222,15 @@ JavaEnclave_TeeSDKSVMNativeInvokeMethod(JNIEnv *env, jobject obj, jlong enclave_
     return result_wrapper.result;
 }
 
+JNIEXPORT jbyteArray JNICALL
+JavaEnclave_TeeSDKSVMNativeInvokeMethodDirect(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jobject input_buffer, jint input_length, jobject output_buffer) {
+    enclave_calling_stub_result result_wrapper = enclave_direct_calling_entry(env, enclave_handler, isolate_handler, input_buffer, input_length, output_buffer, (enclave_calling_stub) invoke_enclave_svm_service);
+    if (result_wrapper.ret != 0) {
+        THROW_EXCEPTION(env, ENCLAVE_SERVICE_INVOKING_EXCEPTION, "tee sdk service method invoking native call failed.")
+    }
+    return result_wrapper.result;
+}
+
 JNIEXPORT jbyteArray JNICALL
 JavaEnclave_TeeSDKSVMNativeUnloadService(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jbyteArray unload_service_payload) {
     enclave_calling_stub_result result_wrapper = enclave_calling_entry(env, enclave_handler, isolate_handler, unload_service_payload, (enclave_calling_stub) unload_enclave_svm_service);
@@ -196,10 +259,10 @@ JavaEnclave_TeeSDKSVMNativeDestroyEnclave(JNIEnv *env, jobject obj, jlong enclav
 }
 
 JNIEXPORT jint JNICALL
-JavaEnclave_TeeSDKSVMNativeInitializeThreadCache(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jint thread_count) {
+JavaEnclave_TeeSDKSVMNativeInitializeThreadCache(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jint capacity) {
     int ret = 0;
     enclave_svm_initialize_thread_cache((sgx_enclave_id_t)enclave_handler, &ret,
-        (uint64_t)isolate_handler, (int)thread_count);
+        (uint64_t)isolate_handler, (int)capacity);
     if (ret != 0) {
         THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "pre-allocate IsolateThread pool failed.")
     }
@@ -211,6 +274,147 @@ JavaEnclave_TeeSDKSVMnativeReleaseThreadCache(JNIEnv *env, jobject obj, jlong en
     enclave_svm_release_thread_cache((sgx_enclave_id_t)enclave_handler);
 }
 
+JNIEXPORT jlongArray JNICALL
+JavaEnclave_TeeSDKSVMNativeThreadCacheStatistics(JNIEnv *env, jobject obj, jlong enclave_handler) {
+    uint64_t statistics[TEE_SDK_THREAD_CACHE_STATISTICS_NUM] = {0x0};
+    enclave_svm_thread_cache_statistics((sgx_enclave_id_t)enclave_handler, (void*)statistics);
+    jlongArray result = (*env)->NewLongArray(env, TEE_SDK_THREAD_CACHE_STATISTICS_NUM);
+    if (result != NULL) {
+        (*env)->SetLongArrayRegion(env, result, 0, TEE_SDK_THREAD_CACHE_STATISTICS_NUM, (jlong*)statistics);
+    }
+    return result;
+}
+
+void* switchless_worker_routine(void* arg) {
+    switchless_context_t* context = (switchless_context_t*)arg;
+    int ret = 0;
+    // the ecall only returns once the ring was stopped.
+    enclave_svm_switchless_worker((sgx_enclave_id_t)context->enclave_handler, &ret, context->isolate, (void*)context->ring);
+    if (ret != 0) {
+        fprintf(stderr, "Teaclave Java TEE SDK Error: switchless worker exited with %d.\n", ret);
+    }
+    return NULL;
+}
+
+uint64_t switchless_clock(void) {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (uint64_t)now.tv_sec * 1000000 + (uint64_t)now.tv_nsec / 1000;
+}
+
+void switchless_release(switchless_context_t* context, int started) {
+    switchless_ring_stop(context->ring);
+    for (int i = 0; i < started; i++) {
+        pthread_join(context->workers[i], NULL);
+    }
+    free(context->workers);
+    free(context->ring);
+    free(context);
+}
+
+JNIEXPORT jint JNICALL
+JavaEnclave_TeeSDKSVMNativeStartSwitchless(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jint worker_count, jint spin_count, jint park_micros) {
+    switchless_context_t* context = (switchless_context_t*)calloc(1, sizeof(switchless_context_t));
+    if (context == NULL) {
+        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "allocate switchless context failed.")
+    }
+    context->ring = (switchless_ring_t*)calloc(1, sizeof(switchless_ring_t));
+    context->workers = (pthread_t*)calloc((size_t)worker_count, sizeof(pthread_t));
+    if (context->ring == NULL || context->workers == NULL) {
+        free(context->ring);
+        free(context->workers);
+        free(context);
+        THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "allocate switchless ring failed.")
+    }
+    context->enclave_handler = enclave_handler;
+    context->isolate = (uint64_t)isolate_handler;
+    context->worker_count = worker_count;
+    switchless_ring_init(context->ring, (uint32_t)spin_count, (uint32_t)park_micros);
+
+    // every worker occupies one tcs for the whole life of the ring.
+    for (int i = 0; i < worker_count; i++) {
+        if (pthread_create(&context->workers[i], NULL, switchless_worker_routine, context) != 0) {
+            switchless_release(context, i);
+            THROW_EXCEPTION(env, ENCLAVE_CREATING_EXCEPTION, "create switchless worker thread failed.")
+        }
+    }
+
+    // set context back to TeeSdkEnclave.switchlessHandle field.
+    jclass enclave_class = (*env)->GetObjectClass(env, obj);
+    set_long_field_value(env, enclave_class, obj, "switchlessHandle", (jlong)context);
+    return 0;
+}
+
+enclave_calling_stub_result switchless_calling_entry(JNIEnv *env, switchless_context_t* context, jbyteArray payload) {
+    jbyte *payload_copy = (*env)->GetByteArrayElements(env, payload, NULL);
+    int payload_copy_length = (*env)->GetArrayLength(env, payload);
+
+    output_buffer_t* buffer = output_buffer_get();
+    enc_data_t input, output, offered;
+    input.data = (char*)payload_copy;
+    input.data_len = payload_copy_length;
+    output.data = NULL;
+    output.data_len = 0x0;
+    offered.data = output_buffer_data(buffer);
+    offered.data_len = (int)output_buffer_capacity(buffer);
+
+    enclave_calling_stub_result result_wrapper;
+    result_wrapper.ret = 0;
+    result_wrapper.result = NULL;
+
+    // post a ring owned descriptor and wait for an enclave worker to serve it, no free
+    // descriptor, a full ring or a descriptor no worker claimed in time falls back to an ecall.
+    int served = 0;
+    switchless_request_t* request = switchless_request_acquire(context->ring);
+    if (request != NULL) {
+        request->input = input;
+        request->output = output;
+        request->buffer = offered;
+        served = switchless_ring_post(context->ring, request)
+            && switchless_request_wait(context->ring, request, &ocall_switchless_park, &switchless_clock, &result_wrapper.ret);
+        if (served) {
+            output = request->output;
+        }
+        // a worker may still hold an abandoned descriptor, the last reference frees it.
+        switchless_request_release(request);
+    }
+    if (!served) {
+        invoke_enclave_svm_service((sgx_enclave_id_t)context->enclave_handler, &result_wrapper.ret, context->isolate, (uint64_t)pthread_self(),
+            (void*)(input.data), (size_t)(input.data_len), (void*)(offered.data), (size_t)(offered.data_len),
+            (void*)(&(output.data)), (size_t*)(&(output.data_len)));
+    }
+    (*env)->ReleaseByteArrayElements(env, payload, payload_copy, JNI_ABORT);
+    if (result_wrapper.ret != 0) {
+        // free buffer malloc in native image by callback mechanism.
+        output_buffer_release(buffer, output.data, 0);
+        return result_wrapper;
+    }
+
+    // create a byte array.
+    jbyteArray invocation_result_array = (*env)->NewByteArray(env, output.data_len);
+    (*env)->SetByteArrayRegion(env, invocation_result_array, 0, output.data_len, (jbyte*)output.data);
+    // free buffer malloc in native image by callback mechanism, or keep the pooled one.
+    output_buffer_release(buffer, output.data, (size_t)output.data_len);
+
+    result_wrapper.result = invocation_result_array;
+    return result_wrapper;
+}
+
+JNIEXPORT jbyteArray JNICALL
+JavaEnclave_TeeSDKSVMNativeSwitchlessInvokeMethod(JNIEnv *env, jobject obj, jlong enclave_handler, jlong isolate_handler, jlong switchless_handler, jbyteArray invoke_service_payload) {
+    enclave_calling_stub_result result_wrapper = switchless_calling_entry(env, (switchless_context_t*)switchless_handler, invoke_service_payload);
+    if (result_wrapper.ret != 0) {
+        THROW_EXCEPTION(env, ENCLAVE_SERVICE_INVOKING_EXCEPTION, "tee sdk service method switchless invoking failed.")
+    }
+    return result_wrapper.result;
+}
+
+JNIEXPORT void JNICALL
+JavaEnclave_TeeSDKSVMNativeStopSwitchless(JNIEnv *env, jobject obj, jlong switchless_handler) {
+    switchless_context_t* context = (switchless_context_t*)switchless_handler;
+    switchless_release(context, context->worker_count);
+}
+
 JNIEXPORT jobject JNICALL
 JavaEnclave_TeeSDK_REMOTE_ATTESTATION_REPORT(JNIEnv *env, jobject obj, jlong enclave_handler, jbyteArray data) {
     int ret = 0;
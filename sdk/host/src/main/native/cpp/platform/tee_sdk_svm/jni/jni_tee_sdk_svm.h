@@ -17,18 +17,29 @@
 
 #include <jni.h>
 
+#include <pthread.h>
+
 #include "generate_attestation_report.h"
 
 #ifndef _Included_jni_tee_sdk_svm
 #define _Included_jni_tee_sdk_svm
 
-typedef void (*enclave_calling_stub)(jlong, int*, graal_isolate_t*, void*, size_t, void*, size_t*);
+typedef void (*enclave_calling_stub)(jlong, int*, graal_isolate_t*, uint64_t, void*, size_t, void*, size_t, void*, size_t*);
 
 typedef struct {
     int        ret;
     jbyteArray result;
 } enclave_calling_stub_result;
 
+// host side state of a switchless ring and its enclave worker threads.
+typedef struct {
+    switchless_ring_t* ring;
+    jlong              enclave_handler;
+    uint64_t           isolate;
+    int                worker_count;
+    pthread_t*         workers;
+} switchless_context_t;
+
 #define REMOTE_ATTESTATION_CLASS_NAME                "org/apache/teaclave/javasdk/host/exception/RemoteAttestationException"
 #define ENCLAVE_CREATING_EXCEPTION                   "org/apache/teaclave/javasdk/host/exception/EnclaveCreatingException"
 #define ENCLAVE_DESTROYING_EXCEPTION                 "org/apache/teaclave/javasdk/host/exception/EnclaveDestroyingException"
@@ -37,6 +48,11 @@ typedef struct {
 #define ENCLAVE_SERVICE_INVOKING_EXCEPTION           "org/apache/teaclave/javasdk/host/exception/EnclaveMethodInvokingException"
 
 #define TEE_SDK_SVM_NATIVE_CALL_SIGNATURE            "(JJ[B)[B"
+#define TEE_SDK_SVM_DIRECT_CALL_SIGNATURE            "(JJLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;)[B"
+#define TEE_SDK_SVM_SWITCHLESS_CALL_SIGNATURE        "(JJJ[B)[B"
+// hits, misses, evictions, cached IsolateThreads and host thread id ocalls.
+#define TEE_SDK_THREAD_CACHE_STATISTICS_NUM          5
+
 #define TEE_SDK_REMOTE_ATTESTATION_REPORT_SIGNATURE  "(J[B)Lorg/apache/teaclave/javasdk/host/TeeSdkAttestationReport;"
 #define TEE_SDK_REMOTE_ATTESTATION_REPORT_CLASS_NAME "org/apache/teaclave/javasdk/host/TeeSdkAttestationReport"
 
@@ -87,6 +103,13 @@ JNIEXPORT jbyteArray JNICALL JavaEnclave_TeeSDKSVMNativeLoadService(JNIEnv *, jo
  */
 JNIEXPORT jbyteArray JNICALL JavaEnclave_TeeSDKSVMNativeInvokeMethod(JNIEnv *, jobject, jlong, jlong, jbyteArray);
 
+/*
+ * Class:     org_apache_teaclave_javasdk_host_TeeSdkEnclave
+ * Method:    nativeInvokeMethodDirect
+ * Signature: (JJLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;)[B
+ */
+JNIEXPORT jbyteArray JNICALL JavaEnclave_TeeSDKSVMNativeInvokeMethodDirect(JNIEnv *, jobject, jlong, jlong, jobject, jint, jobject);
+
 /*
  * Class:     org_apache_teaclave_javasdk_host_TeeSdkEnclave
  * Method:    nativeUnloadService
@@ -129,6 +152,34 @@ JNIEXPORT jint JNICALL JavaEnclave_TeeSDKSVMNativeInitializeThreadCache(JNIEnv *
  */
 JNIEXPORT void JNICALL JavaEnclave_TeeSDKSVMnativeReleaseThreadCache(JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     org_apache_teaclave_javasdk_host_TeeSdkEnclave
+ * Method:    nativeThreadCacheStatistics
+ * Signature: (J)[J
+ */
+JNIEXPORT jlongArray JNICALL JavaEnclave_TeeSDKSVMNativeThreadCacheStatistics(JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     org_apache_teaclave_javasdk_host_TeeSdkEnclave
+ * Method:    nativeStartSwitchless
+ * Signature: (JJIII)I
+ */
+JNIEXPORT jint JNICALL JavaEnclave_TeeSDKSVMNativeStartSwitchless(JNIEnv *, jobject, jlong, jlong, jint, jint, jint);
+
+/*
+ * Class:     org_apache_teaclave_javasdk_host_TeeSdkEnclave
+ * Method:    nativeSwitchlessInvokeMethod
+ * Signature: (JJJ[B)[B
+ */
+JNIEXPORT jbyteArray JNICALL JavaEnclave_TeeSDKSVMNativeSwitchlessInvokeMethod(JNIEnv *, jobject, jlong, jlong, jlong, jbyteArray);
+
+/*
+ * Class:     org_apache_teaclave_javasdk_host_TeeSdkEnclave
+ * Method:    nativeStopSwitchless
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL JavaEnclave_TeeSDKSVMNativeStopSwitchless(JNIEnv *, jobject, jlong);
+
 #ifdef __cplusplus
 }
 #endif
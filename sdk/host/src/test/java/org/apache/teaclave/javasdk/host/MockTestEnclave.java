@@ -31,7 +31,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 class MockTestEnclave extends AbstractEnclave {
     private static final AtomicLong instanceIdentity = new AtomicLong(0);
-    private static final Map<String, Object> instancesRegisterCenter = new ConcurrentHashMap<>();
+    private static final Map<Long, Object> instancesRegisterCenter = new ConcurrentHashMap<>();
+    private static final Map<Long, Method[]> methodsRegisterCenter = new ConcurrentHashMap<>();
     private static final Queue<ServiceHandler> cacheServiceHandler = new LinkedList<>();
 
     MockTestEnclave() throws EnclaveCreatingException {
@@ -95,12 +96,15 @@ class MockTestEnclave extends AbstractEnclave {
         EnclaveInvocationResult result;
         try {
             Class<?> service = Class.forName(interfaceName);
+            Method[] methods = MethodSignature.getServiceMethods(service);
+            String[] signatures = Arrays.stream(methods).map(MethodSignature::of).toArray(String[]::new);
             for (Object o : ServiceLoader.load(service)) {
-                String identity = String.valueOf(instanceIdentity.addAndGet(1));
-                ServiceHandler sm = new ServiceHandler(interfaceName, o.getClass().getName(), identity);
+                long identity = instanceIdentity.addAndGet(1);
+                ServiceHandler sm = new ServiceHandler(interfaceName, o.getClass().getName(), identity, signatures);
                 handlers.add(sm);
                 cacheServiceHandler.add(sm);
                 instancesRegisterCenter.put(identity, o);
+                methodsRegisterCenter.put(identity, methods);
             }
         } catch (ClassNotFoundException e) {
             exception = e;
@@ -120,6 +124,7 @@ class MockTestEnclave extends AbstractEnclave {
         EnclaveInvocationResult result;
 
         instancesRegisterCenter.remove(handler.getInstanceIdentity());
+        methodsRegisterCenter.remove(handler.getInstanceIdentity());
         result = new EnclaveInvocationResult(null, null);
 
         try {
@@ -131,25 +136,16 @@ class MockTestEnclave extends AbstractEnclave {
 
     @Override
     byte[] invokeMethodNative(EnclaveInvocationContext invocationContext) throws EnclaveMethodInvokingException {
-        Throwable exception = null;
-        Object invokeRet = null;
         EnclaveInvocationResult result;
-        try {
-            String className = invocationContext.getServiceHandler().getServiceImplClassName();
-            String[] parameterTypes = invocationContext.getParameterTypes();
-            String methodName = invocationContext.getMethodName();
-            Object[] args = invocationContext.getArguments();
-            Object instance = instancesRegisterCenter.get(invocationContext.getServiceHandler().getInstanceIdentity());
-            assertNotNull(instance);
-            assertEquals(className, instance.getClass().getName());
-            Class<?> service = Class.forName(className);
-            Method method = service.getDeclaredMethod(methodName, parseParamClass(parameterTypes));
-            method.setAccessible(true);
-            invokeRet = method.invoke(instance, args);
-        } catch (Throwable e) {
-            exception = new ConfidentialComputingException(e);
-        } finally {
-            result = new EnclaveInvocationResult(invokeRet, exception);
+        if (invocationContext.isBatch()) {
+            EnclaveInvocationContext[] batchContexts = invocationContext.getBatchContexts();
+            EnclaveInvocationResult[] results = new EnclaveInvocationResult[batchContexts.length];
+            for (int index = 0x0; index < batchContexts.length; index++) {
+                results[index] = invokeMethod(batchContexts[index]);
+            }
+            result = new EnclaveInvocationResult(results, null);
+        } else {
+            result = invokeMethod(invocationContext);
         }
 
         try {
@@ -159,6 +155,35 @@ class MockTestEnclave extends AbstractEnclave {
         }
     }
 
+    private EnclaveInvocationResult invokeMethod(EnclaveInvocationContext invocationContext) {
+        Throwable exception = null;
+        Object invokeRet = null;
+        try {
+            if (invocationContext.getMethodId() >= 0) {
+                Object instance = instancesRegisterCenter.get(invocationContext.getInstanceIdentity());
+                assertNotNull(instance);
+                Method method = methodsRegisterCenter.get(invocationContext.getInstanceIdentity())[invocationContext.getMethodId()];
+                method.setAccessible(true);
+                invokeRet = method.invoke(instance, invocationContext.getArguments());
+            } else {
+                String className = invocationContext.getServiceHandler().getServiceImplClassName();
+                String[] parameterTypes = invocationContext.getParameterTypes();
+                String methodName = invocationContext.getMethodName();
+                Object[] args = invocationContext.getArguments();
+                Object instance = instancesRegisterCenter.get(invocationContext.getServiceHandler().getInstanceIdentity());
+                assertNotNull(instance);
+                assertEquals(className, instance.getClass().getName());
+                Class<?> service = Class.forName(className);
+                Method method = service.getDeclaredMethod(methodName, parseParamClass(parameterTypes));
+                method.setAccessible(true);
+                invokeRet = method.invoke(instance, args);
+            }
+        } catch (Throwable e) {
+            exception = new ConfidentialComputingException(e);
+        }
+        return new EnclaveInvocationResult(invokeRet, exception);
+    }
+
     @Override
     public EnclaveInfo getEnclaveInfo() {
         return null;
@@ -17,6 +17,7 @@
 
 package org.apache.teaclave.javasdk.host;
 
+import org.apache.teaclave.javasdk.common.EnclaveInvocationContext;
 import org.apache.teaclave.javasdk.common.ServiceHandler;
 import org.apache.teaclave.javasdk.host.exception.EnclaveCreatingException;
 import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
@@ -24,8 +25,17 @@ import org.apache.teaclave.javasdk.host.exception.ServicesLoadingException;
 import org.junit.jupiter.api.*;
 
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -60,4 +70,187 @@ class TestAbstractEnclave {
         enclave.destroy();
         assertThrows(ServicesLoadingException.class, () -> enclave.load(Service.class));
     }
+
+    @Test
+    void testBatch() throws Exception {
+        Enclave batchEnclave = new MockTestEnclave();
+        Service service = batchEnclave.load(Service.class).next();
+        EnclaveBatch batch = batchEnclave.batch();
+        Service recorder = batch.record(service);
+        assertEquals(0, recorder.add(1, 2));
+        assertNull(recorder.saySomething("Hello"));
+        recorder.throwException("something is wrong");
+        recorder.add(3, 4);
+        assertEquals(4, batch.size());
+        assertThrows(IllegalArgumentException.class, () -> batchEnclave.batch().record(new ServiceImpl()));
+
+        List<EnclaveBatch.Result> results = batch.execute();
+        assertEquals(4, results.size());
+        assertEquals(3, results.get(0).getValue());
+        assertEquals("Hello", results.get(1).getValue());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals(ServiceExceptionTest.class, results.get(2).getException().getClass());
+        assertEquals(7, results.get(3).getValue());
+        assertThrows(IllegalStateException.class, batch::execute);
+        batchEnclave.destroy();
+    }
+
+    @Test
+    void testLoadAsync() throws Exception {
+        Enclave asyncEnclave = new MockTestEnclave();
+        assertThrows(ServicesLoadingException.class, () -> asyncEnclave.loadAsync(Service.class));
+        AsyncService service = asyncEnclave.loadAsync(AsyncService.class).next();
+        CompletableFuture<Integer> sum = service.add(20, 180);
+        CompletableFuture<Void> failed = service.throwException("something is wrong");
+        assertEquals(200, sum.get());
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertEquals(ServiceExceptionTest.class, e.getCause().getClass());
+        assertNull(service.doNothing().get());
+        asyncEnclave.destroy();
+    }
+
+    @Test
+    void testCarrierThreads() throws Exception {
+        MockTestEnclave carrierEnclave = new MockTestEnclave();
+        carrierEnclave.startEnclaveExecutor(2);
+        Service service = carrierEnclave.load(Service.class).next();
+        assertEquals(200, service.add(20, 180));
+        assertThrows(ServiceExceptionTest.class, () -> service.throwException("something is wrong"));
+        AsyncService asyncService = carrierEnclave.loadAsync(AsyncService.class).next();
+        assertEquals(7, asyncService.add(3, 4).get());
+        assertTrue(carrierEnclave.getAsyncExecutor() instanceof EnclaveExecutor);
+        carrierEnclave.startEnclaveAdmission(EnclaveAdmission.Mode.FAIL_FAST, 1, 0, 0);
+        assertEquals(7, service.add(3, 4));
+        carrierEnclave.destroy();
+    }
+
+    @Test
+    void testCarrierThreadsWithAdmission() throws Exception {
+        MockTestEnclave carrierEnclave = new MockTestEnclave() {
+            @Override
+            byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
+                // keep carriers and admission saturated.
+                Thread.yield();
+                return super.invokeMethodNative(context);
+            }
+        };
+        carrierEnclave.startEnclaveExecutor(2);
+        carrierEnclave.startEnclaveAdmission(EnclaveAdmission.Mode.BLOCK, 1, 0, 0);
+        Service service = carrierEnclave.load(Service.class).next();
+        AsyncService asyncService = carrierEnclave.loadAsync(AsyncService.class).next();
+        List<CompletableFuture<Integer>> sums = new ArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger(0);
+        for (int i = 0; i < 8; i++) {
+            Thread caller = new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    if (service.add(j, 1) != j + 1) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            callers.add(caller);
+            caller.start();
+        }
+        for (int i = 0; i < 200; i++) {
+            sums.add(asyncService.add(i, 1));
+        }
+        for (int i = 0; i < sums.size(); i++) {
+            assertEquals(i + 1, sums.get(i).get(30, TimeUnit.SECONDS));
+        }
+        for (Thread caller : callers) {
+            caller.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(caller.isAlive());
+        }
+        assertEquals(0, failures.get());
+        carrierEnclave.destroy();
+    }
+
+    @Test
+    void testLoadingBypassesAdmission() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch leave = new CountDownLatch(1);
+        MockTestEnclave admittedEnclave = new MockTestEnclave() {
+            @Override
+            byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
+                running.countDown();
+                try {
+                    leave.await();
+                } catch (InterruptedException e) {
+                    throw new EnclaveMethodInvokingException(e);
+                }
+                return super.invokeMethodNative(context);
+            }
+        };
+        admittedEnclave.startEnclaveAdmission(EnclaveAdmission.Mode.FAIL_FAST, 1, 0, 0);
+        admittedEnclave.startReservedLane(1);
+        Service service = admittedEnclave.load(Service.class).next();
+        CompletableFuture<Integer> sum = CompletableFuture.supplyAsync(() -> service.add(1, 2));
+        running.await();
+
+        // the only admission permit is held, loading and unloading run on the reserved enclave thread.
+        assertThrows(UndeclaredThrowableException.class, () -> service.add(3, 4));
+        Deque<?> handlers = (Deque<?>) admittedEnclave.getCachedServiceHandler();
+        int loaded = handlers.size();
+        assertNotNull(admittedEnclave.load(Service.class).next());
+        assertEquals(loaded + 1, handlers.size());
+        admittedEnclave.unloadService((ServiceHandler) handlers.pollLast());
+        leave.countDown();
+        assertEquals(3, sum.get(30, TimeUnit.SECONDS));
+        admittedEnclave.destroy();
+    }
+
+    @Test
+    void testCarrierInterrupt() throws Exception {
+        EnclaveExecutor executor = new EnclaveExecutor(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch leave = new CountDownLatch(1);
+        AtomicReference<Object> result = new AtomicReference<>();
+        AtomicInteger interrupted = new AtomicInteger(0);
+        Thread caller = new Thread(() -> {
+            try {
+                result.set(executor.call(() -> {
+                    running.countDown();
+                    leave.await();
+                    return 42;
+                }));
+            } catch (Exception e) {
+                result.set(e);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted.incrementAndGet();
+            }
+        });
+        caller.start();
+        running.await();
+
+        // a queued call is dropped once its caller is interrupted.
+        AtomicInteger dropped = new AtomicInteger(0);
+        Thread queued = new Thread(() -> {
+            try {
+                executor.call(() -> dropped.decrementAndGet());
+            } catch (EnclaveMethodInvokingException e) {
+                dropped.incrementAndGet();
+            } catch (Exception e) {
+                dropped.addAndGet(0x10);
+            }
+        });
+        queued.start();
+        queued.interrupt();
+        queued.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(queued.isAlive());
+
+        // a running call is awaited, its result is not lost.
+        caller.interrupt();
+        caller.join(100);
+        assertTrue(caller.isAlive());
+        leave.countDown();
+        caller.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(caller.isAlive());
+        assertEquals(42, result.get());
+        assertEquals(1, interrupted.get());
+        executor.call(() -> null);
+        assertEquals(1, dropped.get());
+        executor.shutdown();
+    }
 }
@@ -0,0 +1,85 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.SocketFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestAgentChannel {
+    @Test
+    void testPipelinedRequests() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0x0));
+            AgentChannel channel = new AgentChannel((InetSocketAddress) server.getLocalAddress(), 1, 1000);
+
+            // two requests on one connection are answered in reverse order.
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> request(channel, "first", 0x0));
+            try (SocketChannel peer = server.accept()) {
+                SocketFrame a = SocketFrame.read(peer);
+                CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> request(channel, "second", 0x0));
+                SocketFrame b = SocketFrame.read(peer);
+                reply(peer, b);
+                assertEquals("second echo", second.get());
+                assertFalse(first.isDone());
+                reply(peer, a);
+                assertEquals("first echo", first.get());
+
+                // timeout is sent along with request, no response within it.
+                CompletableFuture<String> late = CompletableFuture.supplyAsync(() -> request(channel, "late", 100));
+                assertEquals(100, SocketFrame.read(peer).getTimeout());
+                ExecutionException e = assertThrows(ExecutionException.class, late::get);
+                assertTrue(e.getCause().getCause() instanceof SocketTimeoutException);
+            }
+
+            // a closed connection is reconnected by next request.
+            CompletableFuture<String> third = CompletableFuture.supplyAsync(() -> request(channel, "third", 0x0));
+            try (SocketChannel peer = server.accept()) {
+                reply(peer, SocketFrame.read(peer));
+                assertEquals("third echo", third.get());
+            }
+            channel.close();
+            assertThrows(IOException.class, () -> channel.request(new byte[0x0], 0x0));
+        }
+    }
+
+    private static String request(AgentChannel channel, String payload, int timeout) {
+        try {
+            return new String(channel.request(payload.getBytes(StandardCharsets.UTF_8), timeout), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void reply(SocketChannel peer, SocketFrame request) throws IOException {
+        byte[] response = (new String(request.getPayload(), StandardCharsets.UTF_8) + " echo").getBytes(StandardCharsets.UTF_8);
+        new SocketFrame(request.getRequestId(), response).write(peer);
+    }
+}
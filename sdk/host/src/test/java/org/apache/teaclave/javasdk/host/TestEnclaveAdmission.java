@@ -0,0 +1,77 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveBusyException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclaveAdmission {
+    @Test
+    void testFailFast() throws Exception {
+        EnclaveAdmission admission = new EnclaveAdmission(EnclaveAdmission.Mode.FAIL_FAST, 1, 0, 0);
+        assertEquals(0, admission.admit());
+        assertThrows(EnclaveBusyException.class, admission::admit);
+        admission.release();
+        admission.admit();
+        admission.release();
+    }
+
+    @Test
+    void testBlock() throws Exception {
+        EnclaveAdmission admission = new EnclaveAdmission(EnclaveAdmission.Mode.BLOCK, 1, 1, 0);
+        admission.admit();
+        CountDownLatch admitted = new CountDownLatch(1);
+        AtomicLong waiting = new AtomicLong();
+        Thread waiter = new Thread(() -> {
+            try {
+                waiting.set(admission.admit());
+                admitted.countDown();
+                admission.release();
+            } catch (Exception e) {
+                // admitted never counts down.
+            }
+        });
+        waiter.start();
+        while (admission.getQueueDepth() == 0) {
+            Thread.sleep(1);
+        }
+        // the queue holds one waiting invocation only.
+        assertThrows(EnclaveBusyException.class, admission::admit);
+        Thread.sleep(20);
+        admission.release();
+        admitted.await();
+        waiter.join();
+        assertTrue(waiting.get() > 0);
+        assertEquals(0, admission.getQueueDepth());
+    }
+
+    @Test
+    void testTimeout() throws Exception {
+        EnclaveAdmission admission = new EnclaveAdmission(EnclaveAdmission.Mode.BLOCK, 1, 0, 20);
+        admission.admit();
+        assertThrows(EnclaveBusyException.class, admission::admit);
+        assertEquals(0, admission.getQueueDepth());
+        admission.release();
+    }
+}
@@ -0,0 +1,160 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.*;
+import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
+import org.apache.teaclave.javasdk.host.exception.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclaveCursorIterator {
+    interface RangeService {
+        EnclaveIterator<Integer> range(int size);
+
+        Stream<Integer> rangeStream(int size);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCursorIterator() throws Throwable {
+        CursorEnclave enclave = new CursorEnclave();
+        ProxyEnclaveInvocationHandler handler = new ProxyEnclaveInvocationHandler(enclave,
+                new ServiceHandler(RangeService.class.getName(), RangeService.class.getName(), 1));
+        int pageSize = enclave.getIteratorPageSize();
+
+        // elements are fetched a page at a time, the last page releases the cursor.
+        EnclaveIterator<Integer> iterator = (EnclaveIterator<Integer>) handler.invoke(null,
+                RangeService.class.getMethod("range", int.class), new Object[]{pageSize * 2 + 1});
+        assertEquals(0x0, enclave.fetches.get());
+        int expected = 0x0;
+        while (iterator.hasNext()) {
+            assertEquals(expected++, iterator.next());
+        }
+        assertEquals(pageSize * 2 + 1, expected);
+        assertEquals(3, enclave.fetches.get());
+        assertTrue(enclave.cursors.isEmpty());
+        iterator.close();
+        assertEquals(0x0, enclave.releases.get());
+
+        // a stream closed before its end releases the cursor.
+        try (Stream<Integer> stream = (Stream<Integer>) handler.invoke(null,
+                RangeService.class.getMethod("rangeStream", int.class), new Object[]{pageSize * 3})) {
+            assertEquals(IntStream.range(0x0, 5).boxed().collect(Collectors.toList()),
+                    stream.limit(5).collect(Collectors.toList()));
+        }
+        assertEquals(1, enclave.releases.get());
+        assertTrue(enclave.cursors.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchCursorIterator() throws Throwable {
+        CursorEnclave enclave = new CursorEnclave();
+        RangeService service = (RangeService) Proxy.newProxyInstance(RangeService.class.getClassLoader(),
+                new Class<?>[]{RangeService.class}, new ProxyEnclaveInvocationHandler(enclave,
+                        new ServiceHandler(RangeService.class.getName(), RangeService.class.getName(), 1)));
+        EnclaveBatch batch = enclave.batch();
+        RangeService recorder = batch.record(service);
+        assertNull(recorder.range(3));
+        assertNull(recorder.rangeStream(2));
+
+        // batched results are cursors as well.
+        List<EnclaveBatch.Result> results = batch.execute();
+        EnclaveIterator<Integer> iterator = (EnclaveIterator<Integer>) results.get(0).getValue();
+        List<Integer> elements = new ArrayList<>();
+        iterator.forEachRemaining(elements::add);
+        assertEquals(List.of(0, 1, 2), elements);
+        try (Stream<Integer> stream = (Stream<Integer>) results.get(1).getValue()) {
+            assertEquals(List.of(0, 1), stream.collect(Collectors.toList()));
+        }
+        assertTrue(enclave.cursors.isEmpty());
+    }
+
+    // CursorEnclave keeps returned iterators as cursors as enclave does.
+    private static final class CursorEnclave extends MockTestEnclave {
+        private final Map<Long, Iterator<Integer>> cursors = new ConcurrentHashMap<>();
+        private final AtomicLong cursorIds = new AtomicLong(0x0);
+        private final AtomicInteger fetches = new AtomicInteger(0x0);
+        private final AtomicInteger releases = new AtomicInteger(0x0);
+
+        CursorEnclave() throws EnclaveCreatingException {
+        }
+
+        @Override
+        byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
+            Object result;
+            if (context instanceof EnclaveCursorContext) {
+                result = operate((EnclaveCursorContext) context);
+            } else if (context.isBatch()) {
+                EnclaveInvocationContext[] batchContexts = context.getBatchContexts();
+                EnclaveInvocationResult[] results = new EnclaveInvocationResult[batchContexts.length];
+                for (int index = 0x0; index < batchContexts.length; index++) {
+                    results[index] = new EnclaveInvocationResult(range(batchContexts[index]), null);
+                }
+                result = results;
+            } else {
+                result = range(context);
+            }
+            try {
+                return SerializationHelper.serialize(new EnclaveInvocationResult(result, null));
+            } catch (IOException e) {
+                throw new EnclaveMethodInvokingException(e);
+            }
+        }
+
+        private EnclaveCursorHandle range(EnclaveInvocationContext context) {
+            long cursorId = cursorIds.incrementAndGet();
+            cursors.put(cursorId, IntStream.range(0x0, (int) context.getArguments()[0x0]).iterator());
+            return new EnclaveCursorHandle(cursorId, "rangeStream".equals(context.getMethodName()));
+        }
+
+        private Object operate(EnclaveCursorContext context) {
+            if (context.getOperation() == EnclaveCursorContext.RELEASE) {
+                releases.incrementAndGet();
+                cursors.remove(context.getCursorId());
+                return null;
+            }
+            fetches.incrementAndGet();
+            Iterator<Integer> cursor = cursors.get(context.getCursorId());
+            ArrayList<Object> page = new ArrayList<>();
+            while (page.size() < context.getPageSize() && cursor.hasNext()) {
+                page.add(cursor.next());
+            }
+            if (page.size() < context.getPageSize()) {
+                cursors.remove(context.getCursorId());
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.*;
+import org.apache.teaclave.javasdk.host.exception.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclaveMetrics {
+    private final static long COST_IN_ENCLAVE = 5_000_000;
+
+    interface EchoService {
+        String echo(String message);
+    }
+
+    @Test
+    void testLatencyHistogram() {
+        for (long value = 0x0; value < (1L << 20); value += 7) {
+            int index = EnclaveLatencyHistogram.bucketIndex(value);
+            assertTrue(EnclaveLatencyHistogram.bucketHighestValue(index) >= value);
+            assertTrue(index == 0x0 || EnclaveLatencyHistogram.bucketHighestValue(index - 1) < value);
+        }
+
+        EnclaveLatencyHistogram histogram = new EnclaveLatencyHistogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        EnclaveLatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(5000, snapshot.getMean());
+        assertEquals(10000, snapshot.getMax());
+        // a percentile is kept within 1/16 precision.
+        assertEquals(5000, snapshot.getValueAtPercentile(50.0), 5000 / 16);
+        assertEquals(9900, snapshot.getValueAtPercentile(99.0), 9900 / 16);
+        assertEquals(10000, snapshot.getValueAtPercentile(100.0));
+
+        histogram.reset();
+        assertEquals(0x0, histogram.snapshot().getCount());
+        assertEquals(0x0, histogram.snapshot().getValueAtPercentile(99.0));
+    }
+
+    @Test
+    void testMethodMetrics() throws Throwable {
+        EchoEnclave enclave = new EchoEnclave();
+        ProxyEnclaveInvocationHandler handler = new ProxyEnclaveInvocationHandler(enclave,
+                new ServiceHandler(EchoService.class.getName(), EchoService.class.getName(), 1));
+        boolean histogramSwitch = MetricTrace.isEnableEnclaveMetricHistogram();
+        try {
+            MetricTrace.setEnclaveMetricHistogramSwitch(false);
+            handler.invoke(null, EchoService.class.getMethod("echo", String.class), new Object[]{"hello"});
+            assertTrue(methodMetrics(enclave).isEmpty());
+
+            MetricTrace.setEnclaveMetricHistogramSwitch(true);
+            for (int index = 0x0; index < 3; index++) {
+                assertEquals("hello", handler.invoke(null, EchoService.class.getMethod("echo", String.class), new Object[]{"hello"}));
+            }
+            List<EnclaveMethodMetric> metrics = methodMetrics(enclave);
+            assertEquals(EnclaveMethodMetric.Phase.values().length, metrics.size());
+            for (EnclaveMethodMetric metric : metrics) {
+                assertEquals(EchoService.class.getName(), metric.getService());
+                assertEquals("echo", metric.getMethod());
+                assertEquals(EnclaveType.MOCK_IN_SVM, metric.getEnclaveType());
+                assertEquals(3, metric.getCount());
+                assertTrue(metric.getP50() <= metric.getP999() && metric.getP999() <= metric.getMax());
+                if (metric.getPhase() == EnclaveMethodMetric.Phase.ENCLAVE) {
+                    assertEquals(COST_IN_ENCLAVE, metric.getMean());
+                }
+                if (metric.getPhase() == EnclaveMethodMetric.Phase.TOTAL) {
+                    assertTrue(metric.getMean() >= COST_IN_ENCLAVE);
+                }
+            }
+
+            EnclaveMetrics.getEnclaveMetricsInstance().removeEnclave(enclave.getEnclaveInfo());
+            assertTrue(methodMetrics(enclave).isEmpty());
+        } finally {
+            MetricTrace.setEnclaveMetricHistogramSwitch(histogramSwitch);
+        }
+    }
+
+    private static List<EnclaveMethodMetric> methodMetrics(Enclave enclave) {
+        return EnclaveMetrics.getEnclaveMetricsInstance().getMethodMetrics().stream()
+                .filter(metric -> metric.getEnclaveID() == enclave.getEnclaveInfo().getEnclaveID())
+                .collect(Collectors.toList());
+    }
+
+    private static final class EchoEnclave extends MockTestEnclave {
+        private final EnclaveInfo enclaveInfo = new MockEnclaveInfo(EnclaveType.MOCK_IN_SVM, true, -1, -1);
+
+        EchoEnclave() throws EnclaveCreatingException {
+        }
+
+        @Override
+        byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
+            try {
+                // in-enclave cost is taken as enclave reports, regardless of how long it actually ran.
+                Thread.sleep(COST_IN_ENCLAVE / 1_000_000);
+                EnclaveInvocationResult result = new EnclaveInvocationResult(context.getArguments()[0x0], null);
+                result.setCost(COST_IN_ENCLAVE);
+                return SerializationHelper.serialize(result);
+            } catch (InterruptedException | IOException e) {
+                throw new EnclaveMethodInvokingException(e);
+            }
+        }
+
+        @Override
+        public EnclaveInfo getEnclaveInfo() {
+            return enclaveInfo;
+        }
+    }
+}
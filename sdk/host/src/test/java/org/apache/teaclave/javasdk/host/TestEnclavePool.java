@@ -0,0 +1,127 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.host.exception.EnclaveCreatingException;
+import org.apache.teaclave.javasdk.host.exception.EnclaveMethodInvokingException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclavePool {
+    @Test
+    void testPool() throws Exception {
+        EnclavePool pool = new EnclavePool(2, PooledEnclave::new);
+        Service service = pool.load(Service.class).next();
+        assertEquals(200, service.add(20, 180));
+        assertEquals("Hello World", service.saySomething("Hello World"));
+        assertThrows(ServiceExceptionTest.class, () -> service.throwException("something is wrong"));
+        assertTrue(pool.isHealthy(0x0) && pool.isHealthy(0x1));
+        assertEquals(0, pool.checkHealth());
+
+        // object methods describe the pooled proxy itself.
+        Service other = pool.load(Service.class).next();
+        assertEquals(service, service);
+        assertNotEquals(service, other);
+        assertEquals(System.identityHashCode(service), service.hashCode());
+        assertTrue(service.toString().contains(Service.class.getName()));
+
+        // invocations are spread over members.
+        for (int index = 0x0; index < 100; index++) {
+            service.doNothing();
+        }
+        assertTrue(((PooledEnclave) pool.getEnclave(0x0)).invocations.get() > 0);
+        assertTrue(((PooledEnclave) pool.getEnclave(0x1)).invocations.get() > 0);
+
+        // a broken member fails in enclave, it becomes unhealthy and is replaced.
+        PooledEnclave broken = (PooledEnclave) pool.getEnclave(0x0);
+        broken.broken = true;
+        for (int index = 0x0; index < 100; index++) {
+            try {
+                assertEquals(3, service.add(1, 2));
+            } catch (UndeclaredThrowableException e) {
+                assertEquals(EnclaveMethodInvokingException.class, e.getCause().getClass());
+            }
+        }
+        assertFalse(pool.isHealthy(0x0));
+        assertEquals(1, pool.checkHealth());
+        assertTrue(broken.destroyed);
+        assertNotSame(broken, pool.getEnclave(0x0));
+        assertEquals(1, ((PooledEnclave) pool.getEnclave(0x0)).loaded.get());
+        assertEquals(7, service.add(3, 4));
+
+        pool.destroy();
+        assertTrue(((PooledEnclave) pool.getEnclave(0x1)).destroyed);
+        assertThrows(EnclaveCreatingException.class, () -> new EnclavePool(0, PooledEnclave::new));
+    }
+
+    private static final class PooledEnclave implements Enclave {
+        private final AtomicInteger loaded = new AtomicInteger(0x0);
+        private final AtomicInteger invocations = new AtomicInteger(0x0);
+        private volatile boolean broken = false;
+        private volatile boolean destroyed = false;
+
+        @Override
+        public <T> Iterator<T> load(Class<T> service) {
+            loaded.incrementAndGet();
+            Object impl = new ServiceImpl();
+            return Collections.singletonList(service.cast(Proxy.newProxyInstance(
+                    service.getClassLoader(),
+                    new Class<?>[]{service},
+                    (proxy, method, args) -> {
+                        if (broken || destroyed) {
+                            throw new EnclaveMethodInvokingException("enclave was destroyed.");
+                        }
+                        invocations.incrementAndGet();
+                        try {
+                            return method.invoke(impl, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }))).iterator();
+        }
+
+        @Override
+        public <T> Iterator<T> loadAsync(Class<T> asyncService) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EnclaveBatch batch() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EnclaveInfo getEnclaveInfo() {
+            return null;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+    }
+}
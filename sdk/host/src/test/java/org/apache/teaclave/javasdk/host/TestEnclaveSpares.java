@@ -0,0 +1,82 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.ServiceHandler;
+import org.apache.teaclave.javasdk.host.exception.EnclaveCreatingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclaveSpares {
+    @Test
+    void testSpares() throws Exception {
+        EnclaveSpares spares = new EnclaveSpares("test", 2, Collections.singletonList(Service.class), MockTestEnclave::new);
+        spares.replenish();
+        while (spares.readySize() < 2) {
+            Thread.sleep(1);
+        }
+        Enclave enclave = spares.take();
+        assertNotNull(enclave);
+        // the taken spare is created again.
+        while (spares.readySize() < 2) {
+            Thread.sleep(1);
+        }
+        // the preloaded providers are returned at the first loading.
+        Iterator<Service> services = enclave.load(Service.class);
+        assertEquals(7, services.next().add(3, 4));
+        assertNotSame(services, enclave.load(Service.class));
+        enclave.destroy();
+        spares.shutdown();
+        assertEquals(0, spares.readySize());
+        assertNull(spares.take());
+
+        // MockTestEnclave services are shared, unload them for other tests.
+        MockTestEnclave cleaner = new MockTestEnclave();
+        ServiceHandler handler;
+        while ((handler = (ServiceHandler) cleaner.getCachedServiceHandler().poll()) != null) {
+            cleaner.unloadService(handler);
+        }
+        cleaner.destroy();
+    }
+
+    @Test
+    void testSpareCreationRetry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        EnclaveSpares spares = new EnclaveSpares("retry", 1, Collections.emptyList(), () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new EnclaveCreatingException("creating spare failed.");
+            }
+            return new MockTestEnclave();
+        });
+        spares.replenish();
+        // failures are recorded and the creation is retried with a backoff.
+        while (spares.readySize() < 1) {
+            Thread.sleep(1);
+        }
+        assertEquals(3, attempts.get());
+        assertTrue(spares.lastFailure() instanceof EnclaveCreatingException);
+        spares.shutdown();
+        assertEquals(0, spares.readySize());
+    }
+}
@@ -0,0 +1,167 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.apache.teaclave.javasdk.common.*;
+import org.apache.teaclave.javasdk.common.exception.ConfidentialComputingException;
+import org.apache.teaclave.javasdk.host.exception.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclaveStreams {
+    interface StreamService {
+        int count(InputStream in);
+
+        InputStream produce(int size);
+
+        ReadableByteChannel produceChannel(int size);
+    }
+
+    @Test
+    void testStreams() throws Throwable {
+        StreamEnclave enclave = new StreamEnclave();
+        // stream operations share one reserved enclave thread.
+        enclave.startReservedLane(1);
+        ProxyEnclaveInvocationHandler handler = new ProxyEnclaveInvocationHandler(enclave,
+                new ServiceHandler(StreamService.class.getName(), StreamService.class.getName(), 1));
+
+        // an argument is fed in chunks, its first chunk finds the buffer full.
+        byte[] content = new byte[1 << 20];
+        new Random(0x0).nextBytes(content);
+        Object count = handler.invoke(null, StreamService.class.getMethod("count", InputStream.class),
+                new Object[]{new ByteArrayInputStream(content)});
+        assertEquals(content.length, count);
+        assertArrayEquals(content, enclave.received);
+        assertTrue(enclave.arguments.isEmpty());
+
+        // a result is read in chunks and released by close.
+        InputStream result = (InputStream) handler.invoke(null,
+                StreamService.class.getMethod("produce", int.class), new Object[]{5000});
+        assertEquals(5000, result.readAllBytes().length);
+        assertEquals(1, enclave.results.size());
+        result.close();
+        assertTrue(enclave.results.isEmpty());
+
+        try (ReadableByteChannel channel = (ReadableByteChannel) handler.invoke(null,
+                StreamService.class.getMethod("produceChannel", int.class), new Object[]{3000})) {
+            assertEquals(3000, Channels.newInputStream(channel).readAllBytes().length);
+        }
+        assertTrue(enclave.results.isEmpty());
+
+        // streams are transferred by enclave transitions of their own, so they can't be batched.
+        StreamService service = (StreamService) Proxy.newProxyInstance(StreamService.class.getClassLoader(),
+                new Class<?>[]{StreamService.class}, handler);
+        StreamService recorder = enclave.batch().record(service);
+        assertThrows(IllegalArgumentException.class, () -> recorder.count(new ByteArrayInputStream(content)));
+        assertThrows(IllegalArgumentException.class, () -> recorder.produce(1));
+    }
+
+    // StreamEnclave does stream operations as enclave does, with a buffer of one chunk.
+    private static final class StreamEnclave extends MockTestEnclave {
+        private final Map<Long, ByteArrayOutputStream> arguments = new ConcurrentHashMap<>();
+        private final Map<Long, Boolean> ended = new ConcurrentHashMap<>();
+        private final Map<Long, InputStream> results = new ConcurrentHashMap<>();
+        private final AtomicLong resultIds = new AtomicLong(0x0);
+        private volatile boolean full = true;
+        private volatile byte[] received;
+
+        StreamEnclave() throws EnclaveCreatingException {
+        }
+
+        @Override
+        byte[] invokeMethodNative(EnclaveInvocationContext context) throws EnclaveMethodInvokingException {
+            Object result = null;
+            Throwable exception = null;
+            try {
+                result = context instanceof EnclaveStreamContext ? operate((EnclaveStreamContext) context) : invoke(context);
+            } catch (Exception e) {
+                exception = new ConfidentialComputingException(e);
+            }
+            try {
+                return SerializationHelper.serialize(new EnclaveInvocationResult(result, exception));
+            } catch (IOException e) {
+                throw new EnclaveMethodInvokingException(e);
+            }
+        }
+
+        private Object operate(EnclaveStreamContext context) {
+            long streamId = context.getStreamId();
+            switch (context.getOperation()) {
+                case EnclaveStreamContext.OPEN:
+                    arguments.put(streamId, new ByteArrayOutputStream());
+                    return null;
+                case EnclaveStreamContext.WRITE:
+                    if (full) {
+                        full = false;
+                        return EnclaveStreamContext.WRITE_FULL;
+                    }
+                    arguments.get(streamId).writeBytes(context.getData());
+                    return EnclaveStreamContext.WRITE_ACCEPTED;
+                case EnclaveStreamContext.END:
+                    ended.put(streamId, true);
+                    return null;
+                case EnclaveStreamContext.CLOSE:
+                    arguments.remove(streamId);
+                    return null;
+                case EnclaveStreamContext.READ:
+                    try {
+                        return results.get(streamId).readNBytes(1000);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                case EnclaveStreamContext.RELEASE:
+                    results.remove(streamId);
+                    return null;
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+
+        private Object invoke(EnclaveInvocationContext context) throws InterruptedException {
+            Object argument = context.getArguments()[0x0];
+            if ("count".equals(context.getMethodName())) {
+                long streamId = ((EnclaveStreamHandle) argument).getStreamId();
+                // the invocation reads its argument until the end.
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (!ended.containsKey(streamId) && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                received = arguments.get(streamId).toByteArray();
+                return received.length;
+            }
+            long streamId = resultIds.incrementAndGet();
+            results.put(streamId, new ByteArrayInputStream(new byte[(int) argument]));
+            return new EnclaveStreamHandle(streamId, "produceChannel".equals(context.getMethodName()));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.teaclave.javasdk.host;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEnclaveToken {
+    @Test
+    void testDestroyDrainsInvocations() throws Exception {
+        EnclaveToken token = new EnclaveToken();
+        assertTrue(token.tryAcquireToken());
+        assertTrue(token.tryAcquireToken());
+        token.restoreToken();
+
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean destroyed = new AtomicBoolean(false);
+        Thread destroyer = new Thread(() -> {
+            started.countDown();
+            destroyed.set(token.destroyToken());
+        });
+        destroyer.start();
+        started.await();
+        // once no token could be acquired, destroying has begun and must wait for the ongoing invocation.
+        while (token.tryAcquireToken()) {
+            token.restoreToken();
+            Thread.yield();
+        }
+        assertTrue(destroyer.isAlive());
+        token.restoreToken();
+        destroyer.join();
+        assertTrue(destroyed.get());
+        assertFalse(token.tryAcquireToken());
+        assertFalse(token.destroyToken());
+    }
+}
@@ -0,0 +1,130 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestExtractLibrary {
+    @TempDir
+    Path resources;
+    @TempDir
+    Path cache;
+
+    @Test
+    void testExtractionCache() throws Exception {
+        Files.createDirectories(resources.resolve("jni"));
+        Files.write(resources.resolve("jni/lib_test.so"), "library".getBytes(StandardCharsets.UTF_8));
+        byte[] content = "enclave".getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(resources.resolve("image.tgz")))) {
+            writeTarEntry(out, "image/build/lib/enclave.signed.so", content);
+            // end of archive.
+            out.write(new byte[1024]);
+        }
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{resources.toUri().toURL()}, null)) {
+            Path library = ExtractLibrary.extractCachedLibrary(loader, "jni/lib_test.so", cache);
+            assertEquals("lib_test.so", library.getFileName().toString());
+            assertEquals("library", Files.readString(library));
+            // the same content is extracted once.
+            long modified = Files.getLastModifiedTime(library).toMillis();
+            assertEquals(library, ExtractLibrary.extractCachedLibrary(loader, "jni/lib_test.so", cache));
+            assertEquals(modified, Files.getLastModifiedTime(library).toMillis());
+
+            // a damaged entry is extracted again.
+            Files.write(library, "damaged".getBytes(StandardCharsets.UTF_8));
+            assertEquals(library, ExtractLibrary.extractCachedLibrary(loader, "jni/lib_test.so", cache));
+            assertEquals("library", Files.readString(library));
+
+            Path image = ExtractLibrary.extractCachedTgz(loader, "image.tgz", cache);
+            assertEquals("enclave", Files.readString(image.resolve("image/build/lib/enclave.signed.so")));
+            assertEquals(image, ExtractLibrary.extractCachedTgz(loader, "image.tgz", cache));
+            // a process runs a private copy, what it writes never reaches the cached image.
+            Path copy = ExtractLibrary.copyImage(image);
+            assertNotEquals(image, copy);
+            Files.write(copy.resolve("image/build/lib/enclave.signed.so"), "written".getBytes(StandardCharsets.UTF_8));
+            assertEquals("enclave", Files.readString(image.resolve("image/build/lib/enclave.signed.so")));
+
+            // changed content is extracted to another entry.
+            Files.write(resources.resolve("jni/lib_test.so"), "library v2".getBytes(StandardCharsets.UTF_8));
+            Path updated = ExtractLibrary.extractCachedLibrary(loader, "jni/lib_test.so", cache);
+            assertNotEquals(library.getParent(), updated.getParent());
+            assertEquals("library v2", Files.readString(updated));
+        }
+    }
+
+    @Test
+    void testCacheDirPermissions() throws Exception {
+        Path dir = cache.resolve("dir");
+        assertEquals(cache.toRealPath().resolve("dir"), ExtractLibrary.prepareCacheDir(dir));
+        assertEquals(Set.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE),
+                Files.getPosixFilePermissions(dir));
+        // a link to the cache directory isn't trusted.
+        Path link = Files.createSymbolicLink(cache.resolve("link"), dir);
+        assertNull(ExtractLibrary.prepareCacheDir(link));
+        Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxrwx---"));
+        assertNull(ExtractLibrary.prepareCacheDir(dir));
+        Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxr-xr-x"));
+        assertNotNull(ExtractLibrary.prepareCacheDir(dir));
+    }
+
+    // write a ustar regular file entry.
+    static void writeTarEntry(OutputStream out, String name, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        putField(header, 0, name);
+        putField(header, 100, "0000644");
+        putField(header, 108, "0000000");
+        putField(header, 116, "0000000");
+        putField(header, 124, String.format("%011o", content.length));
+        putField(header, 136, String.format("%011o", 0));
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        header[156] = '0';
+        putField(header, 257, "ustar");
+        putField(header, 263, "00");
+        int checksum = 0x0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        putField(header, 148, String.format("%06o", checksum));
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static void putField(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+        header[offset + bytes.length] = 0x0;
+    }
+}
@@ -0,0 +1,126 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestMetricTraceLogWriter {
+    private final static EnclaveInfo INFO = new MockEnclaveInfo(EnclaveType.MOCK_IN_SVM, true, -1, -1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testDropOnOverflow() throws Exception {
+        Path log = dir.resolve("metric.log");
+        MetricTraceLogWriter writer = new MetricTraceLogWriter(log, 4, 0x0, 0x0);
+        // the appender isn't started, so the ring fills up.
+        for (int index = 0x0; index < 4; index++) {
+            assertTrue(writer.offer(INFO, "invoking:" + index, 2_000_000, 1_000_000, 0x0));
+        }
+        assertFalse(writer.offer(INFO, "invoking:4", 2_000_000, 1_000_000, 0x0));
+        assertEquals(1, writer.getDropped());
+        writer.close();
+
+        List<String> lines = Files.readAllLines(log);
+        assertEquals(5, lines.size());
+        assertEquals(INFO.getEnclaveID() + "  MOCK_IN_SVM  invoking:0  2,000  1,000  0", lines.get(0x0));
+        assertEquals("metric_trace_dropped  1", lines.get(4));
+    }
+
+    @Test
+    void testConcurrentTracing() throws Exception {
+        Path log = dir.resolve("metric.log");
+        MetricTraceLogWriter writer = new MetricTraceLogWriter(log, 8192, 0x0, 0x0);
+        writer.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0x0; thread < 4; thread++) {
+            String name = "invoking:" + thread;
+            threads.add(new Thread(() -> {
+                for (int index = 0x0; index < 1000; index++) {
+                    writer.offer(INFO, name, index, 0x0, 0x0);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+        assertEquals(0x0, writer.getDropped());
+        assertEquals(4000, Files.readAllLines(log).size());
+    }
+
+    @Test
+    void testRotation() throws Exception {
+        Path log = dir.resolve("metric.log");
+        // every record exceeds the rotation size, so each one is rolled over by its successor.
+        MetricTraceLogWriter writer = new MetricTraceLogWriter(log, 16, 1, 0x0);
+        writer.start();
+        for (int index = 0x0; index < 3; index++) {
+            assertTrue(writer.offer(INFO, "invoking:" + index, 0x0, 0x0, 0x0));
+        }
+        writer.close();
+        assertTrue(Files.readString(dir.resolve("metric.log.2")).contains("invoking:0"));
+        assertTrue(Files.readString(dir.resolve("metric.log.1")).contains("invoking:1"));
+        assertTrue(Files.readString(log).contains("invoking:2"));
+    }
+
+    @Test
+    void testRotatedFilesCap() throws Exception {
+        Path log = dir.resolve("metric.log");
+        MetricTraceLogWriter writer = new MetricTraceLogWriter(log, 64, 1, 0x0);
+        writer.start();
+        int records = MetricTraceLogWriter.MAX_ROTATED_FILES + 3;
+        for (int index = 0x0; index < records; index++) {
+            assertTrue(writer.offer(INFO, "invoking:" + index, 0x0, 0x0, 0x0));
+        }
+        writer.close();
+        // the oldest records are gone with the rolled files beyond the cap.
+        assertFalse(Files.exists(dir.resolve("metric.log." + (MetricTraceLogWriter.MAX_ROTATED_FILES + 1))));
+        assertTrue(Files.readString(dir.resolve("metric.log." + MetricTraceLogWriter.MAX_ROTATED_FILES)).contains("invoking:2"));
+        assertTrue(Files.readString(log).contains("invoking:" + (records - 1)));
+    }
+
+    @Test
+    void testRotationFailure() throws Exception {
+        Path log = dir.resolve("metric.log");
+        // rolled files can't be replaced by non-empty directories.
+        for (int index = 1; index <= MetricTraceLogWriter.MAX_ROTATED_FILES; index++) {
+            Files.createDirectories(dir.resolve("metric.log." + index).resolve("occupied"));
+        }
+        MetricTraceLogWriter writer = new MetricTraceLogWriter(log, 16, 1, 0x0);
+        writer.start();
+        for (int index = 0x0; index < 3; index++) {
+            assertTrue(writer.offer(INFO, "invoking:" + index, 0x0, 0x0, 0x0));
+        }
+        writer.close();
+        // records are kept appending to log file.
+        assertEquals(0x0, writer.getDropped());
+        assertEquals(3, Files.readAllLines(log).size());
+    }
+}
@@ -0,0 +1,109 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package org.apache.teaclave.javasdk.host;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.apache.teaclave.javasdk.host.TestExtractLibrary.writeTarEntry;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestTgzExtractor {
+    @TempDir
+    Path workspace;
+
+    @Test
+    void testExtractImage() throws Exception {
+        // larger than a chunk, so it's written in several.
+        byte[] large = new byte[9 << 20];
+        new Random(0x0).nextBytes(large);
+        byte[] small = "enclave".getBytes(StandardCharsets.UTF_8);
+        String manifest = sha256(large) + "  image/lib/large.so\n" + sha256(small) + "  ./image/lib/small.so\n";
+
+        Path image = buildImage("image.tgz", large, small, manifest);
+        Path dest = workspace.resolve("dest");
+        new TgzExtractor(dest).extract(image);
+        assertArrayEquals(large, Files.readAllBytes(dest.resolve("image/lib/large.so")));
+        assertArrayEquals(small, Files.readAllBytes(dest.resolve("image/lib/small.so")));
+        assertFalse(Files.exists(dest.resolve(TgzExtractor.MANIFEST_ENTRY)));
+
+        // an image without manifest is only checked against its headers.
+        image = buildImage("plain.tgz", large, small, null);
+        new TgzExtractor(workspace.resolve("plain")).extract(image);
+        assertArrayEquals(large, Files.readAllBytes(workspace.resolve("plain/image/lib/large.so")));
+
+        // content doesn't match manifest.
+        large[0x0] ^= 0x1;
+        Path tampered = buildImage("tampered.tgz", large, small, manifest);
+        assertThrows(IOException.class, () -> new TgzExtractor(workspace.resolve("tampered")).extract(tampered));
+
+        // a file isn't listed in manifest.
+        Path unlisted = buildImage("unlisted.tgz", large, small, sha256(small) + "  image/lib/small.so\n");
+        assertThrows(IOException.class, () -> new TgzExtractor(workspace.resolve("unlisted")).extract(unlisted));
+
+        // an entry outside of destination directory.
+        Path escaped = workspace.resolve("escaped.tgz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(escaped))) {
+            writeTarEntry(out, "../escaped.so", small);
+            out.write(new byte[1024]);
+        }
+        assertThrows(IOException.class, () -> new TgzExtractor(workspace.resolve("escaped")).extract(escaped));
+        assertFalse(Files.exists(workspace.resolve("escaped.so")));
+
+        // a file appears twice.
+        Path duplicated = workspace.resolve("duplicated.tgz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(duplicated))) {
+            writeTarEntry(out, "image/lib/small.so", small);
+            writeTarEntry(out, "./image/lib/small.so", "replaced".getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[1024]);
+        }
+        assertThrows(IOException.class, () -> new TgzExtractor(workspace.resolve("duplicated")).extract(duplicated));
+    }
+
+    private Path buildImage(String name, byte[] large, byte[] small, String manifest) throws IOException {
+        Path image = workspace.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(image))) {
+            writeTarEntry(out, "image/lib/large.so", large);
+            writeTarEntry(out, "image/lib/small.so", small);
+            if (manifest != null) {
+                writeTarEntry(out, TgzExtractor.MANIFEST_ENTRY, manifest.getBytes(StandardCharsets.UTF_8));
+            }
+            // end of archive.
+            out.write(new byte[1024]);
+        }
+        return image;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
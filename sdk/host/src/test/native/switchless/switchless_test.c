@@ -0,0 +1,163 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+#include <pthread.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+
+#include <enc_environment.h>
+// give up a request quickly, the slow worker below takes far longer to claim it.
+#define SWITCHLESS_CLAIM_TIMEOUT_MICROS 10000
+#include <enc_switchless.h>
+
+#define SLOW_WORKER_MICROS 100000
+#define RELEASE_WAIT_MICROS 5000000
+
+#define CHECK(condition, message)                                       \
+    if (!(condition)) {                                                 \
+        fprintf(stderr, "switchless test failed: %s.\n", message);      \
+        exit(1);                                                        \
+    }
+
+typedef struct {
+    switchless_ring_t* ring;
+    uint32_t delay_micros;
+    volatile uint32_t served;
+    volatile uint32_t claimed;
+} worker_t;
+
+static void park(uint32_t micros) {
+    struct timespec duration;
+    duration.tv_sec = micros / 1000000;
+    duration.tv_nsec = (long)(micros % 1000000) * 1000;
+    nanosleep(&duration, NULL);
+}
+
+static uint64_t monotonic_micros(void) {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (uint64_t)now.tv_sec * 1000000 + (uint64_t)now.tv_nsec / 1000;
+}
+
+// a worker which takes a request off the ring but is slow to claim it.
+static void serve(void* ctx, switchless_request_t* request) {
+    worker_t* worker = (worker_t*)ctx;
+    park(worker->delay_micros);
+    if (switchless_request_claim(request)) {
+        __atomic_add_fetch(&worker->claimed, 1, __ATOMIC_RELEASE);
+        request->output = request->input;
+        switchless_request_complete(request, 0x0);
+    }
+    __atomic_add_fetch(&worker->served, 1, __ATOMIC_RELEASE);
+}
+
+static void* worker_routine(void* arg) {
+    worker_t* worker = (worker_t*)arg;
+    switchless_worker_loop(worker->ring, &serve, worker, &park);
+    return NULL;
+}
+
+static void wait_free(switchless_request_t* request) {
+    uint64_t deadline = monotonic_micros() + RELEASE_WAIT_MICROS;
+    while (__atomic_load_n(&request->owners, __ATOMIC_ACQUIRE) != 0x0) {
+        CHECK(monotonic_micros() < deadline, "descriptor is never freed")
+        park(100);
+    }
+}
+
+// post a request from a frame which is gone by the time the worker looks at it.
+static switchless_request_t* post_and_wait(switchless_ring_t* ring, char* payload, int* served, int* ret) {
+    switchless_request_t* request = switchless_request_acquire(ring);
+    CHECK(request != NULL, "no free descriptor")
+    request->input.data = payload;
+    request->input.data_len = 0x1;
+    request->output.data = NULL;
+    request->output.data_len = 0x0;
+    request->buffer.data = NULL;
+    request->buffer.data_len = 0x0;
+    CHECK(switchless_ring_post(ring, request), "ring is full")
+    *served = switchless_request_wait(ring, request, &park, &monotonic_micros, ret);
+    if (*served) {
+        CHECK(request->output.data == payload, "result is lost")
+    }
+    switchless_request_release(request);
+    return request;
+}
+
+static void test_abandon_slow_worker(switchless_ring_t* ring, worker_t* worker) {
+    char payload = 'a';
+    int served = 1;
+    int ret = -1;
+    worker->delay_micros = SLOW_WORKER_MICROS;
+    switchless_request_t* request = post_and_wait(ring, &payload, &served, &ret);
+    CHECK(!served, "a request no worker claimed in time is not abandoned")
+    CHECK(__atomic_load_n(&request->state, __ATOMIC_ACQUIRE) == SWITCHLESS_REQUEST_ABANDONED, "request is not abandoned")
+    // the worker still holds the ring's reference, the descriptor must not be reused yet.
+    CHECK(__atomic_load_n(&worker->served, __ATOMIC_ACQUIRE) == 0x0, "worker was not slow")
+    CHECK(__atomic_load_n(&request->owners, __ATOMIC_ACQUIRE) == 0x1, "abandoned descriptor is freed too early")
+    wait_free(request);
+    CHECK(__atomic_load_n(&worker->claimed, __ATOMIC_ACQUIRE) == 0x0, "worker claimed an abandoned request")
+    CHECK(request->output.data == NULL, "worker wrote an abandoned request")
+}
+
+static void test_round_trip(switchless_ring_t* ring, worker_t* worker) {
+    char payload = 'b';
+    int served = 0;
+    int ret = -1;
+    worker->delay_micros = 0x0;
+    switchless_request_t* request = post_and_wait(ring, &payload, &served, &ret);
+    CHECK(served && ret == 0x0, "request is not served")
+    wait_free(request);
+}
+
+static void test_exhausted(switchless_ring_t* ring) {
+    switchless_request_t* requests[SWITCHLESS_RING_CAPACITY];
+    for (int i = 0; i < SWITCHLESS_RING_CAPACITY; i++) {
+        requests[i] = switchless_request_acquire(ring);
+        CHECK(requests[i] != NULL, "descriptors run out too early")
+    }
+    CHECK(switchless_request_acquire(ring) == NULL, "descriptor is handed out twice")
+    switchless_request_release(requests[0x0]);
+    CHECK(switchless_request_acquire(ring) == requests[0x0], "released descriptor is not reused")
+    for (int i = 0; i < SWITCHLESS_RING_CAPACITY; i++) {
+        switchless_request_release(requests[i]);
+    }
+}
+
+int main(void) {
+    switchless_ring_t* ring = (switchless_ring_t*)calloc(1, sizeof(switchless_ring_t));
+    CHECK(ring != NULL, "allocate ring failed")
+    switchless_ring_init(ring, 0x1, 100);
+    test_exhausted(ring);
+
+    worker_t worker;
+    worker.ring = ring;
+    worker.delay_micros = 0x0;
+    worker.served = 0x0;
+    worker.claimed = 0x0;
+    pthread_t thread;
+    CHECK(pthread_create(&thread, NULL, worker_routine, &worker) == 0, "create worker failed")
+    test_abandon_slow_worker(ring, &worker);
+    test_round_trip(ring, &worker);
+
+    switchless_ring_stop(ring);
+    pthread_join(thread, NULL);
+    free(ring);
+    printf("switchless test passed.\n");
+    return 0;
+}
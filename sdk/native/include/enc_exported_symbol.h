@@ -32,6 +32,8 @@ int java_enclave_invoke(graal_isolate_t* thread, enc_data_t* input, enc_data_t*
 
 int java_unloadservice_invoke(graal_isolate_t* thread, enc_data_t* input, enc_data_t* result, callbacks_t* callBacks);
 
+int java_enclave_switchless_invoke(graal_isolatethread_t* thread, enc_data_t* input, enc_data_t* result, callbacks_t* callBacks);
+
 int java_detach_helper_thread(graal_isolatethread_t* thread);
 
 #if defined(__cplusplus)
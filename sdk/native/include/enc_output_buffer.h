@@ -0,0 +1,103 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+#ifndef __ENC_OUTPUT_BUFFER_H
+#define __ENC_OUTPUT_BUFFER_H
+
+#include <pthread.h>
+#include <stdlib.h>
+#include <stddef.h>
+
+/*
+ * Per host thread pooled output buffer. It is offered to the enclave with
+ * every invocation, results which fit are written straight into it, so the
+ * common return path needs no ocall_malloc and no free. A larger result is
+ * still allocated through the memcpy_char_pointer callback, the pool then
+ * grows so that the next results of that size fit.
+ */
+
+#define OUTPUT_BUFFER_INITIAL_CAPACITY  (16 * 1024)
+#define OUTPUT_BUFFER_MAX_CAPACITY      (4 * 1024 * 1024)
+
+#if defined(__cplusplus)
+extern "C" {
+#endif
+
+typedef struct output_buffer_struct {
+    char*  data;
+    size_t capacity;
+} output_buffer_t;
+
+static pthread_key_t output_buffer_key;
+static pthread_once_t output_buffer_once = PTHREAD_ONCE_INIT;
+
+static void output_buffer_destroy(void* arg) {
+    output_buffer_t* buffer = (output_buffer_t*)arg;
+    free(buffer->data);
+    free(buffer);
+}
+
+static void output_buffer_key_create(void) {
+    pthread_key_create(&output_buffer_key, output_buffer_destroy);
+}
+
+/*
+ * Returns the calling thread's output buffer, or NULL if it can't be allocated.
+ */
+static inline output_buffer_t* output_buffer_get(void) {
+    pthread_once(&output_buffer_once, output_buffer_key_create);
+    output_buffer_t* buffer = (output_buffer_t*)pthread_getspecific(output_buffer_key);
+    if (buffer != NULL) { return buffer; }
+    buffer = (output_buffer_t*)malloc(sizeof(output_buffer_t));
+    if (buffer == NULL) { return NULL; }
+    buffer->data = (char*)malloc(OUTPUT_BUFFER_INITIAL_CAPACITY);
+    buffer->capacity = buffer->data == NULL ? 0 : OUTPUT_BUFFER_INITIAL_CAPACITY;
+    pthread_setspecific(output_buffer_key, buffer);
+    return buffer;
+}
+
+static inline char* output_buffer_data(output_buffer_t* buffer) {
+    return buffer == NULL ? NULL : buffer->data;
+}
+
+static inline size_t output_buffer_capacity(output_buffer_t* buffer) {
+    return buffer == NULL ? 0 : buffer->capacity;
+}
+
+/*
+ * Release a returned result. Results outside the pooled buffer were allocated
+ * by the callback mechanism, they are freed and the pool grows to fit them.
+ */
+static inline void output_buffer_release(output_buffer_t* buffer, char* data, size_t len) {
+    if (data == NULL || (buffer != NULL && data == buffer->data)) { return; }
+    free(data);
+    if (buffer == NULL || len <= buffer->capacity || len > OUTPUT_BUFFER_MAX_CAPACITY) { return; }
+    size_t capacity = buffer->capacity == 0 ? OUTPUT_BUFFER_INITIAL_CAPACITY : buffer->capacity;
+    while (capacity < len) { capacity <<= 1; }
+    if (capacity > OUTPUT_BUFFER_MAX_CAPACITY) { capacity = OUTPUT_BUFFER_MAX_CAPACITY; }
+    char* grown = (char*)malloc(capacity);
+    if (grown == NULL) { return; }
+    free(buffer->data);
+    buffer->data = grown;
+    buffer->capacity = capacity;
+}
+
+#if defined(__cplusplus)
+}
+#endif
+#endif
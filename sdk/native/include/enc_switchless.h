@@ -0,0 +1,301 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+#ifndef __ENC_SWITCHLESS_H
+#define __ENC_SWITCHLESS_H
+
+#include <stdint.h>
+#include <stddef.h>
+
+/*
+ * Switchless invocation protocol shared by host and enclave.
+ *
+ * The host allocates a bounded MPMC ring of request descriptors in untrusted
+ * memory. Host threads post a descriptor and wait for its completion flag,
+ * enclave worker threads, which never leave the enclave while the ring is
+ * running, poll the ring and serve the descriptors. A worker spins
+ * spin_count empty polls before parking for park_micros, host threads use the
+ * same policy while waiting for a result.
+ *
+ * A worker claims a descriptor before serving it. A host thread whose
+ * descriptor isn't claimed within SWITCHLESS_CLAIM_TIMEOUT_MICROS, for
+ * example one a worker refused to serve, abandons it and makes an ecall
+ * instead. A claimed descriptor is always completed.
+ *
+ * Descriptors are owned by the ring, never by a host thread's stack, since a
+ * worker may still look at an abandoned descriptor. A descriptor is reference
+ * counted, the posting host thread and the ring hold one reference each. The
+ * host drops its reference once it has read the result or abandoned the
+ * descriptor, the worker drops the ring's one once it completed the
+ * descriptor or lost the claim, and the last one frees it for reuse. Cells
+ * carry descriptor indexes, so a worker only ever touches the ring.
+ *
+ * The ring is a Vyukov bounded queue, every cell carries a sequence number so
+ * posting and taking a descriptor only needs one CAS on a position counter.
+ * The capacity is fixed at compile time, the enclave never trusts a ring
+ * geometry read back from untrusted memory, nor an unclamped spin or park
+ * policy.
+ */
+
+#define SWITCHLESS_RING_CAPACITY   1024
+#define SWITCHLESS_RING_MASK       (SWITCHLESS_RING_CAPACITY - 1)
+#define SWITCHLESS_CACHE_LINE      64
+
+#define SWITCHLESS_MAX_SPIN_COUNT  1000000
+#define SWITCHLESS_MAX_PARK_MICROS 10000
+#ifndef SWITCHLESS_CLAIM_TIMEOUT_MICROS
+#define SWITCHLESS_CLAIM_TIMEOUT_MICROS 1000000
+#endif
+
+#define SWITCHLESS_REQUEST_POSTED    0x0
+#define SWITCHLESS_REQUEST_DONE      0x1
+#define SWITCHLESS_REQUEST_CLAIMED   0x2
+#define SWITCHLESS_REQUEST_ABANDONED 0x3
+
+#if defined(__cplusplus)
+extern "C" {
+#endif
+
+typedef struct switchless_request_struct {
+    volatile uint32_t state;
+    // references held by the posting host thread and the ring, 0x0 means free.
+    volatile uint32_t owners;
+    int ret;
+    enc_data_t input;
+    enc_data_t output;
+    // host buffer offered for the result, see enc_output_buffer.h.
+    enc_data_t buffer;
+} switchless_request_t;
+
+typedef struct switchless_cell_struct {
+    volatile uint64_t sequence;
+    // index into the ring's descriptors.
+    uint32_t request;
+} switchless_cell_t;
+
+typedef struct switchless_ring_struct {
+    volatile uint64_t enqueue_pos;
+    char pad0[SWITCHLESS_CACHE_LINE - sizeof(uint64_t)];
+    volatile uint64_t dequeue_pos;
+    char pad1[SWITCHLESS_CACHE_LINE - sizeof(uint64_t)];
+    volatile uint32_t running;
+    volatile uint32_t active_workers;
+    uint32_t spin_count;
+    uint32_t park_micros;
+    // where host threads start looking for a free descriptor.
+    volatile uint32_t acquire_pos;
+    switchless_cell_t cells[SWITCHLESS_RING_CAPACITY];
+    switchless_request_t requests[SWITCHLESS_RING_CAPACITY];
+} switchless_ring_t;
+
+// serve one descriptor and complete it, ctx is the worker's private context.
+typedef void (*switchless_serve_t)(void* ctx, switchless_request_t* request);
+// give up the cpu for about micros microseconds.
+typedef void (*switchless_park_t)(uint32_t micros);
+// monotonic time in microseconds, it's used on host side only.
+typedef uint64_t (*switchless_clock_t)(void);
+
+static inline void switchless_cpu_relax(void) {
+#if defined(__x86_64__) || defined(__i386__)
+    __builtin_ia32_pause();
+#endif
+}
+
+static inline void switchless_ring_init(switchless_ring_t* ring, uint32_t spin_count, uint32_t park_micros) {
+    for (uint64_t i = 0; i < SWITCHLESS_RING_CAPACITY; i++) {
+        ring->cells[i].sequence = i;
+        ring->cells[i].request = 0x0;
+        ring->requests[i].owners = 0x0;
+    }
+    ring->acquire_pos = 0x0;
+    ring->enqueue_pos = 0x0;
+    ring->dequeue_pos = 0x0;
+    ring->active_workers = 0x0;
+    ring->spin_count = spin_count;
+    ring->park_micros = park_micros;
+    __atomic_store_n(&ring->running, 1, __ATOMIC_RELEASE);
+}
+
+static inline int switchless_ring_running(switchless_ring_t* ring) {
+    return (int)__atomic_load_n(&ring->running, __ATOMIC_ACQUIRE);
+}
+
+static inline void switchless_ring_stop(switchless_ring_t* ring) {
+    __atomic_store_n(&ring->running, 0, __ATOMIC_RELEASE);
+}
+
+/*
+ * Host side, returns a free descriptor holding the caller's reference, or
+ * NULL if all descriptors are in use.
+ */
+static inline switchless_request_t* switchless_request_acquire(switchless_ring_t* ring) {
+    uint32_t start = __atomic_fetch_add(&ring->acquire_pos, 1, __ATOMIC_RELAXED);
+    for (uint32_t i = 0; i < SWITCHLESS_RING_CAPACITY; i++) {
+        switchless_request_t* request = &ring->requests[(start + i) & SWITCHLESS_RING_MASK];
+        uint32_t free_owners = 0x0;
+        if (__atomic_compare_exchange_n(&request->owners, &free_owners, 1, 0, __ATOMIC_ACQUIRE, __ATOMIC_RELAXED)) {
+            return request;
+        }
+    }
+    return NULL;
+}
+
+/*
+ * Drop one reference, the descriptor is free for reuse once both are dropped.
+ */
+static inline void switchless_request_release(switchless_request_t* request) {
+    __atomic_sub_fetch(&request->owners, 1, __ATOMIC_ACQ_REL);
+}
+
+/*
+ * Returns 1 if the request was posted, the ring holds a reference to it then,
+ * 0 if the ring is full.
+ */
+static inline int switchless_ring_post(switchless_ring_t* ring, switchless_request_t* request) {
+    uint64_t pos = __atomic_load_n(&ring->enqueue_pos, __ATOMIC_RELAXED);
+    switchless_cell_t* cell;
+    for (;;) {
+        cell = &ring->cells[pos & SWITCHLESS_RING_MASK];
+        uint64_t seq = __atomic_load_n(&cell->sequence, __ATOMIC_ACQUIRE);
+        int64_t diff = (int64_t)seq - (int64_t)pos;
+        if (diff == 0) {
+            if (__atomic_compare_exchange_n(&ring->enqueue_pos, &pos, pos + 1, 1, __ATOMIC_RELAXED, __ATOMIC_RELAXED)) {
+                break;
+            }
+        } else if (diff < 0) {
+            return 0;
+        } else {
+            pos = __atomic_load_n(&ring->enqueue_pos, __ATOMIC_RELAXED);
+        }
+    }
+    __atomic_store_n(&request->state, SWITCHLESS_REQUEST_POSTED, __ATOMIC_RELAXED);
+    __atomic_add_fetch(&request->owners, 1, __ATOMIC_RELAXED);
+    cell->request = (uint32_t)(request - ring->requests);
+    __atomic_store_n(&cell->sequence, pos + 1, __ATOMIC_RELEASE);
+    return 1;
+}
+
+/*
+ * Returns the oldest posted request, or NULL if the ring is empty.
+ */
+static inline switchless_request_t* switchless_ring_take(switchless_ring_t* ring) {
+    uint64_t pos = __atomic_load_n(&ring->dequeue_pos, __ATOMIC_RELAXED);
+    switchless_cell_t* cell;
+    for (;;) {
+        cell = &ring->cells[pos & SWITCHLESS_RING_MASK];
+        uint64_t seq = __atomic_load_n(&cell->sequence, __ATOMIC_ACQUIRE);
+        int64_t diff = (int64_t)seq - (int64_t)(pos + 1);
+        if (diff == 0) {
+            if (__atomic_compare_exchange_n(&ring->dequeue_pos, &pos, pos + 1, 1, __ATOMIC_RELAXED, __ATOMIC_RELAXED)) {
+                break;
+            }
+        } else if (diff < 0) {
+            return NULL;
+        } else {
+            pos = __atomic_load_n(&ring->dequeue_pos, __ATOMIC_RELAXED);
+        }
+    }
+    // the index is read from untrusted memory, masking keeps it inside the ring.
+    switchless_request_t* request = &ring->requests[cell->request & SWITCHLESS_RING_MASK];
+    __atomic_store_n(&cell->sequence, pos + SWITCHLESS_RING_CAPACITY, __ATOMIC_RELEASE);
+    return request;
+}
+
+static inline uint32_t switchless_clamp(uint32_t value, uint32_t max) {
+    return value > max ? max : value;
+}
+
+/*
+ * Worker side, returns 1 if the request is claimed and must be completed,
+ * 0 if the host has abandoned it.
+ */
+static inline int switchless_request_claim(switchless_request_t* request) {
+    uint32_t posted = SWITCHLESS_REQUEST_POSTED;
+    return __atomic_compare_exchange_n(&request->state, &posted, SWITCHLESS_REQUEST_CLAIMED, 0, __ATOMIC_ACQ_REL, __ATOMIC_ACQUIRE);
+}
+
+static inline void switchless_request_complete(switchless_request_t* request, int ret) {
+    request->ret = ret;
+    __atomic_store_n(&request->state, SWITCHLESS_REQUEST_DONE, __ATOMIC_RELEASE);
+}
+
+/*
+ * Host side, wait until a worker completed the request and store its result
+ * in ret. Returns 0 if no worker claimed the request in time, the request is
+ * abandoned then and the caller makes the invocation by an ecall. The caller
+ * releases its reference in both cases.
+ */
+static inline int switchless_request_wait(switchless_ring_t* ring, switchless_request_t* request, switchless_park_t park, switchless_clock_t clock, int* ret) {
+    uint32_t spin_count = switchless_clamp(ring->spin_count, SWITCHLESS_MAX_SPIN_COUNT);
+    uint32_t park_micros = switchless_clamp(ring->park_micros, SWITCHLESS_MAX_PARK_MICROS);
+    uint64_t deadline = clock() + SWITCHLESS_CLAIM_TIMEOUT_MICROS;
+    uint32_t idle = 0;
+    uint32_t state;
+    while ((state = __atomic_load_n(&request->state, __ATOMIC_ACQUIRE)) != SWITCHLESS_REQUEST_DONE) {
+        if (++idle < spin_count) {
+            switchless_cpu_relax();
+            continue;
+        }
+        idle = 0;
+        if (state == SWITCHLESS_REQUEST_POSTED && clock() >= deadline) {
+            uint32_t posted = SWITCHLESS_REQUEST_POSTED;
+            if (__atomic_compare_exchange_n(&request->state, &posted, SWITCHLESS_REQUEST_ABANDONED, 0, __ATOMIC_ACQ_REL, __ATOMIC_ACQUIRE)) {
+                return 0;
+            }
+            continue;
+        }
+        park(park_micros);
+    }
+    *ret = request->ret;
+    return 1;
+}
+
+/*
+ * Worker side, serve requests until the ring is stopped. The host stops the
+ * ring only after all posted requests were completed. The ring's reference to
+ * a request is dropped once it was served, or once the worker lost the claim
+ * to the host abandoning it.
+ */
+static inline void switchless_worker_loop(switchless_ring_t* ring, switchless_serve_t serve, void* ctx, switchless_park_t park) {
+    // the policy lies in host memory, it's read once and clamped.
+    uint32_t spin_count = switchless_clamp(ring->spin_count, SWITCHLESS_MAX_SPIN_COUNT);
+    uint32_t park_micros = switchless_clamp(ring->park_micros, SWITCHLESS_MAX_PARK_MICROS);
+    uint32_t idle = 0;
+    __atomic_add_fetch(&ring->active_workers, 1, __ATOMIC_ACQ_REL);
+    while (switchless_ring_running(ring)) {
+        switchless_request_t* request = switchless_ring_take(ring);
+        if (request == NULL) {
+            if (++idle < spin_count) {
+                switchless_cpu_relax();
+            } else {
+                park(park_micros);
+                idle = 0;
+            }
+            continue;
+        }
+        idle = 0;
+        serve(ctx, request);
+        switchless_request_release(request);
+    }
+    __atomic_sub_fetch(&ring->active_workers, 1, __ATOMIC_ACQ_REL);
+}
+
+#if defined(__cplusplus)
+}
+#endif
+#endif
@@ -94,6 +94,17 @@ else
     occlum package
 fi
 
+# append sha256 manifest of image files, it's verified when image is extracted.
+mkdir -p ./image_manifest_workspace
+tar -xzf ./occlum_instance.tar.gz -C ./image_manifest_workspace
+pushd ./image_manifest_workspace
+find . -type f -printf '%P\0' | sort -z | xargs -0 sha256sum > ../.image_manifest
+popd
+gunzip ./occlum_instance.tar.gz
+tar -rf ./occlum_instance.tar .image_manifest
+gzip ./occlum_instance.tar
+rm -rf ./image_manifest_workspace .image_manifest
+
 mv ./occlum_instance.tar.gz "${ENCLAVE_BASE_DIR}"/target/svm-output/lib_embedded_lib_os_enclave_load.tgz
 
 popd
\ No newline at end of file
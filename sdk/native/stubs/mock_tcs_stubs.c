@@ -17,3 +17,4 @@ __attribute__((weak)) int      tee_sdk_tcs_register(uint64_t isolate_thread) { (
 __attribute__((weak)) int      tee_sdk_tcs_is_initialized(void) { return 0; }
 __attribute__((weak)) void     tee_sdk_tcs_set_callbacks(void* cb) { (void)cb; }
 __attribute__((weak)) void*    tee_sdk_tcs_get_callbacks(void) { return NULL; }
+__attribute__((weak)) void     tee_sdk_tcs_release(void) { }